@@ -0,0 +1,101 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of 'GET' from 32 concurrent callers over a pool of 8 connections versus batched by
+ * {@link BatchingConnectionFactory} over the same pool. The stand-in simulates network round trip by fixed delay
+ * before replying each burst of commands read together. Batch size distribution printed at the end of each trial.
+ *
+ * @author zakyalvan
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(32)
+public class BatchingBenchmark {
+    private static final byte[] KEY = "key".getBytes(StandardCharsets.UTF_8);
+
+    @Param({"POOLED", "BATCHED"})
+    private String mode;
+
+    @Param({"500"})
+    private long roundTripMicros;
+
+    private RedisServerStub server;
+
+    private ExtendedJedisConnectionFactory delegate;
+
+    private BatchingConnectionFactory batching;
+
+    private RedisConnectionFactory connectionFactory;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        server = new RedisServerStub()
+                .roundTripTime(roundTripMicros, TimeUnit.MICROSECONDS)
+                .start();
+        server.getStore().put("key", "value".getBytes(StandardCharsets.UTF_8));
+
+        JedisPoolConfig poolConfig = new JedisPoolConfig();
+        poolConfig.setMaxTotal(8);
+        poolConfig.setMaxIdle(8);
+        delegate = new ExtendedJedisConnectionFactory(poolConfig);
+        delegate.setHostName("127.0.0.1");
+        delegate.setPort(server.getPort());
+        delegate.afterPropertiesSet();
+
+        if ("BATCHED".equals(mode)) {
+            batching = new BatchingConnectionFactory(delegate, 0, 64);
+            connectionFactory = batching;
+        }
+        else {
+            connectionFactory = delegate;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (batching != null) {
+            BatchStatistics statistics = batching.getStatistics();
+            System.out.printf("%nbatches=%,d mean=%.1f max=%d distribution=%s%n", statistics.getBatches(),
+                    statistics.getMeanBatchSize(), statistics.getMaxBatchSize(), statistics.getBatchSizeDistribution());
+            batching.destroy();
+        }
+        delegate.destroy();
+        server.stop();
+    }
+
+    @Benchmark
+    public byte[] get() {
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            return connection.get(KEY);
+        }
+        finally {
+            connection.close();
+        }
+    }
+}
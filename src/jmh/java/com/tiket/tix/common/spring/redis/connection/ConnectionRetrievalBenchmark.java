@@ -0,0 +1,105 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of {@link FailOverCapableConnectionFactory#getConnection()} on top of retrieving connection directly from
+ * delegate pooled connection factory, without and with one command round trip, per load balancing mode.
+ *
+ * @author zakyalvan
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConnectionRetrievalBenchmark {
+    private static final byte[] KEY = "benchmark".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Load balancing mode of fail over capable connection factory, or 'DELEGATE' for delegate connection factory.
+     */
+    @Param({"DELEGATE", "FAIL_OVER", "ROUND_ROBIN", "LATENCY_AWARE"})
+    private String mode;
+
+    private final List<RedisServerStub> servers = new ArrayList<>();
+
+    private final List<ExtendedJedisConnectionFactory> delegates = new ArrayList<>();
+
+    private FailOverCapableConnectionFactory failOverConnectionFactory;
+
+    private RedisConnectionFactory connectionFactory;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<FailOverCandidate> candidates = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            RedisServerStub server = new RedisServerStub().start();
+            server.getStore().put("benchmark", "value".getBytes(StandardCharsets.UTF_8));
+            servers.add(server);
+
+            ExtendedJedisConnectionFactory delegate = new ExtendedJedisConnectionFactory();
+            delegate.setHostName("127.0.0.1");
+            delegate.setPort(server.getPort());
+            delegate.afterPropertiesSet();
+            delegates.add(delegate);
+            candidates.add(new FailOverCandidate("proxy-" + i, delegate));
+        }
+
+        if ("DELEGATE".equals(mode)) {
+            connectionFactory = delegates.get(0);
+        }
+        else {
+            failOverConnectionFactory = new FailOverCapableConnectionFactory(candidates);
+            failOverConnectionFactory.setLoadBalancingMode(LoadBalancingMode.valueOf(mode));
+            connectionFactory = failOverConnectionFactory;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (failOverConnectionFactory != null) {
+            failOverConnectionFactory.destroy();
+        }
+        delegates.forEach(ExtendedJedisConnectionFactory::destroy);
+        servers.forEach(RedisServerStub::stop);
+    }
+
+    @Benchmark
+    public RedisConnection retrieveAndClose() {
+        RedisConnection connection = connectionFactory.getConnection();
+        connection.close();
+        return connection;
+    }
+
+    @Benchmark
+    public byte[] retrieveGetAndClose() {
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            return connection.get(KEY);
+        }
+        finally {
+            connection.close();
+        }
+    }
+}
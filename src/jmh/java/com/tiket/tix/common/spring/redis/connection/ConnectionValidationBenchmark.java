@@ -0,0 +1,134 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.apache.commons.pool2.PooledObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.jedis.JedisConnection;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.JedisShardInfo;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of 'AUTH' and 'PING' around pooled connections: one command borrowed and returned with previous per borrow
+ * 'AUTH' and 'PING' ('PER_BORROW_AUTH'), without validation ('NONE'), with validation of connections idle longer than
+ * default validation idle time ('IDLE') and with 'PING' on every borrow ('EVERY_BORROW'), plus cost of creating
+ * authenticated connection, independent of validation.
+ *
+ * @author zakyalvan
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConnectionValidationBenchmark {
+    private static final String PASSWORD = "secret";
+
+    private static final byte[] KEY = "benchmark".getBytes(StandardCharsets.UTF_8);
+
+    @Param({"PER_BORROW_AUTH", "NONE", "IDLE", "EVERY_BORROW"})
+    private String validation;
+
+    private RedisServerStub server;
+
+    private JedisConnectionFactory connectionFactory;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        server = new RedisServerStub().password(PASSWORD).start();
+
+        JedisPoolConfig poolConfig = new JedisPoolConfig();
+        poolConfig.setMaxTotal(4);
+        if ("PER_BORROW_AUTH".equals(validation)) {
+            connectionFactory = new PerBorrowAuthConnectionFactory(poolConfig);
+        }
+        else {
+            ExtendedJedisConnectionFactory extended = new ExtendedJedisConnectionFactory(poolConfig);
+            extended.setValidateConnection(!"NONE".equals(validation));
+            extended.setValidationIdleTime("EVERY_BORROW".equals(validation) ? 0 : 5000);
+            connectionFactory = extended;
+        }
+        connectionFactory.setShardInfo(new JedisShardInfo("127.0.0.1", server.getPort()));
+        connectionFactory.setPassword(PASSWORD);
+        connectionFactory.afterPropertiesSet();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        connectionFactory.destroy();
+        server.stop();
+    }
+
+    @Benchmark
+    public byte[] borrowGetAndReturn() {
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            return connection.get(KEY);
+        }
+        finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Cost of creating authenticated pooled connection, paid once per connection since 'AUTH' moved to creation.
+     */
+    @State(Scope.Benchmark)
+    public static class Creation {
+        private RedisServerStub server;
+
+        private ExtendedJedisPooledObjectFactory pooledObjectFactory;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            server = new RedisServerStub().password(PASSWORD).start();
+            pooledObjectFactory = new ExtendedJedisPooledObjectFactory("127.0.0.1", server.getPort(), 2000, 2000,
+                    PASSWORD, 0, null, false);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            server.stop();
+        }
+    }
+
+    @Benchmark
+    public static PooledObject<Jedis> createAuthenticatedConnection(Creation creation) throws Exception {
+        PooledObject<Jedis> pooledJedis = creation.pooledObjectFactory.makeObject();
+        creation.pooledObjectFactory.destroyObject(pooledJedis);
+        return pooledJedis;
+    }
+
+    /**
+     * Reproduce previous behavior of {@link ExtendedJedisConnectionFactory}, sending 'AUTH' and 'PING' on each borrow.
+     */
+    static class PerBorrowAuthConnectionFactory extends JedisConnectionFactory {
+        PerBorrowAuthConnectionFactory(JedisPoolConfig poolConfig) {
+            super(poolConfig);
+        }
+
+        @Override
+        protected JedisConnection postProcessConnection(JedisConnection connection) {
+            connection.getNativeConnection().auth(getPassword());
+            connection.ping();
+            return connection;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.connection.RedisConnection;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput and latency (sample time percentiles) of one 'GET' through {@link FailOverCapableConnectionFactory},
+ * delegating to pooled jedis or to one shared lettuce connection, at equal number of caller threads. Server
+ * stand-in delay each flush of responses by 'roundTripMicros', emulating network to the proxy. Sockets opened to
+ * the server printed at the end of each trial.
+ *
+ * @author zakyalvan
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DriverComparisonBenchmark {
+    private static final byte[] KEY = "benchmark".getBytes(StandardCharsets.UTF_8);
+
+    @Param({"JEDIS", "LETTUCE"})
+    private ConnectionDriver driver;
+
+    /**
+     * Pool size of jedis, ignored by lettuce.
+     */
+    @Param({"16"})
+    private int poolSize;
+
+    @Param({"100"})
+    private long roundTripMicros;
+
+    private RedisServerStub server;
+
+    private WarmableConnectionFactory delegate;
+
+    private FailOverCapableConnectionFactory connectionFactory;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        server = new RedisServerStub().roundTripTime(roundTripMicros, TimeUnit.MICROSECONDS).start();
+        server.getStore().put("benchmark", "value".getBytes(StandardCharsets.UTF_8));
+
+        if (driver == ConnectionDriver.LETTUCE) {
+            ExtendedLettuceConnectionFactory lettuceConnectionFactory =
+                    new ExtendedLettuceConnectionFactory("127.0.0.1", server.getPort());
+            lettuceConnectionFactory.afterPropertiesSet();
+            delegate = lettuceConnectionFactory;
+        }
+        else {
+            JedisPoolConfig poolConfig = new JedisPoolConfig();
+            poolConfig.setMaxTotal(poolSize);
+            poolConfig.setMaxIdle(poolSize);
+            poolConfig.setMinIdle(poolSize);
+            poolConfig.setFairness(true);
+            ExtendedJedisConnectionFactory jedisConnectionFactory = new ExtendedJedisConnectionFactory(poolConfig);
+            jedisConnectionFactory.setHostName("127.0.0.1");
+            jedisConnectionFactory.setPort(server.getPort());
+            jedisConnectionFactory.afterPropertiesSet();
+            delegate = jedisConnectionFactory;
+        }
+        delegate.prewarm();
+        connectionFactory = new FailOverCapableConnectionFactory(
+                Collections.singletonList(new FailOverCandidate("proxy", delegate)));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        System.out.printf("%n%s sockets opened: %d%n", driver, server.getClientCount());
+        connectionFactory.destroy();
+        if (delegate instanceof ExtendedLettuceConnectionFactory) {
+            ((ExtendedLettuceConnectionFactory) delegate).destroy();
+        }
+        else {
+            ((ExtendedJedisConnectionFactory) delegate).destroy();
+        }
+        server.stop();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public byte[] threads001() {
+        return get();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public byte[] threads016() {
+        return get();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public byte[] threads064() {
+        return get();
+    }
+
+    @Benchmark
+    @Threads(256)
+    public byte[] threads256() {
+        return get();
+    }
+
+    private byte[] get() {
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            return connection.get(KEY);
+        }
+        finally {
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisConnection;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Throughput of 'GET' through {@link FailOverCapableConnectionFactory} of two candidates, while both are healthy,
+ * while primary is down and while primary goes down and up every 500 milliseconds. Failed operations are counted
+ * as completed, so the numbers show how fast traffic moves away from failed candidate.
+ *
+ * @author zakyalvan
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class FailOverThroughputBenchmark {
+    private static final byte[] KEY = "benchmark".getBytes(StandardCharsets.UTF_8);
+
+    @Param({"HEALTHY", "PRIMARY_DOWN", "PRIMARY_FLAPPING"})
+    private String scenario;
+
+    private final List<RedisServerStub> servers = new ArrayList<>();
+
+    private final List<ExtendedJedisConnectionFactory> delegates = new ArrayList<>();
+
+    private FailOverCapableConnectionFactory connectionFactory;
+
+    private ScheduledExecutorService flapper;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<FailOverCandidate> candidates = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            RedisServerStub server = new RedisServerStub().start();
+            server.getStore().put("benchmark", "value".getBytes(StandardCharsets.UTF_8));
+            servers.add(server);
+
+            JedisPoolConfig poolConfig = new JedisPoolConfig();
+            poolConfig.setMaxTotal(8);
+            poolConfig.setMaxWaitMillis(500);
+            ExtendedJedisConnectionFactory delegate = new ExtendedJedisConnectionFactory(poolConfig);
+            delegate.setHostName("127.0.0.1");
+            delegate.setPort(server.getPort());
+            delegate.setTimeout(500);
+            delegate.afterPropertiesSet();
+            delegates.add(delegate);
+            candidates.add(new FailOverCandidate("proxy-" + i, delegate,
+                    new ConnectionFactoryCircuitBreaker(50, 20, 5, 200), true, 1));
+        }
+        connectionFactory = new FailOverCapableConnectionFactory(candidates);
+
+        RedisServerStub primary = servers.get(0);
+        if ("PRIMARY_DOWN".equals(scenario)) {
+            primary.stop();
+        }
+        else if ("PRIMARY_FLAPPING".equals(scenario)) {
+            AtomicBoolean running = new AtomicBoolean(true);
+            flapper = Executors.newSingleThreadScheduledExecutor();
+            flapper.scheduleAtFixedRate(() -> {
+                if (running.get()) {
+                    primary.stop();
+                }
+                else {
+                    primary.start();
+                }
+                running.set(!running.get());
+            }, 500, 500, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (flapper != null) {
+            flapper.shutdownNow();
+        }
+        connectionFactory.destroy();
+        delegates.forEach(ExtendedJedisConnectionFactory::destroy);
+        servers.forEach(RedisServerStub::stop);
+    }
+
+    @Benchmark
+    public Object get() {
+        try {
+            RedisConnection connection = connectionFactory.getConnection();
+            try {
+                return connection.get(KEY);
+            }
+            finally {
+                connection.close();
+            }
+        }
+        catch (DataAccessException ex) {
+            return ex;
+        }
+    }
+}
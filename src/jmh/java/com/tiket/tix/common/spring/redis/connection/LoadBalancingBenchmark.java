@@ -0,0 +1,101 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.connection.RedisConnection;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aggregate throughput of {@link LoadBalancingMode}s against one, two and three redis protocol stand-ins sharing
+ * one store, each with capacity of single twemproxy ('serviceTimeMicros' per command, one command at a time).
+ *
+ * @author zakyalvan
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(32)
+public class LoadBalancingBenchmark {
+    private static final byte[] KEY = "benchmark".getBytes(StandardCharsets.UTF_8);
+
+    @Param({"FAIL_OVER", "ROUND_ROBIN", "LEAST_OUTSTANDING", "POWER_OF_TWO_CHOICES", "LATENCY_AWARE"})
+    private LoadBalancingMode balancingMode;
+
+    @Param({"1", "2", "3"})
+    private int proxies;
+
+    @Param({"200"})
+    private long serviceTimeMicros;
+
+    private final ConcurrentMap<String, byte[]> backend = new ConcurrentHashMap<>();
+
+    private final List<RedisServerStub> servers = new ArrayList<>();
+
+    private final List<ExtendedJedisConnectionFactory> delegates = new ArrayList<>();
+
+    private FailOverCapableConnectionFactory connectionFactory;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        backend.put("benchmark", "value".getBytes(StandardCharsets.UTF_8));
+        List<FailOverCandidate> candidates = new ArrayList<>();
+        for (int i = 0; i < proxies; i++) {
+            RedisServerStub server = new RedisServerStub(backend)
+                    .serviceTime(serviceTimeMicros, TimeUnit.MICROSECONDS)
+                    .start();
+            servers.add(server);
+
+            JedisPoolConfig poolConfig = new JedisPoolConfig();
+            poolConfig.setMaxTotal(32);
+            poolConfig.setMaxIdle(32);
+            ExtendedJedisConnectionFactory delegate = new ExtendedJedisConnectionFactory(poolConfig);
+            delegate.setHostName("127.0.0.1");
+            delegate.setPort(server.getPort());
+            delegate.afterPropertiesSet();
+            delegates.add(delegate);
+            candidates.add(new FailOverCandidate("proxy-" + i, delegate));
+        }
+        connectionFactory = new FailOverCapableConnectionFactory(candidates);
+        connectionFactory.setLoadBalancingMode(balancingMode);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        connectionFactory.destroy();
+        delegates.forEach(ExtendedJedisConnectionFactory::destroy);
+        servers.forEach(RedisServerStub::stop);
+    }
+
+    @Benchmark
+    public byte[] get() {
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            return connection.get(KEY);
+        }
+        finally {
+            connection.close();
+        }
+    }
+}
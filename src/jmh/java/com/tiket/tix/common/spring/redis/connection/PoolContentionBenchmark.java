@@ -0,0 +1,112 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.connection.RedisConnection;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of borrowing pooled connection, executing one 'GET' and returning it, from 1 up to 256 concurrent
+ * threads sharing one pool, to expose pool contention once threads outnumber pooled connections. Compare commons-pool2
+ * pool with {@link StripedJedisPool} by 'poolType' parameter.
+ *
+ * @author zakyalvan
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PoolContentionBenchmark {
+    private static final byte[] KEY = "benchmark".getBytes(StandardCharsets.UTF_8);
+
+    @Param({"8", "64"})
+    private int poolSize;
+
+    @Param({"COMMONS_POOL", "STRIPED"})
+    private ConnectionPoolType poolType;
+
+    private RedisServerStub server;
+
+    private ExtendedJedisConnectionFactory connectionFactory;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        server = new RedisServerStub().start();
+        server.getStore().put("benchmark", "value".getBytes(StandardCharsets.UTF_8));
+
+        JedisPoolConfig poolConfig = new JedisPoolConfig();
+        poolConfig.setMaxTotal(poolSize);
+        poolConfig.setMaxIdle(poolSize);
+        // Without fairness, threads returning connection barge ahead of waiting ones and starve them, so iterations
+        // with many more threads than pooled connections never finish.
+        poolConfig.setFairness(true);
+        connectionFactory = new ExtendedJedisConnectionFactory(poolConfig);
+        connectionFactory.setPoolType(poolType);
+        connectionFactory.setHostName("127.0.0.1");
+        connectionFactory.setPort(server.getPort());
+        connectionFactory.afterPropertiesSet();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        connectionFactory.destroy();
+        server.stop();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public byte[] threads001() {
+        return borrowGetAndReturn();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public byte[] threads004() {
+        return borrowGetAndReturn();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public byte[] threads016() {
+        return borrowGetAndReturn();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public byte[] threads064() {
+        return borrowGetAndReturn();
+    }
+
+    @Benchmark
+    @Threads(256)
+    public byte[] threads256() {
+        return borrowGetAndReturn();
+    }
+
+    private byte[] borrowGetAndReturn() {
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            return connection.get(KEY);
+        }
+        finally {
+            connection.close();
+        }
+    }
+}
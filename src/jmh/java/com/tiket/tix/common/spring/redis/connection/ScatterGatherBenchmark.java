@@ -0,0 +1,135 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency (sample time percentiles) of 500 keys 'MGET', sent as is over single connection versus split and executed
+ * concurrently by {@link ScatterGatherExecutor}, through three proxy stand-ins sharing one store and directly on
+ * three shards. Each stand-in serves one command at a time with fixed cost per command and per key.
+ *
+ * @author zakyalvan
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScatterGatherBenchmark {
+    private static final int KEYS = 500;
+
+    @Param({"PROXY_SINGLE", "PROXY_SCATTER_GATHER", "SHARDS_SEQUENTIAL", "SHARDS_SCATTER_GATHER"})
+    private String topology;
+
+    @Param({"100"})
+    private long serviceTimeMicros;
+
+    @Param({"4"})
+    private long keyServiceTimeMicros;
+
+    private final ConcurrentMap<String, byte[]> backend = new ConcurrentHashMap<>();
+
+    private final List<RedisServerStub> servers = new ArrayList<>();
+
+    private final List<ExtendedJedisConnectionFactory> delegates = new ArrayList<>();
+
+    private final byte[][] keys = new byte[KEYS][];
+
+    private ScatterGatherExecutor executor;
+
+    private RedisConnectionFactory connectionFactory;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = ("key:" + i).getBytes(StandardCharsets.UTF_8);
+            backend.put("key:" + i, ("value:" + i).getBytes(StandardCharsets.UTF_8));
+        }
+        for (int i = 0; i < 3; i++) {
+            RedisServerStub server = new RedisServerStub(backend)
+                    .serviceTime(serviceTimeMicros, TimeUnit.MICROSECONDS)
+                    .argumentServiceTime(keyServiceTimeMicros, TimeUnit.MICROSECONDS)
+                    .start();
+            servers.add(server);
+
+            JedisPoolConfig poolConfig = new JedisPoolConfig();
+            poolConfig.setMaxTotal(16);
+            poolConfig.setMaxIdle(16);
+            ExtendedJedisConnectionFactory delegate = new ExtendedJedisConnectionFactory(poolConfig);
+            delegate.setHostName("127.0.0.1");
+            delegate.setPort(server.getPort());
+            delegate.afterPropertiesSet();
+            delegates.add(delegate);
+        }
+        executor = new ScatterGatherExecutor(100, 4);
+
+        if (topology.startsWith("PROXY")) {
+            List<FailOverCandidate> candidates = new ArrayList<>();
+            for (int i = 0; i < delegates.size(); i++) {
+                candidates.add(new FailOverCandidate("proxy-" + i, delegates.get(i)));
+            }
+            FailOverCapableConnectionFactory proxied = new FailOverCapableConnectionFactory(candidates);
+            proxied.setLoadBalancingMode(LoadBalancingMode.ROUND_ROBIN);
+            if (topology.endsWith("SCATTER_GATHER")) {
+                proxied.setScatterGatherExecutor(executor);
+            }
+            connectionFactory = proxied;
+        }
+        else {
+            List<ShardNode> nodes = new ArrayList<>();
+            for (int i = 0; i < servers.size(); i++) {
+                nodes.add(new ShardNode("127.0.0.1", servers.get(i).getPort(), 1, "shard-" + i));
+            }
+            ShardedConnectionFactory sharded = new ShardedConnectionFactory(
+                    new ShardLocator(nodes, HashAlgorithm.FNV1A_64, ShardDistribution.KETAMA, "{}"),
+                    new ArrayList<RedisConnectionFactory>(delegates));
+            if (topology.endsWith("SCATTER_GATHER")) {
+                sharded.setScatterGatherExecutor(executor);
+            }
+            connectionFactory = sharded;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (connectionFactory instanceof FailOverCapableConnectionFactory) {
+            ((FailOverCapableConnectionFactory) connectionFactory).destroy();
+        }
+        executor.destroy();
+        delegates.forEach(ExtendedJedisConnectionFactory::destroy);
+        servers.forEach(RedisServerStub::stop);
+    }
+
+    @Benchmark
+    public List<byte[]> multiGet() {
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            return connection.mGet(keys);
+        }
+        finally {
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of serializing and deserializing a small value object with commonly used redis serializers, to compare
+ * against connection and command overhead measured by other benchmarks.
+ *
+ * @author zakyalvan
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializerBenchmark {
+    @Param({"STRING", "JDK", "JACKSON"})
+    private String serializer;
+
+    private RedisSerializer<Object> redisSerializer;
+
+    private Object value;
+
+    private byte[] serialized;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        switch (serializer) {
+            case "STRING":
+                redisSerializer = (RedisSerializer) new StringRedisSerializer();
+                value = "{\"code\":\"IDR\",\"rate\":15000.5,\"tags\":[\"asia\",\"default\"]}";
+                break;
+            case "JDK":
+                redisSerializer = new JdkSerializationRedisSerializer();
+                value = CurrencyRate.sample();
+                break;
+            default:
+                redisSerializer = new GenericJackson2JsonRedisSerializer();
+                value = CurrencyRate.sample();
+        }
+        serialized = redisSerializer.serialize(value);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return redisSerializer.serialize(value);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return redisSerializer.deserialize(serialized);
+    }
+
+    public static class CurrencyRate implements Serializable {
+        private String code;
+
+        private double rate;
+
+        private List<String> tags = new ArrayList<>();
+
+        static CurrencyRate sample() {
+            CurrencyRate rate = new CurrencyRate();
+            rate.setCode("IDR");
+            rate.setRate(15000.5);
+            rate.getTags().add("asia");
+            rate.getTags().add("default");
+            return rate;
+        }
+
+        public String getCode() {
+            return code;
+        }
+        public void setCode(String code) {
+            this.code = code;
+        }
+
+        public double getRate() {
+            return rate;
+        }
+        public void setRate(double rate) {
+            this.rate = rate;
+        }
+
+        public List<String> getTags() {
+            return tags;
+        }
+        public void setTags(List<String> tags) {
+            this.tags = tags;
+        }
+    }
+}
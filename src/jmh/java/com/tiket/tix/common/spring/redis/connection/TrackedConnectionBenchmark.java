@@ -0,0 +1,117 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.connection.RedisConnection;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of tracking connections retrieved from {@link FailOverCapableConnectionFactory} by {@link TrackedConnection}:
+ * untracked connection ('NONE'), connection recording into {@link FailOverConnectionFactoryMetrics} ('METRICS'), and
+ * recording plus outstanding commands tracking of least outstanding balancing mode ('METRICS_AND_OUTSTANDING'), per
+ * retrieval and per command on connection already held. Run with '-prof gc' to compare bytes allocated per operation,
+ * tracking allocates only the tracked connection per retrieval and nothing per command.
+ *
+ * @author zakyalvan
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrackedConnectionBenchmark {
+    private static final byte[] KEY = "benchmark".getBytes(StandardCharsets.UTF_8);
+
+    @Param({"NONE", "METRICS", "METRICS_AND_OUTSTANDING"})
+    private String tracking;
+
+    private RedisServerStub server;
+
+    private ExtendedJedisConnectionFactory delegate;
+
+    private FailOverCapableConnectionFactory connectionFactory;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        server = new RedisServerStub().start();
+        server.getStore().put("benchmark", "value".getBytes(StandardCharsets.UTF_8));
+
+        delegate = new ExtendedJedisConnectionFactory();
+        delegate.setHostName("127.0.0.1");
+        delegate.setPort(server.getPort());
+        delegate.afterPropertiesSet();
+        connectionFactory = new FailOverCapableConnectionFactory(
+                Collections.singletonList(new FailOverCandidate("proxy-0", delegate)));
+
+        if (!"NONE".equals(tracking)) {
+            new FailOverConnectionFactoryMetrics(connectionFactory).bindTo(new SimpleMeterRegistry());
+        }
+        if ("METRICS_AND_OUTSTANDING".equals(tracking)) {
+            connectionFactory.setLoadBalancingMode(LoadBalancingMode.LEAST_OUTSTANDING);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        connectionFactory.destroy();
+        delegate.destroy();
+        server.stop();
+    }
+
+    /**
+     * Connection retrieved once per benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class Held {
+        private RedisConnection connection;
+
+        @Setup(Level.Trial)
+        public void setUp(TrackedConnectionBenchmark benchmark) {
+            connection = benchmark.connectionFactory.getConnection();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            connection.close();
+        }
+    }
+
+    @Benchmark
+    public byte[] get(Held held) {
+        return held.connection.get(KEY);
+    }
+
+    @Benchmark
+    public RedisConnection retrieveAndClose() {
+        RedisConnection connection = connectionFactory.getConnection();
+        connection.close();
+        return connection;
+    }
+
+    @Benchmark
+    public byte[] retrieveGetAndClose() {
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            return connection.get(KEY);
+        }
+        finally {
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.tiket.tix.common.spring.redis.serializer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and decode time of {@link CompactRedisSerializer}, with deflate and LZ4 compression, against java
+ * serialization, for a small scalar value and hotel availability like values of about 10 and 200 KB. Bytes written
+ * for each value, i.e. bytes sent through twemproxy, are printed on setup.
+ *
+ * @author zakyalvan
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompactSerializerBenchmark {
+    @Param({"JDK", "DEFLATE", "LZ4"})
+    private String serializer;
+
+    /**
+     * Number of rooms of value, zero for a string value.
+     */
+    @Param({"0", "200", "4000"})
+    private int rooms;
+
+    private RedisSerializer<Object> redisSerializer;
+
+    private Object value;
+
+    private byte[] serialized;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        redisSerializer = serializer.equals("JDK") ? new JdkSerializationRedisSerializer()
+                : new CompactRedisSerializer(CompactRedisSerializer.DEFAULT_COMPRESSION_THRESHOLD,
+                        CompactRedisSerializer.Compression.valueOf(serializer), null);
+        value = rooms == 0 ? "hotel:1:last-seen" : Availability.sample(rooms);
+        serialized = redisSerializer.serialize(value);
+        System.out.printf("%n%s serializer, %d rooms: %d bytes%n", serializer, rooms, serialized.length);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return redisSerializer.serialize(value);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return redisSerializer.deserialize(serialized);
+    }
+
+    public static class Availability implements Serializable {
+        private String hotelId;
+
+        private List<Room> rooms = new ArrayList<>();
+
+        static Availability sample(int count) {
+            Random random = new Random(count);
+            String[] names = {"Superior Twin", "Deluxe Double", "Family Suite", "Executive King", "Standard Queen"};
+            String[] policies = {"Free cancellation before check in", "Non refundable", "Pay at hotel"};
+
+            Availability availability = new Availability();
+            availability.setHotelId("hotel-" + count);
+            for (int i = 0; i < count; i++) {
+                Room room = new Room();
+                room.setName(names[random.nextInt(names.length)] + " Room " + (i % 40));
+                room.setPolicy(policies[random.nextInt(policies.length)]);
+                room.setCurrency("IDR");
+                room.setRate(350000 + random.nextInt(2000) * 500L);
+                room.setBreakfast(random.nextBoolean());
+                availability.getRooms().add(room);
+            }
+            return availability;
+        }
+
+        public String getHotelId() {
+            return hotelId;
+        }
+        public void setHotelId(String hotelId) {
+            this.hotelId = hotelId;
+        }
+
+        public List<Room> getRooms() {
+            return rooms;
+        }
+        public void setRooms(List<Room> rooms) {
+            this.rooms = rooms;
+        }
+    }
+
+    public static class Room implements Serializable {
+        private String name;
+
+        private String policy;
+
+        private String currency;
+
+        private long rate;
+
+        private boolean breakfast;
+
+        public String getName() {
+            return name;
+        }
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getPolicy() {
+            return policy;
+        }
+        public void setPolicy(String policy) {
+            this.policy = policy;
+        }
+
+        public String getCurrency() {
+            return currency;
+        }
+        public void setCurrency(String currency) {
+            this.currency = currency;
+        }
+
+        public long getRate() {
+            return rate;
+        }
+        public void setRate(long rate) {
+            this.rate = rate;
+        }
+
+        public boolean isBreakfast() {
+            return breakfast;
+        }
+        public void setBreakfast(boolean breakfast) {
+            this.breakfast = breakfast;
+        }
+    }
+}
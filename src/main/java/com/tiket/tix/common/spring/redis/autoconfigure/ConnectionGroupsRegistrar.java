@@ -0,0 +1,135 @@
+package com.tiket.tix.common.spring.redis.autoconfigure;
+
+import com.tiket.tix.common.spring.redis.autoconfigure.ExtendedRedisProperties.CommandRetry;
+import com.tiket.tix.common.spring.redis.autoconfigure.ExtendedRedisProperties.ConnectionGroup;
+import com.tiket.tix.common.spring.redis.connection.CommandRetryPolicy;
+import com.tiket.tix.common.spring.redis.connection.FailOverCapableConnectionFactory;
+import com.tiket.tix.common.spring.redis.connection.FailOverConnectionFactoryMetrics;
+import com.tiket.tix.common.spring.redis.connection.KeyPrefixRoutingConnectionFactory;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.beans.factory.config.RuntimeBeanReference;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.ManagedMap;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.context.annotation.ImportBeanDefinitionRegistrar;
+import org.springframework.core.env.Environment;
+import org.springframework.core.type.AnnotationMetadata;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Register beans of each connection group configured under 'tiket.redis.groups', i.e. fail over capable connection
+ * factory '{group}RedisConnectionFactory' and template '{group}RedisTemplate', plus 'routingRedisConnectionFactory'
+ * when any group has key prefixes. When metrics enabled, meters of each group are published by
+ * '{group}RedisConnectionMetrics', tagged with 'group'. Beans are registered per group name, so that groups are bound ahead of regular
+ * configuration properties binding.
+ * <p>
+ * Group connection factories are declared as plain {@link RedisConnectionFactory}, so that they never satisfy
+ * conditions on (nor compete by type with) primary fail over capable connection factory of 'tiket.redis.connections'.
+ *
+ * @author zakyalvan
+ */
+class ConnectionGroupsRegistrar implements ImportBeanDefinitionRegistrar, EnvironmentAware {
+    static final String ROUTING_CONNECTION_FACTORY_BEAN_NAME = "routingRedisConnectionFactory";
+
+    private static final String DEFAULT_CONNECTION_FACTORY_BEAN_NAME = "redisConnectionFactory";
+
+    /**
+     * Value of 'group' tag of primary connection factory meters, when connection groups configured.
+     */
+    static final String DEFAULT_GROUP = "default";
+
+    private static final String METER_REGISTRY_CLASS = "io.micrometer.core.instrument.MeterRegistry";
+
+    private Environment environment;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Override
+    public void registerBeanDefinitions(AnnotationMetadata importingClassMetadata, BeanDefinitionRegistry registry) {
+        ExtendedRedisProperties properties = ExtendedRedisAutoConfiguration.bindProperties(environment);
+        if (properties.getGroups().isEmpty()) {
+            return;
+        }
+
+        boolean metrics = properties.getMetrics().isEnabled()
+                && ClassUtils.isPresent(METER_REGISTRY_CLASS, ConnectionGroupsRegistrar.class.getClassLoader());
+        ManagedMap<String, RuntimeBeanReference> routes = new ManagedMap<>();
+        properties.getGroups().forEach((group, settings) -> {
+            Assert.isTrue(!DEFAULT_GROUP.equals(group), "Connection group name '" + DEFAULT_GROUP + "' is reserved");
+            String connectionFactoryName = group + "RedisConnectionFactory";
+
+            RootBeanDefinition connectionFactory = new RootBeanDefinition(ConnectionGroupsRegistrar.class);
+            connectionFactory.setFactoryMethodName("createConnectionFactory");
+            connectionFactory.setAutowireMode(AutowireCapableBeanFactory.AUTOWIRE_CONSTRUCTOR);
+            connectionFactory.getConstructorArgumentValues().addIndexedArgumentValue(0, group);
+            registry.registerBeanDefinition(connectionFactoryName, connectionFactory);
+
+            RootBeanDefinition template = new RootBeanDefinition(RedisTemplate.class);
+            template.getPropertyValues().add("connectionFactory", new RuntimeBeanReference(connectionFactoryName));
+            registry.registerBeanDefinition(group + "RedisTemplate", template);
+
+            if (metrics) {
+                RootBeanDefinition binder = new RootBeanDefinition(GroupMetrics.class);
+                binder.setFactoryMethodName("createMetrics");
+                binder.setAutowireMode(AutowireCapableBeanFactory.AUTOWIRE_CONSTRUCTOR);
+                binder.getConstructorArgumentValues().addIndexedArgumentValue(0, group);
+                binder.getConstructorArgumentValues().addIndexedArgumentValue(1,
+                        new RuntimeBeanReference(connectionFactoryName));
+                registry.registerBeanDefinition(group + "RedisConnectionMetrics", binder);
+            }
+
+            for (String prefix : settings.getKeyPrefixes()) {
+                Assert.isTrue(!routes.containsKey(prefix), "Key prefix '" + prefix + "' routed to multiple connection groups");
+                routes.put(prefix, new RuntimeBeanReference(connectionFactoryName));
+            }
+        });
+
+        if (!routes.isEmpty() && !registry.containsBeanDefinition(ROUTING_CONNECTION_FACTORY_BEAN_NAME)) {
+            RootBeanDefinition routing = new RootBeanDefinition(KeyPrefixRoutingConnectionFactory.class);
+            routing.getConstructorArgumentValues().addIndexedArgumentValue(0,
+                    new RuntimeBeanReference(DEFAULT_CONNECTION_FACTORY_BEAN_NAME));
+            routing.getConstructorArgumentValues().addIndexedArgumentValue(1, routes);
+            registry.registerBeanDefinition(ROUTING_CONNECTION_FACTORY_BEAN_NAME, routing);
+        }
+    }
+
+    /**
+     * Create fail over capable connection factory of given group, with own command retry budget. Scatter gather,
+     * hedged reads and near cache only apply to primary connection factory.
+     */
+    static RedisConnectionFactory createConnectionFactory(String group, ExtendedRedisProperties properties) {
+        ConnectionGroup settings = properties.getGroups().get(group);
+        Assert.state(settings != null, "No connection group '" + group + "' configured");
+        Assert.notEmpty(settings.getConnections(), "No connections configured in connection group '" + group + "'");
+
+        FailOverCapableConnectionFactory connectionFactory = ExtendedRedisAutoConfiguration.createFailOverConnectionFactory(
+                properties, settings.getConnections(), settings.getBalancingMode(), settings.getLatencyDecayTime());
+        CommandRetry retry = properties.getRetry();
+        if (retry.isEnabled()) {
+            connectionFactory.setCommandRetryPolicy(new CommandRetryPolicy(retry.getMaxAttempts(), retry.getDeadline(),
+                    retry.getBudgetPercent()));
+        }
+        return connectionFactory;
+    }
+
+    /**
+     * Factory of group meter binders, apart from registrar so that micrometer stays optional. Binders are declared as
+     * plain {@link MeterBinder}, so that they never replace binder of primary connection factory.
+     */
+    static class GroupMetrics {
+        static MeterBinder createMetrics(String group, RedisConnectionFactory connectionFactory,
+                ExtendedRedisProperties properties) {
+            return new FailOverConnectionFactoryMetrics((FailOverCapableConnectionFactory) connectionFactory,
+                    Tags.of("group", group), properties.getMetrics().isCommandHistogram());
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.tiket.tix.common.spring.redis.autoconfigure;
+
+import com.tiket.tix.common.spring.redis.autoconfigure.ExtendedRedisProperties.RedisConnection;
+import com.tiket.tix.common.spring.redis.connection.AdaptiveConcurrencyLimiter;
+import com.tiket.tix.common.spring.redis.connection.BatchingConnectionFactory;
+import com.tiket.tix.common.spring.redis.connection.ConnectionPoolWarmer;
+import com.tiket.tix.common.spring.redis.connection.ExtendedJedisConnectionFactory;
+import com.tiket.tix.common.spring.redis.connection.FailOverCandidate;
+import com.tiket.tix.common.spring.redis.connection.FailOverCapableConnectionFactory;
+import com.tiket.tix.common.spring.redis.connection.WarmableConnectionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.event.SmartApplicationListener;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ObjectUtils;
+import redis.clients.util.Pool;
+
+import java.beans.PropertyDescriptor;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Apply changes of 'tiket.redis.connections' to running {@link FailOverCapableConnectionFactory}, e.g. twemproxy
+ * instance added or replaced, without restart. Connections with unchanged settings keep their candidate (pool, circuit
+ * breaker and latency score), connections added or changed are created and warmed before swapped in, all at once, so
+ * that traffic never wait for new pools. Removed connections are drained in background: their pools closed once
+ * borrowed connections returned (jedis), or after drain timeout.
+ * <p>
+ * Refreshed on spring cloud 'EnvironmentChangeEvent' (e.g. after '/refresh'), when spring cloud context available,
+ * or by calling {@link #refresh()}. Only 'connections' are reloaded, other settings require restart.
+ *
+ * @author zakyalvan
+ */
+public class ConnectionTopologyRefresher implements SmartApplicationListener, DisposableBean {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionTopologyRefresher.class);
+
+    public static final long DEFAULT_DRAIN_TIMEOUT = 30000;
+
+    private static final String ENVIRONMENT_CHANGE_EVENT = "org.springframework.cloud.context.environment.EnvironmentChangeEvent";
+
+    private static final long DRAIN_POLL_INTERVAL = 100;
+
+    private final FailOverCapableConnectionFactory connectionFactory;
+
+    private final Environment environment;
+
+    private final Class<?> environmentChangeEvent;
+
+    private final ExecutorService drainExecutor;
+
+    private long drainTimeout = DEFAULT_DRAIN_TIMEOUT;
+
+    /**
+     * Settings of currently configured candidates, keyed by candidate name.
+     */
+    private Map<String, RedisConnection> applied;
+
+    /**
+     * @param connectionFactory connection factory created from given settings
+     * @param properties        settings connection factory created from
+     * @param environment       environment to reload settings from
+     */
+    public ConnectionTopologyRefresher(FailOverCapableConnectionFactory connectionFactory,
+            ExtendedRedisProperties properties, Environment environment) {
+        Assert.notNull(connectionFactory, "Connection factory must not be null");
+        Assert.notNull(properties, "Properties must not be null");
+        Assert.notNull(environment, "Environment must not be null");
+
+        this.connectionFactory = connectionFactory;
+        this.environment = environment;
+        this.applied = new LinkedHashMap<>(properties.getConnections());
+
+        ClassLoader classLoader = ConnectionTopologyRefresher.class.getClassLoader();
+        this.environmentChangeEvent = ClassUtils.isPresent(ENVIRONMENT_CHANGE_EVENT, classLoader)
+                ? ClassUtils.resolveClassName(ENVIRONMENT_CHANGE_EVENT, classLoader) : null;
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("redis-drain-");
+        threadFactory.setDaemon(true);
+        this.drainExecutor = Executors.newSingleThreadExecutor(threadFactory);
+    }
+
+    public long getDrainTimeout() {
+        return drainTimeout;
+    }
+    /**
+     * Set maximum time in milliseconds to wait for borrowed connections of removed candidates to be returned.
+     */
+    public void setDrainTimeout(long drainTimeout) {
+        this.drainTimeout = drainTimeout;
+    }
+
+    /**
+     * Reload connection settings from environment and apply changes, if any.
+     *
+     * @return True if candidates of connection factory replaced.
+     */
+    public synchronized boolean refresh() {
+        ExtendedRedisProperties properties = ExtendedRedisAutoConfiguration.bindProperties(environment);
+        Map<String, RedisConnection> connections = properties.getConnections();
+        if (connections.isEmpty()) {
+            LOGGER.warn("No redis connections configured, keep current connections");
+            return false;
+        }
+
+        Map<String, FailOverCandidate> current = new LinkedHashMap<>();
+        for (FailOverCandidate candidate : connectionFactory.getCandidates()) {
+            current.put(candidate.getName(), candidate);
+        }
+
+        boolean changed = !new ArrayList<>(connections.keySet()).equals(new ArrayList<>(current.keySet()));
+        List<FailOverCandidate> candidates = new ArrayList<>(connections.size());
+        List<WarmableConnectionFactory> created = new ArrayList<>();
+        try {
+            for (Map.Entry<String, RedisConnection> entry : connections.entrySet()) {
+                FailOverCandidate candidate = current.get(entry.getKey());
+                if (candidate == null || !sameSettings(applied.get(entry.getKey()), entry.getValue())) {
+                    candidate = ExtendedRedisAutoConfiguration.createCandidate(properties, entry.getKey(), entry.getValue(), created);
+                    changed = true;
+                }
+                candidates.add(candidate);
+            }
+        }
+        catch (RuntimeException ex) {
+            created.forEach(ConnectionTopologyRefresher::destroy);
+            throw ex;
+        }
+        if (!changed) {
+            return false;
+        }
+
+        // Warmed regardless of warm up settings, so that swapped in connections serve the first request at once.
+        if (!created.isEmpty()) {
+            new ConnectionPoolWarmer(properties.getWarmUp().getTimeout()).warm(created);
+        }
+
+        List<FailOverCandidate> removed = connectionFactory.replaceCandidates(candidates);
+        applied = new LinkedHashMap<>(connections);
+        LOGGER.info("Redis connections refreshed to {}, {} created, {} removed", connections.keySet(),
+                created.size(), removed.size());
+
+        for (FailOverCandidate candidate : removed) {
+            drainExecutor.execute(() -> drain(candidate));
+        }
+        return true;
+    }
+
+    /**
+     * Wait for borrowed connections of removed candidate to be returned, then destroy its connection factories.
+     */
+    private void drain(FailOverCandidate candidate) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(drainTimeout);
+        try {
+            int inFlight;
+            while ((inFlight = inFlight(candidate)) != 0 && System.nanoTime() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(DRAIN_POLL_INTERVAL);
+            }
+            if (inFlight > 0) {
+                LOGGER.warn("Redis connection '{}' still has {} borrowed connections after drain timeout", candidate, inFlight);
+            }
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        destroy(candidate.getConnectionFactory());
+        LOGGER.info("Redis connection '{}' drained and destroyed", candidate);
+    }
+
+    /**
+     * Number of connections borrowed from given candidate, negative if unknown (e.g. lettuce shared connection).
+     */
+    private static int inFlight(FailOverCandidate candidate) {
+        Object factory = candidate.getConnectionFactory();
+        if (factory instanceof BatchingConnectionFactory) {
+            factory = ((BatchingConnectionFactory) factory).getDelegate();
+        }
+        if (factory instanceof ExtendedJedisConnectionFactory) {
+            Pool<?> pool = ((ExtendedJedisConnectionFactory) factory).getPool();
+            return pool != null ? Math.max(0, pool.getNumActive()) : 0;
+        }
+        AdaptiveConcurrencyLimiter limiter = candidate.getConcurrencyLimiter();
+        return limiter != null ? limiter.getInFlight() : -1;
+    }
+
+    private static void destroy(Object factory) {
+        try {
+            if (factory instanceof BatchingConnectionFactory) {
+                ((BatchingConnectionFactory) factory).destroy();
+                factory = ((BatchingConnectionFactory) factory).getDelegate();
+            }
+            if (factory instanceof DisposableBean) {
+                ((DisposableBean) factory).destroy();
+            }
+        }
+        catch (Exception ex) {
+            LOGGER.warn("Error on destroying removed redis connection factory", ex);
+        }
+    }
+
+    /**
+     * Compare bound settings property by property, nested settings (e.g. pool) included.
+     */
+    static boolean sameSettings(Object first, Object second) {
+        if (first == null || second == null || first.getClass() != second.getClass()) {
+            return first == second;
+        }
+        if (BeanUtils.isSimpleProperty(first.getClass()) || first instanceof Collection || first instanceof Map) {
+            return ObjectUtils.nullSafeEquals(first, second);
+        }
+
+        BeanWrapper firstWrapper = new BeanWrapperImpl(first);
+        BeanWrapper secondWrapper = new BeanWrapperImpl(second);
+        for (PropertyDescriptor descriptor : firstWrapper.getPropertyDescriptors()) {
+            String name = descriptor.getName();
+            if (!"class".equals(name) && firstWrapper.isReadableProperty(name)
+                    && !sameSettings(firstWrapper.getPropertyValue(name), secondWrapper.getPropertyValue(name))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean supportsEventType(Class<? extends ApplicationEvent> eventType) {
+        return environmentChangeEvent != null && environmentChangeEvent.isAssignableFrom(eventType);
+    }
+
+    @Override
+    public boolean supportsSourceType(Class<?> sourceType) {
+        return true;
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationEvent event) {
+        try {
+            refresh();
+        }
+        catch (RuntimeException ex) {
+            LOGGER.error("Error on refreshing redis connections, keep current connections", ex);
+        }
+    }
+
+    @Override
+    public int getOrder() {
+        return LOWEST_PRECEDENCE;
+    }
+
+    @Override
+    public void destroy() {
+        drainExecutor.shutdownNow();
+    }
+}
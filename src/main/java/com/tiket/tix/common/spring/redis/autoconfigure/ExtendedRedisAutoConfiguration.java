@@ -1,26 +1,80 @@
 package com.tiket.tix.common.spring.redis.autoconfigure;
 
+import com.tiket.tix.common.spring.redis.autoconfigure.ExtendedRedisProperties.AsyncCommands;
+import com.tiket.tix.common.spring.redis.autoconfigure.ExtendedRedisProperties.CacheProperties;
+import com.tiket.tix.common.spring.redis.autoconfigure.ExtendedRedisProperties.ChunkedValues;
+import com.tiket.tix.common.spring.redis.autoconfigure.ExtendedRedisProperties.CommandBatching;
+import com.tiket.tix.common.spring.redis.autoconfigure.ExtendedRedisProperties.CommandRetry;
+import com.tiket.tix.common.spring.redis.autoconfigure.ExtendedRedisProperties.ConcurrencyLimit;
 import com.tiket.tix.common.spring.redis.autoconfigure.ExtendedRedisProperties.ConnectionPool;
+import com.tiket.tix.common.spring.redis.autoconfigure.ExtendedRedisProperties.ConnectionRevalidate;
+import com.tiket.tix.common.spring.redis.autoconfigure.ExtendedRedisProperties.HedgedReads;
+import com.tiket.tix.common.spring.redis.autoconfigure.ExtendedRedisProperties.MetricsProperties;
+import com.tiket.tix.common.spring.redis.autoconfigure.ExtendedRedisProperties.PoolWarmUp;
+import com.tiket.tix.common.spring.redis.autoconfigure.ExtendedRedisProperties.RedisConnection;
+import com.tiket.tix.common.spring.redis.autoconfigure.ExtendedRedisProperties.ScatterGather;
+import com.tiket.tix.common.spring.redis.autoconfigure.ExtendedRedisProperties.ShardedConnections;
+import com.tiket.tix.common.spring.redis.autoconfigure.ExtendedRedisProperties.WriteBehind;
+import com.tiket.tix.common.spring.redis.cache.StampedeProtectedCacheManager;
+import com.tiket.tix.common.spring.redis.connection.AdaptiveConcurrencyLimiter;
+import com.tiket.tix.common.spring.redis.connection.BatchingConnectionFactory;
+import com.tiket.tix.common.spring.redis.connection.CommandRetryPolicy;
+import com.tiket.tix.common.spring.redis.connection.ConnectionDriver;
+import com.tiket.tix.common.spring.redis.connection.ConnectionFactoryCircuitBreaker;
+import com.tiket.tix.common.spring.redis.connection.ConnectionPoolWarmer;
 import com.tiket.tix.common.spring.redis.connection.ExtendedJedisConnectionFactory;
+import com.tiket.tix.common.spring.redis.connection.ExtendedLettuceConnectionFactory;
+import com.tiket.tix.common.spring.redis.connection.FailOverCandidate;
 import com.tiket.tix.common.spring.redis.connection.FailOverCapableConnectionFactory;
+import com.tiket.tix.common.spring.redis.connection.FailOverConnectionFactoryMetrics;
+import com.tiket.tix.common.spring.redis.connection.HedgedReadExecutor;
+import com.tiket.tix.common.spring.redis.connection.LoadBalancingMode;
+import com.tiket.tix.common.spring.redis.connection.NearCache;
+import com.tiket.tix.common.spring.redis.connection.NearCacheRegion;
+import com.tiket.tix.common.spring.redis.connection.ScatterGatherExecutor;
+import com.tiket.tix.common.spring.redis.connection.ShardLocator;
+import com.tiket.tix.common.spring.redis.connection.ShardNode;
+import com.tiket.tix.common.spring.redis.connection.ShardedConnectionFactory;
+import com.tiket.tix.common.spring.redis.connection.WarmableConnectionFactory;
+import com.tiket.tix.common.spring.redis.core.AsyncRedisTemplate;
+import com.tiket.tix.common.spring.redis.core.ChunkedRedisTemplate;
+import com.tiket.tix.common.spring.redis.core.WriteBehindMetrics;
+import com.tiket.tix.common.spring.redis.core.WriteBehindRedisTemplate;
+import com.tiket.tix.common.spring.redis.serializer.CompactRedisSerializer;
+import io.micrometer.core.instrument.Tags;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 import org.springframework.beans.BeanInstantiationException;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.AutoConfigureBefore;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.boot.bind.PropertiesConfigurationFactory;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.CacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.Environment;
 import org.springframework.data.redis.RedisConnectionFailureException;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
 import org.springframework.util.StringUtils;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPoolConfig;
 import redis.clients.jedis.JedisShardInfo;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 /**
  * An extended {@link org.springframework.boot.autoconfigure.EnableAutoConfiguration} for extending
@@ -39,6 +93,31 @@ public class ExtendedRedisAutoConfiguration {
         return postProcessor;
     }
 
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "tiket.redis.scatter-gather", name = "enabled", havingValue = "true")
+    ScatterGatherExecutor redisScatterGatherExecutor(ExtendedRedisProperties properties) {
+        ScatterGather scatterGather = properties.getScatterGather();
+        return new ScatterGatherExecutor(scatterGather.getFragmentSize(), scatterGather.getParallelism());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "tiket.redis.hedged-reads", name = "enabled", havingValue = "true")
+    HedgedReadExecutor redisHedgedReadExecutor(ExtendedRedisProperties properties) {
+        HedgedReads hedgedReads = properties.getHedgedReads();
+        return new HedgedReadExecutor(hedgedReads.getDelay(), hedgedReads.getPercentile(),
+                hedgedReads.getBudgetPercent(), hedgedReads.getMaxThreads());
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "tiket.redis.retry", name = "enabled", havingValue = "true", matchIfMissing = true)
+    CommandRetryPolicy redisCommandRetryPolicy(ExtendedRedisProperties properties) {
+        CommandRetry retry = properties.getRetry();
+        return new CommandRetryPolicy(retry.getMaxAttempts(), retry.getDeadline(), retry.getBudgetPercent());
+    }
+
     /**
      * Configure fail over capabilities related components.
      */
@@ -51,51 +130,449 @@ public class ExtendedRedisAutoConfiguration {
         }
 
         @Bean
+        @Primary
         @ConditionalOnMissingBean
-        FailOverCapableConnectionFactory redisConnectionFactory() {
-            final Set<RedisConnectionFactory> connectionFactories = new HashSet<>();
+        FailOverCapableConnectionFactory redisConnectionFactory(ObjectProvider<ScatterGatherExecutor> scatterGatherExecutor,
+                ObjectProvider<HedgedReadExecutor> hedgedReadExecutor, ObjectProvider<CommandRetryPolicy> commandRetryPolicy,
+                ObjectProvider<NearCache> nearCache) {
+            FailOverCapableConnectionFactory connectionFactory = createFailOverConnectionFactory(properties,
+                    properties.getConnections(), properties.getBalancingMode(), properties.getLatencyDecayTime());
+            connectionFactory.setScatterGatherExecutor(scatterGatherExecutor.getIfAvailable());
+            connectionFactory.setHedgedReadExecutor(hedgedReadExecutor.getIfAvailable());
+            connectionFactory.setCommandRetryPolicy(commandRetryPolicy.getIfAvailable());
+            connectionFactory.setNearCache(nearCache.getIfAvailable());
+            return connectionFactory;
+        }
+    }
 
-            properties.getConnections().forEach((name, connection) -> {
-                JedisPoolConfig poolConfig = new JedisPoolConfig();
-                if (connection.getPool() != null) {
-                    ConnectionPool connectionPool = connection.getPool();
+    /**
+     * Configure reload of fail over capable connection factory connections on environment change.
+     */
+    @Configuration
+    @ConditionalOnProperty(prefix = "tiket.redis.topology-refresh", name = "enabled", havingValue = "true")
+    public static class TopologyRefreshConfiguration {
+        private final ExtendedRedisProperties properties;
 
-                    poolConfig.setMaxTotal(connectionPool.getMaxActive());
-                    poolConfig.setMinIdle(connectionPool.getMinIdle());
-                    poolConfig.setMaxIdle(connectionPool.getMaxIdle());
-                    poolConfig.setMaxWaitMillis(connectionPool.getMaxWait());
+        public TopologyRefreshConfiguration(ExtendedRedisProperties properties) {
+            this.properties = properties;
+        }
 
-                    poolConfig.setTestOnBorrow(connectionPool.isTestOnBorrow());
-                    poolConfig.setTestOnCreate(connectionPool.isTestOnCreate());
-                    poolConfig.setTestOnReturn(connectionPool.isTestOnReturn());
-                    poolConfig.setTestWhileIdle(connectionPool.isTestWhileIdle());
-                }
+        @Bean
+        @ConditionalOnMissingBean
+        ConnectionTopologyRefresher redisTopologyRefresher(FailOverCapableConnectionFactory connectionFactory,
+                Environment environment) {
+            ConnectionTopologyRefresher refresher = new ConnectionTopologyRefresher(connectionFactory, properties, environment);
+            refresher.setDrainTimeout(properties.getTopologyRefresh().getDrainTimeout());
+            return refresher;
+        }
+    }
 
-                // Do not set client name for JedisConnectionFactory. Twemproxy currently does not support 'CLIENT' command.
-                ExtendedJedisConnectionFactory factory = new ExtendedJedisConnectionFactory(poolConfig);
-                factory.setHostName(connection.getHost());
-                factory.setPort(connection.getPort());
-                factory.setDatabase(connection.getDatabase());
-                factory.setUseSsl(connection.isSsl());
-                factory.setTimeout(connection.getTimeout());
+    /**
+     * Configure connection groups, each with own fail over capable connection factory and template, and routing of
+     * commands to groups by key prefix.
+     */
+    @Configuration
+    @Import(ConnectionGroupsRegistrar.class)
+    public static class ConnectionGroupsConfiguration {
+    }
 
-                JedisShardInfo shardInfo = new JedisShardInfo(connection.getHost(), connection.getPort(), connection.getTimeout(), connection.isSsl());
-                factory.setShardInfo(shardInfo);
+    /**
+     * Configure near cache of fail over capable connection factory.
+     */
+    @Configuration
+    @ConditionalOnClass(name = "com.github.benmanes.caffeine.cache.Caffeine")
+    @ConditionalOnProperty(prefix = "tiket.redis.near-cache", name = "enabled", havingValue = "true")
+    public static class NearCacheConfiguration {
+        private final ExtendedRedisProperties properties;
 
-                if (StringUtils.hasText(connection.getPassword())) {
-                    factory.setPassword(connection.getPassword());
-                }
+        public NearCacheConfiguration(ExtendedRedisProperties properties) {
+            this.properties = properties;
+        }
 
-                factory.setValidateConnection(properties.isValidateConnections());
+        @Bean
+        @ConditionalOnMissingBean
+        NearCache redisNearCache() {
+            List<NearCacheRegion> regions = new ArrayList<>();
+            properties.getNearCache().getRegions().forEach((name, region) -> regions.add(new NearCacheRegion(name,
+                    region.getPattern(), region.getMaxEntries(), region.getMaxBytes(), region.getTtl())));
+            return new NearCache(regions);
+        }
+    }
 
-                // Initialize connection factory.
-                factory.afterPropertiesSet();
+    /**
+     * Configure asynchronous command facade of fail over capable connection factory.
+     */
+    @Configuration
+    @ConditionalOnProperty(prefix = "tiket.redis.async", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public static class AsyncCommandsConfiguration {
+        private final ExtendedRedisProperties properties;
 
-                connectionFactories.add(factory);
-            });
+        public AsyncCommandsConfiguration(ExtendedRedisProperties properties) {
+            this.properties = properties;
+        }
 
-            FailOverCapableConnectionFactory connectionFactory = new FailOverCapableConnectionFactory(connectionFactories);
+        @Bean
+        @ConditionalOnMissingBean(name = "asyncStringRedisTemplate")
+        AsyncRedisTemplate<String, String> asyncStringRedisTemplate(FailOverCapableConnectionFactory connectionFactory) {
+            AsyncCommands async = properties.getAsync();
+            StringRedisSerializer serializer = new StringRedisSerializer();
+            return new AsyncRedisTemplate<>(connectionFactory, serializer, serializer, async.getMaxInFlight(),
+                    async.getMaxBatchSize());
+        }
+    }
+
+    /**
+     * Configure write behind buffer of counter increments and overwrites, over fail over capable connection factory.
+     */
+    @Configuration
+    @ConditionalOnProperty(prefix = "tiket.redis.write-behind", name = "enabled", havingValue = "true")
+    public static class WriteBehindConfiguration {
+        private final ExtendedRedisProperties properties;
+
+        public WriteBehindConfiguration(ExtendedRedisProperties properties) {
+            this.properties = properties;
+        }
+
+        @Bean
+        @ConditionalOnMissingBean(name = "writeBehindStringRedisTemplate")
+        WriteBehindRedisTemplate<String, String> writeBehindStringRedisTemplate(FailOverCapableConnectionFactory connectionFactory) {
+            WriteBehind writeBehind = properties.getWriteBehind();
+            StringRedisSerializer serializer = new StringRedisSerializer();
+            return new WriteBehindRedisTemplate<>(connectionFactory, serializer, serializer, writeBehind.getFlushInterval(),
+                    writeBehind.getFlushThreshold(), writeBehind.getMaxPending(), writeBehind.getMaxBatchSize());
+        }
+
+        @Configuration
+        @ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+        @ConditionalOnProperty(prefix = "tiket.redis.metrics", name = "enabled", havingValue = "true", matchIfMissing = true)
+        public static class WriteBehindMetricsConfiguration {
+            @Bean
+            @ConditionalOnMissingBean
+            WriteBehindMetrics redisWriteBehindMetrics(WriteBehindRedisTemplate<String, String> writeBehindStringRedisTemplate) {
+                return new WriteBehindMetrics(writeBehindStringRedisTemplate);
+            }
+        }
+    }
+
+    /**
+     * Configure 'redisTemplate' with compact and compressing value serializer, replacing the one of spring boot redis
+     * auto-configuration. Keys are still serialized by java serialization, so that existing keys stay the same.
+     */
+    @Configuration
+    @ConditionalOnProperty(prefix = "tiket.redis.serializer", name = "enabled", havingValue = "true")
+    public static class CompactSerializerConfiguration {
+        private final ExtendedRedisProperties properties;
+
+        public CompactSerializerConfiguration(ExtendedRedisProperties properties) {
+            this.properties = properties;
+        }
+
+        @Bean
+        @ConditionalOnMissingBean
+        CompactRedisSerializer redisValueSerializer() {
+            return new CompactRedisSerializer(properties.getSerializer().getCompressionThreshold(),
+                    properties.getSerializer().getCompression(), null);
+        }
+
+        @Bean
+        @ConditionalOnMissingBean(name = "redisTemplate")
+        RedisTemplate<Object, Object> redisTemplate(RedisConnectionFactory connectionFactory,
+                CompactRedisSerializer redisValueSerializer) {
+            RedisTemplate<Object, Object> template = new RedisTemplate<>();
+            template.setConnectionFactory(connectionFactory);
+            template.setValueSerializer(redisValueSerializer);
+            template.setHashValueSerializer(redisValueSerializer);
+            return template;
+        }
+    }
+
+    /**
+     * Configure stampede protected cache manager over fail over capable connection factory, clearing caches through
+     * sharded connection factory if configured.
+     */
+    @Configuration
+    @ConditionalOnProperty(prefix = "tiket.redis.cache", name = "enabled", havingValue = "true")
+    public static class CacheManagerConfiguration {
+        private final ExtendedRedisProperties properties;
+
+        public CacheManagerConfiguration(ExtendedRedisProperties properties) {
+            this.properties = properties;
+        }
+
+        @Bean
+        @ConditionalOnMissingBean(CacheManager.class)
+        StampedeProtectedCacheManager cacheManager(FailOverCapableConnectionFactory connectionFactory,
+                ObjectProvider<CompactRedisSerializer> valueSerializer, ObjectProvider<ShardedConnectionFactory> keyScanner) {
+            CacheProperties cache = properties.getCache();
+            StampedeProtectedCacheManager cacheManager = new StampedeProtectedCacheManager(connectionFactory);
+            CompactRedisSerializer serializer = valueSerializer.getIfAvailable();
+            if (serializer != null) {
+                cacheManager.setValueSerializer(serializer);
+            }
+            cacheManager.setKeyScanner(keyScanner.getIfAvailable());
+            cacheManager.setDefaultTimeToLive(cache.getTimeToLive());
+            cacheManager.setTimeToLives(cache.getTimeToLives());
+            cacheManager.setGracePeriod(cache.getGracePeriod());
+            cacheManager.setBeta(cache.getBeta());
+            cacheManager.setRefreshThreads(cache.getRefreshThreads());
+            return cacheManager;
+        }
+    }
+
+    /**
+     * Configure template of chunked large values with string keys, over fail over capable connection factory.
+     */
+    @Configuration
+    @ConditionalOnProperty(prefix = "tiket.redis.chunked", name = "enabled", havingValue = "true")
+    public static class ChunkedTemplateConfiguration {
+        private final ExtendedRedisProperties properties;
+
+        public ChunkedTemplateConfiguration(ExtendedRedisProperties properties) {
+            this.properties = properties;
+        }
+
+        @Bean
+        @ConditionalOnMissingBean
+        ChunkedRedisTemplate<String> chunkedRedisTemplate(FailOverCapableConnectionFactory connectionFactory) {
+            ChunkedValues chunked = properties.getChunked();
+            ChunkedRedisTemplate<String> template = new ChunkedRedisTemplate<>(connectionFactory,
+                    new StringRedisSerializer(), chunked.getChunkSize(), chunked.getPipelineDepth(), chunked.getHashTag());
+            template.setRetiredTtl(chunked.getRetiredTtl());
+            template.setOrphanTtl(chunked.getOrphanTtl());
+            return template;
+        }
+    }
+
+    /**
+     * Configure micrometer meters of fail over capable connection factory. Binder is applied to registries
+     * by micrometer spring integration (e.g. 'micrometer-spring-legacy').
+     */
+    @Configuration
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+    @ConditionalOnProperty(prefix = "tiket.redis.metrics", name = "enabled", havingValue = "true", matchIfMissing = true)
+    public static class MetricsConfiguration {
+        private final ExtendedRedisProperties properties;
+
+        public MetricsConfiguration(ExtendedRedisProperties properties) {
+            this.properties = properties;
+        }
+
+        @Bean
+        @ConditionalOnMissingBean
+        FailOverConnectionFactoryMetrics redisConnectionMetrics(FailOverCapableConnectionFactory connectionFactory) {
+            MetricsProperties metrics = properties.getMetrics();
+            // Tagged like meters of connection groups, if any, since some registries require consistent tag keys.
+            Tags tags = properties.getGroups().isEmpty() ? Tags.empty()
+                    : Tags.of("group", ConnectionGroupsRegistrar.DEFAULT_GROUP);
+            return new FailOverConnectionFactoryMetrics(connectionFactory, tags, metrics.isCommandHistogram());
+        }
+    }
+
+    /**
+     * Configure sharded connection factory, talking directly to backend redis servers behind twemproxy.
+     */
+    @Configuration
+    @ConditionalOnProperty(prefix = "tiket.redis.sharding", name = "enabled", havingValue = "true")
+    public static class ShardingConfiguration {
+        private final ExtendedRedisProperties properties;
+
+        public ShardingConfiguration(ExtendedRedisProperties properties) {
+            this.properties = properties;
+        }
+
+        @Bean
+        @ConditionalOnMissingBean
+        ShardedConnectionFactory shardedRedisConnectionFactory(ObjectProvider<ScatterGatherExecutor> scatterGatherExecutor) {
+            ShardedConnections sharding = properties.getSharding();
+            Assert.notEmpty(sharding.getServers(), "No sharded redis servers configured");
+
+            List<ShardNode> nodes = new ArrayList<>();
+            List<ExtendedJedisConnectionFactory> shardConnectionFactories = new ArrayList<>();
+            for (String server : sharding.getServers()) {
+                ShardNode node = ShardNode.parse(server);
+                nodes.add(node);
+                shardConnectionFactories.add(createJedisConnectionFactory(properties, node.getHost(), node.getPort(),
+                        sharding.getPassword(), sharding.getDatabase(), sharding.isSsl(), sharding.getTimeout(), sharding.getPool()));
+            }
+
+            warmUp(properties, shardConnectionFactories, shardConnectionFactories.size());
+
+            ShardLocator locator = new ShardLocator(nodes, sharding.getHash(), sharding.getDistribution(), sharding.getHashTag());
+            ShardedConnectionFactory connectionFactory = new ShardedConnectionFactory(locator, new ArrayList<>(shardConnectionFactories));
+            ScatterGatherExecutor executor = scatterGatherExecutor.getIfAvailable();
+            if (executor != null) {
+                connectionFactory.setScatterGatherExecutor(executor);
+            }
             return connectionFactory;
         }
     }
+
+    /**
+     * Create fail over capable connection factory over given connections, warming pools of connections receiving
+     * traffic.
+     */
+    static FailOverCapableConnectionFactory createFailOverConnectionFactory(ExtendedRedisProperties properties,
+            Map<String, RedisConnection> connections, LoadBalancingMode balancingMode, long latencyDecayTime) {
+        final List<FailOverCandidate> candidates = new ArrayList<>();
+        final List<WarmableConnectionFactory> delegateFactories = new ArrayList<>();
+
+        connections.forEach((name, connection) ->
+                candidates.add(createCandidate(properties, name, connection, delegateFactories)));
+
+        // Only the first connection receive traffic on fail over mode, others are standby.
+        warmUp(properties, delegateFactories, balancingMode == LoadBalancingMode.FAIL_OVER ? 1 : delegateFactories.size());
+
+        FailOverCapableConnectionFactory connectionFactory = new FailOverCapableConnectionFactory(candidates);
+        connectionFactory.setLoadBalancingMode(balancingMode);
+        connectionFactory.setLatencyDecayTime(latencyDecayTime);
+        return connectionFactory;
+    }
+
+    /**
+     * Create fail over candidate of one connection, adding its initialized driver connection factory to given list.
+     */
+    static FailOverCandidate createCandidate(ExtendedRedisProperties properties, String name, RedisConnection connection,
+            List<WarmableConnectionFactory> delegateFactories) {
+        WarmableConnectionFactory factory = connection.getDriver() == ConnectionDriver.LETTUCE
+                ? createLettuceConnectionFactory(connection.getHost(), connection.getPort(),
+                        connection.getPassword(), connection.getDatabase(), connection.isSsl(), connection.getTimeout())
+                : createJedisConnectionFactory(properties, connection.getHost(), connection.getPort(),
+                        connection.getPassword(), connection.getDatabase(), connection.isSsl(),
+                        connection.getTimeout(), connection.getPool());
+        delegateFactories.add(factory);
+
+        ConnectionRevalidate revalidate = connection.getRevalidate() != null ? connection.getRevalidate() : new ConnectionRevalidate();
+        ConnectionFactoryCircuitBreaker circuitBreaker = new ConnectionFactoryCircuitBreaker(
+                revalidate.getFailureRateThreshold(), revalidate.getSlidingWindowSize(),
+                revalidate.getMinimumCalls(), revalidate.getCoolDown());
+
+        CommandBatching batching = connection.getBatching();
+        RedisConnectionFactory candidateFactory = batching != null && batching.isEnabled()
+                ? new BatchingConnectionFactory(factory, batching.getFlushWindow(), batching.getMaxBatchSize())
+                : factory;
+
+        FailOverCandidate candidate = new FailOverCandidate(name, candidateFactory, circuitBreaker,
+                revalidate.isEnabled(), connection.getWeight());
+        ConcurrencyLimit limit = connection.getLimit();
+        if (limit != null && limit.isEnabled()) {
+            int maxLimit = limit.getMaxLimit();
+            if (factory == candidateFactory && connection.getDriver() != ConnectionDriver.LETTUCE) {
+                // Each retrieval borrows one pooled jedis connection, callers beyond max-active would wait for the pool.
+                int maxActive = connection.getPool() != null ? connection.getPool().getMaxActive()
+                        : GenericObjectPoolConfig.DEFAULT_MAX_TOTAL;
+                maxLimit = maxActive > 0 ? Math.min(maxLimit, maxActive) : maxLimit;
+            }
+            int minLimit = Math.min(limit.getMinLimit(), maxLimit);
+            candidate.setConcurrencyLimiter(new AdaptiveConcurrencyLimiter(Math.min(limit.getInitialLimit(), maxLimit),
+                    minLimit, maxLimit, limit.getTolerance(), limit.getSmoothing()));
+        }
+        return candidate;
+    }
+
+    /**
+     * Bind 'tiket.redis' properties from given environment, apart from (and possibly ahead of) properties bean.
+     */
+    static ExtendedRedisProperties bindProperties(Environment environment) {
+        PropertiesConfigurationFactory<ExtendedRedisProperties> factory =
+                new PropertiesConfigurationFactory<>(ExtendedRedisProperties.class);
+        factory.setPropertySources(((ConfigurableEnvironment) environment).getPropertySources());
+        factory.setConversionService(new DefaultConversionService());
+        factory.setTargetName("tiket.redis");
+        try {
+            factory.bindPropertiesToTarget();
+            return factory.getObject();
+        }
+        catch (Exception ex) {
+            throw new IllegalStateException("Unable to bind 'tiket.redis' properties", ex);
+        }
+    }
+
+    /**
+     * Warm pools of given initialized connection factories concurrently. Factories after the given number of active
+     * ones are standby, warmed in background if so configured.
+     */
+    static void warmUp(ExtendedRedisProperties properties, List<? extends WarmableConnectionFactory> pooledFactories, int active) {
+        PoolWarmUp warmUp = properties.getWarmUp();
+        if (!warmUp.isEnabled()) {
+            return;
+        }
+
+        ConnectionPoolWarmer warmer = new ConnectionPoolWarmer(warmUp.getTimeout());
+        if (warmUp.isLazyStandby() && active < pooledFactories.size()) {
+            warmer.warm(pooledFactories.subList(0, active));
+            warmer.warmLazily(pooledFactories.subList(active, pooledFactories.size()));
+        }
+        else {
+            warmer.warm(pooledFactories);
+        }
+    }
+
+    /**
+     * Create and initialize one lettuce connection factory, sharing one native connection. Liveness of shared
+     * connection is checked on each retrieval, so 'validate-connections' does not apply.
+     */
+    static ExtendedLettuceConnectionFactory createLettuceConnectionFactory(String host, int port, String password,
+            int database, boolean ssl, int timeout) {
+        if (!ClassUtils.isPresent("com.lambdaworks.redis.RedisClient", ExtendedRedisAutoConfiguration.class.getClassLoader())) {
+            throw new IllegalStateException("Lettuce driver requires 'biz.paluch.redis:lettuce' on classpath");
+        }
+
+        // Do not set client name, twemproxy currently does not support 'CLIENT' command.
+        ExtendedLettuceConnectionFactory factory = new ExtendedLettuceConnectionFactory(host, port);
+        factory.setDatabase(database);
+        factory.setUseSsl(ssl);
+        factory.setTimeout(timeout);
+        factory.setShareNativeConnection(true);
+        if (StringUtils.hasText(password)) {
+            factory.setPassword(password);
+        }
+
+        // Initialize connection factory, shared connection opened lazily or on warm up.
+        factory.afterPropertiesSet();
+        return factory;
+    }
+
+    /**
+     * Create and initialize one pooled jedis connection factory.
+     */
+    static ExtendedJedisConnectionFactory createJedisConnectionFactory(ExtendedRedisProperties properties, String host,
+            int port, String password, int database, boolean ssl, int timeout, ConnectionPool connectionPool) {
+        JedisPoolConfig poolConfig = new JedisPoolConfig();
+        if (connectionPool != null) {
+            poolConfig.setMaxTotal(connectionPool.getMaxActive());
+            poolConfig.setMinIdle(connectionPool.getMinIdle());
+            poolConfig.setMaxIdle(connectionPool.getMaxIdle());
+            poolConfig.setMaxWaitMillis(connectionPool.getMaxWait());
+
+            poolConfig.setTestOnBorrow(connectionPool.isTestOnBorrow());
+            poolConfig.setTestOnCreate(connectionPool.isTestOnCreate());
+            poolConfig.setTestOnReturn(connectionPool.isTestOnReturn());
+            poolConfig.setTestWhileIdle(connectionPool.isTestWhileIdle());
+        }
+
+        // Do not set client name for JedisConnectionFactory. Twemproxy currently does not support 'CLIENT' command.
+        ExtendedJedisConnectionFactory factory = new ExtendedJedisConnectionFactory(poolConfig);
+        if (connectionPool != null && connectionPool.getType() != null) {
+            factory.setPoolType(connectionPool.getType());
+        }
+        factory.setHostName(host);
+        factory.setPort(port);
+        factory.setDatabase(database);
+        factory.setUseSsl(ssl);
+        factory.setTimeout(timeout);
+
+        JedisShardInfo shardInfo = new JedisShardInfo(host, port, timeout, ssl);
+        factory.setShardInfo(shardInfo);
+
+        if (StringUtils.hasText(password)) {
+            factory.setPassword(password);
+        }
+
+        factory.setValidateConnection(properties.isValidateConnections());
+        factory.setValidationIdleTime(properties.getValidationIdleTime());
+
+        // Initialize connection factory.
+        factory.afterPropertiesSet();
+        return factory;
+    }
 }
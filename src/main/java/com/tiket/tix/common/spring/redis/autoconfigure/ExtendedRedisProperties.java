@@ -1,9 +1,27 @@
 package com.tiket.tix.common.spring.redis.autoconfigure;
 
+import com.tiket.tix.common.spring.redis.cache.StampedeProtectedCacheManager;
+import com.tiket.tix.common.spring.redis.connection.BatchingConnectionFactory;
+import com.tiket.tix.common.spring.redis.connection.ConnectionDriver;
+import com.tiket.tix.common.spring.redis.connection.ConnectionPoolType;
+import com.tiket.tix.common.spring.redis.connection.ConnectionPoolWarmer;
+import com.tiket.tix.common.spring.redis.connection.HashAlgorithm;
+import com.tiket.tix.common.spring.redis.connection.AdaptiveConcurrencyLimiter;
+import com.tiket.tix.common.spring.redis.connection.CommandRetryPolicy;
+import com.tiket.tix.common.spring.redis.connection.HedgedReadExecutor;
+import com.tiket.tix.common.spring.redis.connection.LoadBalancingMode;
+import com.tiket.tix.common.spring.redis.connection.ScatterGatherExecutor;
+import com.tiket.tix.common.spring.redis.connection.ShardDistribution;
+import com.tiket.tix.common.spring.redis.core.AsyncRedisTemplate;
+import com.tiket.tix.common.spring.redis.core.ChunkedRedisTemplate;
+import com.tiket.tix.common.spring.redis.core.WriteBehindRedisTemplate;
+import com.tiket.tix.common.spring.redis.serializer.CompactRedisSerializer;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.NestedConfigurationProperty;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -14,20 +32,123 @@ public class ExtendedRedisProperties {
     private boolean enabled = true;
 
     /**
-     * Connection settings.
+     * Connection settings, in fail over order.
      */
     @NestedConfigurationProperty
-    private Map<String, RedisConnection> connections = new HashMap<>();
+    private Map<String, RedisConnection> connections = new LinkedHashMap<>();
+
+    /**
+     * Named connection groups, each with own fail over capable connection factory, isolated from 'connections'.
+     */
+    @NestedConfigurationProperty
+    private Map<String, ConnectionGroup> groups = new LinkedHashMap<>();
 
     /**
      * Flag whether to validate connection.
      */
     private boolean validateConnections = false;
 
+    /**
+     * Minimum idle time in milliseconds of pooled connection before validated, younger connection is not pinged.
+     */
+    private long validationIdleTime = 5000;
+
+    /**
+     * How traffic is spread over healthy connections, fail over only (one active connection) by default.
+     */
+    private LoadBalancingMode balancingMode = LoadBalancingMode.FAIL_OVER;
+
+    /**
+     * Decay time constant, in milliseconds, of response time average used by latency aware balancing mode.
+     */
+    private long latencyDecayTime = 5000;
+
+    /**
+     * Applying changes of 'connections' at runtime, without restart.
+     */
+    @NestedConfigurationProperty
+    private TopologyRefresh topologyRefresh = new TopologyRefresh();
+
+    /**
+     * Filling connection pools up to their minimum idle connections on startup.
+     */
+    @NestedConfigurationProperty
+    private PoolWarmUp warmUp = new PoolWarmUp();
+
+    /**
+     * Splitting of large or multiple shards 'MGET', 'MSET' and 'DEL' into fragments executed concurrently.
+     */
+    @NestedConfigurationProperty
+    private ScatterGather scatterGather = new ScatterGather();
+
+    /**
+     * Sending slow idempotent reads again through another connection, taking the first answer.
+     */
+    @NestedConfigurationProperty
+    private HedgedReads hedgedReads = new HedgedReads();
+
+    /**
+     * Retrying idempotent commands failed on borrowed connection through another connection.
+     */
+    @NestedConfigurationProperty
+    private CommandRetry retry = new CommandRetry();
+
+    /**
+     * In process cache of values read by 'GET', per key pattern.
+     */
+    @NestedConfigurationProperty
+    private NearCacheProperties nearCache = new NearCacheProperties();
+
+    /**
+     * Direct (client side) sharding over backend redis servers behind twemproxy.
+     */
+    @NestedConfigurationProperty
+    private ShardedConnections sharding = new ShardedConnections();
+
+    /**
+     * Micrometer meters of fail over capable connection factory.
+     */
+    @NestedConfigurationProperty
+    private MetricsProperties metrics = new MetricsProperties();
+
+    /**
+     * Asynchronous command facade over fail over capable connection factory.
+     */
+    @NestedConfigurationProperty
+    private AsyncCommands async = new AsyncCommands();
+
+    /**
+     * Write behind coalescing of counter increments and overwrites.
+     */
+    @NestedConfigurationProperty
+    private WriteBehind writeBehind = new WriteBehind();
+
+    /**
+     * Compact and compressing value serializer of 'redisTemplate'.
+     */
+    @NestedConfigurationProperty
+    private CompactSerializer serializer = new CompactSerializer();
+
+    /**
+     * Stampede protected redis cache manager.
+     */
+    @NestedConfigurationProperty
+    private CacheProperties cache = new CacheProperties();
+
+    /**
+     * Chunked storage of large values.
+     */
+    @NestedConfigurationProperty
+    private ChunkedValues chunked = new ChunkedValues();
+
     public Map<String, RedisConnection> getConnections() {
         return connections;
     }
 
+    public Map<String, ConnectionGroup> getGroups() {
+        return groups;
+    }
+
     public boolean isValidateConnections() {
         return validateConnections;
     }
@@ -36,6 +157,182 @@ public class ExtendedRedisProperties {
         this.validateConnections = validateConnections;
     }
 
+    public long getValidationIdleTime() {
+        return validationIdleTime;
+    }
+
+    public void setValidationIdleTime(long validationIdleTime) {
+        this.validationIdleTime = validationIdleTime;
+    }
+
+    public LoadBalancingMode getBalancingMode() {
+        return balancingMode;
+    }
+
+    public void setBalancingMode(LoadBalancingMode balancingMode) {
+        this.balancingMode = balancingMode;
+    }
+
+    public long getLatencyDecayTime() {
+        return latencyDecayTime;
+    }
+
+    public void setLatencyDecayTime(long latencyDecayTime) {
+        this.latencyDecayTime = latencyDecayTime;
+    }
+
+    public TopologyRefresh getTopologyRefresh() {
+        return topologyRefresh;
+    }
+
+    public void setTopologyRefresh(TopologyRefresh topologyRefresh) {
+        this.topologyRefresh = topologyRefresh;
+    }
+
+    public PoolWarmUp getWarmUp() {
+        return warmUp;
+    }
+
+    public void setWarmUp(PoolWarmUp warmUp) {
+        this.warmUp = warmUp;
+    }
+
+    public ScatterGather getScatterGather() {
+        return scatterGather;
+    }
+
+    public void setScatterGather(ScatterGather scatterGather) {
+        this.scatterGather = scatterGather;
+    }
+
+    public HedgedReads getHedgedReads() {
+        return hedgedReads;
+    }
+
+    public void setHedgedReads(HedgedReads hedgedReads) {
+        this.hedgedReads = hedgedReads;
+    }
+
+    public CommandRetry getRetry() {
+        return retry;
+    }
+
+    public void setRetry(CommandRetry retry) {
+        this.retry = retry;
+    }
+
+    public NearCacheProperties getNearCache() {
+        return nearCache;
+    }
+
+    public void setNearCache(NearCacheProperties nearCache) {
+        this.nearCache = nearCache;
+    }
+
+    public ShardedConnections getSharding() {
+        return sharding;
+    }
+
+    public void setSharding(ShardedConnections sharding) {
+        this.sharding = sharding;
+    }
+
+    public MetricsProperties getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(MetricsProperties metrics) {
+        this.metrics = metrics;
+    }
+
+    public AsyncCommands getAsync() {
+        return async;
+    }
+
+    public void setAsync(AsyncCommands async) {
+        this.async = async;
+    }
+
+    public WriteBehind getWriteBehind() {
+        return writeBehind;
+    }
+
+    public void setWriteBehind(WriteBehind writeBehind) {
+        this.writeBehind = writeBehind;
+    }
+
+    public CompactSerializer getSerializer() {
+        return serializer;
+    }
+
+    public void setSerializer(CompactSerializer serializer) {
+        this.serializer = serializer;
+    }
+
+    public CacheProperties getCache() {
+        return cache;
+    }
+
+    public void setCache(CacheProperties cache) {
+        this.cache = cache;
+    }
+
+    public ChunkedValues getChunked() {
+        return chunked;
+    }
+
+    public void setChunked(ChunkedValues chunked) {
+        this.chunked = chunked;
+    }
+
+    public static class ConnectionGroup {
+        /**
+         * Connection settings of this group, in fail over order.
+         */
+        @NestedConfigurationProperty
+        private Map<String, RedisConnection> connections = new LinkedHashMap<>();
+
+        /**
+         * How traffic of this group is spread over its healthy connections.
+         */
+        private LoadBalancingMode balancingMode = LoadBalancingMode.FAIL_OVER;
+
+        /**
+         * Decay time constant, in milliseconds, of response time average used by latency aware balancing mode.
+         */
+        private long latencyDecayTime = 5000;
+
+        /**
+         * Prefixes of keys routed to this group by routing connection factory.
+         */
+        private List<String> keyPrefixes = new ArrayList<>();
+
+        public Map<String, RedisConnection> getConnections() {
+            return connections;
+        }
+
+        public LoadBalancingMode getBalancingMode() {
+            return balancingMode;
+        }
+        public void setBalancingMode(LoadBalancingMode balancingMode) {
+            this.balancingMode = balancingMode;
+        }
+
+        public long getLatencyDecayTime() {
+            return latencyDecayTime;
+        }
+        public void setLatencyDecayTime(long latencyDecayTime) {
+            this.latencyDecayTime = latencyDecayTime;
+        }
+
+        public List<String> getKeyPrefixes() {
+            return keyPrefixes;
+        }
+        public void setKeyPrefixes(List<String> keyPrefixes) {
+            this.keyPrefixes = keyPrefixes;
+        }
+    }
+
     public static class RedisConnection {
         /**
          * Database index used by the connection factory.
@@ -72,10 +369,34 @@ public class ExtendedRedisProperties {
          */
         private int timeout = 4000;
 
+        /**
+         * Relative share of traffic this connection receive, when load balancing mode other than fail over used.
+         */
+        private int weight = 1;
+
+        /**
+         * Client library, JEDIS (pool of blocking connections) or LETTUCE (one shared multiplexed connection, pool
+         * settings ignored).
+         */
+        private ConnectionDriver driver = ConnectionDriver.JEDIS;
+
         private ConnectionPool pool;
 
+        /**
+         * Circuit breaker and revalidation (re-admission) of failed connection.
+         */
         private ConnectionRevalidate revalidate;
 
+        /**
+         * Batching of concurrent callers commands into pipelines.
+         */
+        private CommandBatching batching;
+
+        /**
+         * Adaptive limit of concurrently borrowed connections, excess load shed to other connections.
+         */
+        private ConcurrencyLimit limit;
+
         public int getDatabase() {
             return database;
         }
@@ -132,6 +453,22 @@ public class ExtendedRedisProperties {
             this.timeout = timeout;
         }
 
+        public int getWeight() {
+            return weight;
+        }
+
+        public void setWeight(int weight) {
+            this.weight = weight;
+        }
+
+        public ConnectionDriver getDriver() {
+            return driver;
+        }
+
+        public void setDriver(ConnectionDriver driver) {
+            this.driver = driver;
+        }
+
         public ConnectionPool getPool() {
             return pool;
         }
@@ -148,10 +485,31 @@ public class ExtendedRedisProperties {
                 ConnectionRevalidate revalidate) {
             this.revalidate = revalidate;
         }
+
+        public CommandBatching getBatching() {
+            return batching;
+        }
+
+        public void setBatching(CommandBatching batching) {
+            this.batching = batching;
+        }
+
+        public ConcurrencyLimit getLimit() {
+            return limit;
+        }
+
+        public void setLimit(ConcurrencyLimit limit) {
+            this.limit = limit;
+        }
     }
 
     public static class ConnectionPool {
 
+        /**
+         * Pool implementation, lock free 'STRIPED' pool does not support idle eviction ('test-while-idle').
+         */
+        private ConnectionPoolType type = ConnectionPoolType.COMMONS_POOL;
+
         /**
          * Max number of "idle" connections in the pool. Use a negative value to indicate
          * an unlimited number of idle connections.
@@ -185,6 +543,14 @@ public class ExtendedRedisProperties {
 
         private boolean testWhileIdle = false;
 
+        public ConnectionPoolType getType() {
+            return type;
+        }
+
+        public void setType(ConnectionPoolType type) {
+            this.type = type;
+        }
+
         public int getMaxIdle() {
             return this.maxIdle;
         }
@@ -251,13 +617,901 @@ public class ExtendedRedisProperties {
     }
 
     public static class ConnectionRevalidate {
+        /**
+         * Flag whether to probe failed connection in background and re-admit it once recovered.
+         * When disabled, failed connection is permanently dropped.
+         */
         private boolean enabled = true;
 
+        /**
+         * Failure rate, in percent of sliding window, on which connection is considered failed.
+         */
+        private int failureRateThreshold = 50;
+
+        /**
+         * Number of last connection retrievals recorded to calculate failure rate.
+         */
+        private int slidingWindowSize = 20;
+
+        /**
+         * Minimum number of recorded connection retrievals before failure rate calculated.
+         */
+        private int minimumCalls = 5;
+
+        /**
+         * Time in milliseconds to wait before probing failed connection, and between subsequent probes.
+         */
+        private long coolDown = 5000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getFailureRateThreshold() {
+            return failureRateThreshold;
+        }
+        public void setFailureRateThreshold(int failureRateThreshold) {
+            this.failureRateThreshold = failureRateThreshold;
+        }
+
+        public int getSlidingWindowSize() {
+            return slidingWindowSize;
+        }
+        public void setSlidingWindowSize(int slidingWindowSize) {
+            this.slidingWindowSize = slidingWindowSize;
+        }
+
+        public int getMinimumCalls() {
+            return minimumCalls;
+        }
+        public void setMinimumCalls(int minimumCalls) {
+            this.minimumCalls = minimumCalls;
+        }
+
+        public long getCoolDown() {
+            return coolDown;
+        }
+        public void setCoolDown(long coolDown) {
+            this.coolDown = coolDown;
+        }
+    }
+
+    public static class CommandBatching {
+        /**
+         * Flag whether to send simple commands of concurrent callers as pipelined batches.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Maximum time in microseconds to wait for more commands after the first command of a batch. Zero sends
+         * whatever queued once previous batch completed.
+         */
+        private long flushWindow = BatchingConnectionFactory.DEFAULT_FLUSH_WINDOW;
+
+        /**
+         * Maximum number of commands of one batch.
+         */
+        private int maxBatchSize = BatchingConnectionFactory.DEFAULT_MAX_BATCH_SIZE;
+
         public boolean isEnabled() {
             return enabled;
         }
         public void setEnabled(boolean enabled) {
             this.enabled = enabled;
         }
+
+        public long getFlushWindow() {
+            return flushWindow;
+        }
+        public void setFlushWindow(long flushWindow) {
+            this.flushWindow = flushWindow;
+        }
+
+        public int getMaxBatchSize() {
+            return maxBatchSize;
+        }
+        public void setMaxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+        }
+    }
+
+    public static class ConcurrencyLimit {
+        /**
+         * Flag whether to limit concurrently borrowed connections.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Limit before any response time observed.
+         */
+        private int initialLimit = AdaptiveConcurrencyLimiter.DEFAULT_INITIAL_LIMIT;
+
+        private int minLimit = AdaptiveConcurrencyLimiter.DEFAULT_MIN_LIMIT;
+
+        /**
+         * Upper bound of limit. Lowered to pool max-active of jedis connection without batching (as is initial
+         * limit), so that callers never wait for the pool.
+         */
+        private int maxLimit = AdaptiveConcurrencyLimiter.DEFAULT_MAX_LIMIT;
+
+        /**
+         * Ratio of recent to long term response time tolerated before limit shrink.
+         */
+        private double tolerance = AdaptiveConcurrencyLimiter.DEFAULT_TOLERANCE;
+
+        /**
+         * Weight, between 0 and 1, of newly computed limit against current one.
+         */
+        private double smoothing = AdaptiveConcurrencyLimiter.DEFAULT_SMOOTHING;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getInitialLimit() {
+            return initialLimit;
+        }
+        public void setInitialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+        }
+
+        public int getMinLimit() {
+            return minLimit;
+        }
+        public void setMinLimit(int minLimit) {
+            this.minLimit = minLimit;
+        }
+
+        public int getMaxLimit() {
+            return maxLimit;
+        }
+        public void setMaxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+        }
+
+        public double getTolerance() {
+            return tolerance;
+        }
+        public void setTolerance(double tolerance) {
+            this.tolerance = tolerance;
+        }
+
+        public double getSmoothing() {
+            return smoothing;
+        }
+        public void setSmoothing(double smoothing) {
+            this.smoothing = smoothing;
+        }
+    }
+
+    public static class TopologyRefresh {
+        /**
+         * Flag whether to reload 'connections' on environment change (spring cloud 'EnvironmentChangeEvent').
+         */
+        private boolean enabled = false;
+
+        /**
+         * Maximum time in milliseconds to wait for connections borrowed from removed connection to be returned,
+         * before its pool closed anyway.
+         */
+        private long drainTimeout = ConnectionTopologyRefresher.DEFAULT_DRAIN_TIMEOUT;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getDrainTimeout() {
+            return drainTimeout;
+        }
+        public void setDrainTimeout(long drainTimeout) {
+            this.drainTimeout = drainTimeout;
+        }
+    }
+
+    public static class PoolWarmUp {
+        /**
+         * Flag whether to fill pools up to their 'min-idle' with authenticated and validated connections on startup.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Maximum time in milliseconds startup wait for pools warmed, unfinished warming continue in background.
+         */
+        private long timeout = ConnectionPoolWarmer.DEFAULT_TIMEOUT;
+
+        /**
+         * Flag whether to warm standby connections (all but the first, on fail over balancing mode) in background
+         * instead of during startup.
+         */
+        private boolean lazyStandby = false;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getTimeout() {
+            return timeout;
+        }
+        public void setTimeout(long timeout) {
+            this.timeout = timeout;
+        }
+
+        public boolean isLazyStandby() {
+            return lazyStandby;
+        }
+        public void setLazyStandby(boolean lazyStandby) {
+            this.lazyStandby = lazyStandby;
+        }
+    }
+
+    public static class ScatterGather {
+        /**
+         * Flag whether to split and concurrently execute multiple keys commands.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Maximum number of keys of one fragment, command with more keys is split.
+         */
+        private int fragmentSize = ScatterGatherExecutor.DEFAULT_FRAGMENT_SIZE;
+
+        /**
+         * Number of worker threads executing fragments along with calling thread.
+         */
+        private int parallelism = ScatterGatherExecutor.DEFAULT_PARALLELISM;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getFragmentSize() {
+            return fragmentSize;
+        }
+        public void setFragmentSize(int fragmentSize) {
+            this.fragmentSize = fragmentSize;
+        }
+
+        public int getParallelism() {
+            return parallelism;
+        }
+        public void setParallelism(int parallelism) {
+            this.parallelism = parallelism;
+        }
+    }
+
+    public static class HedgedReads {
+        /**
+         * Flag whether to hedge idempotent reads, effective with more than one available connection.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Time in microseconds to wait for the first read before hedging, or minimum of percentile delay.
+         */
+        private long delay = HedgedReadExecutor.DEFAULT_DELAY;
+
+        /**
+         * Percentile of observed read latency used as hedge delay, e.g. 95. Zero to always use fixed delay.
+         */
+        private double percentile = 0;
+
+        /**
+         * Maximum share of reads, in percent, which may be hedged.
+         */
+        private int budgetPercent = HedgedReadExecutor.DEFAULT_BUDGET_PERCENT;
+
+        /**
+         * Maximum number of worker threads executing hedged reads.
+         */
+        private int maxThreads = HedgedReadExecutor.DEFAULT_MAX_THREADS;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getDelay() {
+            return delay;
+        }
+        public void setDelay(long delay) {
+            this.delay = delay;
+        }
+
+        public double getPercentile() {
+            return percentile;
+        }
+        public void setPercentile(double percentile) {
+            this.percentile = percentile;
+        }
+
+        public int getBudgetPercent() {
+            return budgetPercent;
+        }
+        public void setBudgetPercent(int budgetPercent) {
+            this.budgetPercent = budgetPercent;
+        }
+
+        public int getMaxThreads() {
+            return maxThreads;
+        }
+        public void setMaxThreads(int maxThreads) {
+            this.maxThreads = maxThreads;
+        }
+    }
+
+    public static class CommandRetry {
+        /**
+         * Flag whether to retry idempotent commands, effective with more than one connection.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Maximum attempts of one command, the first one included.
+         */
+        private int maxAttempts = CommandRetryPolicy.DEFAULT_MAX_ATTEMPTS;
+
+        /**
+         * Time in milliseconds since the first attempt after which command is no longer retried.
+         */
+        private long deadline = CommandRetryPolicy.DEFAULT_DEADLINE;
+
+        /**
+         * Maximum share of idempotent commands, in percent, which may be retried.
+         */
+        private int budgetPercent = CommandRetryPolicy.DEFAULT_BUDGET_PERCENT;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public long getDeadline() {
+            return deadline;
+        }
+        public void setDeadline(long deadline) {
+            this.deadline = deadline;
+        }
+
+        public int getBudgetPercent() {
+            return budgetPercent;
+        }
+        public void setBudgetPercent(int budgetPercent) {
+            this.budgetPercent = budgetPercent;
+        }
+    }
+
+    public static class NearCacheProperties {
+        /**
+         * Flag whether to cache values of matching keys in process, requires caffeine on classpath.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Cache regions by name, a key is cached by the first region whose pattern match it.
+         */
+        private Map<String, NearCacheRegionProperties> regions = new LinkedHashMap<>();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Map<String, NearCacheRegionProperties> getRegions() {
+            return regions;
+        }
+    }
+
+    public static class NearCacheRegionProperties {
+        /**
+         * Simple pattern of cached keys, e.g. 'config:*'.
+         */
+        private String pattern;
+
+        /**
+         * Maximum number of cached entries.
+         */
+        private long maxEntries = 10000;
+
+        /**
+         * Maximum total bytes of cached keys and values, overrules max entries if positive.
+         */
+        private long maxBytes = 0;
+
+        /**
+         * Time in milliseconds cached value expire after read from redis.
+         */
+        private long ttl = 60000;
+
+        public String getPattern() {
+            return pattern;
+        }
+        public void setPattern(String pattern) {
+            this.pattern = pattern;
+        }
+
+        public long getMaxEntries() {
+            return maxEntries;
+        }
+        public void setMaxEntries(long maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public long getMaxBytes() {
+            return maxBytes;
+        }
+        public void setMaxBytes(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        public long getTtl() {
+            return ttl;
+        }
+        public void setTtl(long ttl) {
+            this.ttl = ttl;
+        }
+    }
+
+    public static class MetricsProperties {
+        /**
+         * Flag whether to publish meters of connections, requires micrometer on classpath.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Flag whether to publish percentile histogram of command latency, borrow wait histogram always published.
+         */
+        private boolean commandHistogram = false;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public boolean isCommandHistogram() {
+            return commandHistogram;
+        }
+        public void setCommandHistogram(boolean commandHistogram) {
+            this.commandHistogram = commandHistogram;
+        }
+    }
+
+    public static class AsyncCommands {
+        /**
+         * Flag whether to create 'asyncStringRedisTemplate'.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Maximum number of commands queued or sent at once, commands beyond it are rejected.
+         */
+        private int maxInFlight = AsyncRedisTemplate.DEFAULT_MAX_IN_FLIGHT;
+
+        /**
+         * Maximum number of commands sent in one pipeline.
+         */
+        private int maxBatchSize = AsyncRedisTemplate.DEFAULT_MAX_BATCH_SIZE;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxInFlight() {
+            return maxInFlight;
+        }
+        public void setMaxInFlight(int maxInFlight) {
+            this.maxInFlight = maxInFlight;
+        }
+
+        public int getMaxBatchSize() {
+            return maxBatchSize;
+        }
+        public void setMaxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+        }
+    }
+
+    public static class WriteBehind {
+        /**
+         * Flag whether to create 'writeBehindStringRedisTemplate'.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Time in milliseconds between scheduled flushes.
+         */
+        private long flushInterval = WriteBehindRedisTemplate.DEFAULT_FLUSH_INTERVAL;
+
+        /**
+         * Number of pending keys triggering flush before schedule.
+         */
+        private int flushThreshold = WriteBehindRedisTemplate.DEFAULT_FLUSH_THRESHOLD;
+
+        /**
+         * Maximum number of pending keys, writers flush themselves beyond it and drop writes while redis unreachable.
+         */
+        private int maxPending = WriteBehindRedisTemplate.DEFAULT_MAX_PENDING;
+
+        /**
+         * Maximum number of commands sent in one pipeline.
+         */
+        private int maxBatchSize = WriteBehindRedisTemplate.DEFAULT_MAX_BATCH_SIZE;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getFlushInterval() {
+            return flushInterval;
+        }
+        public void setFlushInterval(long flushInterval) {
+            this.flushInterval = flushInterval;
+        }
+
+        public int getFlushThreshold() {
+            return flushThreshold;
+        }
+        public void setFlushThreshold(int flushThreshold) {
+            this.flushThreshold = flushThreshold;
+        }
+
+        public int getMaxPending() {
+            return maxPending;
+        }
+        public void setMaxPending(int maxPending) {
+            this.maxPending = maxPending;
+        }
+
+        public int getMaxBatchSize() {
+            return maxBatchSize;
+        }
+        public void setMaxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+        }
+    }
+
+    public static class CompactSerializer {
+        /**
+         * Flag whether to create 'redisTemplate' with compact and compressing value serializer, instead of java
+         * serialization.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Minimum size in bytes of compressed values.
+         */
+        private int compressionThreshold = CompactRedisSerializer.DEFAULT_COMPRESSION_THRESHOLD;
+
+        /**
+         * Compression of values, LZ4 when lz4-java is on classpath, otherwise DEFLATE by default. Values compressed
+         * by either are read.
+         */
+        private CompactRedisSerializer.Compression compression = CompactRedisSerializer.defaultCompression();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getCompressionThreshold() {
+            return compressionThreshold;
+        }
+        public void setCompressionThreshold(int compressionThreshold) {
+            this.compressionThreshold = compressionThreshold;
+        }
+
+        public CompactRedisSerializer.Compression getCompression() {
+            return compression;
+        }
+        public void setCompression(CompactRedisSerializer.Compression compression) {
+            this.compression = compression;
+        }
+    }
+
+    public static class CacheProperties {
+        /**
+         * Flag whether to create stampede protected 'cacheManager', unless other cache manager defined.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Time in milliseconds entries are fresh, of caches without own time to live.
+         */
+        private long timeToLive = StampedeProtectedCacheManager.DEFAULT_TIME_TO_LIVE;
+
+        /**
+         * Time to live in milliseconds of each named cache.
+         */
+        private Map<String, Long> timeToLives = new LinkedHashMap<>();
+
+        /**
+         * Time in milliseconds expired entries still served while reloaded in background.
+         */
+        private long gracePeriod = StampedeProtectedCacheManager.DEFAULT_GRACE_PERIOD;
+
+        /**
+         * Eagerness of probabilistic early refresh, greater for earlier refresh and zero to disable.
+         */
+        private double beta = StampedeProtectedCacheManager.DEFAULT_BETA;
+
+        /**
+         * Number of threads loading entries in background, shared by all caches.
+         */
+        private int refreshThreads = StampedeProtectedCacheManager.DEFAULT_REFRESH_THREADS;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getTimeToLive() {
+            return timeToLive;
+        }
+        public void setTimeToLive(long timeToLive) {
+            this.timeToLive = timeToLive;
+        }
+
+        public Map<String, Long> getTimeToLives() {
+            return timeToLives;
+        }
+        public void setTimeToLives(Map<String, Long> timeToLives) {
+            this.timeToLives = timeToLives;
+        }
+
+        public long getGracePeriod() {
+            return gracePeriod;
+        }
+        public void setGracePeriod(long gracePeriod) {
+            this.gracePeriod = gracePeriod;
+        }
+
+        public double getBeta() {
+            return beta;
+        }
+        public void setBeta(double beta) {
+            this.beta = beta;
+        }
+
+        public int getRefreshThreads() {
+            return refreshThreads;
+        }
+        public void setRefreshThreads(int refreshThreads) {
+            this.refreshThreads = refreshThreads;
+        }
+    }
+
+    public static class ChunkedValues {
+        /**
+         * Flag whether to create 'chunkedRedisTemplate', storing large values as chunks.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Size in bytes of each chunk.
+         */
+        private int chunkSize = ChunkedRedisTemplate.DEFAULT_CHUNK_SIZE;
+
+        /**
+         * Maximum number of chunks written in one pipeline.
+         */
+        private int pipelineDepth = ChunkedRedisTemplate.DEFAULT_PIPELINE_DEPTH;
+
+        /**
+         * Two characters hash tag of twemproxy pool, chunks of a value share hash tag of its key.
+         */
+        private String hashTag = ChunkedRedisTemplate.DEFAULT_HASH_TAG;
+
+        /**
+         * Time in milliseconds chunks of replaced or deleted values kept for readers still streaming them.
+         */
+        private long retiredTtl = ChunkedRedisTemplate.DEFAULT_RETIRED_TTL;
+
+        /**
+         * Time to live in milliseconds of chunks written by failed or crashed writers.
+         */
+        private long orphanTtl = ChunkedRedisTemplate.DEFAULT_ORPHAN_TTL;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getChunkSize() {
+            return chunkSize;
+        }
+        public void setChunkSize(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+
+        public int getPipelineDepth() {
+            return pipelineDepth;
+        }
+        public void setPipelineDepth(int pipelineDepth) {
+            this.pipelineDepth = pipelineDepth;
+        }
+
+        public String getHashTag() {
+            return hashTag;
+        }
+        public void setHashTag(String hashTag) {
+            this.hashTag = hashTag;
+        }
+
+        public long getRetiredTtl() {
+            return retiredTtl;
+        }
+        public void setRetiredTtl(long retiredTtl) {
+            this.retiredTtl = retiredTtl;
+        }
+
+        public long getOrphanTtl() {
+            return orphanTtl;
+        }
+        public void setOrphanTtl(long orphanTtl) {
+            this.orphanTtl = orphanTtl;
+        }
+    }
+
+    public static class ShardedConnections {
+        /**
+         * Flag whether to create sharded connection factory, talking directly to backend redis servers.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Key hash function, must match twemproxy pool 'hash'.
+         */
+        private HashAlgorithm hash = HashAlgorithm.FNV1A_64;
+
+        /**
+         * Key distribution, must match twemproxy pool 'distribution'.
+         */
+        private ShardDistribution distribution = ShardDistribution.KETAMA;
+
+        /**
+         * Two characters hash tag, e.g. '{}', must match twemproxy pool 'hash_tag'.
+         */
+        private String hashTag;
+
+        /**
+         * Backend servers, in the same order and format as twemproxy pool 'servers', i.e. 'host:port:weight [name]'.
+         */
+        private List<String> servers = new ArrayList<>();
+
+        /**
+         * Login password of backend redis servers.
+         */
+        private String password;
+
+        /**
+         * Database index used by the connection factory.
+         */
+        private int database = 0;
+
+        /**
+         * Enable SSL.
+         */
+        private boolean ssl;
+
+        /**
+         * Connection timeout in milliseconds.
+         */
+        private int timeout = 4000;
+
+        /**
+         * Connection pool of each backend server.
+         */
+        private ConnectionPool pool;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public HashAlgorithm getHash() {
+            return hash;
+        }
+        public void setHash(HashAlgorithm hash) {
+            this.hash = hash;
+        }
+
+        public ShardDistribution getDistribution() {
+            return distribution;
+        }
+        public void setDistribution(ShardDistribution distribution) {
+            this.distribution = distribution;
+        }
+
+        public String getHashTag() {
+            return hashTag;
+        }
+        public void setHashTag(String hashTag) {
+            this.hashTag = hashTag;
+        }
+
+        public List<String> getServers() {
+            return servers;
+        }
+        public void setServers(List<String> servers) {
+            this.servers = servers;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+        public void setPassword(String password) {
+            this.password = password;
+        }
+
+        public int getDatabase() {
+            return database;
+        }
+        public void setDatabase(int database) {
+            this.database = database;
+        }
+
+        public boolean isSsl() {
+            return ssl;
+        }
+        public void setSsl(boolean ssl) {
+            this.ssl = ssl;
+        }
+
+        public int getTimeout() {
+            return timeout;
+        }
+        public void setTimeout(int timeout) {
+            this.timeout = timeout;
+        }
+
+        public ConnectionPool getPool() {
+            return pool;
+        }
+        public void setPool(ConnectionPool pool) {
+            this.pool = pool;
+        }
     }
 }
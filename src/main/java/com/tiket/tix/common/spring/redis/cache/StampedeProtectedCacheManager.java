@@ -0,0 +1,166 @@
+package com.tiket.tix.common.spring.redis.cache;
+
+import com.tiket.tix.common.spring.redis.connection.ShardedConnectionFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.AbstractCacheManager;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link org.springframework.cache.CacheManager} of {@link StampedeProtectedRedisCache}, in place of
+ * {@link org.springframework.data.redis.cache.RedisCacheManager}. Caches with configured time to live are created on
+ * initialization, others on first use with default time to live.
+ * <p>
+ * Background loads of all caches share a bounded pool of refresh threads, refresh beyond its queue is skipped, the
+ * entry then served as is until a later lookup refresh it.
+ *
+ * @author zakyalvan
+ */
+public class StampedeProtectedCacheManager extends AbstractCacheManager implements DisposableBean {
+    public static final long DEFAULT_TIME_TO_LIVE = 600000;
+
+    public static final long DEFAULT_GRACE_PERIOD = 60000;
+
+    public static final double DEFAULT_BETA = 1.0;
+
+    public static final int DEFAULT_REFRESH_THREADS = 2;
+
+    private static final int REFRESH_QUEUE_SIZE = 1000;
+
+    private final RedisConnectionFactory connectionFactory;
+
+    private RedisSerializer<Object> valueSerializer = new JdkSerializationRedisSerializer();
+
+    private long defaultTimeToLive = DEFAULT_TIME_TO_LIVE;
+
+    private Map<String, Long> timeToLives = new LinkedHashMap<>();
+
+    private long gracePeriod = DEFAULT_GRACE_PERIOD;
+
+    private double beta = DEFAULT_BETA;
+
+    private int refreshThreads = DEFAULT_REFRESH_THREADS;
+
+    private ShardedConnectionFactory keyScanner;
+
+    private ThreadPoolExecutor refreshExecutor;
+
+    public StampedeProtectedCacheManager(RedisConnectionFactory connectionFactory) {
+        Assert.notNull(connectionFactory, "Connection factory must not be null");
+        this.connectionFactory = connectionFactory;
+    }
+
+    public RedisConnectionFactory getConnectionFactory() {
+        return connectionFactory;
+    }
+
+    public RedisSerializer<Object> getValueSerializer() {
+        return valueSerializer;
+    }
+    public void setValueSerializer(RedisSerializer<Object> valueSerializer) {
+        Assert.notNull(valueSerializer, "Value serializer must not be null");
+        this.valueSerializer = valueSerializer;
+    }
+
+    public long getDefaultTimeToLive() {
+        return defaultTimeToLive;
+    }
+    /**
+     * Set time in milliseconds entries are fresh, of caches without own time to live.
+     */
+    public void setDefaultTimeToLive(long defaultTimeToLive) {
+        this.defaultTimeToLive = defaultTimeToLive;
+    }
+
+    public Map<String, Long> getTimeToLives() {
+        return timeToLives;
+    }
+    /**
+     * Set time to live in milliseconds of each named cache.
+     */
+    public void setTimeToLives(Map<String, Long> timeToLives) {
+        Assert.notNull(timeToLives, "Time to lives must not be null");
+        this.timeToLives = new LinkedHashMap<>(timeToLives);
+    }
+
+    public long getGracePeriod() {
+        return gracePeriod;
+    }
+    /**
+     * Set time in milliseconds expired entries still served while reloaded in background.
+     */
+    public void setGracePeriod(long gracePeriod) {
+        this.gracePeriod = gracePeriod;
+    }
+
+    public double getBeta() {
+        return beta;
+    }
+    /**
+     * Set eagerness of probabilistic early refresh, greater for earlier refresh and zero to disable.
+     */
+    public void setBeta(double beta) {
+        this.beta = beta;
+    }
+
+    public int getRefreshThreads() {
+        return refreshThreads;
+    }
+    public void setRefreshThreads(int refreshThreads) {
+        this.refreshThreads = refreshThreads;
+    }
+
+    public ShardedConnectionFactory getKeyScanner() {
+        return keyScanner;
+    }
+    /**
+     * Set sharded connection factory scanning keys of cleared caches, without it clearing cache is unsupported.
+     */
+    public void setKeyScanner(ShardedConnectionFactory keyScanner) {
+        this.keyScanner = keyScanner;
+    }
+
+    @Override
+    protected Collection<? extends Cache> loadCaches() {
+        Assert.isTrue(refreshThreads > 0, "Refresh threads must be positive");
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("redis-cache-refresh-");
+        threadFactory.setDaemon(true);
+        refreshExecutor = new ThreadPoolExecutor(refreshThreads, refreshThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(REFRESH_QUEUE_SIZE), threadFactory);
+
+        List<Cache> caches = new ArrayList<>(timeToLives.size());
+        timeToLives.forEach((name, timeToLive) -> caches.add(createCache(name, timeToLive)));
+        return caches;
+    }
+
+    @Override
+    protected Cache getMissingCache(String name) {
+        return createCache(name, defaultTimeToLive);
+    }
+
+    private Cache createCache(String name, long timeToLive) {
+        Assert.state(refreshExecutor != null, "Cache manager not yet initialized");
+        return new StampedeProtectedRedisCache(name, connectionFactory, valueSerializer, timeToLive, gracePeriod,
+                beta, refreshExecutor, keyScanner);
+    }
+
+    @Override
+    public void destroy() {
+        if (refreshExecutor != null) {
+            refreshExecutor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,498 @@
+package com.tiket.tix.common.spring.redis.cache;
+
+import com.tiket.tix.common.spring.redis.connection.ShardedConnectionFactory;
+import com.tiket.tix.common.spring.redis.connection.ShardedKeyScan;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.util.Assert;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleSupplier;
+
+/**
+ * A redis backed {@link Cache} protecting loaders (e.g. database) and redis from cache stampede, when used through
+ * {@link #get(Object, Callable)} (i.e. {@code @Cacheable(sync = true)}):
+ * <ul>
+ *     <li>Concurrent misses of the same key within the JVM are collapsed into one load, others wait for its value.</li>
+ *     <li>Entries are refreshed early in background, with probability rising as expiry approach and with time the
+ *     last load took (XFetch, optimal probabilistic early expiration), so that hot entries rarely expire at all.</li>
+ *     <li>Expired entries are kept in redis for a grace period, during which they are still served while one
+ *     background load replace them.</li>
+ * </ul>
+ * Each entry is stored with its logical expiry time and load time, redis time to live being time to live plus grace
+ * period. Plain {@link #get(Object)} (without loader) treat entries past their time to live as missing.
+ * <p>
+ * Twemproxy reject 'KEYS' and 'SCAN', so keys of entries are also added to a set {@code <name>~keys} (like
+ * spring data redis 1.8 {@code RedisCache}), expiring with the latest written entry, and {@link #clear()} delete
+ * members of that set. With a sharded connection factory, {@link #clear()} scan keys of backend servers directly
+ * instead, also catching entries written before the set existed.
+ *
+ * @author zakyalvan
+ */
+public class StampedeProtectedRedisCache implements Cache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StampedeProtectedRedisCache.class);
+
+    /**
+     * Logical expiry time and last load time, before serialized value.
+     */
+    private static final int HEADER_SIZE = Long.BYTES + Integer.BYTES;
+
+    private final String name;
+
+    private final RedisConnectionFactory connectionFactory;
+
+    private final RedisSerializer<Object> valueSerializer;
+
+    private final byte[] prefix;
+
+    private final byte[] knownKeys;
+
+    private final long timeToLive;
+
+    private final long gracePeriod;
+
+    private final double beta;
+
+    private final Executor refreshExecutor;
+
+    private final ShardedConnectionFactory keyScanner;
+
+    private volatile DoubleSupplier earlyRefreshDraw = () -> 1.0 - ThreadLocalRandom.current().nextDouble();
+
+    private final ConcurrentMap<Object, CompletableFuture<Object>> loads = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong staleHits = new AtomicLong();
+
+    private final AtomicLong loadCount = new AtomicLong();
+
+    private final AtomicLong refreshCount = new AtomicLong();
+
+    /**
+     * @param name              cache name, also key prefix followed by ':'
+     * @param connectionFactory factory of connections to redis, typically fail over capable one
+     * @param valueSerializer   serializer of cached values
+     * @param timeToLive        time in milliseconds entries are fresh
+     * @param gracePeriod       time in milliseconds expired entries still served while reloaded
+     * @param beta              eagerness of early refresh, 1 by default, greater for earlier and 0 to disable
+     * @param refreshExecutor   executor of background loads
+     * @param keyScanner        sharded connection factory scanning keys on {@link #clear()}, or null to delete
+     *                          keys of known keys set
+     */
+    public StampedeProtectedRedisCache(String name, RedisConnectionFactory connectionFactory,
+            RedisSerializer<Object> valueSerializer, long timeToLive, long gracePeriod, double beta,
+            Executor refreshExecutor, ShardedConnectionFactory keyScanner) {
+        Assert.hasText(name, "Cache name must not be empty");
+        Assert.notNull(connectionFactory, "Connection factory must not be null");
+        Assert.notNull(valueSerializer, "Value serializer must not be null");
+        Assert.isTrue(timeToLive > 0, "Time to live must be positive");
+        Assert.isTrue(gracePeriod >= 0, "Grace period must not be negative");
+        Assert.isTrue(beta >= 0, "Beta must not be negative");
+        Assert.notNull(refreshExecutor, "Refresh executor must not be null");
+
+        this.name = name;
+        this.connectionFactory = connectionFactory;
+        this.valueSerializer = valueSerializer;
+        this.prefix = (name + ":").getBytes(StandardCharsets.UTF_8);
+        this.knownKeys = (name + "~keys").getBytes(StandardCharsets.UTF_8);
+        this.timeToLive = timeToLive;
+        this.gracePeriod = gracePeriod;
+        this.beta = beta;
+        this.refreshExecutor = refreshExecutor;
+        this.keyScanner = keyScanner;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return connectionFactory;
+    }
+
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    public long getGracePeriod() {
+        return gracePeriod;
+    }
+
+    public double getBeta() {
+        return beta;
+    }
+
+    /**
+     * Set source of uniformly distributed values in (0, 1] drawn by early refresh decision, random by default.
+     */
+    void setEarlyRefreshDraw(DoubleSupplier earlyRefreshDraw) {
+        Assert.notNull(earlyRefreshDraw, "Early refresh draw must not be null");
+        this.earlyRefreshDraw = earlyRefreshDraw;
+    }
+
+    /**
+     * Number of lookups served by fresh entry.
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Number of lookups finding no entry, or expired entry on lookup without loader.
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * Number of lookups served by expired entry within grace period.
+     */
+    public long getStaleHitCount() {
+        return staleHits.get();
+    }
+
+    /**
+     * Number of loads, either on miss or in background.
+     */
+    public long getLoadCount() {
+        return loadCount.get();
+    }
+
+    /**
+     * Number of background loads, early or of expired entries.
+     */
+    public long getRefreshCount() {
+        return refreshCount.get();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        Entry entry = read(key);
+        if (entry == null || entry.isExpired(System.currentTimeMillis())) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return new SimpleValueWrapper(entry.value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        Entry entry = read(key);
+        if (entry != null) {
+            long now = System.currentTimeMillis();
+            if (!entry.isExpired(now)) {
+                hits.incrementAndGet();
+                if (entry.shouldRefreshEarly(now, beta, earlyRefreshDraw)) {
+                    refresh(key, valueLoader);
+                }
+            }
+            else {
+                staleHits.incrementAndGet();
+                refresh(key, valueLoader);
+            }
+            return (T) entry.value;
+        }
+
+        misses.incrementAndGet();
+        CompletableFuture<Object> load = new CompletableFuture<>();
+        CompletableFuture<Object> running = loads.putIfAbsent(key, load);
+        if (running != null) {
+            try {
+                return (T) running.join();
+            }
+            catch (CompletionException ex) {
+                throw new ValueRetrievalException(key, valueLoader, ex.getCause());
+            }
+        }
+        try {
+            Object value = load(key, valueLoader);
+            load.complete(value);
+            return (T) value;
+        }
+        catch (Exception ex) {
+            load.completeExceptionally(ex);
+            throw new ValueRetrievalException(key, valueLoader, ex);
+        }
+        finally {
+            loads.remove(key, load);
+        }
+    }
+
+    /**
+     * Load in background, unless a load of the key already running.
+     */
+    private void refresh(Object key, Callable<?> valueLoader) {
+        CompletableFuture<Object> load = new CompletableFuture<>();
+        if (loads.putIfAbsent(key, load) != null) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    load.complete(load(key, valueLoader));
+                }
+                catch (Exception ex) {
+                    LOGGER.warn("Failed to refresh entry '{}' of cache '{}'", key, name, ex);
+                    load.completeExceptionally(ex);
+                }
+                finally {
+                    loads.remove(key, load);
+                }
+            });
+            refreshCount.incrementAndGet();
+        }
+        catch (RejectedExecutionException ex) {
+            LOGGER.debug("Refresh of entry '{}' of cache '{}' rejected, served without refresh", key, name);
+            loads.remove(key, load);
+            load.complete(null);
+        }
+    }
+
+    private Object load(Object key, Callable<?> valueLoader) throws Exception {
+        long started = System.currentTimeMillis();
+        Object value = valueLoader.call();
+        loadCount.incrementAndGet();
+        // Zero load time means unknown (put), so that faster loads still take part in early refresh.
+        write(key, value, Math.max(1, System.currentTimeMillis() - started));
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        write(key, value, 0);
+    }
+
+    /**
+     * Store entry with its time to live in one 'SET NX PX', so that it never outlive its time to live. Set with option
+     * has no result in spring data redis 1.8, so the entry is read back to tell whether it was stored.
+     */
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        byte[] rawKey = rawKey(key);
+        byte[] rawEntry = rawEntry(value, 0);
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            connection.set(rawKey, rawEntry, Expiration.milliseconds(timeToLive + gracePeriod), SetOption.ifAbsent());
+            byte[] stored = connection.get(rawKey);
+            if (stored == null || Arrays.equals(stored, rawEntry)) {
+                addKnownKey(connection, rawKey);
+                return null;
+            }
+            Entry entry = entry(stored);
+            return entry != null ? new SimpleValueWrapper(entry.value) : null;
+        }
+        finally {
+            connection.close();
+        }
+    }
+
+    @Override
+    public void evict(Object key) {
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            byte[] rawKey = rawKey(key);
+            connection.del(rawKey);
+            connection.sRem(knownKeys, rawKey);
+        }
+        finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Delete all entries, keys taken from known keys set, or scanned from all backend servers with sharded
+     * connection factory.
+     */
+    @Override
+    public void clear() {
+        if (keyScanner == null) {
+            clearKnownKeys();
+            return;
+        }
+
+        String pattern = new String(prefix, StandardCharsets.UTF_8).replaceAll("([*?\\[\\]\\\\])", "\\\\$1") + "*";
+        RedisConnection connection = connectionFactory.getConnection();
+        try (ShardedKeyScan scan = keyScanner.scan(ScanOptions.scanOptions().match(pattern).count(1000).build())) {
+            List<byte[]> batch = new ArrayList<>();
+            while (scan.hasNext()) {
+                batch.add(scan.next());
+                if (batch.size() == 500 || !scan.hasNext()) {
+                    connection.del(batch.toArray(new byte[0][]));
+                    batch.clear();
+                }
+            }
+            connection.del(knownKeys);
+        }
+        finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Delete entries of known keys set. Keys are removed from the set rather than the set deleted, so that keys
+     * added while clearing stay known.
+     */
+    private void clearKnownKeys() {
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            Set<byte[]> keys = connection.sMembers(knownKeys);
+            if (keys == null || keys.isEmpty()) {
+                return;
+            }
+            List<byte[]> batch = new ArrayList<>();
+            Iterator<byte[]> iterator = keys.iterator();
+            while (iterator.hasNext()) {
+                batch.add(iterator.next());
+                if (batch.size() == 500 || !iterator.hasNext()) {
+                    byte[][] rawKeys = batch.toArray(new byte[0][]);
+                    connection.del(rawKeys);
+                    connection.sRem(knownKeys, rawKeys);
+                    batch.clear();
+                }
+            }
+        }
+        finally {
+            connection.close();
+        }
+    }
+
+    private Entry read(Object key) {
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            return entry(connection.get(rawKey(key)));
+        }
+        finally {
+            connection.close();
+        }
+    }
+
+    private void write(Object key, Object value, long loadTime) {
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            byte[] rawKey = rawKey(key);
+            connection.pSetEx(rawKey, timeToLive + gracePeriod, rawEntry(value, loadTime));
+            addKnownKey(connection, rawKey);
+        }
+        finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Add key to known keys set, extending the set to outlive the entry (whole seconds, rounded up).
+     */
+    private void addKnownKey(RedisConnection connection, byte[] rawKey) {
+        connection.openPipeline();
+        connection.sAdd(knownKeys, rawKey);
+        connection.expire(knownKeys, TimeUnit.MILLISECONDS.toSeconds(timeToLive + gracePeriod + 999));
+        connection.closePipeline();
+    }
+
+    private byte[] rawKey(Object key) {
+        Assert.notNull(key, "Cache key must not be null");
+        byte[] suffix = String.valueOf(key).getBytes(StandardCharsets.UTF_8);
+        byte[] rawKey = new byte[prefix.length + suffix.length];
+        System.arraycopy(prefix, 0, rawKey, 0, prefix.length);
+        System.arraycopy(suffix, 0, rawKey, prefix.length, suffix.length);
+        return rawKey;
+    }
+
+    private byte[] rawEntry(Object value, long loadTime) {
+        byte[] rawValue = valueSerializer.serialize(value);
+        int length = rawValue != null ? rawValue.length : 0;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + length);
+        buffer.putLong(System.currentTimeMillis() + timeToLive);
+        buffer.putInt((int) Math.min(Integer.MAX_VALUE, loadTime));
+        if (rawValue != null) {
+            buffer.put(rawValue);
+        }
+        return buffer.array();
+    }
+
+    private Entry entry(byte[] rawEntry) {
+        if (rawEntry == null) {
+            return null;
+        }
+        if (rawEntry.length < HEADER_SIZE) {
+            LOGGER.warn("Ignored malformed entry of cache '{}'", name);
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(rawEntry);
+        long expiry = buffer.getLong();
+        int loadTime = buffer.getInt();
+        byte[] rawValue = new byte[buffer.remaining()];
+        buffer.get(rawValue);
+        return new Entry(valueSerializer.deserialize(rawValue), expiry, loadTime);
+    }
+
+    private static final class Entry {
+        private final Object value;
+
+        private final long expiry;
+
+        private final int loadTime;
+
+        private Entry(Object value, long expiry, int loadTime) {
+            this.value = value;
+            this.expiry = expiry;
+            this.loadTime = loadTime;
+        }
+
+        private boolean isExpired(long now) {
+            return now >= expiry;
+        }
+
+        /**
+         * XFetch, refresh when {@code now - loadTime * beta * ln(random)} reach expiry, i.e. more likely as expiry
+         * approach and for entries slower to load.
+         */
+        private boolean shouldRefreshEarly(long now, double beta, DoubleSupplier draw) {
+            if (loadTime == 0 || beta == 0) {
+                return false;
+            }
+            return now - loadTime * beta * Math.log(draw.getAsDouble()) >= expiry;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.springframework.util.Assert;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Adaptive limit of connections concurrently borrowed from one {@link FailOverCandidate}, so that a saturated proxy
+ * shed excess load immediately instead of letting callers pile up waiting for its pool.
+ * <p>
+ * Limit follows gradient of latency, in the style of gradient (Vegas like) limiters: response time of each borrow
+ * (from retrieval to close) feed a short term and a long term moving average. While short term average stay within
+ * {@link #getTolerance() tolerance} times the long term one, limit grow by square root of itself. Once it exceed,
+ * that is queueing start on the proxy, limit shrink proportionally to the ratio. New limit is smoothed, and kept
+ * between minimum and maximum. Limit does not grow while less than half of it is used, so that idle period does not
+ * inflate it.
+ * <p>
+ * Samples arriving while another one is being applied are skipped, so that releasing never block.
+ *
+ * @author zakyalvan
+ */
+public class AdaptiveConcurrencyLimiter {
+    public static final int DEFAULT_INITIAL_LIMIT = 20;
+
+    public static final int DEFAULT_MIN_LIMIT = 1;
+
+    public static final int DEFAULT_MAX_LIMIT = 200;
+
+    public static final double DEFAULT_TOLERANCE = 2.0;
+
+    public static final double DEFAULT_SMOOTHING = 0.2;
+
+    /**
+     * Weight of new sample in short term (about 10 samples) and long term (about 600 samples) averages.
+     */
+    private static final double SHORT_WEIGHT = 2.0 / (1 + 10);
+
+    private static final double LONG_WEIGHT = 2.0 / (1 + 600);
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final double tolerance;
+
+    private final double smoothing;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicBoolean updating = new AtomicBoolean();
+
+    private final AtomicLong rejections = new AtomicLong();
+
+    private volatile double limit;
+
+    /**
+     * Moving averages of response time in nanoseconds, zero until the first sample. Guarded by {@link #updating}.
+     */
+    private double shortRtt;
+
+    private double longRtt;
+
+    public AdaptiveConcurrencyLimiter() {
+        this(DEFAULT_INITIAL_LIMIT, DEFAULT_MIN_LIMIT, DEFAULT_MAX_LIMIT, DEFAULT_TOLERANCE, DEFAULT_SMOOTHING);
+    }
+
+    /**
+     * @param initialLimit limit before any response time observed
+     * @param minLimit     lower bound of limit
+     * @param maxLimit     upper bound of limit, e.g. pool maximum total
+     * @param tolerance    ratio of short term to long term response time tolerated before limit shrink
+     * @param smoothing    weight (exclusive 0 to 1 inclusive) of newly computed limit against current one
+     */
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double tolerance, double smoothing) {
+        Assert.isTrue(minLimit > 0, "Minimum limit must be positive");
+        Assert.isTrue(maxLimit >= minLimit, "Maximum limit must not be less than minimum limit");
+        Assert.isTrue(initialLimit >= minLimit && initialLimit <= maxLimit, "Initial limit must be between minimum and maximum limit");
+        Assert.isTrue(tolerance >= 1, "Tolerance must be at least 1");
+        Assert.isTrue(smoothing > 0 && smoothing <= 1, "Smoothing must be between 0 and 1");
+
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.smoothing = smoothing;
+        this.limit = initialLimit;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    public double getSmoothing() {
+        return smoothing;
+    }
+
+    /**
+     * Current limit of concurrently borrowed connections.
+     */
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * Number of connections currently borrowed under this limit.
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Number of retrievals rejected because limit reached.
+     */
+    public long getRejectedCount() {
+        return rejections.get();
+    }
+
+    /**
+     * Check whether limit currently reached.
+     */
+    public boolean isSaturated() {
+        return inFlight.get() >= (int) limit;
+    }
+
+    /**
+     * Take one permit if limit not yet reached.
+     *
+     * @return True if permitted, caller then responsible to {@link #release(long) release} it.
+     */
+    boolean tryAcquire() {
+        int current;
+        while ((current = inFlight.get()) < (int) limit) {
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+        rejections.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Release permit of a failed retrieval, without sample.
+     */
+    void release() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * Release permit, sampling response time of the borrow.
+     *
+     * @param nanos Time from retrieval to close, in nanoseconds.
+     */
+    void release(long nanos) {
+        int current = inFlight.getAndDecrement();
+        if (updating.compareAndSet(false, true)) {
+            try {
+                update(nanos, current);
+            }
+            finally {
+                updating.set(false);
+            }
+        }
+    }
+
+    private void update(long rtt, int concurrent) {
+        if (longRtt == 0) {
+            shortRtt = rtt;
+            longRtt = rtt;
+            return;
+        }
+        shortRtt += (rtt - shortRtt) * SHORT_WEIGHT;
+        longRtt += (rtt - longRtt) * LONG_WEIGHT;
+        // Recover quickly once proxy got faster than long term average remember.
+        if (longRtt > 2 * shortRtt) {
+            longRtt *= 0.95;
+        }
+
+        double current = limit;
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRtt / shortRtt));
+        double next = current * gradient + Math.sqrt(current);
+        next = current * (1 - smoothing) + next * smoothing;
+        if (next > current && concurrent < current / 2) {
+            return;
+        }
+        limit = Math.max(minLimit, Math.min(maxLimit, next));
+    }
+}
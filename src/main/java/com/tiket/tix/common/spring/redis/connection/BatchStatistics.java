@@ -0,0 +1,88 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Distribution of batch sizes flushed by {@link BatchingConnectionFactory}, bucketed by power of two
+ * (1, 2-3, 4-7, ...). Recording is lock free and allocation free.
+ *
+ * @author zakyalvan
+ */
+public class BatchStatistics {
+    private static final int BUCKETS = 16;
+
+    /**
+     * Batch size range of each bucket, e.g. '4-7'.
+     */
+    static final String[] RANGES = new String[BUCKETS];
+
+    static {
+        for (int i = 0; i < BUCKETS; i++) {
+            long lower = 1L << i;
+            RANGES[i] = i == 0 ? "1" : (i == BUCKETS - 1 ? lower + "+" : lower + "-" + ((lower << 1) - 1));
+        }
+    }
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+    private final AtomicLong batches = new AtomicLong();
+
+    private final AtomicLong commands = new AtomicLong();
+
+    private final AtomicLong maxBatchSize = new AtomicLong();
+
+    void record(int batchSize) {
+        buckets.incrementAndGet(Math.min(BUCKETS - 1, 31 - Integer.numberOfLeadingZeros(batchSize)));
+        batches.incrementAndGet();
+        commands.addAndGet(batchSize);
+
+        long max;
+        while ((max = maxBatchSize.get()) < batchSize && !maxBatchSize.compareAndSet(max, batchSize)) {
+            // Retry until recorded or larger batch recorded concurrently.
+        }
+    }
+
+    /**
+     * Number of flushed batches.
+     */
+    public long getBatches() {
+        return batches.get();
+    }
+
+    /**
+     * Number of commands sent in all flushed batches.
+     */
+    public long getCommands() {
+        return commands.get();
+    }
+
+    public double getMeanBatchSize() {
+        long count = batches.get();
+        return count == 0 ? 0 : (double) commands.get() / count;
+    }
+
+    public long getMaxBatchSize() {
+        return maxBatchSize.get();
+    }
+
+    /**
+     * Number of batches of each size bucket, keyed by bucket range (e.g. '4-7'), in ascending order.
+     */
+    public Map<String, Long> getBatchSizeDistribution() {
+        Map<String, Long> distribution = new LinkedHashMap<>();
+        for (int i = 0; i < BUCKETS; i++) {
+            distribution.put(RANGES[i], buckets.get(i));
+        }
+        return distribution;
+    }
+
+    /**
+     * Number of batches of given bucket, see {@link #RANGES}.
+     */
+    long getBatchCount(int bucket) {
+        return buckets.get(bucket);
+    }
+}
@@ -0,0 +1,361 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.connection.RedisSentinelConnection;
+import org.springframework.util.Assert;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link RedisConnectionFactory} decorator batching commands of concurrent callers into pipelines. Connection
+ * retrieved from this factory does not hold a pooled connection, simple commands (see
+ * {@link BatchingConnectionInvocationHandler}) are queued and sent by one flusher thread, which collects commands
+ * for at most flush window after the first one, or until maximum batch size reached, then sends them as one pipeline
+ * over one delegate connection and completes each caller with its own result or error. Commands queued while a
+ * batch is in flight are sent in the next batch, so even zero flush window batches under load without adding latency
+ * to lone commands.
+ * <p>
+ * Other commands, pipeline, transaction, blocking and subscription, borrow a dedicated delegate connection held until
+ * the connection closed. Distribution of flushed batch sizes is available from {@link #getStatistics()}.
+ *
+ * @author zakyalvan
+ */
+public class BatchingConnectionFactory implements RedisConnectionFactory, DisposableBean {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchingConnectionFactory.class);
+
+    public static final long DEFAULT_FLUSH_WINDOW = 0;
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 64;
+
+    /**
+     * Time flusher thread stays alive without queued commands.
+     */
+    private static final long FLUSHER_KEEP_ALIVE = TimeUnit.SECONDS.toNanos(30);
+
+    private static final AtomicInteger FLUSHER_SEQUENCE = new AtomicInteger();
+
+    private final RedisConnectionFactory delegate;
+
+    private final long flushWindowNanos;
+
+    private final int maxBatchSize;
+
+    private final LinkedBlockingQueue<BatchedCommand> queue = new LinkedBlockingQueue<>();
+
+    private final AtomicBoolean flushing = new AtomicBoolean(false);
+
+    private final BatchStatistics statistics = new BatchStatistics();
+
+    /**
+     * Last failure of retrieving delegate connection by flusher, cleared once delegate connection retrieved again.
+     */
+    private volatile RuntimeException connectionFailure;
+
+    private volatile boolean destroyed = false;
+
+    private volatile Thread flusher;
+
+    public BatchingConnectionFactory(RedisConnectionFactory delegate) {
+        this(delegate, DEFAULT_FLUSH_WINDOW, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    /**
+     * @param delegate          connection factory of batches and non batched commands
+     * @param flushWindowMicros maximum time in microseconds to wait for more commands after the first one of a batch
+     * @param maxBatchSize      maximum number of commands of one batch
+     */
+    public BatchingConnectionFactory(RedisConnectionFactory delegate, long flushWindowMicros, int maxBatchSize) {
+        Assert.notNull(delegate, "Delegate connection factory must not be null");
+        Assert.isTrue(delegate.getConvertPipelineAndTxResults(),
+                "Delegate connection factory must convert pipeline results to batch commands");
+        Assert.isTrue(flushWindowMicros >= 0, "Flush window must not be negative");
+        Assert.isTrue(maxBatchSize > 0, "Maximum batch size must be positive");
+
+        this.delegate = delegate;
+        this.flushWindowNanos = TimeUnit.MICROSECONDS.toNanos(flushWindowMicros);
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public RedisConnectionFactory getDelegate() {
+        return delegate;
+    }
+
+    public long getFlushWindow() {
+        return TimeUnit.NANOSECONDS.toMicros(flushWindowNanos);
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public BatchStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Retrieve batching connection. While flusher failed to retrieve delegate connection, a delegate connection is
+     * retrieved (and closed) first, so that connection failure is reported to the caller, e.g. fail over circuit
+     * breaker, and recovery detected.
+     */
+    @Override
+    public RedisConnection getConnection() {
+        if (connectionFailure != null) {
+            delegate.getConnection().close();
+            connectionFailure = null;
+        }
+        return BatchingConnectionInvocationHandler.wrap(this);
+    }
+
+    @Override
+    public RedisClusterConnection getClusterConnection() {
+        return delegate.getClusterConnection();
+    }
+
+    @Override
+    public boolean getConvertPipelineAndTxResults() {
+        return delegate.getConvertPipelineAndTxResults();
+    }
+
+    @Override
+    public RedisSentinelConnection getSentinelConnection() {
+        return delegate.getSentinelConnection();
+    }
+
+    @Override
+    public DataAccessException translateExceptionIfPossible(RuntimeException ex) {
+        return delegate.translateExceptionIfPossible(ex);
+    }
+
+    /**
+     * Queue command into next batch and wait for its result.
+     *
+     * @param status whether command has status reply, which is omitted from pipeline results on success
+     */
+    Object submit(Method method, Object[] args, boolean status) throws Throwable {
+        if (destroyed) {
+            throw new RedisSystemException("Batching connection factory already destroyed", null);
+        }
+
+        BatchedCommand command = new BatchedCommand(method, args, status);
+        queue.add(command);
+        if (flushing.compareAndSet(false, true)) {
+            startFlusher();
+        }
+
+        try {
+            return command.result.get();
+        }
+        catch (ExecutionException ex) {
+            throw ex.getCause();
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RedisSystemException("Interrupted while waiting for batched command result", ex);
+        }
+    }
+
+    private void startFlusher() {
+        Thread thread = new Thread(this::flushLoop, "redis-batch-" + FLUSHER_SEQUENCE.incrementAndGet());
+        thread.setDaemon(true);
+        flusher = thread;
+        thread.start();
+    }
+
+    /**
+     * Flush batches until destroyed or idle for keep alive time. Before leaving, queue is checked again so that
+     * command queued right after idle timeout, while this thread still owned flushing, is not left behind.
+     */
+    private void flushLoop() {
+        List<BatchedCommand> batch = new ArrayList<>(maxBatchSize);
+        while (true) {
+            try {
+                while (!destroyed) {
+                    BatchedCommand first = queue.poll(FLUSHER_KEEP_ALIVE, TimeUnit.NANOSECONDS);
+                    if (first == null) {
+                        break;
+                    }
+                    batch.add(first);
+                    collect(batch);
+                    flush(batch);
+                    batch.clear();
+                }
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                RedisSystemException failure = new RedisSystemException("Interrupted while collecting batch", ex);
+                batch.forEach(command -> command.result.completeExceptionally(failure));
+            }
+
+            flushing.set(false);
+            if (destroyed || Thread.currentThread().isInterrupted() || queue.isEmpty()
+                    || !flushing.compareAndSet(false, true)) {
+                break;
+            }
+        }
+        if (destroyed) {
+            failPending();
+        }
+    }
+
+    private void collect(List<BatchedCommand> batch) throws InterruptedException {
+        long deadline = System.nanoTime() + flushWindowNanos;
+        while (batch.size() < maxBatchSize) {
+            BatchedCommand next = queue.poll();
+            if (next == null) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || (next = queue.poll(remaining, TimeUnit.NANOSECONDS)) == null) {
+                    return;
+                }
+            }
+            batch.add(next);
+        }
+    }
+
+    private void flush(List<BatchedCommand> batch) {
+        statistics.record(batch.size());
+
+        RedisConnection connection;
+        try {
+            connection = delegate.getConnection();
+            connectionFailure = null;
+        }
+        catch (RuntimeException ex) {
+            if (ex instanceof RedisConnectionFailureException) {
+                connectionFailure = ex;
+            }
+            batch.forEach(command -> command.result.completeExceptionally(ex));
+            return;
+        }
+
+        try {
+            connection.openPipeline();
+            for (BatchedCommand command : batch) {
+                try {
+                    command.method.invoke(connection, command.args);
+                    command.queued = true;
+                }
+                catch (InvocationTargetException ex) {
+                    command.result.completeExceptionally(ex.getTargetException());
+                }
+            }
+
+            List<Object> results;
+            RedisPipelineException failure = null;
+            try {
+                results = connection.closePipeline();
+            }
+            catch (RedisPipelineException ex) {
+                results = ex.getPipelineResult();
+                failure = ex;
+            }
+            distribute(batch, results, failure);
+        }
+        catch (Exception ex) {
+            LOGGER.debug("Failed to flush batch of {} commands", batch.size(), ex);
+            batch.forEach(command -> command.result.completeExceptionally(ex));
+        }
+        finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Complete each queued command with its pipeline result. Successful status replies are omitted from pipeline
+     * results, so when more results than non status commands returned, some status command failed and results can
+     * not be attributed, every command then fails with the pipeline exception.
+     */
+    private void distribute(List<BatchedCommand> batch, List<Object> results, RedisPipelineException failure) {
+        int expected = 0;
+        for (BatchedCommand command : batch) {
+            if (command.queued && !command.status) {
+                expected++;
+            }
+        }
+        if (results.size() != expected) {
+            RuntimeException ex = failure != null ? failure
+                    : new RedisSystemException("Unexpected number of pipeline results " + results.size(), null);
+            batch.forEach(command -> command.result.completeExceptionally(ex));
+            return;
+        }
+
+        int position = 0;
+        for (BatchedCommand command : batch) {
+            if (!command.queued) {
+                continue;
+            }
+            if (command.status) {
+                command.result.complete(null);
+                continue;
+            }
+            Object result = results.get(position++);
+            if (result instanceof Exception) {
+                command.result.completeExceptionally((Exception) result);
+            }
+            else {
+                command.result.complete(result);
+            }
+        }
+    }
+
+    private void failPending() {
+        RedisSystemException ex = new RedisSystemException("Batching connection factory already destroyed", null);
+        BatchedCommand command;
+        while ((command = queue.poll()) != null) {
+            command.result.completeExceptionally(ex);
+        }
+    }
+
+    /**
+     * Stop the flusher after its current batch, failing commands still queued.
+     */
+    @Override
+    public void destroy() {
+        destroyed = true;
+        Thread thread = flusher;
+        if (flushing.get() && thread != null) {
+            thread.interrupt();
+        }
+        else {
+            failPending();
+        }
+    }
+
+    private static class BatchedCommand {
+        private final Method method;
+
+        private final Object[] args;
+
+        private final boolean status;
+
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+        /**
+         * Whether command was queued into pipeline, only accessed by flusher thread.
+         */
+        private boolean queued = false;
+
+        private BatchedCommand(Method method, Object[] args, boolean status) {
+            this.method = method;
+            this.args = args;
+            this.status = status;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.redis.connection.RedisConnection;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * {@link InvocationHandler} of {@link RedisConnection} proxy retrieved from {@link BatchingConnectionFactory}.
+ * Simple key value, hash, list, set, sorted set and key commands are submitted into factory batches. Any other
+ * command goes to a dedicated delegate connection retrieved on first use, and once pipeline, transaction, watch,
+ * database selection or subscription started, every following command goes there too, until connection closed.
+ *
+ * @author zakyalvan
+ */
+class BatchingConnectionInvocationHandler implements InvocationHandler {
+    /**
+     * Commands replying with status, whose successful result is omitted from pipeline results, i.e. those pipelined
+     * as status result by both jedis and lettuce connection. 'set' covers expiration and set option variant too.
+     */
+    private static final Set<String> STATUS_COMMANDS = new HashSet<>(Arrays.asList(
+            "set", "setEx", "pSetEx", "setRange", "mSet", "hMSet", "lSet", "lTrim", "rename"));
+
+    private static final Set<String> BATCHED_COMMANDS = new HashSet<>(Arrays.asList(
+            "get", "getSet", "mGet", "setNX", "incr", "incrBy", "decr", "decrBy", "append", "strLen",
+            "getRange", "getBit", "setBit", "bitCount",
+            "exists", "del", "expire", "pExpire", "expireAt", "pExpireAt", "ttl", "pTtl", "persist", "type",
+            "hGet", "hSet", "hSetNX", "hMGet", "hDel", "hExists", "hLen", "hIncrBy", "hKeys", "hVals",
+            "lPush", "rPush", "lLen", "lRange", "lIndex", "lPop", "rPop",
+            "sAdd", "sRem", "sIsMember", "sCard", "sMembers",
+            "zAdd", "zScore", "zCard", "zRem", "zRange", "zRank", "zIncrBy"));
+
+    static {
+        BATCHED_COMMANDS.addAll(STATUS_COMMANDS);
+    }
+
+    /**
+     * Commands making connection state, after which every command goes to dedicated connection.
+     */
+    private static final Set<String> STATEFUL_COMMANDS = new HashSet<>(Arrays.asList(
+            "openPipeline", "multi", "watch", "select", "subscribe", "pSubscribe"));
+
+    private final BatchingConnectionFactory connectionFactory;
+
+    private RedisConnection dedicated;
+
+    private boolean stateful = false;
+
+    private boolean closed = false;
+
+    private BatchingConnectionInvocationHandler(BatchingConnectionFactory connectionFactory) {
+        this.connectionFactory = connectionFactory;
+    }
+
+    static RedisConnection wrap(BatchingConnectionFactory connectionFactory) {
+        return (RedisConnection) Proxy.newProxyInstance(RedisConnection.class.getClassLoader(),
+                new Class<?>[]{RedisConnection.class}, new BatchingConnectionInvocationHandler(connectionFactory));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        switch (name) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "BatchingConnection[" + connectionFactory.getDelegate() + "]";
+            case "close":
+                close();
+                return null;
+            case "isClosed":
+                return closed;
+            case "isPipelined":
+            case "isQueueing":
+            case "isSubscribed":
+                return dedicated != null && (Boolean) invokeDedicated(method, args);
+            case "getSubscription":
+                return dedicated == null ? null : invokeDedicated(method, args);
+            default:
+        }
+
+        if (closed) {
+            throw new InvalidDataAccessApiUsageException("Batching connection already closed");
+        }
+        if (!stateful && BATCHED_COMMANDS.contains(name)) {
+            return connectionFactory.submit(method, args, STATUS_COMMANDS.contains(name));
+        }
+        stateful |= STATEFUL_COMMANDS.contains(name);
+        return invokeDedicated(method, args);
+    }
+
+    private Object invokeDedicated(Method method, Object[] args) throws Throwable {
+        if (dedicated == null) {
+            dedicated = connectionFactory.getDelegate().getConnection();
+        }
+        try {
+            return method.invoke(dedicated, args);
+        }
+        catch (InvocationTargetException ex) {
+            throw ex.getTargetException();
+        }
+    }
+
+    private void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (dedicated != null) {
+            dedicated.close();
+            dedicated = null;
+        }
+    }
+}
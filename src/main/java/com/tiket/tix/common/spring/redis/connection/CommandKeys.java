@@ -0,0 +1,92 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.springframework.data.redis.connection.RedisConnection;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Extract keys from arguments of {@link RedisConnection} command method, used to route command to shard
+ * owning the keys. Follow {@link RedisConnection} convention, where the first argument is the key, with
+ * exceptions for multiple keys commands listed here.
+ *
+ * @author zakyalvan
+ */
+final class CommandKeys {
+    /**
+     * Commands with first byte array argument which is not a key.
+     */
+    private static final Set<String> KEYLESS_COMMANDS = new HashSet<>(Arrays.asList(
+            "keys", "setClientName", "scriptLoad", "echo"));
+
+    /**
+     * Commands with two leading key arguments, e.g. source and destination.
+     */
+    private static final Set<String> TWO_KEYS_COMMANDS = new HashSet<>(Arrays.asList(
+            "rename", "renameNX", "rPopLPush", "sMove"));
+
+    /**
+     * Commands with destination key as the first argument and source keys as the last (varargs) argument.
+     */
+    private static final Set<String> STORE_COMMANDS = new HashSet<>(Arrays.asList(
+            "sInterStore", "sUnionStore", "sDiffStore", "zUnionStore", "zInterStore", "pfMerge"));
+
+    private static final byte[][] NO_KEYS = new byte[0][];
+
+    private CommandKeys() {
+    }
+
+    /**
+     * Keys of given command invocation, empty if command does not operate on keys.
+     */
+    static byte[][] of(Method method, Object[] args) {
+        String name = method.getName();
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        if (parameterTypes.length == 0 || KEYLESS_COMMANDS.contains(name)) {
+            return NO_KEYS;
+        }
+
+        switch (name) {
+            case "mSet":
+            case "mSetNX":
+                return ((Map<?, ?>) args[0]).keySet().toArray(new byte[0][]);
+            case "bLPop":
+            case "bRPop":
+                return (byte[][]) args[1];
+            case "bRPopLPush":
+                return new byte[][]{(byte[]) args[1], (byte[]) args[2]};
+            case "bitOp":
+                return prepend((byte[]) args[1], (byte[][]) args[2]);
+            case "eval":
+            case "evalSha":
+                return Arrays.copyOf((byte[][]) args[3], (Integer) args[2]);
+            case "sort":
+                return args.length > 2 ? new byte[][]{(byte[]) args[0], (byte[]) args[2]} : new byte[][]{(byte[]) args[0]};
+            default:
+        }
+
+        if (TWO_KEYS_COMMANDS.contains(name)) {
+            return new byte[][]{(byte[]) args[0], (byte[]) args[1]};
+        }
+        if (STORE_COMMANDS.contains(name)) {
+            return prepend((byte[]) args[0], (byte[][]) args[args.length - 1]);
+        }
+        if (parameterTypes[0] == byte[][].class) {
+            return (byte[][]) args[0];
+        }
+        if (parameterTypes[0] == byte[].class) {
+            return new byte[][]{(byte[]) args[0]};
+        }
+        return NO_KEYS;
+    }
+
+    private static byte[][] prepend(byte[] first, byte[][] rest) {
+        byte[][] keys = new byte[rest.length + 1][];
+        keys[0] = first;
+        System.arraycopy(rest, 0, keys, 1, rest.length);
+        return keys;
+    }
+}
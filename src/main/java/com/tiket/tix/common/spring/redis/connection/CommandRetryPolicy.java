@@ -0,0 +1,120 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.springframework.util.Assert;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Policy of retrying idempotent commands which failed on a borrowed connection (e.g. proxy restarted after the
+ * connection was retrieved), through connection of another available candidate.
+ * <p>
+ * A command is attempted at most {@link #getMaxAttempts() max attempts} times, and retried only while less than
+ * {@link #getDeadline() deadline} passed since its first attempt, so that retries never keep callers waiting longer
+ * than they would tolerate. Retries are capped by a token budget refilled by {@link #getBudgetPercent() percent} of a
+ * token on each retryable command, so that when every proxy fail, retried traffic never exceed that share of commands
+ * instead of multiplying load on the remaining proxies.
+ *
+ * @author zakyalvan
+ */
+public class CommandRetryPolicy {
+    public static final int DEFAULT_MAX_ATTEMPTS = 2;
+
+    public static final long DEFAULT_DEADLINE = 1000;
+
+    public static final int DEFAULT_BUDGET_PERCENT = 10;
+
+    private final int maxAttempts;
+
+    private final long deadlineNanos;
+
+    private final int budgetPercent;
+
+    private final TokenBudget budget;
+
+    private final AtomicLong commands = new AtomicLong();
+
+    private final AtomicLong retries = new AtomicLong();
+
+    private final AtomicLong retriesRejected = new AtomicLong();
+
+    public CommandRetryPolicy() {
+        this(DEFAULT_MAX_ATTEMPTS, DEFAULT_DEADLINE, DEFAULT_BUDGET_PERCENT);
+    }
+
+    /**
+     * @param maxAttempts   maximum attempts of one command, the first one included
+     * @param deadline      time in milliseconds since the first attempt after which command is no longer retried
+     * @param budgetPercent maximum share of retryable commands, in percent, which may be retried
+     */
+    public CommandRetryPolicy(int maxAttempts, long deadline, int budgetPercent) {
+        Assert.isTrue(maxAttempts > 0, "Max attempts must be positive");
+        Assert.isTrue(deadline > 0, "Retry deadline must be positive");
+        Assert.isTrue(budgetPercent >= 0 && budgetPercent <= 100, "Retry budget must be between 0 and 100 percent");
+
+        this.maxAttempts = maxAttempts;
+        this.deadlineNanos = TimeUnit.MILLISECONDS.toNanos(deadline);
+        this.budgetPercent = budgetPercent;
+        this.budget = new TokenBudget(budgetPercent);
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Time in milliseconds since the first attempt after which command is no longer retried.
+     */
+    public long getDeadline() {
+        return TimeUnit.NANOSECONDS.toMillis(deadlineNanos);
+    }
+
+    public int getBudgetPercent() {
+        return budgetPercent;
+    }
+
+    /**
+     * Number of commands eligible for retry.
+     */
+    public long getCommandCount() {
+        return commands.get();
+    }
+
+    /**
+     * Number of retries sent.
+     */
+    public long getRetryCount() {
+        return retries.get();
+    }
+
+    /**
+     * Number of failed commands not retried because attempts, deadline or budget exhausted.
+     */
+    public long getRetryRejectedCount() {
+        return retriesRejected.get();
+    }
+
+    /**
+     * Count one retryable command for budget.
+     */
+    void recordCommand() {
+        commands.incrementAndGet();
+        budget.deposit();
+    }
+
+    /**
+     * Decide whether failed attempt of a command may be retried, taking one token from budget if so.
+     *
+     * @param attempts Attempts made so far.
+     * @param started  Time of the first attempt, from {@link System#nanoTime()}.
+     * @return True if retry allowed.
+     */
+    boolean tryAcquireRetry(int attempts, long started) {
+        if (attempts < maxAttempts && System.nanoTime() - started < deadlineNanos && budget.tryAcquire()) {
+            retries.incrementAndGet();
+            return true;
+        }
+        retriesRejected.incrementAndGet();
+        return false;
+    }
+}
@@ -0,0 +1,19 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+/**
+ * Redis client library of one named connection (delegate of {@link FailOverCapableConnectionFactory}).
+ *
+ * @author zakyalvan
+ */
+public enum ConnectionDriver {
+    /**
+     * Blocking {@link ExtendedJedisConnectionFactory}, one pooled socket per concurrent caller.
+     */
+    JEDIS,
+
+    /**
+     * {@link ExtendedLettuceConnectionFactory}, all callers multiplexed (pipelined) over one shared socket.
+     * Requires 'biz.paluch.redis:lettuce' on classpath.
+     */
+    LETTUCE
+}
@@ -0,0 +1,136 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.springframework.util.Assert;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Circuit breaker guarding one delegate {@link org.springframework.data.redis.connection.RedisConnectionFactory}.
+ * Outcome of connection retrieval recorded in count based sliding window, breaker opened when failure rate
+ * in the window reach configured threshold. Opened breaker is moved to half-open by background probe,
+ * which then close (re-admit) or re-open it.
+ *
+ * @author zakyalvan
+ */
+public class ConnectionFactoryCircuitBreaker {
+    public static final int DEFAULT_FAILURE_RATE_THRESHOLD = 50;
+    public static final int DEFAULT_SLIDING_WINDOW_SIZE = 20;
+    public static final int DEFAULT_MINIMUM_CALLS = 5;
+    public static final long DEFAULT_COOL_DOWN = 5000;
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * Failure rate, in percent, on which breaker opened.
+     */
+    private final int failureRateThreshold;
+
+    /**
+     * Minimum number of recorded outcomes before failure rate evaluated.
+     */
+    private final int minimumCalls;
+
+    /**
+     * Time in milliseconds to wait before probing opened breaker.
+     */
+    private final long coolDown;
+
+    private final AtomicIntegerArray outcomes;
+
+    private final AtomicLong recorded = new AtomicLong();
+
+    private final AtomicInteger failures = new AtomicInteger();
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+
+    public ConnectionFactoryCircuitBreaker() {
+        this(DEFAULT_FAILURE_RATE_THRESHOLD, DEFAULT_SLIDING_WINDOW_SIZE, DEFAULT_MINIMUM_CALLS, DEFAULT_COOL_DOWN);
+    }
+
+    public ConnectionFactoryCircuitBreaker(int failureRateThreshold, int slidingWindowSize, int minimumCalls, long coolDown) {
+        Assert.isTrue(failureRateThreshold > 0 && failureRateThreshold <= 100, "Failure rate threshold must be in range 1..100");
+        Assert.isTrue(slidingWindowSize > 0, "Sliding window size must be positive");
+        Assert.isTrue(coolDown >= 0, "Cool down must not be negative");
+
+        this.failureRateThreshold = failureRateThreshold;
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, slidingWindowSize));
+        this.coolDown = coolDown;
+        this.outcomes = new AtomicIntegerArray(slidingWindowSize);
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    public long getCoolDown() {
+        return coolDown;
+    }
+
+    /**
+     * Current failure rate in percent, or -1 when not enough outcomes recorded.
+     */
+    public int getFailureRate() {
+        long calls = Math.min(recorded.get(), outcomes.length());
+        if (calls < minimumCalls) {
+            return -1;
+        }
+        return (int) (failures.get() * 100 / calls);
+    }
+
+    public void recordSuccess() {
+        record(0);
+    }
+
+    /**
+     * Record failed connection retrieval.
+     *
+     * @return True if this failure trip the breaker from closed to open, caller then responsible
+     * for excluding guarded connection factory.
+     */
+    public boolean recordFailure() {
+        record(1);
+        int failureRate = getFailureRate();
+        return failureRate >= failureRateThreshold && state.compareAndSet(State.CLOSED, State.OPEN);
+    }
+
+    /**
+     * Move opened breaker into half-open state, before probing.
+     *
+     * @return False if breaker is not in open state.
+     */
+    public boolean tryHalfOpen() {
+        return state.compareAndSet(State.OPEN, State.HALF_OPEN);
+    }
+
+    /**
+     * Probe succeed, close breaker and reset the sliding window.
+     */
+    public void onProbeSuccess() {
+        for (int i = 0; i < outcomes.length(); i++) {
+            outcomes.set(i, 0);
+        }
+        failures.set(0);
+        recorded.set(0);
+        state.set(State.CLOSED);
+    }
+
+    /**
+     * Probe failed, re-open breaker.
+     */
+    public void onProbeFailure() {
+        state.compareAndSet(State.HALF_OPEN, State.OPEN);
+    }
+
+    private void record(int outcome) {
+        int slot = (int) (recorded.getAndIncrement() % outcomes.length());
+        int previous = outcomes.getAndSet(slot, outcome);
+        if (previous != outcome) {
+            failures.addAndGet(outcome - previous);
+        }
+    }
+}
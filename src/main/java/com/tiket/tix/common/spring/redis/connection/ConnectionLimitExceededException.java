@@ -0,0 +1,13 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+/**
+ * Exception to be thrown when every available fail over candidate reached its {@link AdaptiveConcurrencyLimiter
+ * concurrency limit}, that is the proxies are saturated and the retrieval is shed instead of queued.
+ *
+ * @author zakyalvan
+ */
+public class ConnectionLimitExceededException extends ConnectionsFailOverException {
+    public ConnectionLimitExceededException(String msg) {
+        super(msg);
+    }
+}
@@ -0,0 +1,20 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+/**
+ * Receiver of timings measured while using connections of one {@link FailOverCandidate}. Called on request threads
+ * for every connection retrieval and command, so implementation must neither block nor allocate.
+ *
+ * @author zakyalvan
+ */
+public interface ConnectionMetricsRecorder {
+    /**
+     * Record time spent retrieving (borrowing from pool) one connection, failed retrievals included.
+     */
+    void recordBorrow(long nanos);
+
+    /**
+     * Record latency of one command, keyed by {@link org.springframework.data.redis.connection.RedisConnection}
+     * method name. Pipelined or transactional commands recorded once as 'closePipeline' or 'exec'.
+     */
+    void recordCommand(String command, long nanos);
+}
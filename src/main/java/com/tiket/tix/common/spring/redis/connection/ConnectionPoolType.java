@@ -0,0 +1,18 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+/**
+ * Implementation of {@link ExtendedJedisConnectionFactory} connection pool.
+ *
+ * @author zakyalvan
+ */
+public enum ConnectionPoolType {
+    /**
+     * Commons-pool2 backed {@link ExtendedJedisPool}, supporting all pool settings including idle eviction.
+     */
+    COMMONS_POOL,
+
+    /**
+     * Lock free {@link StripedJedisPool}, for many concurrent request threads.
+     */
+    STRIPED
+}
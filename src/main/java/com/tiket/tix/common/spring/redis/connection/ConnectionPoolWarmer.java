@@ -0,0 +1,130 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Fill pools of initialized {@link WarmableConnectionFactory connection factories} up to their minimum idle
+ * connections (or connect shared connection of lettuce), all factories concurrently, so that first requests after
+ * startup do not pay for connecting and authenticating.
+ * <p>
+ * Warming is best effort. Factory failing to warm (e.g. unreachable proxy) is only logged, its connections are
+ * created on demand as usual and fail over take care of it. Warming not finished within timeout continue in
+ * background.
+ *
+ * @author zakyalvan
+ */
+public class ConnectionPoolWarmer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionPoolWarmer.class);
+
+    public static final long DEFAULT_TIMEOUT = 10000;
+
+    private final long timeout;
+
+    public ConnectionPoolWarmer() {
+        this(DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * @param timeout maximum time in milliseconds to wait for all pools warmed
+     */
+    public ConnectionPoolWarmer(long timeout) {
+        Assert.isTrue(timeout > 0, "Warm up timeout must be positive");
+        this.timeout = timeout;
+    }
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Warm given connection factories concurrently, waiting until all of them warmed or timeout elapsed.
+     *
+     * @return Number of connection factories warmed within timeout.
+     */
+    public int warm(List<? extends WarmableConnectionFactory> connectionFactories) {
+        if (connectionFactories.isEmpty()) {
+            return 0;
+        }
+
+        ExecutorService executor = newExecutor(connectionFactories.size());
+        List<Future<Integer>> warmings = new ArrayList<>(connectionFactories.size());
+        try {
+            for (WarmableConnectionFactory connectionFactory : connectionFactories) {
+                warmings.add(executor.submit(connectionFactory::prewarm));
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+
+        int warmed = 0;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        for (int i = 0; i < warmings.size(); i++) {
+            WarmableConnectionFactory connectionFactory = connectionFactories.get(i);
+            try {
+                int idle = warmings.get(i).get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+                LOGGER.debug("Pool of redis connection factory {}:{} warmed, {} idle connections",
+                        connectionFactory.getHostName(), connectionFactory.getPort(), idle);
+                warmed++;
+            }
+            catch (TimeoutException ex) {
+                LOGGER.warn("Pool of redis connection factory {}:{} not warmed within {} ms, continue in background",
+                        connectionFactory.getHostName(), connectionFactory.getPort(), timeout);
+            }
+            catch (ExecutionException ex) {
+                LOGGER.warn("Failed to warm pool of redis connection factory {}:{}",
+                        connectionFactory.getHostName(), connectionFactory.getPort(), ex.getCause());
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return warmed;
+    }
+
+    /**
+     * Warm given connection factories in background, without waiting.
+     */
+    public void warmLazily(List<? extends WarmableConnectionFactory> connectionFactories) {
+        if (connectionFactories.isEmpty()) {
+            return;
+        }
+
+        ExecutorService executor = newExecutor(connectionFactories.size());
+        try {
+            for (WarmableConnectionFactory connectionFactory : connectionFactories) {
+                executor.execute(() -> {
+                    try {
+                        connectionFactory.prewarm();
+                    }
+                    catch (RuntimeException ex) {
+                        LOGGER.warn("Failed to warm pool of redis connection factory {}:{}",
+                                connectionFactory.getHostName(), connectionFactory.getPort(), ex);
+                    }
+                });
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    private static ExecutorService newExecutor(int threads) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("redis-warm-");
+        threadFactory.setDaemon(true);
+        return Executors.newFixedThreadPool(threads, threadFactory);
+    }
+}
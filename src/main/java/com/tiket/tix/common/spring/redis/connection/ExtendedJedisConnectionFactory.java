@@ -1,34 +1,45 @@
 package com.tiket.tix.common.spring.redis.connection;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.data.redis.connection.RedisClusterConfiguration;
 import org.springframework.data.redis.connection.RedisSentinelConfiguration;
-import org.springframework.data.redis.connection.jedis.JedisConnection;
 import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPoolConfig;
 import redis.clients.jedis.JedisShardInfo;
+import redis.clients.util.Pool;
+
+import java.util.ArrayList;
+import java.util.List;
 
 /**
- * Extension of {@link JedisConnectionFactory}, adding send 'AUTH' command on each retrieval of
- * {@link JedisConnection}.
+ * Extension of {@link JedisConnectionFactory}, sending 'AUTH' command once when pooled {@link Jedis} created
+ * (also when {@link JedisShardInfo} configured without password), and validating pooled connection only when
+ * it has been idle longer than {@link #getValidationIdleTime() validation idle time}.
  *
  * @author zakyalvan
  */
-public class ExtendedJedisConnectionFactory extends JedisConnectionFactory {
-    private static final Logger LOGGER = LoggerFactory.getLogger(ExtendedJedisConnectionFactory.class);
+public class ExtendedJedisConnectionFactory extends JedisConnectionFactory implements WarmableConnectionFactory {
+    /**
+     * Flag whether to validate (send ping command) connection borrowed from pool.
+     */
+    private boolean validateConnection = false;
 
     /**
-     * Flag determine whether send 'AUTH' command required when {@link #getConnection()} call.
+     * Minimum idle time in milliseconds of pooled connection before validated on borrow.
      */
-    private boolean authRequired = false;
+    private long validationIdleTime = 0;
 
     /**
-     * Flag whether to validate (send ping command) on each {@link #getConnection()} call.
+     * Implementation of pool created on initialization.
      */
-    private boolean validateConnection = false;
+    private ConnectionPoolType poolType = ConnectionPoolType.COMMONS_POOL;
+
+    /**
+     * Pool created on initialization, kept to expose its usage.
+     */
+    private Pool<Jedis> pool;
 
     public ExtendedJedisConnectionFactory() {
     }
@@ -59,25 +70,86 @@ public class ExtendedJedisConnectionFactory extends JedisConnectionFactory {
         this.validateConnection = validateConnection;
     }
 
+    public long getValidationIdleTime() {
+        return validationIdleTime;
+    }
+    public void setValidationIdleTime(long validationIdleTime) {
+        this.validationIdleTime = validationIdleTime;
+    }
+
+    public ConnectionPoolType getPoolType() {
+        return poolType;
+    }
+    public void setPoolType(ConnectionPoolType poolType) {
+        Assert.notNull(poolType, "Pool type must not be null");
+        this.poolType = poolType;
+    }
+
+    /**
+     * Retrieve pool of this connection factory, null when not using pool or not yet initialized.
+     */
+    public Pool<Jedis> getPool() {
+        return pool;
+    }
+
+    /**
+     * Fill pool up to its minimum idle connections (bounded by its maximum total), each connected, authenticated
+     * and validated ('PING') before returned to pool, so that first requests do not pay for it.
+     *
+     * @return Number of idle connections in pool after warming.
+     */
     @Override
-    protected JedisConnection postProcessConnection(JedisConnection connection) {
-        if(authRequired) {
-            LOGGER.debug("Auth required, send 'AUTH' command to server");
-            Jedis nativeConnection = connection.getNativeConnection();
-            String authResponse = nativeConnection.auth(getPassword());
+    public int prewarm() {
+        Assert.state(pool != null, "Connection factory not initialized or not using pool");
+
+        JedisPoolConfig poolConfig = getPoolConfig();
+        int count = poolConfig.getMaxTotal() < 0 ? poolConfig.getMinIdle()
+                : Math.min(poolConfig.getMinIdle(), poolConfig.getMaxTotal());
+        List<Jedis> borrowed = new ArrayList<>(Math.max(count, 0));
+        try {
+            for (int i = 0; i < count; i++) {
+                Jedis jedis = pool.getResource();
+                borrowed.add(jedis);
+                jedis.ping();
+            }
         }
-        if(validateConnection) {
-            LOGGER.debug("Revalidate required, validate using 'PING' command");
-            connection.ping();
+        finally {
+            // Returned to pool, or destroyed if broken.
+            borrowed.forEach(Jedis::close);
         }
-        return connection;
+        return pool.getNumIdle();
+    }
+
+    /**
+     * Create pool of configured {@link #getPoolType() type}, authenticating each {@link Jedis} once on creation,
+     * instead of on each borrow.
+     */
+    @Override
+    protected Pool<Jedis> createRedisPool() {
+        JedisShardInfo shardInfo = getShardInfo();
+
+        ExtendedJedisPooledObjectFactory objectFactory = new ExtendedJedisPooledObjectFactory(shardInfo.getHost(),
+                shardInfo.getPort(), shardInfo.getConnectionTimeout(), shardInfo.getSoTimeout(),
+                shardInfo.getPassword(), getDatabase(), getClientName(), isUseSsl());
+        objectFactory.setValidationIdleTime(validationIdleTime);
+
+        JedisPoolConfig poolConfig = (JedisPoolConfig) getPoolConfig().clone();
+        if (validateConnection) {
+            poolConfig.setTestOnBorrow(true);
+        }
+        pool = poolType == ConnectionPoolType.STRIPED
+                ? new StripedJedisPool(poolConfig, objectFactory)
+                : new ExtendedJedisPool(poolConfig, objectFactory);
+        return pool;
     }
 
     @Override
     public void afterPropertiesSet() {
-        super.afterPropertiesSet();
-        if(StringUtils.hasText(getPassword())) {
-            this.authRequired = true;
+        // Shard info configured separately does not carry the password, fill so that connection authenticated on connect.
+        JedisShardInfo shardInfo = getShardInfo();
+        if (shardInfo != null && StringUtils.hasText(getPassword()) && !StringUtils.hasText(shardInfo.getPassword())) {
+            shardInfo.setPassword(getPassword());
         }
+        super.afterPropertiesSet();
     }
 }
@@ -0,0 +1,47 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.apache.commons.pool2.PooledObjectFactory;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.util.Pool;
+
+/**
+ * Pool of {@link Jedis} backed by given {@link PooledObjectFactory}, behave the same as
+ * {@link redis.clients.jedis.JedisPool} which does not allow custom factory.
+ *
+ * @author zakyalvan
+ */
+public class ExtendedJedisPool extends Pool<Jedis> {
+    public ExtendedJedisPool(GenericObjectPoolConfig poolConfig, PooledObjectFactory<Jedis> factory) {
+        super(poolConfig, factory);
+    }
+
+    @Override
+    public Jedis getResource() {
+        Jedis jedis = super.getResource();
+        jedis.setDataSource(this);
+        return jedis;
+    }
+
+    @Override
+    public void returnBrokenResource(Jedis resource) {
+        if (resource != null) {
+            returnBrokenResourceObject(resource);
+        }
+    }
+
+    @Override
+    public void returnResource(Jedis resource) {
+        if (resource != null) {
+            try {
+                resource.resetState();
+                returnResourceObject(resource);
+            }
+            catch (Exception ex) {
+                returnBrokenResource(resource);
+                throw new JedisException("Could not return the resource to the pool", ex);
+            }
+        }
+    }
+}
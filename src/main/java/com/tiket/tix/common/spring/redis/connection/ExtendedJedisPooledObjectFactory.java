@@ -0,0 +1,134 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.PooledObjectFactory;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.StringUtils;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisException;
+
+/**
+ * {@link PooledObjectFactory} of {@link Jedis}, authenticating ('AUTH') and selecting database once when
+ * connection created, instead of on every borrow. Validation ('PING') only sent for connection idle longer
+ * than {@link #getValidationIdleTime() validation idle time}, younger connection only checked for open socket.
+ *
+ * @author zakyalvan
+ */
+public class ExtendedJedisPooledObjectFactory implements PooledObjectFactory<Jedis> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExtendedJedisPooledObjectFactory.class);
+
+    private final String host;
+
+    private final int port;
+
+    private final int connectionTimeout;
+
+    private final int soTimeout;
+
+    private final String password;
+
+    private final int database;
+
+    private final String clientName;
+
+    private final boolean ssl;
+
+    /**
+     * Minimum idle time in milliseconds before validated connection is pinged.
+     */
+    private long validationIdleTime = 0;
+
+    public ExtendedJedisPooledObjectFactory(String host, int port, int connectionTimeout, int soTimeout,
+            String password, int database, String clientName, boolean ssl) {
+        this.host = host;
+        this.port = port;
+        this.connectionTimeout = connectionTimeout;
+        this.soTimeout = soTimeout;
+        this.password = password;
+        this.database = database;
+        this.clientName = clientName;
+        this.ssl = ssl;
+    }
+
+    public long getValidationIdleTime() {
+        return validationIdleTime;
+    }
+    public void setValidationIdleTime(long validationIdleTime) {
+        this.validationIdleTime = validationIdleTime;
+    }
+
+    @Override
+    public PooledObject<Jedis> makeObject() throws Exception {
+        Jedis jedis = new Jedis(host, port, connectionTimeout, soTimeout, ssl);
+        try {
+            jedis.connect();
+            if (StringUtils.hasText(password)) {
+                LOGGER.debug("Auth required, send 'AUTH' command to server on connection creation");
+                jedis.auth(password);
+            }
+            if (database != 0) {
+                jedis.select(database);
+            }
+            if (clientName != null) {
+                jedis.clientSetname(clientName);
+            }
+        }
+        catch (JedisException ex) {
+            jedis.close();
+            throw ex;
+        }
+        return new DefaultPooledObject<>(jedis);
+    }
+
+    @Override
+    public void destroyObject(PooledObject<Jedis> pooledJedis) throws Exception {
+        Jedis jedis = pooledJedis.getObject();
+        if (jedis.isConnected()) {
+            try {
+                try {
+                    jedis.quit();
+                }
+                catch (Exception ex) {
+                    LOGGER.trace("Error on sending 'QUIT' command", ex);
+                }
+                jedis.disconnect();
+            }
+            catch (Exception ex) {
+                LOGGER.trace("Error on disconnecting jedis", ex);
+            }
+        }
+    }
+
+    @Override
+    public boolean validateObject(PooledObject<Jedis> pooledJedis) {
+        Jedis jedis = pooledJedis.getObject();
+        if (!jedis.isConnected()) {
+            return false;
+        }
+        if (pooledJedis.getIdleTimeMillis() < validationIdleTime) {
+            return true;
+        }
+
+        try {
+            LOGGER.debug("Connection idle for {} ms, validate using 'PING' command", pooledJedis.getIdleTimeMillis());
+            return "PONG".equals(jedis.ping());
+        }
+        catch (Exception ex) {
+            return false;
+        }
+    }
+
+    @Override
+    public void activateObject(PooledObject<Jedis> pooledJedis) throws Exception {
+        Jedis jedis = pooledJedis.getObject();
+        if (jedis.getDB() != database) {
+            jedis.select(database);
+        }
+    }
+
+    @Override
+    public void passivateObject(PooledObject<Jedis> pooledJedis) throws Exception {
+    }
+}
@@ -0,0 +1,55 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import com.lambdaworks.redis.api.StatefulRedisConnection;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+
+/**
+ * Extension of {@link LettuceConnectionFactory}, where all connections retrieved share one native (multiplexed)
+ * connection, so that any number of concurrent callers need only one socket to the proxy, their commands pipelined
+ * on it.
+ * <p>
+ * Lettuce reconnect a dropped shared connection in background, queueing commands meanwhile. Instead of handing out
+ * connections which would only wait for reconnect, retrieval fail fast with {@link RedisConnectionFailureException}
+ * while shared connection is disconnected, so that {@link FailOverCapableConnectionFactory} fail over and count the
+ * failure on circuit breaker, exactly as when pooled jedis can not connect.
+ *
+ * @author zakyalvan
+ */
+public class ExtendedLettuceConnectionFactory extends LettuceConnectionFactory implements WarmableConnectionFactory {
+    public ExtendedLettuceConnectionFactory() {
+    }
+
+    public ExtendedLettuceConnectionFactory(String host, int port) {
+        super(host, port);
+    }
+
+    /**
+     * Connect shared connection and validate it ('PING').
+     *
+     * @return Always 1, the shared connection.
+     */
+    @Override
+    public int prewarm() {
+        initConnection();
+        RedisConnection connection = getConnection();
+        try {
+            connection.ping();
+        }
+        finally {
+            connection.close();
+        }
+        return 1;
+    }
+
+    @Override
+    protected StatefulRedisConnection<byte[], byte[]> getSharedConnection() {
+        StatefulRedisConnection<byte[], byte[]> sharedConnection = super.getSharedConnection();
+        if (sharedConnection != null && !sharedConnection.isOpen()) {
+            throw new RedisConnectionFailureException("Shared connection to " + getHostName() + ":" + getPort()
+                    + " is disconnected, reconnecting in background");
+        }
+        return sharedConnection;
+    }
+}
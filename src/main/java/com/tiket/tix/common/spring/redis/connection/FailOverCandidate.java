@@ -0,0 +1,169 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.util.Assert;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Named delegate {@link RedisConnectionFactory} of {@link FailOverCapableConnectionFactory}, along with
+ * its {@link ConnectionFactoryCircuitBreaker circuit breaker}.
+ *
+ * @author zakyalvan
+ */
+public class FailOverCandidate {
+    private final String name;
+
+    private final RedisConnectionFactory connectionFactory;
+
+    private final ConnectionFactoryCircuitBreaker circuitBreaker;
+
+    /**
+     * Flag whether to probe and re-admit this candidate after its breaker opened.
+     * When disabled, failed candidate is permanently dropped.
+     */
+    private final boolean revalidate;
+
+    /**
+     * Relative share of traffic this candidate receive on load balancing modes.
+     */
+    private final int weight;
+
+    /**
+     * Number of connections borrowed and not yet closed, only tracked on load balancing mode requiring it.
+     */
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    /**
+     * Moving average of response time, only tracked on load balancing mode requiring it.
+     */
+    private final ResponseTimeTracker responseTimeTracker = new ResponseTimeTracker();
+
+    /**
+     * Number of times this candidate excluded from and re-admitted into routing.
+     */
+    private final AtomicLong exclusions = new AtomicLong();
+
+    private final AtomicLong readmissions = new AtomicLong();
+
+    /**
+     * Receiver of borrow and command timings, null when not instrumented.
+     */
+    private volatile ConnectionMetricsRecorder metricsRecorder;
+
+    /**
+     * Limit of concurrently borrowed connections, null when unlimited.
+     */
+    private volatile AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    public FailOverCandidate(String name, RedisConnectionFactory connectionFactory) {
+        this(name, connectionFactory, new ConnectionFactoryCircuitBreaker(), true);
+    }
+
+    public FailOverCandidate(String name, RedisConnectionFactory connectionFactory,
+            ConnectionFactoryCircuitBreaker circuitBreaker, boolean revalidate) {
+        this(name, connectionFactory, circuitBreaker, revalidate, 1);
+    }
+
+    public FailOverCandidate(String name, RedisConnectionFactory connectionFactory,
+            ConnectionFactoryCircuitBreaker circuitBreaker, boolean revalidate, int weight) {
+        Assert.hasText(name, "Candidate name must not be empty");
+        Assert.notNull(connectionFactory, "Candidate connection factory must not be null");
+        Assert.notNull(circuitBreaker, "Candidate circuit breaker must not be null");
+        Assert.isTrue(weight > 0, "Candidate weight must be positive");
+
+        this.name = name;
+        this.connectionFactory = connectionFactory;
+        this.circuitBreaker = circuitBreaker;
+        this.revalidate = revalidate;
+        this.weight = weight;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public RedisConnectionFactory getConnectionFactory() {
+        return connectionFactory;
+    }
+
+    public ConnectionFactoryCircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public boolean isRevalidate() {
+        return revalidate;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    public ResponseTimeTracker getResponseTimeTracker() {
+        return responseTimeTracker;
+    }
+
+    public long getExclusionCount() {
+        return exclusions.get();
+    }
+
+    public long getReadmissionCount() {
+        return readmissions.get();
+    }
+
+    public ConnectionMetricsRecorder getMetricsRecorder() {
+        return metricsRecorder;
+    }
+    /**
+     * Record borrow time and command latency of connections retrieved from this candidate into given recorder.
+     * Null to disable.
+     */
+    public void setMetricsRecorder(ConnectionMetricsRecorder metricsRecorder) {
+        this.metricsRecorder = metricsRecorder;
+    }
+
+    public AdaptiveConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+    /**
+     * Limit connections concurrently borrowed from this candidate by given limiter, retrieval beyond the limit fail
+     * over to other candidates. Null to disable.
+     */
+    public void setConcurrencyLimiter(AdaptiveConcurrencyLimiter concurrencyLimiter) {
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
+    /**
+     * Routing score used by {@link LoadBalancingMode#LATENCY_AWARE}, lower is better. Average response time
+     * in nanoseconds multiplied by number of outstanding borrows (plus the one being selected), divided by weight.
+     */
+    public double getLatencyScore() {
+        return responseTimeTracker.getAverage() * (outstanding.get() + 1) / weight;
+    }
+
+    void acquire() {
+        outstanding.incrementAndGet();
+    }
+
+    void release() {
+        outstanding.decrementAndGet();
+    }
+
+    void excluded() {
+        exclusions.incrementAndGet();
+    }
+
+    void readmitted() {
+        readmissions.incrementAndGet();
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -2,142 +2,569 @@ package com.tiket.tix.common.spring.redis.connection;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.dao.DataAccessException;
 import org.springframework.data.redis.RedisConnectionFailureException;
 import org.springframework.data.redis.connection.RedisClusterConnection;
 import org.springframework.data.redis.connection.RedisConnection;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisSentinelConnection;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.util.Assert;
-import org.springframework.util.StringUtils;
 
-import java.util.Queue;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
+ * A {@link RedisConnectionFactory} which delegate to one of configured connection factories, and
+ * fail over to the next candidate when the active one fail to provide connection.
+ * <p>
+ * Active delegate is kept in an immutable {@link RoutingState}, so that retrieving connection only
+ * require one volatile read. Fail over swap the state atomically, threads which arrive while fail
+ * over happen simply keep using last state they observed, no thread is blocked or spinning.
+ * <p>
+ * Each candidate guarded by {@link ConnectionFactoryCircuitBreaker}. Candidate with opened breaker
+ * excluded from routing, then probed ('PING') in background after its cool down, and re-admitted
+ * once probe succeed.
+ * <p>
+ * By default all traffic goes to the first available candidate. Other {@link LoadBalancingMode} spread
+ * traffic over all available candidates, with the same fail over on each connection retrieval.
+ * <p>
+ * With {@link CommandRetryPolicy}, idempotent command failed because connection broke after retrieval (e.g. proxy
+ * restarted) is retried through connection of another candidate, instead of failing to caller.
+ * <p>
+ * Candidate with {@link AdaptiveConcurrencyLimiter} shed retrievals beyond its limit to other candidates, and when all
+ * of them reached their limit retrieval fail immediately with {@link ConnectionLimitExceededException}.
+ * <p>
+ * Candidates can be replaced at runtime (see {@link #replaceCandidates(List)}), swapping routing state the same way as
+ * fail over does.
+ *
  * @author zakyalvan
  */
-public class FailOverCapableConnectionFactory implements RedisConnectionFactory {
+public class FailOverCapableConnectionFactory implements RedisConnectionFactory, DisposableBean {
     private static final Logger LOGGER = LoggerFactory.getLogger(FailOverCapableConnectionFactory.class);
 
-    private final Queue<RedisConnectionFactory> failOverFactories = new ConcurrentLinkedQueue<>();
+    private final AtomicReference<RoutingState> routingState;
 
-    private RedisConnectionFactory currentFactory;
+    private final ScheduledExecutorService reconnectExecutors;
 
-    private final Object selectionMonitor = new Object();
+    private final AtomicInteger balancingCursor = new AtomicInteger();
 
-    private final AtomicBoolean failOverProgressed = new AtomicBoolean(false);
+    /**
+     * Number of connection retrievals served by other candidate than the selected one, because it failed.
+     */
+    private final AtomicLong failOvers = new AtomicLong();
+
+    private volatile LoadBalancingMode loadBalancingMode = LoadBalancingMode.FAIL_OVER;
+
+    /**
+     * Decay time constant of candidates response time average, negative to keep their default.
+     */
+    private volatile long latencyDecayTime = -1;
+
+    /**
+     * Executor of large multiple keys command fragments, null to send such command as is.
+     */
+    private volatile ScatterGatherExecutor scatterGatherExecutor;
+
+    /**
+     * Executor of hedged reads, null to send reads to one candidate only.
+     */
+    private volatile HedgedReadExecutor hedgedReadExecutor;
+
+    /**
+     * Policy of retrying idempotent commands failed on borrowed connection, null to fail them to caller.
+     */
+    private volatile CommandRetryPolicy commandRetryPolicy;
 
-    private final boolean reconnectStaled = false;
+    /**
+     * Local cache of 'GET' values, null to always read from redis.
+     */
+    private volatile NearCache nearCache;
 
-    private final ScheduledExecutorService reconnectExecutors = Executors.newScheduledThreadPool(10);
+    private final List<CandidatesListener> candidatesListeners = new CopyOnWriteArrayList<>();
 
     public FailOverCapableConnectionFactory(Set<RedisConnectionFactory> delegateCandidates) {
+        this(namedCandidates(delegateCandidates));
+    }
+
+    public FailOverCapableConnectionFactory(List<FailOverCandidate> candidates) {
+        Assert.notEmpty(candidates, "No delegate redis connection factories provided");
+        this.routingState = new AtomicReference<>(new RoutingState(candidates));
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("redis-revalidate-");
+        threadFactory.setDaemon(true);
+        this.reconnectExecutors = Executors.newScheduledThreadPool(Math.min(candidates.size(), 4), threadFactory);
+    }
+
+    private static List<FailOverCandidate> namedCandidates(Set<RedisConnectionFactory> delegateCandidates) {
         Assert.notEmpty(delegateCandidates, "No delegate redis connection factories provided");
-        failOverFactories.addAll(delegateCandidates);
+        List<FailOverCandidate> candidates = new ArrayList<>(delegateCandidates.size());
+        for (RedisConnectionFactory connectionFactory : delegateCandidates) {
+            candidates.add(new FailOverCandidate("delegate-" + candidates.size(), connectionFactory));
+        }
+        return candidates;
+    }
+
+    public LoadBalancingMode getLoadBalancingMode() {
+        return loadBalancingMode;
+    }
+    public void setLoadBalancingMode(LoadBalancingMode loadBalancingMode) {
+        Assert.notNull(loadBalancingMode, "Load balancing mode must not be null");
+        this.loadBalancingMode = loadBalancingMode;
+    }
+
+    public ScatterGatherExecutor getScatterGatherExecutor() {
+        return scatterGatherExecutor;
+    }
+    /**
+     * Split 'MGET', 'MSET' and 'DEL' with more keys than fragment size of given executor, and execute the fragments
+     * concurrently on separate connections (possibly of different candidates, following load balancing mode).
+     * Null to disable.
+     */
+    public void setScatterGatherExecutor(ScatterGatherExecutor scatterGatherExecutor) {
+        this.scatterGatherExecutor = scatterGatherExecutor;
+    }
+
+    public HedgedReadExecutor getHedgedReadExecutor() {
+        return hedgedReadExecutor;
+    }
+    /**
+     * Send idempotent reads which are not answered within hedge delay of given executor again through another
+     * available candidate, taking the first answer. Null to disable.
+     */
+    public void setHedgedReadExecutor(HedgedReadExecutor hedgedReadExecutor) {
+        this.hedgedReadExecutor = hedgedReadExecutor;
+    }
+
+    public CommandRetryPolicy getCommandRetryPolicy() {
+        return commandRetryPolicy;
+    }
+    /**
+     * Retry idempotent commands which failed with {@link RedisConnectionFailureException} after connection retrieved,
+     * through connection of another available candidate, as allowed by given policy. Null to disable.
+     */
+    public void setCommandRetryPolicy(CommandRetryPolicy commandRetryPolicy) {
+        this.commandRetryPolicy = commandRetryPolicy;
+    }
+
+    public NearCache getNearCache() {
+        return nearCache;
+    }
+    /**
+     * Answer 'GET' of keys cached by given near cache without retrieving delegate connection, and invalidate keys
+     * written through connections of this factory. Null to disable.
+     */
+    public void setNearCache(NearCache nearCache) {
+        this.nearCache = nearCache;
+    }
+
+    /**
+     * Set decay time constant, in milliseconds, of response time average tracked for each candidate.
+     */
+    public void setLatencyDecayTime(long decayTime) {
+        this.latencyDecayTime = decayTime;
+        for (FailOverCandidate candidate : routingState.get().getCandidates()) {
+            candidate.getResponseTimeTracker().setDecayTime(decayTime);
+        }
+    }
+
+    /**
+     * Retrieve latency score of each configured candidate, keyed by candidate name. Lower score receive traffic
+     * on {@link LoadBalancingMode#LATENCY_AWARE} mode.
+     */
+    public Map<String, Double> getLatencyScores() {
+        Map<String, Double> scores = new LinkedHashMap<>();
+        for (FailOverCandidate candidate : routingState.get().getCandidates()) {
+            scores.put(candidate.getName(), candidate.getLatencyScore());
+        }
+        return scores;
+    }
+
+    /**
+     * Retrieve all configured candidates, regardless of their availability.
+     */
+    public List<FailOverCandidate> getCandidates() {
+        return routingState.get().getCandidates();
+    }
+
+    /**
+     * Retrieve candidates currently available for routing, in fail over order.
+     */
+    public List<FailOverCandidate> getAvailableCandidates() {
+        return routingState.get().getAvailable();
+    }
+
+    /**
+     * Retrieve candidate currently receiving traffic on {@link LoadBalancingMode#FAIL_OVER} mode (the first available),
+     * or null if no more candidates available.
+     */
+    public FailOverCandidate getActiveCandidate() {
+        return routingState.get().getActive();
+    }
+
+    /**
+     * Retrieve number of connection retrievals failed over from selected candidate to another one.
+     */
+    public long getFailOverCount() {
+        return failOvers.get();
     }
 
     /**
-     * Elect current {@link RedisConnectionFactory} to be used.
+     * Replace configured candidates, e.g. after proxy added or replaced, atomically swapping routing state so that
+     * concurrent retrievals observe either the old or the new candidates, never a mix. Candidates configured before
+     * (the same instances) keep their availability, circuit breaker and latency score, others are available at once
+     * and should be warmed before given. Connections already retrieved from removed candidates stay usable until
+     * closed by their callers.
+     *
+     * @param candidates new candidates, in fail over order
+     * @return Removed candidates, to be drained and destroyed by caller.
      */
-    protected void selectConnectionFactory() {
-        synchronized (selectionMonitor) {
-            if (failOverFactories.isEmpty()) {
-                throw new ConnectionsFailOverException();
+    public List<FailOverCandidate> replaceCandidates(List<FailOverCandidate> candidates) {
+        Assert.notEmpty(candidates, "No delegate redis connection factories provided");
+        long decayTime = latencyDecayTime;
+        if (decayTime >= 0) {
+            for (FailOverCandidate candidate : candidates) {
+                candidate.getResponseTimeTracker().setDecayTime(decayTime);
             }
+        }
 
-            failOverProgressed.set(true);
-            if (currentFactory != null && reconnectStaled) {
-                LOGGER.trace("Handle reconnect staled");
+        RoutingState current;
+        RoutingState next;
+        do {
+            current = routingState.get();
+            next = current.replace(candidates);
+        }
+        while (!routingState.compareAndSet(current, next));
 
+        List<FailOverCandidate> removed = new ArrayList<>(current.getCandidates());
+        removed.removeAll(candidates);
+        List<FailOverCandidate> added = new ArrayList<>(candidates);
+        added.removeAll(current.getCandidates());
+        LOGGER.info("Redis connection factories replaced, {} configured, {} removed", candidates.size(), removed.size());
 
+        for (CandidatesListener listener : candidatesListeners) {
+            try {
+                listener.candidatesReplaced(added, removed);
+            }
+            catch (RuntimeException ex) {
+                LOGGER.warn("Error on notifying replaced redis connection factories", ex);
             }
-            currentFactory = failOverFactories.poll();
-            failOverProgressed.set(false);
         }
+        return removed;
     }
 
     /**
-     * Mark current {@link RedisConnectionFactory factory} as slated connection factory.
-     * Here we schedule for validating the connection factory before permanently dropping.
+     * Add listener notified of candidates replaced by {@link #replaceCandidates(List)}, e.g. to publish meters of
+     * added candidates.
      */
-    protected void invalidConnectionFactory(RedisConnectionFactory connectionFactory) {
-        this.currentFactory = null;
+    public void addCandidatesListener(CandidatesListener listener) {
+        Assert.notNull(listener, "Candidates listener must not be null");
+        candidatesListeners.add(listener);
     }
 
-    @Override
-    public RedisConnection getConnection() {
-        while (failOverProgressed.get()) {
-            LOGGER.info("Fail over in progress");
+    /**
+     * Retrieve currently active {@link RedisConnectionFactory}, throwing {@link ConnectionsFailOverException}
+     * if no more candidates available.
+     */
+    protected RedisConnectionFactory selectConnectionFactory() {
+        FailOverCandidate active = routingState.get().getActive();
+        if (active == null) {
+            throw new ConnectionsFailOverException();
+        }
+        return active.getConnectionFactory();
+    }
+
+    /**
+     * Exclude given candidate from routing state, then schedule revalidation if enabled for the candidate.
+     * Only one thread win the election for each failed candidate, other threads just observe the new state.
+     */
+    protected void excludeCandidate(FailOverCandidate candidate) {
+        RoutingState current = routingState.get();
+        while (current.isAvailable(candidate)) {
+            RoutingState next = current.exclude(candidate);
+            if (routingState.compareAndSet(current, next)) {
+                candidate.excluded();
+                LOGGER.warn("Redis connection factory '{}' excluded, {} fail over candidates remaining",
+                        candidate, next.getAvailable().size());
+                break;
+            }
+            current = routingState.get();
+        }
+
+        if (candidate.isRevalidate()) {
+            scheduleProbe(candidate, candidate.getCircuitBreaker().getCoolDown());
+        }
+    }
+
+    /**
+     * Re-admit given candidate into routing state, in its configured order.
+     */
+    protected void admitCandidate(FailOverCandidate candidate) {
+        RoutingState current = routingState.get();
+        while (current.getCandidates().contains(candidate) && !current.isAvailable(candidate)) {
+            if (routingState.compareAndSet(current, current.include(candidate))) {
+                candidate.readmitted();
+                LOGGER.info("Redis connection factory '{}' re-admitted", candidate);
+                return;
+            }
+            current = routingState.get();
+        }
+    }
+
+    private void scheduleProbe(FailOverCandidate candidate, long delay) {
+        if (reconnectExecutors.isShutdown()) {
+            return;
+        }
+        reconnectExecutors.schedule(() -> probe(candidate), delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Send 'PING' through the candidate connection factory, on background thread so that no request thread pay for it.
+     */
+    private void probe(FailOverCandidate candidate) {
+        ConnectionFactoryCircuitBreaker circuitBreaker = candidate.getCircuitBreaker();
+        // Removed candidates are no longer probed.
+        if (!routingState.get().getCandidates().contains(candidate) || !circuitBreaker.tryHalfOpen()) {
+            return;
         }
 
         RedisConnection connection = null;
+        try {
+            connection = candidate.getConnectionFactory().getConnection();
+            connection.ping();
 
-        do {
-            if (currentFactory == null) {
-                selectConnectionFactory();
+            circuitBreaker.onProbeSuccess();
+            admitCandidate(candidate);
+        }
+        catch (RuntimeException ex) {
+            LOGGER.debug("Probe of redis connection factory '{}' failed", candidate, ex);
+            circuitBreaker.onProbeFailure();
+            scheduleProbe(candidate, circuitBreaker.getCoolDown());
+        }
+        finally {
+            if (connection != null) {
+                try {
+                    connection.close();
+                }
+                catch (RuntimeException ex) {
+                    LOGGER.trace("Error on closing probe connection", ex);
+                }
+            }
+        }
+    }
+
+    @Override
+    public RedisConnection getConnection() {
+        NearCache cache = nearCache;
+        return cache != null ? NearCacheConnectionInvocationHandler.wrap(this::balancedConnection, cache) : balancedConnection();
+    }
+
+    private RedisConnection balancedConnection() {
+        RedisConnection connection = retrieveConnection();
+        ScatterGatherExecutor executor = scatterGatherExecutor;
+        return executor != null ? ScatterGatherConnectionInvocationHandler.wrap(connection, this, executor) : connection;
+    }
+
+    private RedisConnection retrieveConnection() {
+        RoutingState state = routingState.get();
+        List<FailOverCandidate> available = state.getAvailable();
+
+        if (!available.isEmpty()) {
+            LoadBalancingMode balancingMode = loadBalancingMode;
+            FailOverCandidate primary = balancingMode.select(state, balancingCursor);
+
+            RedisConnection connection = tryConnection(primary, balancingMode);
+            if (connection != null) {
+                return retrying(hedged(connection, primary), primary);
             }
 
-            try {
-                RedisConnection candidate = currentFactory.getConnection();
-                if (candidate.isClosed()) {
-                    continue;
+            for (int i = 0; i < available.size(); i++) {
+                FailOverCandidate candidate = available.get(i);
+                if (candidate != primary && (connection = tryConnection(candidate, balancingMode)) != null) {
+                    failOvers.incrementAndGet();
+                    return retrying(hedged(connection, candidate), candidate);
                 }
-                connection = candidate;
             }
-            catch (RedisConnectionFailureException ex) {
-                LOGGER.error("Error on retrieve redis connection", ex);
-                invalidConnectionFactory(currentFactory);
+            if (allSaturated(available)) {
+                throw new ConnectionLimitExceededException("All redis-connection-factory reached their concurrency limit");
             }
         }
-        while (!failOverFactories.isEmpty() && connection == null);
 
-        if (failOverFactories.isEmpty() && connection == null) {
-            throw new ConnectionsFailOverException("No more redis-connection-factory to fail over");
+        throw new ConnectionsFailOverException("No more redis-connection-factory to fail over");
+    }
+
+    private RedisConnection hedged(RedisConnection connection, FailOverCandidate candidate) {
+        HedgedReadExecutor executor = hedgedReadExecutor;
+        return executor != null && routingState.get().getAvailable().size() > 1
+                ? HedgedReadConnectionInvocationHandler.wrap(connection, candidate, this, executor) : connection;
+    }
+
+    private static boolean allSaturated(List<FailOverCandidate> candidates) {
+        for (int i = 0; i < candidates.size(); i++) {
+            AdaptiveConcurrencyLimiter limiter = candidates.get(i).getConcurrencyLimiter();
+            if (limiter == null || !limiter.isSaturated()) {
+                return false;
+            }
         }
+        return true;
+    }
 
-        return connection;
+    private RedisConnection retrying(RedisConnection connection, FailOverCandidate candidate) {
+        CommandRetryPolicy retryPolicy = commandRetryPolicy;
+        return retryPolicy != null && routingState.get().getCandidates().size() > 1
+                ? RetryingConnectionInvocationHandler.wrap(connection, candidate, this, retryPolicy) : connection;
     }
 
-    @Override
-    public RedisClusterConnection getClusterConnection() {
-        while (!failOverProgressed.get()) ;
+    /**
+     * Retrieve connection of retried command from given candidate, hedged like any retrieved connection.
+     *
+     * @return Retrieved connection or null if candidate failed.
+     */
+    RedisConnection candidateConnection(FailOverCandidate candidate) {
+        RedisConnection connection = tryConnection(candidate, loadBalancingMode);
+        return connection != null ? hedged(connection, candidate) : null;
+    }
 
-        if (currentFactory == null) {
-            selectConnectionFactory();
+    /**
+     * Record command failed because connection of given candidate broke, excluding the candidate once its breaker open.
+     */
+    void commandFailed(FailOverCandidate candidate) {
+        if (candidate.getCircuitBreaker().recordFailure()) {
+            excludeCandidate(candidate);
         }
+    }
 
-        return currentFactory.getClusterConnection();
+    /**
+     * Retrieve connection of hedged read, from available candidate other than the one of the first read.
+     *
+     * @return Retrieved connection or null if no other candidate could provide one.
+     */
+    RedisConnection hedgeConnection(FailOverCandidate excluded) {
+        List<FailOverCandidate> available = routingState.get().getAvailable();
+        LoadBalancingMode balancingMode = loadBalancingMode;
+        for (int i = 0; i < available.size(); i++) {
+            FailOverCandidate candidate = available.get(i);
+            RedisConnection connection;
+            if (candidate != excluded && (connection = tryConnection(candidate, balancingMode)) != null) {
+                return connection;
+            }
+        }
+        return null;
     }
 
-    @Override
-    public boolean getConvertPipelineAndTxResults() {
-        while (!failOverProgressed.get()) ;
+    /**
+     * Retrieve connection from given candidate, recording the outcome.
+     *
+     * @return Retrieved connection or null if candidate failed or reached its concurrency limit.
+     */
+    private RedisConnection tryConnection(FailOverCandidate candidate, LoadBalancingMode balancingMode) {
+        AdaptiveConcurrencyLimiter limiter = candidate.getConcurrencyLimiter();
+        if (limiter != null && !limiter.tryAcquire()) {
+            LOGGER.debug("Redis connection factory '{}' reached concurrency limit {}", candidate, limiter.getLimit());
+            return null;
+        }
 
-        if (currentFactory == null) {
-            selectConnectionFactory();
+        boolean trackOutstanding = balancingMode.isTrackOutstanding();
+        boolean trackLatency = balancingMode.isTrackLatency();
+        ConnectionMetricsRecorder recorder = candidate.getMetricsRecorder();
+        if (trackOutstanding) {
+            candidate.acquire();
         }
 
-        return currentFactory.getConvertPipelineAndTxResults();
+        long started = trackLatency || recorder != null || limiter != null ? System.nanoTime() : 0;
+        try {
+            RedisConnection connection = candidate.getConnectionFactory().getConnection();
+            if (trackLatency) {
+                candidate.getResponseTimeTracker().record(System.nanoTime() - started);
+            }
+            candidate.getCircuitBreaker().recordSuccess();
+            return trackOutstanding || recorder != null || limiter != null
+                    ? new TrackedConnection(candidate, connection, trackOutstanding, trackLatency, recorder, limiter,
+                            started)
+                    : connection;
+        }
+        catch (RedisConnectionFailureException ex) {
+            if (trackOutstanding) {
+                candidate.release();
+            }
+            if (limiter != null) {
+                limiter.release();
+            }
+            LOGGER.error("Error on retrieve redis connection from '{}'", candidate, ex);
+            if (candidate.getCircuitBreaker().recordFailure()) {
+                excludeCandidate(candidate);
+            }
+            return null;
+        }
+        catch (RuntimeException ex) {
+            if (trackOutstanding) {
+                candidate.release();
+            }
+            if (limiter != null) {
+                limiter.release();
+            }
+            throw ex;
+        }
+        finally {
+            if (recorder != null) {
+                recorder.recordBorrow(System.nanoTime() - started);
+            }
+        }
     }
 
     @Override
-    public RedisSentinelConnection getSentinelConnection() {
-        while (!failOverProgressed.get()) ;
+    public RedisClusterConnection getClusterConnection() {
+        return selectConnectionFactory().getClusterConnection();
+    }
 
-        if (currentFactory == null) {
-            selectConnectionFactory();
-        }
+    @Override
+    public boolean getConvertPipelineAndTxResults() {
+        return settingsConnectionFactory().getConvertPipelineAndTxResults();
+    }
 
-        return currentFactory.getSentinelConnection();
+    @Override
+    public RedisSentinelConnection getSentinelConnection() {
+        return selectConnectionFactory().getSentinelConnection();
     }
 
     @Override
     public DataAccessException translateExceptionIfPossible(RuntimeException ex) {
-        return currentFactory.translateExceptionIfPossible(ex);
+        return settingsConnectionFactory().translateExceptionIfPossible(ex);
+    }
+
+    /**
+     * Connection factory consulted for settings, falling back to first configured candidate when none available.
+     */
+    private RedisConnectionFactory settingsConnectionFactory() {
+        RoutingState state = routingState.get();
+        FailOverCandidate active = state.getActive();
+        return active != null ? active.getConnectionFactory() : state.getCandidates().get(0).getConnectionFactory();
+    }
+
+    @Override
+    public void destroy() {
+        reconnectExecutors.shutdownNow();
+    }
+
+    /**
+     * Listener of candidates replaced at runtime.
+     */
+    public interface CandidatesListener {
+        /**
+         * @param added   candidates not configured before, already receiving traffic
+         * @param removed candidates no longer configured, possibly still draining
+         */
+        void candidatesReplaced(List<FailOverCandidate> added, List<FailOverCandidate> removed);
     }
 }
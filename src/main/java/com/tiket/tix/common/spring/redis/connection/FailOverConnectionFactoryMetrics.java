@@ -0,0 +1,283 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.util.Assert;
+import redis.clients.jedis.Jedis;
+import redis.clients.util.Pool;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+
+/**
+ * Micrometer {@link MeterBinder} of {@link FailOverCapableConnectionFactory}, publishing for each candidate (tag
+ * 'connection'):
+ * <ul>
+ *     <li>'redis.pool.active', 'redis.pool.idle' and 'redis.pool.waiters' gauges, of jedis pooled candidate.</li>
+ *     <li>'redis.pool.borrow' timer with percentile histogram, time spent retrieving connection.</li>
+ *     <li>'redis.commands' timer, latency per command (tag 'command').</li>
+ *     <li>'redis.connection.exclusions' and 'redis.connection.readmissions' counters.</li>
+ *     <li>'redis.connection.available' and 'redis.connection.active' gauges, 1 when candidate available for routing
+ *     or receiving traffic on fail over mode.</li>
+ *     <li>'redis.connection.limit' and 'redis.connection.inflight' gauges and 'redis.connection.rejections' counter,
+ *     of candidate with concurrency limiter.</li>
+ *     <li>'redis.batches' counters of batch size distribution (tag 'size' of power of two range, e.g. '4-7'),
+ *     'redis.batch.commands' counter and 'redis.batch.size.mean' and 'redis.batch.size.max' gauges, of candidate
+ *     with command batching.</li>
+ * </ul>
+ * Plus 'redis.failovers' counter of connection retrievals served by other candidate than the selected one, and when
+ * hedged reads enabled, 'redis.hedges' (tag 'outcome' of 'sent', 'won' or 'rejected' by budget) counters and
+ * 'redis.hedges.delay' gauge, and when command retry enabled, 'redis.retries' (tag 'outcome' of 'sent' or 'rejected')
+ * counters, and when near cache enabled, for each region (tag 'region'), 'redis.nearcache.gets' (tag 'result' of 'hit'
+ * or 'miss') and 'redis.nearcache.evictions' counters and 'redis.nearcache.hit.ratio', 'redis.nearcache.miss.ratio'
+ * and 'redis.nearcache.size' gauges.
+ * <p>
+ * Gauges and counters read state the factory already keeps, looking candidate up by name, so that candidates replaced
+ * at runtime (see {@link FailOverCapableConnectionFactory#replaceCandidates(List)}) are published under the same name
+ * and added ones get their meters. Timers are created up front (per command on first use), so recording on request
+ * threads only look up and update existing timers.
+ *
+ * @author zakyalvan
+ */
+public class FailOverConnectionFactoryMetrics implements MeterBinder {
+    private final FailOverCapableConnectionFactory connectionFactory;
+
+    private final Iterable<Tag> tags;
+
+    private final boolean commandHistogram;
+
+    public FailOverConnectionFactoryMetrics(FailOverCapableConnectionFactory connectionFactory) {
+        this(connectionFactory, Tags.empty(), false);
+    }
+
+    public FailOverConnectionFactoryMetrics(FailOverCapableConnectionFactory connectionFactory, Iterable<Tag> tags,
+            boolean commandHistogram) {
+        Assert.notNull(connectionFactory, "Connection factory must not be null");
+        Assert.notNull(tags, "Tags must not be null");
+        this.connectionFactory = connectionFactory;
+        this.tags = tags;
+        this.commandHistogram = commandHistogram;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("redis.failovers", connectionFactory, FailOverCapableConnectionFactory::getFailOverCount)
+                .tags(tags)
+                .description("Connection retrievals failed over from selected connection to another")
+                .register(registry);
+
+        HedgedReadExecutor hedgedReadExecutor = connectionFactory.getHedgedReadExecutor();
+        if (hedgedReadExecutor != null) {
+            FunctionCounter.builder("redis.hedges", hedgedReadExecutor, HedgedReadExecutor::getHedgeCount)
+                    .tags(tags).tag("outcome", "sent").description("Hedged reads").register(registry);
+            FunctionCounter.builder("redis.hedges", hedgedReadExecutor, HedgedReadExecutor::getHedgeWinCount)
+                    .tags(tags).tag("outcome", "won").description("Hedged reads").register(registry);
+            FunctionCounter.builder("redis.hedges", hedgedReadExecutor, HedgedReadExecutor::getHedgeRejectedCount)
+                    .tags(tags).tag("outcome", "rejected").description("Hedged reads").register(registry);
+            TimeGauge.builder("redis.hedges.delay", hedgedReadExecutor, TimeUnit.NANOSECONDS,
+                    HedgedReadExecutor::getCurrentDelay).tags(tags).description("Current hedge delay").register(registry);
+        }
+
+        CommandRetryPolicy commandRetryPolicy = connectionFactory.getCommandRetryPolicy();
+        if (commandRetryPolicy != null) {
+            FunctionCounter.builder("redis.retries", commandRetryPolicy, CommandRetryPolicy::getRetryCount)
+                    .tags(tags).tag("outcome", "sent").description("Retried idempotent commands").register(registry);
+            FunctionCounter.builder("redis.retries", commandRetryPolicy, CommandRetryPolicy::getRetryRejectedCount)
+                    .tags(tags).tag("outcome", "rejected").description("Retried idempotent commands").register(registry);
+        }
+
+        NearCache nearCache = connectionFactory.getNearCache();
+        if (nearCache != null) {
+            for (NearCacheRegion region : nearCache.getRegions()) {
+                Tags regionTags = Tags.of(tags).and("region", region.getName());
+                FunctionCounter.builder("redis.nearcache.gets", region, NearCacheRegion::getHitCount)
+                        .tags(regionTags).tag("result", "hit").description("Near cache lookups").register(registry);
+                FunctionCounter.builder("redis.nearcache.gets", region, NearCacheRegion::getMissCount)
+                        .tags(regionTags).tag("result", "miss").description("Near cache lookups").register(registry);
+                Gauge.builder("redis.nearcache.hit.ratio", region, NearCacheRegion::getHitRatio)
+                        .tags(regionTags).description("Ratio of near cache lookups served locally").register(registry);
+                Gauge.builder("redis.nearcache.miss.ratio", region, NearCacheRegion::getMissRatio)
+                        .tags(regionTags).description("Ratio of near cache lookups read from redis").register(registry);
+                Gauge.builder("redis.nearcache.size", region, NearCacheRegion::getSize)
+                        .tags(regionTags).description("Estimated number of near cache entries").register(registry);
+                FunctionCounter.builder("redis.nearcache.evictions", region, NearCacheRegion::getEvictionCount)
+                        .tags(regionTags).description("Near cache entries evicted by size or expiry").register(registry);
+            }
+        }
+
+        Set<String> bound = ConcurrentHashMap.newKeySet();
+        for (FailOverCandidate candidate : connectionFactory.getCandidates()) {
+            bindCandidate(registry, candidate, bound);
+        }
+        // Candidates swapped in at runtime (e.g. topology refresh) record into meters of their name.
+        connectionFactory.addCandidatesListener((added, removed) -> {
+            for (FailOverCandidate candidate : added) {
+                bindCandidate(registry, candidate, bound);
+            }
+        });
+    }
+
+    /**
+     * Register meters of candidate name, unless registered before, and attach recorder to the candidate. Meters look
+     * candidate up by name when read, so that they follow candidate replaced with the same name, and read NaN once
+     * the name no longer configured.
+     */
+    private void bindCandidate(MeterRegistry registry, FailOverCandidate candidate, Set<String> bound) {
+        String name = candidate.getName();
+        Tags candidateTags = Tags.of(tags).and("connection", name);
+
+        if (jedisPool(candidate.getConnectionFactory()) != null && bound.add("pool:" + name)) {
+            Gauge.builder("redis.pool.active", connectionFactory, f -> poolValue(name, Pool::getNumActive))
+                    .tags(candidateTags).description("Pooled connections currently borrowed").register(registry);
+            Gauge.builder("redis.pool.idle", connectionFactory, f -> poolValue(name, Pool::getNumIdle))
+                    .tags(candidateTags).description("Pooled connections currently idle").register(registry);
+            Gauge.builder("redis.pool.waiters", connectionFactory, f -> poolValue(name, Pool::getNumWaiters))
+                    .tags(candidateTags).description("Threads currently waiting to borrow pooled connection")
+                    .register(registry);
+        }
+
+        if (candidate.getConcurrencyLimiter() != null && bound.add("limiter:" + name)) {
+            Gauge.builder("redis.connection.limit", connectionFactory,
+                    f -> limiterValue(name, AdaptiveConcurrencyLimiter::getLimit)).tags(candidateTags)
+                    .description("Current limit of concurrently borrowed connections").register(registry);
+            Gauge.builder("redis.connection.inflight", connectionFactory,
+                    f -> limiterValue(name, AdaptiveConcurrencyLimiter::getInFlight)).tags(candidateTags)
+                    .description("Connections currently borrowed under limit").register(registry);
+            FunctionCounter.builder("redis.connection.rejections", connectionFactory,
+                    f -> limiterValue(name, AdaptiveConcurrencyLimiter::getRejectedCount)).tags(candidateTags)
+                    .description("Retrievals shed because limit reached").register(registry);
+        }
+
+        if (candidate.getConnectionFactory() instanceof BatchingConnectionFactory && bound.add("batching:" + name)) {
+            for (int i = 0; i < BatchStatistics.RANGES.length; i++) {
+                int bucket = i;
+                FunctionCounter.builder("redis.batches", connectionFactory,
+                        f -> batchValue(name, statistics -> statistics.getBatchCount(bucket))).tags(candidateTags)
+                        .tag("size", BatchStatistics.RANGES[i]).description("Pipelined batches of concurrent commands")
+                        .register(registry);
+            }
+            FunctionCounter.builder("redis.batch.commands", connectionFactory,
+                    f -> batchValue(name, BatchStatistics::getCommands)).tags(candidateTags)
+                    .description("Commands sent in pipelined batches").register(registry);
+            Gauge.builder("redis.batch.size.mean", connectionFactory,
+                    f -> batchValue(name, BatchStatistics::getMeanBatchSize)).tags(candidateTags)
+                    .description("Mean number of commands per batch").register(registry);
+            Gauge.builder("redis.batch.size.max", connectionFactory,
+                    f -> batchValue(name, BatchStatistics::getMaxBatchSize)).tags(candidateTags)
+                    .description("Largest number of commands per batch").register(registry);
+        }
+
+        if (bound.add(name)) {
+            FunctionCounter.builder("redis.connection.exclusions", connectionFactory,
+                    f -> candidateValue(name, FailOverCandidate::getExclusionCount)).tags(candidateTags)
+                    .description("Times connection excluded from routing").register(registry);
+            FunctionCounter.builder("redis.connection.readmissions", connectionFactory,
+                    f -> candidateValue(name, FailOverCandidate::getReadmissionCount)).tags(candidateTags)
+                    .description("Times connection re-admitted into routing").register(registry);
+
+            Gauge.builder("redis.connection.available", connectionFactory,
+                    f -> candidateValue(name, c -> f.getAvailableCandidates().contains(c) ? 1 : 0))
+                    .tags(candidateTags).description("1 when connection available for routing").register(registry);
+            Gauge.builder("redis.connection.active", connectionFactory,
+                    f -> candidateValue(name, c -> f.getActiveCandidate() == c ? 1 : 0))
+                    .tags(candidateTags).description("1 when connection receive traffic on fail over mode").register(registry);
+        }
+
+        candidate.setMetricsRecorder(new MicrometerRecorder(registry, candidateTags, commandHistogram));
+    }
+
+    private double candidateValue(String name, ToDoubleFunction<FailOverCandidate> function) {
+        for (FailOverCandidate candidate : connectionFactory.getCandidates()) {
+            if (candidate.getName().equals(name)) {
+                return function.applyAsDouble(candidate);
+            }
+        }
+        return Double.NaN;
+    }
+
+    private double poolValue(String name, ToIntFunction<Pool<Jedis>> function) {
+        return candidateValue(name, candidate -> {
+            Pool<Jedis> pool = jedisPool(candidate.getConnectionFactory());
+            return pool != null ? function.applyAsInt(pool) : Double.NaN;
+        });
+    }
+
+    private double limiterValue(String name, ToDoubleFunction<AdaptiveConcurrencyLimiter> function) {
+        return candidateValue(name, candidate -> {
+            AdaptiveConcurrencyLimiter limiter = candidate.getConcurrencyLimiter();
+            return limiter != null ? function.applyAsDouble(limiter) : Double.NaN;
+        });
+    }
+
+    private double batchValue(String name, ToDoubleFunction<BatchStatistics> function) {
+        return candidateValue(name, candidate -> candidate.getConnectionFactory() instanceof BatchingConnectionFactory
+                ? function.applyAsDouble(((BatchingConnectionFactory) candidate.getConnectionFactory()).getStatistics())
+                : Double.NaN);
+    }
+
+    private static Pool<Jedis> jedisPool(RedisConnectionFactory connectionFactory) {
+        if (connectionFactory instanceof BatchingConnectionFactory) {
+            return jedisPool(((BatchingConnectionFactory) connectionFactory).getDelegate());
+        }
+        if (connectionFactory instanceof ExtendedJedisConnectionFactory) {
+            return ((ExtendedJedisConnectionFactory) connectionFactory).getPool();
+        }
+        return null;
+    }
+
+    /**
+     * Recorder of one candidate. Timer of a command created once, later records of the same command only cost
+     * one map lookup keyed by interned method name.
+     */
+    private static class MicrometerRecorder implements ConnectionMetricsRecorder {
+        private final MeterRegistry registry;
+
+        private final Tags tags;
+
+        private final boolean commandHistogram;
+
+        private final Timer borrowTimer;
+
+        private final ConcurrentMap<String, Timer> commandTimers = new ConcurrentHashMap<>();
+
+        MicrometerRecorder(MeterRegistry registry, Tags tags, boolean commandHistogram) {
+            this.registry = registry;
+            this.tags = tags;
+            this.commandHistogram = commandHistogram;
+            this.borrowTimer = Timer.builder("redis.pool.borrow").tags(tags)
+                    .description("Time spent retrieving connection").publishPercentileHistogram().register(registry);
+        }
+
+        @Override
+        public void recordBorrow(long nanos) {
+            borrowTimer.record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public void recordCommand(String command, long nanos) {
+            Timer timer = commandTimers.get(command);
+            if (timer == null) {
+                timer = commandTimers.computeIfAbsent(command, this::commandTimer);
+            }
+            timer.record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        private Timer commandTimer(String command) {
+            return Timer.builder("redis.commands").tags(tags).tag("command", command)
+                    .description("Latency of redis commands").publishPercentileHistogram(commandHistogram)
+                    .register(registry);
+        }
+    }
+}
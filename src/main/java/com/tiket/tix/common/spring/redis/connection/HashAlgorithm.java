@@ -0,0 +1,108 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Key hash functions of twemproxy (nutcracker) hashkit, producing exactly the same 32 bits value as
+ * twemproxy, so that {@link ShardLocator} select the same shard as the proxy does.
+ *
+ * @author zakyalvan
+ */
+public enum HashAlgorithm {
+    /**
+     * 64 bits FNV-1a, truncated to 32 bits as twemproxy does. Key bytes are sign extended, like C 'char'.
+     */
+    FNV1A_64 {
+        @Override
+        public int hash(byte[] key, int offset, int length) {
+            int hash = 0x84222325;
+            for (int i = offset; i < offset + length; i++) {
+                hash ^= key[i];
+                hash *= 0x1b3;
+            }
+            return hash;
+        }
+    },
+
+    /**
+     * MurmurHash2, seeded by key length.
+     */
+    MURMUR {
+        @Override
+        public int hash(byte[] key, int offset, int length) {
+            final int m = 0x5bd1e995;
+            final int r = 24;
+
+            int h = (0xdeadbeef * length) ^ length;
+
+            int position = offset;
+            int remaining = length;
+            while (remaining >= 4) {
+                int k = (key[position] & 0xff) | (key[position + 1] & 0xff) << 8
+                        | (key[position + 2] & 0xff) << 16 | (key[position + 3] & 0xff) << 24;
+                k *= m;
+                k ^= k >>> r;
+                k *= m;
+
+                h *= m;
+                h ^= k;
+
+                position += 4;
+                remaining -= 4;
+            }
+
+            switch (remaining) {
+                case 3:
+                    h ^= (key[position + 2] & 0xff) << 16;
+                case 2:
+                    h ^= (key[position + 1] & 0xff) << 8;
+                case 1:
+                    h ^= key[position] & 0xff;
+                    h *= m;
+                default:
+            }
+
+            h ^= h >>> 13;
+            h *= m;
+            h ^= h >>> 15;
+            return h;
+        }
+    },
+
+    /**
+     * First 4 bytes of MD5 digest, little endian.
+     */
+    MD5 {
+        @Override
+        public int hash(byte[] key, int offset, int length) {
+            return littleEndian(md5(key, offset, length), 0);
+        }
+    };
+
+    /**
+     * Hash given key range. Result is unsigned 32 bits value stored in int, compare with
+     * {@link Integer#compareUnsigned(int, int)}.
+     */
+    public abstract int hash(byte[] key, int offset, int length);
+
+    public int hash(byte[] key) {
+        return hash(key, 0, key.length);
+    }
+
+    static byte[] md5(byte[] key, int offset, int length) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            digest.update(key, offset, length);
+            return digest.digest();
+        }
+        catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("MD5 digest is not available", ex);
+        }
+    }
+
+    static int littleEndian(byte[] bytes, int offset) {
+        return (bytes[offset + 3] & 0xff) << 24 | (bytes[offset + 2] & 0xff) << 16
+                | (bytes[offset + 1] & 0xff) << 8 | (bytes[offset] & 0xff);
+    }
+}
@@ -0,0 +1,217 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisConnection;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link InvocationHandler} of {@link RedisConnection} proxy retrieved from one {@link FailOverCandidate}, hedging
+ * idempotent read commands through connection of another candidate when target is slow to answer, using
+ * {@link HedgedReadExecutor}. Other commands, and any command of pipeline or transaction, go to the target.
+ * <p>
+ * When hedge win, the first read is still running on target. Next command on this connection wait for it, and
+ * closing this connection return target to its pool once the first read completed, without waiting.
+ *
+ * @author zakyalvan
+ */
+class HedgedReadConnectionInvocationHandler implements InvocationHandler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(HedgedReadConnectionInvocationHandler.class);
+
+    /**
+     * Idempotent read commands of single key or multiple keys, safe to send twice.
+     */
+    static final Set<String> HEDGED_COMMANDS = new HashSet<>(Arrays.asList(
+            "get", "mGet", "getRange", "getBit", "strLen", "exists", "type", "ttl", "pTtl",
+            "hGet", "hMGet", "hGetAll", "hKeys", "hVals", "hLen", "hExists",
+            "lIndex", "lLen", "lRange",
+            "sMembers", "sIsMember", "sCard",
+            "zRange", "zRangeWithScores", "zRangeByScore", "zRangeByScoreWithScores", "zRevRange",
+            "zRevRangeWithScores", "zRevRangeByScore", "zRevRangeByScoreWithScores", "zScore", "zRank", "zRevRank",
+            "zCard", "zCount"));
+
+    private final RedisConnection target;
+
+    private final FailOverCandidate candidate;
+
+    private final FailOverCapableConnectionFactory connectionFactory;
+
+    private final HedgedReadExecutor executor;
+
+    /**
+     * Read still running on target after hedge won, null if none.
+     */
+    private CompletableFuture<?> inflight;
+
+    private HedgedReadConnectionInvocationHandler(RedisConnection target, FailOverCandidate candidate,
+            FailOverCapableConnectionFactory connectionFactory, HedgedReadExecutor executor) {
+        this.target = target;
+        this.candidate = candidate;
+        this.connectionFactory = connectionFactory;
+        this.executor = executor;
+    }
+
+    static RedisConnection wrap(RedisConnection target, FailOverCandidate candidate,
+            FailOverCapableConnectionFactory connectionFactory, HedgedReadExecutor executor) {
+        return (RedisConnection) Proxy.newProxyInstance(RedisConnection.class.getClassLoader(),
+                new Class<?>[]{RedisConnection.class},
+                new HedgedReadConnectionInvocationHandler(target, candidate, connectionFactory, executor));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        switch (name) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "close":
+                if (inflight != null && !inflight.isDone()) {
+                    inflight.whenComplete((result, failure) -> closeTarget());
+                    inflight = null;
+                    return null;
+                }
+                return invokeTarget(target, method, args);
+            default:
+        }
+
+        awaitInflight();
+        if (HEDGED_COMMANDS.contains(name) && !target.isPipelined() && !target.isQueueing()) {
+            return hedge(method, args);
+        }
+        return invokeTarget(target, method, args);
+    }
+
+    private Object hedge(Method method, Object[] args) throws Throwable {
+        long started = System.nanoTime();
+        CompletableFuture<Object> first = executor.submit(() -> invokeUnchecked(target, method, args));
+        first.whenComplete((result, failure) -> executor.recordLatency(System.nanoTime() - started));
+
+        try {
+            return first.get(executor.getCurrentDelay(), TimeUnit.NANOSECONDS);
+        }
+        catch (TimeoutException ex) {
+            // Slow, hedge if allowed.
+        }
+        catch (ExecutionException ex) {
+            throw unwrap(ex.getCause());
+        }
+
+        if (!executor.tryAcquireHedge()) {
+            return await(first);
+        }
+        RedisConnection hedgeConnection = connectionFactory.hedgeConnection(candidate);
+        if (hedgeConnection == null) {
+            executor.hedgeUnavailable();
+            return await(first);
+        }
+
+        CompletableFuture<Object> second = executor.submitHedge(() -> {
+            try {
+                return invokeUnchecked(hedgeConnection, method, args);
+            }
+            finally {
+                hedgeConnection.close();
+            }
+        });
+
+        CompletableFuture<Object> winner = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        first.whenComplete((result, failure) -> complete(winner, result, failure, failures));
+        second.whenComplete((result, failure) -> complete(winner, result, failure, failures));
+
+        Object result = await(winner);
+        if (!first.isDone() || first.isCompletedExceptionally()) {
+            executor.hedgeWon();
+            inflight = first;
+        }
+        return result;
+    }
+
+    /**
+     * Complete winner by the first successful result, or by the last failure when both failed.
+     */
+    private static void complete(CompletableFuture<Object> winner, Object result, Throwable failure, AtomicInteger failures) {
+        if (failure == null) {
+            winner.complete(result);
+        }
+        else if (failures.incrementAndGet() == 2) {
+            winner.completeExceptionally(failure);
+        }
+    }
+
+    private void awaitInflight() {
+        if (inflight != null) {
+            try {
+                inflight.join();
+            }
+            catch (RuntimeException ex) {
+                LOGGER.trace("Read outrun by hedge failed", ex);
+            }
+            inflight = null;
+        }
+    }
+
+    private void closeTarget() {
+        try {
+            target.close();
+        }
+        catch (RuntimeException ex) {
+            LOGGER.trace("Error on closing connection outrun by hedge", ex);
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> future) throws Throwable {
+        try {
+            return future.get();
+        }
+        catch (ExecutionException ex) {
+            throw unwrap(ex.getCause());
+        }
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        Throwable unwrapped = failure;
+        while ((unwrapped instanceof CompletionException || unwrapped instanceof UndeclaredThrowableException)
+                && unwrapped.getCause() != null) {
+            unwrapped = unwrapped.getCause();
+        }
+        return unwrapped;
+    }
+
+    private static Object invokeUnchecked(RedisConnection connection, Method method, Object[] args) {
+        try {
+            return invokeTarget(connection, method, args);
+        }
+        catch (RuntimeException | Error ex) {
+            throw ex;
+        }
+        catch (Throwable ex) {
+            throw new UndeclaredThrowableException(ex);
+        }
+    }
+
+    private static Object invokeTarget(RedisConnection connection, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(connection, args);
+        }
+        catch (InvocationTargetException ex) {
+            throw ex.getTargetException();
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Policy and worker threads of hedged reads. Idempotent read command is executed on worker thread, and when it
+ * has not completed within {@link #getDelay() hedge delay}, the same command is sent through connection of another
+ * candidate, the first successful result wins.
+ * <p>
+ * Hedge delay is either fixed, or {@link #getPercentile() percentile} of recently observed read latency (never less
+ * than the fixed delay), recomputed every {@value #RECOMPUTE_INTERVAL} reads from a decaying histogram. Hedges are
+ * capped by a token budget refilled by {@link #getBudgetPercent() percent} of a token on each read, so hedged traffic
+ * never exceed that share of reads, even when a proxy is slow for every read.
+ * <p>
+ * When worker threads are all busy, read is executed on calling thread without hedging.
+ *
+ * @author zakyalvan
+ */
+public class HedgedReadExecutor implements DisposableBean {
+    public static final long DEFAULT_DELAY = 2000;
+
+    public static final int DEFAULT_BUDGET_PERCENT = 5;
+
+    public static final int DEFAULT_MAX_THREADS = 64;
+
+    /**
+     * Number of reads between recomputation of percentile delay.
+     */
+    static final int RECOMPUTE_INTERVAL = 1024;
+
+    private static final int BUCKETS = 192;
+
+    private final long delayNanos;
+
+    private final double percentile;
+
+    private final int budgetPercent;
+
+    private final ExecutorService workers;
+
+    /**
+     * Latency histogram in microseconds, four buckets per power of two.
+     */
+    private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+    private final AtomicLong samples = new AtomicLong();
+
+    private final AtomicBoolean recomputing = new AtomicBoolean();
+
+    private volatile long currentDelayNanos;
+
+    private final TokenBudget budget;
+
+    private final AtomicLong reads = new AtomicLong();
+
+    private final AtomicLong hedges = new AtomicLong();
+
+    private final AtomicLong hedgesWon = new AtomicLong();
+
+    private final AtomicLong hedgesRejected = new AtomicLong();
+
+    public HedgedReadExecutor() {
+        this(DEFAULT_DELAY, 0, DEFAULT_BUDGET_PERCENT, DEFAULT_MAX_THREADS);
+    }
+
+    /**
+     * @param delayMicros   time in microseconds to wait for the first read before hedging, or minimum of percentile
+     *                      delay
+     * @param percentile    percentile (exclusive 0 to 100) of observed read latency used as hedge delay, zero to
+     *                      always use fixed delay
+     * @param budgetPercent maximum share of reads, in percent, which may be hedged
+     * @param maxThreads    maximum number of worker threads executing reads
+     */
+    public HedgedReadExecutor(long delayMicros, double percentile, int budgetPercent, int maxThreads) {
+        Assert.isTrue(delayMicros >= 0, "Hedge delay must not be negative");
+        Assert.isTrue(percentile >= 0 && percentile < 100, "Hedge percentile must be between 0 and 100");
+        Assert.isTrue(budgetPercent >= 0 && budgetPercent <= 100, "Hedge budget must be between 0 and 100 percent");
+        Assert.isTrue(maxThreads > 0, "Max threads must be positive");
+
+        this.delayNanos = TimeUnit.MICROSECONDS.toNanos(delayMicros);
+        this.percentile = percentile;
+        this.budgetPercent = budgetPercent;
+        this.budget = new TokenBudget(budgetPercent);
+        this.currentDelayNanos = delayNanos;
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("redis-hedge-");
+        threadFactory.setDaemon(true);
+        this.workers = new ThreadPoolExecutor(0, maxThreads, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                threadFactory, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Fixed hedge delay, or minimum of percentile delay, in microseconds.
+     */
+    public long getDelay() {
+        return TimeUnit.NANOSECONDS.toMicros(delayNanos);
+    }
+
+    public double getPercentile() {
+        return percentile;
+    }
+
+    public int getBudgetPercent() {
+        return budgetPercent;
+    }
+
+    /**
+     * Hedge delay currently in effect, in nanoseconds.
+     */
+    public long getCurrentDelay() {
+        return currentDelayNanos;
+    }
+
+    /**
+     * Number of reads eligible for hedging.
+     */
+    public long getReadCount() {
+        return reads.get();
+    }
+
+    /**
+     * Number of hedges sent.
+     */
+    public long getHedgeCount() {
+        return hedges.get();
+    }
+
+    /**
+     * Number of hedges answered before the first read.
+     */
+    public long getHedgeWinCount() {
+        return hedgesWon.get();
+    }
+
+    /**
+     * Number of slow reads not hedged because budget exhausted or no other candidate available.
+     */
+    public long getHedgeRejectedCount() {
+        return hedgesRejected.get();
+    }
+
+    /**
+     * Execute given read on worker thread, counting it for budget.
+     */
+    <T> CompletableFuture<T> submit(Supplier<T> read) {
+        reads.incrementAndGet();
+        budget.deposit();
+        return CompletableFuture.supplyAsync(read, workers);
+    }
+
+    /**
+     * Execute given hedge on worker thread.
+     */
+    <T> CompletableFuture<T> submitHedge(Supplier<T> hedge) {
+        hedges.incrementAndGet();
+        return CompletableFuture.supplyAsync(hedge, workers);
+    }
+
+    /**
+     * Take one token from budget.
+     *
+     * @return True if hedge allowed.
+     */
+    boolean tryAcquireHedge() {
+        if (budget.tryAcquire()) {
+            return true;
+        }
+        hedgesRejected.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Give back token of a hedge which found no connection of other candidate, counting it as rejected.
+     */
+    void hedgeUnavailable() {
+        budget.release();
+        hedgesRejected.incrementAndGet();
+    }
+
+    void hedgeWon() {
+        hedgesWon.incrementAndGet();
+    }
+
+    /**
+     * Record latency of the first read, slow ones included, for percentile delay.
+     */
+    void recordLatency(long nanos) {
+        if (percentile <= 0) {
+            return;
+        }
+        histogram.incrementAndGet(bucket(TimeUnit.NANOSECONDS.toMicros(nanos)));
+        if (samples.incrementAndGet() % RECOMPUTE_INTERVAL == 0 && recomputing.compareAndSet(false, true)) {
+            try {
+                recompute();
+            }
+            finally {
+                recomputing.set(false);
+            }
+        }
+    }
+
+    /**
+     * Recompute percentile delay, then halve histogram so that older latencies fade.
+     */
+    private void recompute() {
+        long total = 0;
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = histogram.get(i);
+            total += counts[i];
+        }
+
+        long rank = (long) Math.ceil(total * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                currentDelayNanos = Math.max(delayNanos, TimeUnit.MICROSECONDS.toNanos(upperBound(i)));
+                break;
+            }
+        }
+
+        for (int i = 0; i < BUCKETS; i++) {
+            histogram.addAndGet(i, -(counts[i] / 2));
+        }
+    }
+
+    static int bucket(long micros) {
+        if (micros < 4) {
+            return (int) Math.max(micros, 0);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int index = exponent * 4 + (int) ((micros >>> (exponent - 2)) & 3);
+        return Math.min(index, BUCKETS - 1);
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < 4) {
+            return bucket + 1;
+        }
+        int exponent = bucket / 4;
+        return (5L + bucket % 4) << (exponent - 2);
+    }
+
+    @Override
+    public void destroy() {
+        workers.shutdownNow();
+    }
+}
@@ -0,0 +1,167 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisSentinelConnection;
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link RedisConnectionFactory} routing each command to connection factory (typically a fail over capable one of
+ * a connection group) by prefix of its keys, so that workloads with different latency requirement (e.g. sessions and
+ * bulk analytics writes) share one template while using separate proxies and pools. Keys matching no prefix, and
+ * keyless commands, go to default connection factory. When prefixes overlap, the longest matching prefix wins.
+ * <p>
+ * Prefixes are matched on raw (serialized) keys, so they are only meaningful with key serializer preserving the
+ * prefix bytes, e.g. {@link org.springframework.data.redis.serializer.StringRedisSerializer}.
+ * <p>
+ * Connection retrieved from this factory borrow connection of each target lazily and return them together on close.
+ * 'MGET', 'MSET' and 'DEL' on keys of multiple targets are split by target, see
+ * {@link #setScatterGatherExecutor(ScatterGatherExecutor)}. Other multiple keys commands, pipeline and transaction
+ * are supported as long as all of their keys route to one target.
+ *
+ * @author zakyalvan
+ */
+public class KeyPrefixRoutingConnectionFactory implements RedisConnectionFactory {
+    /**
+     * Distinct target connection factories, the default one first.
+     */
+    private final List<RedisConnectionFactory> targetConnectionFactories;
+
+    /**
+     * Raw prefixes, longest first, with index of their target connection factory.
+     */
+    private final byte[][] prefixes;
+
+    private final int[] prefixTargets;
+
+    private volatile ScatterGatherExecutor scatterGatherExecutor = new ScatterGatherExecutor(Integer.MAX_VALUE, 0);
+
+    /**
+     * @param defaultConnectionFactory connection factory of keys matching no prefix and keyless commands
+     * @param routes                   target connection factory of each key prefix
+     */
+    public KeyPrefixRoutingConnectionFactory(RedisConnectionFactory defaultConnectionFactory,
+            Map<String, RedisConnectionFactory> routes) {
+        Assert.notNull(defaultConnectionFactory, "Default connection factory must not be null");
+        Assert.notNull(routes, "Routes must not be null");
+
+        List<RedisConnectionFactory> targets = new ArrayList<>();
+        targets.add(defaultConnectionFactory);
+
+        List<Map.Entry<String, RedisConnectionFactory>> entries = new ArrayList<>(routes.entrySet());
+        entries.sort((first, second) -> Integer.compare(second.getKey().length(), first.getKey().length()));
+
+        this.prefixes = new byte[entries.size()][];
+        this.prefixTargets = new int[entries.size()];
+        for (int i = 0; i < entries.size(); i++) {
+            Map.Entry<String, RedisConnectionFactory> entry = entries.get(i);
+            Assert.isTrue(StringUtils.hasLength(entry.getKey()), "Key prefix must not be empty");
+            Assert.notNull(entry.getValue(), "Connection factory of key prefix '" + entry.getKey() + "' must not be null");
+
+            // One connection per distinct target, even when it serve multiple prefixes.
+            int target = indexOf(targets, entry.getValue());
+            if (target < 0) {
+                target = targets.size();
+                targets.add(entry.getValue());
+            }
+            prefixes[i] = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            prefixTargets[i] = target;
+        }
+        this.targetConnectionFactories = Collections.unmodifiableList(targets);
+    }
+
+    private static int indexOf(List<RedisConnectionFactory> targets, RedisConnectionFactory factory) {
+        for (int i = 0; i < targets.size(); i++) {
+            if (targets.get(i) == factory) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public RedisConnectionFactory getDefaultConnectionFactory() {
+        return targetConnectionFactories.get(0);
+    }
+
+    List<RedisConnectionFactory> getTargetConnectionFactories() {
+        return targetConnectionFactories;
+    }
+
+    public ScatterGatherExecutor getScatterGatherExecutor() {
+        return scatterGatherExecutor;
+    }
+    /**
+     * Set executor of 'MGET', 'MSET' and 'DEL' fragments, each fragment contains keys of one target, further split by
+     * executor fragment size.
+     */
+    public void setScatterGatherExecutor(ScatterGatherExecutor scatterGatherExecutor) {
+        Assert.notNull(scatterGatherExecutor, "Scatter gather executor must not be null");
+        this.scatterGatherExecutor = scatterGatherExecutor;
+    }
+
+    /**
+     * Connection factory given raw key routed to.
+     */
+    public RedisConnectionFactory getTargetConnectionFactory(byte[] key) {
+        return targetConnectionFactories.get(route(key));
+    }
+
+    /**
+     * Index of target connection factory of given raw key.
+     */
+    int route(byte[] key) {
+        for (int i = 0; i < prefixes.length; i++) {
+            if (startsWith(key, prefixes[i])) {
+                return prefixTargets[i];
+            }
+        }
+        return 0;
+    }
+
+    private static boolean startsWith(byte[] key, byte[] prefix) {
+        if (key.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (key[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public RedisConnection getConnection() {
+        return KeyPrefixRoutingConnectionInvocationHandler.wrap(this);
+    }
+
+    @Override
+    public RedisClusterConnection getClusterConnection() {
+        throw new InvalidDataAccessApiUsageException("Cluster connection is not supported by routing connection factory");
+    }
+
+    @Override
+    public boolean getConvertPipelineAndTxResults() {
+        return getDefaultConnectionFactory().getConvertPipelineAndTxResults();
+    }
+
+    @Override
+    public RedisSentinelConnection getSentinelConnection() {
+        throw new InvalidDataAccessApiUsageException("Sentinel connection is not supported by routing connection factory");
+    }
+
+    @Override
+    public DataAccessException translateExceptionIfPossible(RuntimeException ex) {
+        return getDefaultConnectionFactory().translateExceptionIfPossible(ex);
+    }
+}
@@ -0,0 +1,259 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link InvocationHandler} of {@link RedisConnection} proxy retrieved from {@link KeyPrefixRoutingConnectionFactory},
+ * routing each command to connection of target its keys are routed to. Target connections are retrieved on first use.
+ * 'MGET', 'MSET' and 'DEL' on keys of multiple targets are split and executed by {@link ScatterGatherExecutor}.
+ * <p>
+ * Pipeline, transaction and watched keys pin the connection to the target of the first routed command, until
+ * pipeline closed or transaction executed. Commands routed to other target meanwhile are rejected.
+ * <p>
+ * Subscriptions are routed by channel (or pattern) prefix, the same way 'PUBLISH' is routed by its channel, so all
+ * channels of one subscription must route to one target.
+ *
+ * @author zakyalvan
+ */
+class KeyPrefixRoutingConnectionInvocationHandler implements InvocationHandler {
+    private final KeyPrefixRoutingConnectionFactory connectionFactory;
+
+    private final RedisConnection[] connections;
+
+    private boolean closed = false;
+
+    private boolean pipelined = false;
+
+    private boolean queueing = false;
+
+    private boolean watching = false;
+
+    /**
+     * Index of target pinned by pipeline, transaction or watch, negative if not pinned.
+     */
+    private int pinned = -1;
+
+    /**
+     * Index of target subscribed through this connection, negative if not subscribed.
+     */
+    private int subscribed = -1;
+
+    private KeyPrefixRoutingConnectionInvocationHandler(KeyPrefixRoutingConnectionFactory connectionFactory) {
+        this.connectionFactory = connectionFactory;
+        this.connections = new RedisConnection[connectionFactory.getTargetConnectionFactories().size()];
+    }
+
+    static RedisConnection wrap(KeyPrefixRoutingConnectionFactory connectionFactory) {
+        return (RedisConnection) Proxy.newProxyInstance(RedisConnection.class.getClassLoader(),
+                new Class<?>[]{RedisConnection.class}, new KeyPrefixRoutingConnectionInvocationHandler(connectionFactory));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        switch (name) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "KeyPrefixRoutingConnection" + connectionFactory.getTargetConnectionFactories();
+            case "close":
+                close();
+                return null;
+            case "isClosed":
+                return closed;
+            case "isPipelined":
+                return pipelined;
+            case "isQueueing":
+                return queueing;
+            case "isSubscribed":
+                return subscribed >= 0 && connections[subscribed] != null && connections[subscribed].isSubscribed();
+            case "getSubscription":
+                return subscribed >= 0 && connections[subscribed] != null ? connections[subscribed].getSubscription() : null;
+            case "subscribe":
+            case "pSubscribe":
+                subscribed = route(name, (byte[][]) args[1]);
+                return invokeTarget(subscribed, method, args);
+            case "getNativeConnection":
+                return connection(pinned < 0 ? 0 : pinned).getNativeConnection();
+            case "openPipeline":
+                pipelined = true;
+                return pinned < 0 ? null : invokeTarget(pinned, method, args);
+            case "multi":
+                queueing = true;
+                return pinned < 0 ? null : invokeTarget(pinned, method, args);
+            case "closePipeline":
+                pipelined = false;
+                return endPinned(method, args);
+            case "exec":
+            case "discard":
+                queueing = false;
+                watching = false;
+                return endPinned(method, args);
+            case "unwatch":
+                watching = false;
+                return endPinned(method, args);
+            default:
+                MultiKeyCommand command = MultiKeyCommand.of(method);
+                if (command != null && !pipelined && !queueing && !watching) {
+                    return scatter(method, args);
+                }
+                return invokeTarget(route(name, CommandKeys.of(method, args)), method, args);
+        }
+    }
+
+    /**
+     * Execute splittable multiple keys command on its only target, or split it into fragments by target
+     * (and by fragment size) when keys are routed to multiple targets.
+     */
+    private Object scatter(Method method, Object[] args) throws Throwable {
+        byte[][] keys = CommandKeys.of(method, args);
+        int[] targets = new int[keys.length];
+        int[] counts = new int[connections.length];
+        boolean multipleTargets = false;
+        for (int i = 0; i < keys.length; i++) {
+            targets[i] = connectionFactory.route(keys[i]);
+            counts[targets[i]]++;
+            multipleTargets |= targets[i] != targets[0];
+        }
+        if (!multipleTargets) {
+            return invokeTarget(keys.length == 0 ? 0 : targets[0], method, args);
+        }
+
+        int[][] positions = new int[connections.length][];
+        int[] filled = new int[connections.length];
+        for (int i = 0; i < keys.length; i++) {
+            int target = targets[i];
+            if (positions[target] == null) {
+                positions[target] = new int[counts[target]];
+            }
+            positions[target][filled[target]++] = i;
+        }
+
+        ScatterGatherExecutor executor = connectionFactory.getScatterGatherExecutor();
+        List<int[]> fragments = new ArrayList<>();
+        List<RedisConnectionFactory> factories = new ArrayList<>();
+        List<Integer> fragmentTargets = new ArrayList<>();
+        for (int target = 0; target < positions.length; target++) {
+            if (positions[target] != null) {
+                for (int[] fragment : executor.split(positions[target])) {
+                    fragments.add(fragment);
+                    factories.add(connectionFactory.getTargetConnectionFactories().get(target));
+                    fragmentTargets.add(target);
+                }
+            }
+        }
+        return executor.execute(method, args, fragments, factories, fragment -> connection(fragmentTargets.get(fragment)));
+    }
+
+    private int route(String command, byte[][] keys) {
+        int target = pinned < 0 ? 0 : pinned;
+        if (keys.length > 0) {
+            target = connectionFactory.route(keys[0]);
+            for (int i = 1; i < keys.length; i++) {
+                if (connectionFactory.route(keys[i]) != target) {
+                    throw new InvalidDataAccessApiUsageException("Keys of command '" + command
+                            + "' are routed to multiple connection factories");
+                }
+            }
+        }
+
+        if ("watch".equals(command)) {
+            watching = true;
+        }
+        if (pipelined || queueing || watching) {
+            pin(target);
+        }
+        return target;
+    }
+
+    private void pin(int target) {
+        if (pinned == target) {
+            return;
+        }
+        if (pinned >= 0) {
+            throw new InvalidDataAccessApiUsageException("Pipelined, transactional or watched commands must be routed "
+                    + "to one connection factory, use keys of one prefix");
+        }
+
+        pinned = target;
+        RedisConnection connection = connection(target);
+        if (pipelined) {
+            connection.openPipeline();
+        }
+        if (queueing) {
+            connection.multi();
+        }
+    }
+
+    /**
+     * Forward pipeline or transaction ending command to pinned target, if any, then release the pin when
+     * neither pipeline, transaction nor watch remain.
+     */
+    private Object endPinned(Method method, Object[] args) throws Throwable {
+        Object result = method.getReturnType() == List.class ? Collections.emptyList() : null;
+        if (pinned >= 0) {
+            result = invokeTarget(pinned, method, args);
+        }
+        if (!pipelined && !queueing && !watching) {
+            pinned = -1;
+        }
+        return result;
+    }
+
+    private Object invokeTarget(int target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(connection(target), args);
+        }
+        catch (InvocationTargetException ex) {
+            throw ex.getTargetException();
+        }
+    }
+
+    private RedisConnection connection(int target) {
+        if (closed) {
+            throw new InvalidDataAccessApiUsageException("Routing connection already closed");
+        }
+        if (connections[target] == null) {
+            connections[target] = connectionFactory.getTargetConnectionFactories().get(target).getConnection();
+        }
+        return connections[target];
+    }
+
+    /**
+     * Close every retrieved target connection, even when some of them fail to close.
+     */
+    private void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        RuntimeException failure = null;
+        for (int i = 0; i < connections.length; i++) {
+            if (connections[i] != null) {
+                try {
+                    connections[i].close();
+                }
+                catch (RuntimeException ex) {
+                    failure = failure == null ? ex : failure;
+                }
+                connections[i] = null;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
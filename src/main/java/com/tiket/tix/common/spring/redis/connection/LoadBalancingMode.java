@@ -0,0 +1,137 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Strategy of {@link FailOverCapableConnectionFactory} to select primary candidate of each connection
+ * retrieval. Whichever mode selected, remaining available candidates are tried in fail over order when
+ * primary candidate fail to provide connection.
+ *
+ * @author zakyalvan
+ */
+public enum LoadBalancingMode {
+    /**
+     * Send all traffic to the first available candidate, others are standby.
+     */
+    FAIL_OVER {
+        @Override
+        FailOverCandidate select(RoutingState state, AtomicInteger cursor) {
+            return state.getActive();
+        }
+    },
+
+    /**
+     * Rotate over available candidates, proportional to their weight.
+     */
+    ROUND_ROBIN {
+        @Override
+        FailOverCandidate select(RoutingState state, AtomicInteger cursor) {
+            return state.getWeighted(cursor.getAndIncrement());
+        }
+    },
+
+    /**
+     * Select available candidate with the least outstanding borrowed connections relative to its weight.
+     */
+    LEAST_OUTSTANDING {
+        @Override
+        FailOverCandidate select(RoutingState state, AtomicInteger cursor) {
+            List<FailOverCandidate> available = state.getAvailable();
+            // Start from rotating offset, so that ties are not always resolved to the first candidate.
+            int offset = (cursor.getAndIncrement() & Integer.MAX_VALUE) % available.size();
+
+            FailOverCandidate selected = available.get(offset);
+            for (int i = 1; i < available.size(); i++) {
+                FailOverCandidate candidate = available.get((offset + i) % available.size());
+                if (lessLoaded(candidate, selected)) {
+                    selected = candidate;
+                }
+            }
+            return selected;
+        }
+
+        @Override
+        boolean isTrackOutstanding() {
+            return true;
+        }
+    },
+
+    /**
+     * Pick two random candidates (weighted), select the one with less outstanding borrowed connections.
+     */
+    POWER_OF_TWO_CHOICES {
+        @Override
+        FailOverCandidate select(RoutingState state, AtomicInteger cursor) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            FailOverCandidate first = state.getWeighted(random.nextInt(Integer.MAX_VALUE));
+            FailOverCandidate second = state.getWeighted(random.nextInt(Integer.MAX_VALUE));
+            return lessLoaded(second, first) ? second : first;
+        }
+
+        @Override
+        boolean isTrackOutstanding() {
+            return true;
+        }
+    },
+
+    /**
+     * Select available candidate with the lowest {@link FailOverCandidate#getLatencyScore() latency score},
+     * i.e. moving average of response time weighted by outstanding borrows, so traffic shift away from
+     * degrading candidate before it fail outright.
+     */
+    LATENCY_AWARE {
+        @Override
+        FailOverCandidate select(RoutingState state, AtomicInteger cursor) {
+            List<FailOverCandidate> available = state.getAvailable();
+            int offset = (cursor.getAndIncrement() & Integer.MAX_VALUE) % available.size();
+
+            FailOverCandidate selected = available.get(offset);
+            double selectedScore = selected.getLatencyScore();
+            for (int i = 1; i < available.size(); i++) {
+                FailOverCandidate candidate = available.get((offset + i) % available.size());
+                double score = candidate.getLatencyScore();
+                if (score < selectedScore) {
+                    selected = candidate;
+                    selectedScore = score;
+                }
+            }
+            return selected;
+        }
+
+        @Override
+        boolean isTrackOutstanding() {
+            return true;
+        }
+
+        @Override
+        boolean isTrackLatency() {
+            return true;
+        }
+    };
+
+    /**
+     * Select primary candidate from given non empty routing state.
+     */
+    abstract FailOverCandidate select(RoutingState state, AtomicInteger cursor);
+
+    /**
+     * Whether this mode require tracking of outstanding borrowed connections.
+     */
+    boolean isTrackOutstanding() {
+        return false;
+    }
+
+    /**
+     * Whether this mode require tracking of response time.
+     */
+    boolean isTrackLatency() {
+        return false;
+    }
+
+    private static boolean lessLoaded(FailOverCandidate candidate, FailOverCandidate than) {
+        // Compare outstanding / weight without division.
+        return (long) candidate.getOutstanding() * than.getWeight() < (long) than.getOutstanding() * candidate.getWeight();
+    }
+}
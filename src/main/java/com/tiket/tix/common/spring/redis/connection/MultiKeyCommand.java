@@ -0,0 +1,140 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.springframework.data.redis.connection.RedisConnection;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Multiple keys commands of {@link RedisConnection} which can be split into independent fragments,
+ * the same commands twemproxy splits across its servers.
+ *
+ * @author zakyalvan
+ */
+enum MultiKeyCommand {
+    /**
+     * 'MGET', fragment results are placed back on original key positions.
+     */
+    MGET {
+        @Override
+        Object[] fragment(Object[] args, int[] positions) {
+            return new Object[]{select((byte[][]) args[0], positions)};
+        }
+
+        @Override
+        Object merge(int keyCount, List<int[]> fragments, List<Object> results) {
+            byte[][] values = new byte[keyCount][];
+            for (int i = 0; i < fragments.size(); i++) {
+                int[] positions = fragments.get(i);
+                @SuppressWarnings("unchecked")
+                List<byte[]> fragmentValues = (List<byte[]>) results.get(i);
+                for (int j = 0; j < positions.length; j++) {
+                    values[positions[j]] = fragmentValues.get(j);
+                }
+            }
+            return new ArrayList<>(Arrays.asList(values));
+        }
+    },
+
+    /**
+     * 'MSET', atomic per fragment only, the same as through twemproxy.
+     */
+    MSET {
+        @Override
+        int keyCount(Object[] args) {
+            return ((Map<?, ?>) args[0]).size();
+        }
+
+        /**
+         * Entries of the tuples map, copied once per command instead of once per fragment.
+         */
+        @Override
+        Object[] index(Object[] args) {
+            return new Object[]{((Map<?, ?>) args[0]).entrySet().toArray(new Map.Entry<?, ?>[0])};
+        }
+
+        @Override
+        Object[] fragment(Object[] args, int[] positions) {
+            Map.Entry<?, ?>[] entries = (Map.Entry<?, ?>[]) args[0];
+
+            Map<Object, Object> fragment = new LinkedHashMap<>(positions.length * 2);
+            for (int position : positions) {
+                fragment.put(entries[position].getKey(), entries[position].getValue());
+            }
+            return new Object[]{fragment};
+        }
+
+        @Override
+        Object merge(int keyCount, List<int[]> fragments, List<Object> results) {
+            return null;
+        }
+    },
+
+    /**
+     * 'DEL', number of deleted keys summed over fragments.
+     */
+    DEL {
+        @Override
+        Object[] fragment(Object[] args, int[] positions) {
+            return new Object[]{select((byte[][]) args[0], positions)};
+        }
+
+        @Override
+        Object merge(int keyCount, List<int[]> fragments, List<Object> results) {
+            long deleted = 0;
+            for (Object result : results) {
+                deleted += (Long) result;
+            }
+            return deleted;
+        }
+    };
+
+    /**
+     * Multiple keys command of given method, or null if the method is not splittable.
+     */
+    static MultiKeyCommand of(Method method) {
+        switch (method.getName()) {
+            case "mGet":
+                return MGET;
+            case "mSet":
+                return MSET;
+            case "del":
+                return DEL;
+            default:
+                return null;
+        }
+    }
+
+    int keyCount(Object[] args) {
+        return ((byte[][]) args[0]).length;
+    }
+
+    /**
+     * Command arguments prepared once per command for positional access by {@link #fragment(Object[], int[])}.
+     */
+    Object[] index(Object[] args) {
+        return args;
+    }
+
+    /**
+     * Arguments of fragment consisting of keys on given positions, from {@link #index(Object[])} arguments.
+     */
+    abstract Object[] fragment(Object[] args, int[] positions);
+
+    /**
+     * Merge results of fragments, in the same order as fragments.
+     */
+    abstract Object merge(int keyCount, List<int[]> fragments, List<Object> results);
+
+    private static byte[][] select(byte[][] keys, int[] positions) {
+        byte[][] selected = new byte[positions.length][];
+        for (int i = 0; i < positions.length; i++) {
+            selected[i] = keys[positions[i]];
+        }
+        return selected;
+    }
+}
@@ -0,0 +1,60 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.springframework.util.Assert;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * In process cache of raw (serialized) values read by 'GET', in front of {@link FailOverCapableConnectionFactory},
+ * see {@link FailOverCapableConnectionFactory#setNearCache(NearCache)}. Keys are cached by the first
+ * {@link NearCacheRegion} whose pattern match them, other keys are never cached.
+ * <p>
+ * Cached keys are invalidated by write commands executed through connections of the same connection factory, and
+ * by {@link #invalidate(byte[])} or {@link #invalidateAll()}. Writes by other application instances are not
+ * observed, so cached value may be stale up to region ttl.
+ *
+ * @author zakyalvan
+ */
+public class NearCache {
+    private final List<NearCacheRegion> regions;
+
+    public NearCache(List<NearCacheRegion> regions) {
+        Assert.notEmpty(regions, "No near cache regions provided");
+        this.regions = Collections.unmodifiableList(new ArrayList<>(regions));
+    }
+
+    public List<NearCacheRegion> getRegions() {
+        return regions;
+    }
+
+    /**
+     * Region caching given key, null if key is not cached.
+     */
+    public NearCacheRegion region(byte[] key) {
+        String keyString = NearCacheRegion.keyString(key);
+        for (NearCacheRegion region : regions) {
+            if (region.matches(keyString)) {
+                return region;
+            }
+        }
+        return null;
+    }
+
+    public void invalidate(byte[] key) {
+        NearCacheRegion region = region(key);
+        if (region != null) {
+            region.invalidate(key);
+        }
+    }
+
+    public void invalidate(String key) {
+        invalidate(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public void invalidateAll() {
+        regions.forEach(NearCacheRegion::invalidateAll);
+    }
+}
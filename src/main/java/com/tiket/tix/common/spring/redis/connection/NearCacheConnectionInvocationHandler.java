@@ -0,0 +1,154 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.springframework.data.redis.connection.RedisConnection;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * {@link InvocationHandler} of {@link RedisConnection} proxy answering 'GET' of keys cached by {@link NearCache}
+ * without retrieving target connection, which is retrieved on first command not answered from cache. Values read
+ * by 'GET' are cached, and keys of any other command except read only ones are invalidated after executed. Inside
+ * pipeline or transaction nothing is answered from cache, and written keys are invalidated again once pipeline
+ * closed or transaction executed.
+ *
+ * @author zakyalvan
+ */
+class NearCacheConnectionInvocationHandler implements InvocationHandler {
+    /**
+     * Commands which never modify their keys.
+     */
+    private static final Set<String> READ_COMMANDS = new HashSet<>(Arrays.asList(
+            "get", "mGet", "exists", "ttl", "pTtl", "type", "strLen", "getRange", "getBit", "bitCount", "dump",
+            "hGet", "hMGet", "hGetAll", "hKeys", "hVals", "hLen", "hExists", "hScan",
+            "lRange", "lLen", "lIndex", "sMembers", "sCard", "sIsMember", "sRandMember", "sScan",
+            "zRange", "zRangeWithScores", "zRevRange", "zRevRangeWithScores", "zRangeByScore", "zRangeByScoreWithScores",
+            "zRevRangeByScore", "zRevRangeByScoreWithScores", "zCount", "zCard", "zScore", "zRank", "zRevRank", "zScan",
+            "pfCount", "watch"));
+
+    private final Supplier<RedisConnection> targetSupplier;
+
+    private final NearCache nearCache;
+
+    private RedisConnection target;
+
+    private boolean closed = false;
+
+    /**
+     * Keys written inside current pipeline or transaction.
+     */
+    private final List<byte[]> pendingKeys = new ArrayList<>();
+
+    private NearCacheConnectionInvocationHandler(Supplier<RedisConnection> targetSupplier, NearCache nearCache) {
+        this.targetSupplier = targetSupplier;
+        this.nearCache = nearCache;
+    }
+
+    static RedisConnection wrap(Supplier<RedisConnection> targetSupplier, NearCache nearCache) {
+        return (RedisConnection) Proxy.newProxyInstance(RedisConnection.class.getClassLoader(),
+                new Class<?>[]{RedisConnection.class}, new NearCacheConnectionInvocationHandler(targetSupplier, nearCache));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        switch (name) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "NearCacheConnection[" + (target != null ? target : "not retrieved") + "]";
+            case "close":
+                closed = true;
+                if (target != null) {
+                    target.close();
+                }
+                return null;
+            case "isClosed":
+                return target != null ? target.isClosed() : closed;
+            case "isPipelined":
+            case "isQueueing":
+            case "isSubscribed":
+                return target != null && (Boolean) invokeTarget(method, args);
+            case "getSubscription":
+                return target != null ? invokeTarget(method, args) : null;
+            case "get":
+                return get(method, args);
+            case "flushDb":
+            case "flushAll":
+                try {
+                    return invokeTarget(method, args);
+                }
+                finally {
+                    nearCache.invalidateAll();
+                }
+            case "closePipeline":
+            case "exec":
+            case "discard":
+                try {
+                    return invokeTarget(method, args);
+                }
+                finally {
+                    pendingKeys.forEach(nearCache::invalidate);
+                    pendingKeys.clear();
+                }
+            default:
+        }
+
+        if (READ_COMMANDS.contains(name)) {
+            return invokeTarget(method, args);
+        }
+        byte[][] keys = CommandKeys.of(method, args);
+        try {
+            return invokeTarget(method, args);
+        }
+        finally {
+            for (byte[] key : keys) {
+                nearCache.invalidate(key);
+            }
+            if (keys.length > 0 && target != null && (target.isPipelined() || target.isQueueing())) {
+                pendingKeys.addAll(Arrays.asList(keys));
+            }
+        }
+    }
+
+    private Object get(Method method, Object[] args) throws Throwable {
+        byte[] key = (byte[]) args[0];
+        NearCacheRegion region = nearCache.region(key);
+        if (region == null || (target != null && (target.isPipelined() || target.isQueueing()))) {
+            return invokeTarget(method, args);
+        }
+
+        byte[] cached = region.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = region.generation();
+        byte[] value = (byte[]) invokeTarget(method, args);
+        if (value != null) {
+            region.put(key, value, generation);
+        }
+        return value;
+    }
+
+    private Object invokeTarget(Method method, Object[] args) throws Throwable {
+        if (target == null) {
+            target = targetSupplier.get();
+        }
+        try {
+            return method.invoke(target, args);
+        }
+        catch (InvocationTargetException ex) {
+            throw ex.getTargetException();
+        }
+    }
+}
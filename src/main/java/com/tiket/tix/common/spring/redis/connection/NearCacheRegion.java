@@ -0,0 +1,149 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.util.Assert;
+import org.springframework.util.PatternMatchUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One region of {@link NearCache}, caching raw values of keys matching a simple pattern (e.g. 'config:*', see
+ * {@link PatternMatchUtils#simpleMatch(String, String)}), bounded by number of entries or by bytes of keys and
+ * values, evicted by Caffeine W-TinyLFU policy and expired after write.
+ *
+ * @author zakyalvan
+ */
+public class NearCacheRegion {
+    private final String name;
+
+    private final String pattern;
+
+    private final Cache<ByteBuffer, byte[]> cache;
+
+    /**
+     * Incremented on every invalidation, so that value read before invalidation is not cached after it.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * @param name       region name
+     * @param pattern    simple pattern of cached keys
+     * @param maxEntries maximum number of cached entries, ignored when max bytes is positive
+     * @param maxBytes   maximum total bytes of cached keys and values, zero or negative to bound by entries
+     * @param ttl        time in milliseconds cached entry expire after written
+     */
+    public NearCacheRegion(String name, String pattern, long maxEntries, long maxBytes, long ttl) {
+        Assert.hasText(name, "Region name must not be empty");
+        Assert.hasText(pattern, "Region key pattern must not be empty");
+        Assert.isTrue(maxBytes > 0 || maxEntries > 0, "Either max entries or max bytes must be positive");
+        Assert.isTrue(ttl > 0, "Region ttl must be positive");
+
+        this.name = name;
+        this.pattern = pattern;
+
+        Caffeine<Object, Object> builder = Caffeine.newBuilder()
+                .expireAfterWrite(ttl, TimeUnit.MILLISECONDS)
+                .recordStats();
+        if (maxBytes > 0) {
+            this.cache = builder.maximumWeight(maxBytes)
+                    .<ByteBuffer, byte[]>weigher((key, value) -> key.remaining() + value.length)
+                    .build();
+        }
+        else {
+            this.cache = builder.maximumSize(maxEntries).build();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public boolean matches(String key) {
+        return PatternMatchUtils.simpleMatch(pattern, key);
+    }
+
+    /**
+     * Cached value of given key, null if not cached.
+     */
+    public byte[] get(byte[] key) {
+        return cache.getIfPresent(ByteBuffer.wrap(key));
+    }
+
+    /**
+     * Current generation, to be passed to {@link #put(byte[], byte[], long)} of value read after this call.
+     */
+    long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Cache value read from redis, unless invalidation happened since given generation.
+     */
+    void put(byte[] key, byte[] value, long generation) {
+        if (this.generation.get() == generation) {
+            cache.put(ByteBuffer.wrap(key.clone()), value);
+            if (this.generation.get() != generation) {
+                cache.invalidate(ByteBuffer.wrap(key));
+            }
+        }
+    }
+
+    public void invalidate(byte[] key) {
+        generation.incrementAndGet();
+        cache.invalidate(ByteBuffer.wrap(key));
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    public long getSize() {
+        return cache.estimatedSize();
+    }
+
+    public long getHitCount() {
+        return cache.stats().hitCount();
+    }
+
+    public long getMissCount() {
+        return cache.stats().missCount();
+    }
+
+    public double getHitRatio() {
+        return cache.stats().hitRate();
+    }
+
+    public double getMissRatio() {
+        return cache.stats().missRate();
+    }
+
+    public long getEvictionCount() {
+        return cache.stats().evictionCount();
+    }
+
+    /**
+     * Snapshot of underlying cache statistics.
+     */
+    public CacheStats getStatistics() {
+        return cache.stats();
+    }
+
+    @Override
+    public String toString() {
+        return "NearCacheRegion[" + name + ", " + pattern + "]";
+    }
+
+    static String keyString(byte[] key) {
+        return new String(key, StandardCharsets.UTF_8);
+    }
+}
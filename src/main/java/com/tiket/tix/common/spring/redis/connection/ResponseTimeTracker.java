@@ -0,0 +1,68 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.springframework.util.Assert;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Peak exponentially weighted moving average of response time (connection borrow and command latency) of
+ * one {@link FailOverCandidate}. Slower observation raise the average immediately, faster ones decay it
+ * with time constant {@link #getDecayTime()}, so degrading connection factory is detected quickly while
+ * recovering one regain traffic gradually. Average also decay toward zero while no observation recorded,
+ * so idle candidate eventually receive traffic again and refresh its average.
+ * <p>
+ * Recording is lock free and allocation free, concurrent recordings may occasionally lose one observation,
+ * which is acceptable for routing heuristic.
+ *
+ * @author zakyalvan
+ */
+public class ResponseTimeTracker {
+    public static final long DEFAULT_DECAY_TIME = 5_000;
+
+    private volatile double decayNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_DECAY_TIME);
+
+    private volatile double average = 0;
+
+    private volatile long lastUpdate = System.nanoTime();
+
+    /**
+     * Decay time constant in milliseconds.
+     */
+    public long getDecayTime() {
+        return TimeUnit.NANOSECONDS.toMillis((long) decayNanos);
+    }
+    public void setDecayTime(long decayTime) {
+        Assert.isTrue(decayTime > 0, "Decay time must be positive");
+        this.decayNanos = TimeUnit.MILLISECONDS.toNanos(decayTime);
+    }
+
+    /**
+     * Record one observed response time.
+     */
+    public void record(long elapsedNanos) {
+        long now = System.nanoTime();
+        long sinceLast = Math.max(0, now - lastUpdate);
+        lastUpdate = now;
+
+        double current = average;
+        if (elapsedNanos > current) {
+            average = elapsedNanos;
+        }
+        else {
+            double weight = Math.exp(-sinceLast / decayNanos);
+            average = current * weight + elapsedNanos * (1 - weight);
+        }
+    }
+
+    /**
+     * Current average response time in nanoseconds, decayed by idle time since last observation.
+     */
+    public double getAverage() {
+        return decayed(System.nanoTime());
+    }
+
+    private double decayed(long now) {
+        long idle = now - lastUpdate;
+        return idle <= 0 ? average : average * Math.exp(-idle / decayNanos);
+    }
+}
@@ -0,0 +1,136 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.RedisConnection;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * {@link InvocationHandler} of {@link RedisConnection} proxy retrieved from one {@link FailOverCandidate}, retrying
+ * idempotent commands which failed with {@link RedisConnectionFailureException} through connection of another
+ * available candidate, as allowed by {@link CommandRetryPolicy}. Failure is recorded on circuit breaker of the
+ * failed candidate, exactly as failed connection retrieval.
+ * <p>
+ * Once retried, this connection keep sending all later commands through the new connection, the broken one is
+ * closed (returned to its pool as broken). Other commands, and any command of pipeline or transaction, fail to
+ * caller as usual. Idempotent writes are the ones setting absolute state, their reply of a retry may differ from the
+ * reply of an attempt applied before connection broke (e.g. 'DEL' of already deleted key answer zero).
+ *
+ * @author zakyalvan
+ */
+class RetryingConnectionInvocationHandler implements InvocationHandler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(RetryingConnectionInvocationHandler.class);
+
+    /**
+     * Idempotent commands, the reads of {@link HedgedReadConnectionInvocationHandler#HEDGED_COMMANDS} plus writes
+     * which leave the same state when applied twice.
+     */
+    static final Set<String> RETRIED_COMMANDS = new HashSet<>(HedgedReadConnectionInvocationHandler.HEDGED_COMMANDS);
+
+    static {
+        RETRIED_COMMANDS.addAll(Arrays.asList(
+                "ping", "set", "setEx", "pSetEx", "mSet", "hSet", "hMSet", "hDel", "sAdd", "sRem", "zAdd", "zRem",
+                "del", "expire", "pExpire", "expireAt", "pExpireAt", "persist"));
+    }
+
+    private final FailOverCapableConnectionFactory connectionFactory;
+
+    private final CommandRetryPolicy retryPolicy;
+
+    private RedisConnection target;
+
+    private FailOverCandidate candidate;
+
+    private RetryingConnectionInvocationHandler(RedisConnection target, FailOverCandidate candidate,
+            FailOverCapableConnectionFactory connectionFactory, CommandRetryPolicy retryPolicy) {
+        this.target = target;
+        this.candidate = candidate;
+        this.connectionFactory = connectionFactory;
+        this.retryPolicy = retryPolicy;
+    }
+
+    static RedisConnection wrap(RedisConnection target, FailOverCandidate candidate,
+            FailOverCapableConnectionFactory connectionFactory, CommandRetryPolicy retryPolicy) {
+        return (RedisConnection) Proxy.newProxyInstance(RedisConnection.class.getClassLoader(),
+                new Class<?>[]{RedisConnection.class},
+                new RetryingConnectionInvocationHandler(target, candidate, connectionFactory, retryPolicy));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        switch (name) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            default:
+        }
+
+        if (!RETRIED_COMMANDS.contains(name) || target.isPipelined() || target.isQueueing()) {
+            return invokeTarget(method, args);
+        }
+
+        retryPolicy.recordCommand();
+        long started = System.nanoTime();
+        for (int attempts = 1; ; attempts++) {
+            try {
+                return invokeTarget(method, args);
+            }
+            catch (RedisConnectionFailureException ex) {
+                connectionFactory.commandFailed(candidate);
+                if (!retryPolicy.tryAcquireRetry(attempts, started) || !switchTarget()) {
+                    throw ex;
+                }
+                LOGGER.debug("Command '{}' failed on '{}', retried on other connection", name, candidate, ex);
+            }
+        }
+    }
+
+    /**
+     * Replace target by connection of available candidate other than the current (failed) one.
+     *
+     * @return True if target replaced, false if no other candidate could provide connection.
+     */
+    private boolean switchTarget() {
+        List<FailOverCandidate> available = connectionFactory.getAvailableCandidates();
+        for (int i = 0; i < available.size(); i++) {
+            FailOverCandidate other = available.get(i);
+            RedisConnection connection;
+            if (other != candidate && (connection = connectionFactory.candidateConnection(other)) != null) {
+                closeTarget();
+                target = connection;
+                candidate = other;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void closeTarget() {
+        try {
+            target.close();
+        }
+        catch (RuntimeException ex) {
+            LOGGER.trace("Error on closing broken connection", ex);
+        }
+    }
+
+    private Object invokeTarget(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        }
+        catch (InvocationTargetException ex) {
+            throw ex.getTargetException();
+        }
+    }
+}
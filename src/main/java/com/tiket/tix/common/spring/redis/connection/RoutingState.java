@@ -0,0 +1,134 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable snapshot of {@link FailOverCandidate candidates} currently available for routing, in
+ * fail over order. The first available candidate is the active one. Every change produce new instance,
+ * which then atomically swapped by {@link FailOverCapableConnectionFactory}.
+ *
+ * @author zakyalvan
+ */
+final class RoutingState {
+    /**
+     * All configured candidates, in configured order.
+     */
+    private final List<FailOverCandidate> candidates;
+
+    /**
+     * Candidates eligible for routing, subset of {@link #candidates} in the same order.
+     */
+    private final List<FailOverCandidate> available;
+
+    /**
+     * Available candidates repeated by their weight, interleaved using smooth weighted round robin.
+     */
+    private final FailOverCandidate[] weighted;
+
+    RoutingState(List<FailOverCandidate> candidates) {
+        this(candidates, candidates);
+    }
+
+    private RoutingState(List<FailOverCandidate> candidates, List<FailOverCandidate> available) {
+        this.candidates = Collections.unmodifiableList(new ArrayList<>(candidates));
+        this.available = Collections.unmodifiableList(new ArrayList<>(available));
+        this.weighted = interleave(available);
+    }
+
+    private static FailOverCandidate[] interleave(List<FailOverCandidate> available) {
+        int divisor = 0;
+        for (FailOverCandidate candidate : available) {
+            divisor = gcd(divisor, candidate.getWeight());
+        }
+
+        int[] weights = new int[available.size()];
+        int total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = available.get(i).getWeight() / divisor;
+            total += weights[i];
+        }
+
+        FailOverCandidate[] interleaved = new FailOverCandidate[total];
+        int[] current = new int[weights.length];
+        for (int slot = 0; slot < total; slot++) {
+            int selected = 0;
+            for (int i = 0; i < weights.length; i++) {
+                current[i] += weights[i];
+                if (current[i] > current[selected]) {
+                    selected = i;
+                }
+            }
+            current[selected] -= total;
+            interleaved[slot] = available.get(selected);
+        }
+        return interleaved;
+    }
+
+    private static int gcd(int a, int b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+
+    /**
+     * Retrieve currently active candidate, or null if no more candidates available.
+     */
+    FailOverCandidate getActive() {
+        return available.isEmpty() ? null : available.get(0);
+    }
+
+    List<FailOverCandidate> getCandidates() {
+        return candidates;
+    }
+
+    List<FailOverCandidate> getAvailable() {
+        return available;
+    }
+
+    /**
+     * Retrieve available candidate on given position of weighted ring, position wrapped around the ring.
+     */
+    FailOverCandidate getWeighted(int position) {
+        return weighted[(position & Integer.MAX_VALUE) % weighted.length];
+    }
+
+    boolean isAvailable(FailOverCandidate candidate) {
+        return available.contains(candidate);
+    }
+
+    /**
+     * Create new state without given candidate.
+     */
+    RoutingState exclude(FailOverCandidate candidate) {
+        List<FailOverCandidate> remaining = new ArrayList<>(available);
+        remaining.remove(candidate);
+        return new RoutingState(candidates, remaining);
+    }
+
+    /**
+     * Create new state with given candidate re-admitted, keeping configured order.
+     */
+    RoutingState include(FailOverCandidate candidate) {
+        List<FailOverCandidate> admitted = new ArrayList<>(available.size() + 1);
+        for (FailOverCandidate configured : candidates) {
+            if (configured == candidate || available.contains(configured)) {
+                admitted.add(configured);
+            }
+        }
+        return new RoutingState(candidates, admitted);
+    }
+
+    /**
+     * Create new state with given candidates configured. Candidates also configured in this state keep their
+     * availability, other candidates are available.
+     */
+    RoutingState replace(List<FailOverCandidate> configured) {
+        List<FailOverCandidate> admitted = new ArrayList<>(configured.size());
+        for (FailOverCandidate candidate : configured) {
+            if (!candidates.contains(candidate) || available.contains(candidate)) {
+                admitted.add(candidate);
+            }
+        }
+        return new RoutingState(configured, admitted);
+    }
+}
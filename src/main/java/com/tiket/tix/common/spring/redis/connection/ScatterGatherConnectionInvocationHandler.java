@@ -0,0 +1,71 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link InvocationHandler} of {@link RedisConnection} proxy splitting large multiple keys command into fragments of
+ * {@link ScatterGatherExecutor#getFragmentSize()} keys, executed concurrently by calling thread on the target and by
+ * helpers on separate connections retrieved from fragment connection factory. Other commands, and any command of pipeline or transaction, go to the target.
+ *
+ * @author zakyalvan
+ */
+class ScatterGatherConnectionInvocationHandler implements InvocationHandler {
+    private final RedisConnection target;
+
+    private final RedisConnectionFactory fragmentConnectionFactory;
+
+    private final ScatterGatherExecutor executor;
+
+    private ScatterGatherConnectionInvocationHandler(RedisConnection target,
+            RedisConnectionFactory fragmentConnectionFactory, ScatterGatherExecutor executor) {
+        this.target = target;
+        this.fragmentConnectionFactory = fragmentConnectionFactory;
+        this.executor = executor;
+    }
+
+    static RedisConnection wrap(RedisConnection target, RedisConnectionFactory fragmentConnectionFactory,
+            ScatterGatherExecutor executor) {
+        return (RedisConnection) Proxy.newProxyInstance(RedisConnection.class.getClassLoader(),
+                new Class<?>[]{RedisConnection.class},
+                new ScatterGatherConnectionInvocationHandler(target, fragmentConnectionFactory, executor));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch (method.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            default:
+        }
+
+        MultiKeyCommand command = MultiKeyCommand.of(method);
+        if (command != null && command.keyCount(args) > executor.getFragmentSize()
+                && !target.isPipelined() && !target.isQueueing()) {
+            int[] positions = new int[command.keyCount(args)];
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = i;
+            }
+            List<int[]> fragments = executor.split(positions);
+            // Calling thread executes its fragments on target, only helpers borrow from fragment connection factory.
+            return executor.execute(method, args, fragments,
+                    Collections.nCopies(fragments.size(), fragmentConnectionFactory), fragment -> target);
+        }
+
+        try {
+            return method.invoke(target, args);
+        }
+        catch (InvocationTargetException ex) {
+            throw ex.getTargetException();
+        }
+    }
+}
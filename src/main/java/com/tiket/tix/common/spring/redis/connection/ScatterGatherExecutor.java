@@ -0,0 +1,261 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntFunction;
+
+/**
+ * Execute fragments of multiple keys command ('MGET', 'MSET' and 'DEL') concurrently, then merge their results in
+ * original key order.
+ * <p>
+ * Calling thread always take part executing fragments, on connection it already holds, and up to
+ * {@link #getParallelism()} worker threads (shared by all commands) help it, each on its own pooled connection, so
+ * that command never wait for busy worker pool. With zero parallelism, fragments are executed one after another by
+ * calling thread.
+ *
+ * @author zakyalvan
+ */
+public class ScatterGatherExecutor implements DisposableBean {
+    public static final int DEFAULT_FRAGMENT_SIZE = 100;
+
+    public static final int DEFAULT_PARALLELISM = 4;
+
+    private final int fragmentSize;
+
+    private final int parallelism;
+
+    private final ExecutorService workers;
+
+    public ScatterGatherExecutor() {
+        this(DEFAULT_FRAGMENT_SIZE, DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * @param fragmentSize maximum number of keys of one fragment
+     * @param parallelism  number of worker threads executing fragments along with calling thread, zero to execute
+     *                     fragments sequentially
+     */
+    public ScatterGatherExecutor(int fragmentSize, int parallelism) {
+        Assert.isTrue(fragmentSize > 0, "Fragment size must be positive");
+        Assert.isTrue(parallelism >= 0, "Parallelism must not be negative");
+
+        this.fragmentSize = fragmentSize;
+        this.parallelism = parallelism;
+        if (parallelism > 0) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("redis-scatter-");
+            threadFactory.setDaemon(true);
+            this.workers = new ThreadPoolExecutor(parallelism, parallelism, 0, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(), threadFactory);
+        }
+        else {
+            this.workers = null;
+        }
+    }
+
+    public int getFragmentSize() {
+        return fragmentSize;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Split given key positions into fragments of at most {@link #getFragmentSize()} keys.
+     */
+    List<int[]> split(int[] positions) {
+        List<int[]> fragments = new ArrayList<>(positions.length / fragmentSize + 1);
+        for (int from = 0; from < positions.length; from += fragmentSize) {
+            fragments.add(Arrays.copyOfRange(positions, from, Math.min(positions.length, from + fragmentSize)));
+        }
+        return fragments;
+    }
+
+    /**
+     * Execute command fragments and merge their results.
+     * <p>
+     * Calling thread executes fragments on connections it already holds, given by {@code callerConnections}, so it
+     * never waits for the pool while holding a connection. Helpers borrow one connection from fragment connection
+     * factory before claiming fragments, so calling thread never waits for a helper still waiting for the pool. Once
+     * every fragment is claimed, calling thread waits only for fragments being executed by helpers, helpers not
+     * started yet are cancelled.
+     *
+     * @param method            multiple keys command method of {@link RedisConnection}
+     * @param args              original command arguments
+     * @param fragments         key positions (in original arguments) of each fragment
+     * @param factories         connection factory of each fragment, used by helpers
+     * @param callerConnections connection held by calling thread for given fragment, not closed by this executor
+     */
+    Object execute(Method method, Object[] args, List<int[]> fragments, List<RedisConnectionFactory> factories,
+            IntFunction<RedisConnection> callerConnections) throws Throwable {
+        MultiKeyCommand command = MultiKeyCommand.of(method);
+        Scatter scatter = new Scatter(method, command.index(args), command, fragments, factories);
+
+        int helpers = workers == null ? 0 : Math.min(parallelism, fragments.size() - 1);
+        List<Future<?>> futures = new ArrayList<>(helpers);
+        for (int i = 0; i < helpers; i++) {
+            futures.add(workers.submit(scatter::help));
+        }
+
+        try {
+            int fragment;
+            while ((fragment = scatter.next.getAndIncrement()) < fragments.size()) {
+                scatter.results.set(fragment, executeFragment(method,
+                        command.fragment(scatter.args, fragments.get(fragment)), callerConnections.apply(fragment)));
+            }
+        }
+        catch (RuntimeException ex) {
+            scatter.fail(ex);
+        }
+        finally {
+            for (Future<?> future : futures) {
+                future.cancel(false);
+            }
+            // Every fragment is claimed at this point, wait for fragments claimed by helpers only.
+            while (scatter.running.get() > 0) {
+                LockSupport.park(scatter);
+            }
+        }
+        if (scatter.failure.get() != null) {
+            throw scatter.failure.get();
+        }
+
+        List<Object> merged = new ArrayList<>(fragments.size());
+        for (int i = 0; i < fragments.size(); i++) {
+            merged.add(scatter.results.get(i));
+        }
+        return command.merge(command.keyCount(args), fragments, merged);
+    }
+
+    private static Object executeFragment(Method method, Object[] args, RedisConnection connection) {
+        try {
+            return method.invoke(connection, args);
+        }
+        catch (InvocationTargetException ex) {
+            Throwable target = ex.getTargetException();
+            if (target instanceof RuntimeException) {
+                throw (RuntimeException) target;
+            }
+            throw new RedisSystemException("Failure on executing '" + method.getName() + "' fragment", target);
+        }
+        catch (IllegalAccessException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * State of one scattered command, shared by calling thread and its helpers.
+     */
+    private static class Scatter {
+        private final Method method;
+
+        /**
+         * Command arguments indexed for positional access, see {@link MultiKeyCommand#index(Object[])}.
+         */
+        private final Object[] args;
+
+        private final MultiKeyCommand command;
+
+        private final List<int[]> fragments;
+
+        private final List<RedisConnectionFactory> factories;
+
+        private final Thread caller = Thread.currentThread();
+
+        private final AtomicInteger next = new AtomicInteger();
+
+        /**
+         * Fragments claimed by helpers and not completed yet.
+         */
+        private final AtomicInteger running = new AtomicInteger();
+
+        private final AtomicReferenceArray<Object> results;
+
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        private Scatter(Method method, Object[] args, MultiKeyCommand command, List<int[]> fragments,
+                List<RedisConnectionFactory> factories) {
+            this.method = method;
+            this.args = args;
+            this.command = command;
+            this.fragments = fragments;
+            this.factories = factories;
+            this.results = new AtomicReferenceArray<>(fragments.size());
+        }
+
+        /**
+         * Borrow connection of next unclaimed fragment, then claim and execute fragments of the same connection
+         * factory while any left.
+         */
+        private void help() {
+            int fragment;
+            while ((fragment = next.get()) < fragments.size()) {
+                RedisConnectionFactory factory = factories.get(fragment);
+                RedisConnection connection;
+                try {
+                    connection = factory.getConnection();
+                }
+                catch (RuntimeException ex) {
+                    // Fragments left to calling thread.
+                    return;
+                }
+                try {
+                    while ((fragment = next.get()) < fragments.size() && factories.get(fragment) == factory) {
+                        running.incrementAndGet();
+                        try {
+                            if (next.compareAndSet(fragment, fragment + 1)) {
+                                results.set(fragment, executeFragment(method,
+                                        command.fragment(args, fragments.get(fragment)), connection));
+                            }
+                        }
+                        catch (RuntimeException ex) {
+                            fail(ex);
+                        }
+                        finally {
+                            if (running.decrementAndGet() == 0) {
+                                LockSupport.unpark(caller);
+                            }
+                        }
+                    }
+                }
+                finally {
+                    connection.close();
+                }
+            }
+        }
+
+        /**
+         * Record the first failure and stop claiming remaining fragments.
+         */
+        private void fail(Throwable ex) {
+            failure.compareAndSet(null, ex);
+            next.set(fragments.size());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+/**
+ * Key distribution of twemproxy (nutcracker) server pool, mapping key hash to shard.
+ *
+ * @author zakyalvan
+ */
+public enum ShardDistribution {
+    /**
+     * Consistent hashing, 160 points per shard (scaled by weight) on MD5 continuum of shard names.
+     */
+    KETAMA,
+
+    /**
+     * Key hash modulo total weight of shards.
+     */
+    MODULA
+}
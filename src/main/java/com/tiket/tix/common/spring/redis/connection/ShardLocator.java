@@ -0,0 +1,192 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Locate shard of a key, the same way as twemproxy (nutcracker) server pool with given hash, distribution
+ * and hash tag, so that client side sharding and proxy always agree on key placement. Immutable once
+ * created, lookup is allocation free.
+ *
+ * @author zakyalvan
+ */
+public class ShardLocator {
+    private static final int KETAMA_POINTS_PER_SERVER = 160;
+
+    private static final int KETAMA_POINTS_PER_HASH = 4;
+
+    private final List<ShardNode> nodes;
+
+    private final HashAlgorithm hashAlgorithm;
+
+    private final ShardDistribution distribution;
+
+    private final byte hashTagStart;
+
+    private final byte hashTagEnd;
+
+    private final boolean hashTagged;
+
+    /**
+     * Unsigned continuum points (ketama) in ascending order, unused on modula distribution.
+     */
+    private final long[] points;
+
+    /**
+     * Shard index of each continuum point (ketama) or of each weight unit (modula).
+     */
+    private final int[] owners;
+
+    public ShardLocator(List<ShardNode> nodes, HashAlgorithm hashAlgorithm, ShardDistribution distribution, String hashTag) {
+        Assert.notEmpty(nodes, "No shard nodes provided");
+        Assert.isTrue(nodes.size() <= 0xffff, "Too many shard nodes");
+        Assert.notNull(hashAlgorithm, "Hash algorithm must not be null");
+        Assert.notNull(distribution, "Distribution must not be null");
+        Assert.isTrue(!StringUtils.hasLength(hashTag) || hashTag.length() == 2, "Hash tag must be two characters, e.g. '{}'");
+
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+        this.hashAlgorithm = hashAlgorithm;
+        this.distribution = distribution;
+        this.hashTagged = StringUtils.hasLength(hashTag);
+        this.hashTagStart = hashTagged ? (byte) hashTag.charAt(0) : 0;
+        this.hashTagEnd = hashTagged ? (byte) hashTag.charAt(1) : 0;
+
+        if (distribution == ShardDistribution.KETAMA) {
+            long[] continuum = ketamaContinuum(this.nodes);
+            this.points = new long[continuum.length];
+            this.owners = new int[continuum.length];
+            for (int i = 0; i < continuum.length; i++) {
+                points[i] = continuum[i] >>> 16;
+                owners[i] = (int) (continuum[i] & 0xffff);
+            }
+        }
+        else {
+            this.points = new long[0];
+            this.owners = modulaContinuum(this.nodes);
+        }
+    }
+
+    /**
+     * Build sorted continuum, each element packs unsigned 32 bits point (high bits) and shard index (low 16 bits).
+     * Number of points per shard computed with the same float arithmetic as twemproxy, to keep identical rounding.
+     */
+    private static long[] ketamaContinuum(List<ShardNode> nodes) {
+        int totalWeight = 0;
+        for (ShardNode node : nodes) {
+            totalWeight += node.getWeight();
+        }
+
+        int live = nodes.size();
+        List<Long> continuum = new ArrayList<>(live * KETAMA_POINTS_PER_SERVER);
+        for (int index = 0; index < nodes.size(); index++) {
+            ShardNode node = nodes.get(index);
+            float percent = (float) node.getWeight() / (float) totalWeight;
+            float scaled = (float) ((double) (percent * KETAMA_POINTS_PER_SERVER / 4 * (float) live) + 0.0000000001);
+            int pointsPerServer = (int) Math.floor(scaled) * 4;
+
+            for (int pointer = 1; pointer <= pointsPerServer / KETAMA_POINTS_PER_HASH; pointer++) {
+                byte[] host = (node.getName() + "-" + (pointer - 1)).getBytes(StandardCharsets.UTF_8);
+                byte[] digest = HashAlgorithm.md5(host, 0, host.length);
+                for (int alignment = 0; alignment < KETAMA_POINTS_PER_HASH; alignment++) {
+                    long point = HashAlgorithm.littleEndian(digest, alignment * 4) & 0xffffffffL;
+                    continuum.add(point << 16 | index);
+                }
+            }
+        }
+
+        long[] sorted = new long[continuum.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = continuum.get(i);
+        }
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static int[] modulaContinuum(List<ShardNode> nodes) {
+        List<Integer> continuum = new ArrayList<>();
+        for (int index = 0; index < nodes.size(); index++) {
+            for (int unit = 0; unit < nodes.get(index).getWeight(); unit++) {
+                continuum.add(index);
+            }
+        }
+
+        int[] owners = new int[continuum.size()];
+        for (int i = 0; i < owners.length; i++) {
+            owners[i] = continuum.get(i);
+        }
+        return owners;
+    }
+
+    public List<ShardNode> getNodes() {
+        return nodes;
+    }
+
+    public HashAlgorithm getHashAlgorithm() {
+        return hashAlgorithm;
+    }
+
+    public ShardDistribution getDistribution() {
+        return distribution;
+    }
+
+    /**
+     * Index (in {@link #getNodes()}) of shard owning given key.
+     */
+    public int locate(byte[] key) {
+        Assert.notNull(key, "Key must not be null");
+
+        int offset = 0;
+        int length = key.length;
+        if (hashTagged) {
+            int start = indexOf(key, hashTagStart, 0);
+            if (start >= 0) {
+                int end = indexOf(key, hashTagEnd, start + 1);
+                // Empty tag, e.g. '{}', means the whole key is hashed.
+                if (end - start > 1) {
+                    offset = start + 1;
+                    length = end - offset;
+                }
+            }
+        }
+
+        long hash = hashAlgorithm.hash(key, offset, length) & 0xffffffffL;
+        return distribution == ShardDistribution.KETAMA ? ketamaDispatch(hash) : owners[(int) (hash % owners.length)];
+    }
+
+    public ShardNode locateNode(byte[] key) {
+        return nodes.get(locate(key));
+    }
+
+    /**
+     * First continuum point not less than the hash, wrapping to the first point.
+     */
+    private int ketamaDispatch(long hash) {
+        int left = 0;
+        int right = points.length;
+        while (left < right) {
+            int middle = (left + right) >>> 1;
+            if (points[middle] < hash) {
+                left = middle + 1;
+            }
+            else {
+                right = middle;
+            }
+        }
+        return owners[right == points.length ? 0 : right];
+    }
+
+    private static int indexOf(byte[] key, byte value, int from) {
+        for (int i = from; i < key.length; i++) {
+            if (key[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
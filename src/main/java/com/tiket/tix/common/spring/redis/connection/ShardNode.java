@@ -0,0 +1,92 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.springframework.util.Assert;
+import org.springframework.util.StringUtils;
+
+/**
+ * One backend redis server of sharded pool, described the same way as twemproxy 'servers' entry,
+ * i.e. 'host:port:weight' optionally followed by name.
+ *
+ * @author zakyalvan
+ */
+public class ShardNode {
+    /**
+     * Port omitted from default shard name, for compatibility with libmemcached (and twemproxy).
+     */
+    private static final int KETAMA_DEFAULT_PORT = 11211;
+
+    private final String host;
+
+    private final int port;
+
+    private final int weight;
+
+    /**
+     * Name hashed into ketama continuum, 'host:port' unless explicitly named.
+     */
+    private final String name;
+
+    public ShardNode(String host, int port, int weight) {
+        this(host, port, weight, null);
+    }
+
+    public ShardNode(String host, int port, int weight, String name) {
+        Assert.hasText(host, "Shard host must not be empty");
+        Assert.isTrue(weight > 0, "Shard weight must be positive");
+
+        this.host = host;
+        this.port = port;
+        this.weight = weight;
+        if (StringUtils.hasText(name)) {
+            this.name = name;
+        }
+        else {
+            this.name = port == KETAMA_DEFAULT_PORT ? host : host + ":" + port;
+        }
+    }
+
+    /**
+     * Parse twemproxy server entry, e.g. '127.0.0.1:6379:1' or '127.0.0.1:6379:1 server1'.
+     */
+    public static ShardNode parse(String server) {
+        Assert.hasText(server, "Shard server must not be empty");
+
+        String[] parts = server.trim().split("\\s+", 2);
+        String address = parts[0];
+        String name = parts.length > 1 ? parts[1] : null;
+
+        int weightSeparator = address.lastIndexOf(':');
+        int portSeparator = weightSeparator > 0 ? address.lastIndexOf(':', weightSeparator - 1) : -1;
+        Assert.isTrue(portSeparator > 0, "Shard server must be in 'host:port:weight [name]' format, given '" + server + "'");
+
+        try {
+            return new ShardNode(address.substring(0, portSeparator),
+                    Integer.parseInt(address.substring(portSeparator + 1, weightSeparator)),
+                    Integer.parseInt(address.substring(weightSeparator + 1)), name);
+        }
+        catch (NumberFormatException ex) {
+            throw new IllegalArgumentException("Invalid port or weight of shard server '" + server + "'", ex);
+        }
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,128 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisSentinelConnection;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A {@link RedisConnectionFactory} talking directly to backend redis shards behind twemproxy, skipping the
+ * proxy hop. Keys are placed by {@link ShardLocator} exactly as twemproxy does, so that applications can move
+ * from proxied to direct access path by path while sharing the same data.
+ * <p>
+ * Connection retrieved from this factory route each command to connection of shard owning its keys, shard
+ * connections are borrowed lazily from per shard connection factory and returned together on close.
+ * Like twemproxy, 'MGET', 'MSET' and 'DEL' are split by shard and their results merged, see
+ * {@link #setScatterGatherExecutor(ScatterGatherExecutor)}. Other multiple keys commands are only supported when all
+ * keys belong to one shard (see hash tag), and server wide commands (e.g. 'KEYS', 'FLUSHDB') are not supported,
+ * use {@link #scan(ScanOptions, int)} to walk keys of all shards instead. Pipeline and transaction are supported as long
+ * as all of their commands target one shard.
+ *
+ * @author zakyalvan
+ */
+public class ShardedConnectionFactory implements RedisConnectionFactory {
+    public static final int DEFAULT_SCAN_BUFFER_SIZE = 1000;
+
+    private final ShardLocator locator;
+
+    private final List<RedisConnectionFactory> shardConnectionFactories;
+
+    /**
+     * Executor of multiple keys command fragments, by default fragments are executed sequentially, one per shard.
+     */
+    private volatile ScatterGatherExecutor scatterGatherExecutor = new ScatterGatherExecutor(Integer.MAX_VALUE, 0);
+
+    /**
+     * @param locator                  shard locator of keys
+     * @param shardConnectionFactories connection factory of each shard, in the same order as locator nodes
+     */
+    public ShardedConnectionFactory(ShardLocator locator, List<RedisConnectionFactory> shardConnectionFactories) {
+        Assert.notNull(locator, "Shard locator must not be null");
+        Assert.notEmpty(shardConnectionFactories, "No shard connection factories provided");
+        Assert.isTrue(locator.getNodes().size() == shardConnectionFactories.size(),
+                "Number of shard connection factories must match number of shard nodes");
+
+        this.locator = locator;
+        this.shardConnectionFactories = Collections.unmodifiableList(new ArrayList<>(shardConnectionFactories));
+    }
+
+    public ShardLocator getLocator() {
+        return locator;
+    }
+
+    public List<RedisConnectionFactory> getShardConnectionFactories() {
+        return shardConnectionFactories;
+    }
+
+    public ScatterGatherExecutor getScatterGatherExecutor() {
+        return scatterGatherExecutor;
+    }
+    /**
+     * Set executor of 'MGET', 'MSET' and 'DEL' fragments, each fragment contains keys of one shard, further split by
+     * executor fragment size.
+     */
+    public void setScatterGatherExecutor(ScatterGatherExecutor scatterGatherExecutor) {
+        Assert.notNull(scatterGatherExecutor, "Scatter gather executor must not be null");
+        this.scatterGatherExecutor = scatterGatherExecutor;
+    }
+
+    /**
+     * Connection factory of shard owning given key.
+     */
+    public RedisConnectionFactory getShardConnectionFactory(byte[] key) {
+        return shardConnectionFactories.get(locator.locate(key));
+    }
+
+    /**
+     * Scan keys of all shards concurrently, buffering at most {@link #DEFAULT_SCAN_BUFFER_SIZE} keys.
+     *
+     * @see #scan(ScanOptions, int)
+     */
+    public ShardedKeyScan scan(ScanOptions options) {
+        return scan(options, DEFAULT_SCAN_BUFFER_SIZE);
+    }
+
+    /**
+     * Scan keys of all shards concurrently, by 'SCAN' with given 'MATCH' and 'COUNT' options on each shard.
+     *
+     * @param options    scan options applied to each shard
+     * @param bufferSize maximum number of keys scanned ahead of consumer
+     * @return Iterator of keys, to be closed when not iterated to the end.
+     */
+    public ShardedKeyScan scan(ScanOptions options, int bufferSize) {
+        return new ShardedKeyScan(shardConnectionFactories, options, bufferSize);
+    }
+
+    @Override
+    public RedisConnection getConnection() {
+        return ShardedConnectionInvocationHandler.wrap(this);
+    }
+
+    @Override
+    public RedisClusterConnection getClusterConnection() {
+        throw new InvalidDataAccessApiUsageException("Cluster connection is not supported by sharded connection factory");
+    }
+
+    @Override
+    public boolean getConvertPipelineAndTxResults() {
+        return shardConnectionFactories.get(0).getConvertPipelineAndTxResults();
+    }
+
+    @Override
+    public RedisSentinelConnection getSentinelConnection() {
+        throw new InvalidDataAccessApiUsageException("Sentinel connection is not supported by sharded connection factory");
+    }
+
+    @Override
+    public DataAccessException translateExceptionIfPossible(RuntimeException ex) {
+        return shardConnectionFactories.get(0).translateExceptionIfPossible(ex);
+    }
+}
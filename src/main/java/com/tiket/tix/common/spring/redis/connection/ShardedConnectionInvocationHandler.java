@@ -0,0 +1,267 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * {@link InvocationHandler} of {@link RedisConnection} proxy retrieved from {@link ShardedConnectionFactory},
+ * routing each command to connection of shard owning command keys. Shard connections are retrieved on first use.
+ * 'MGET', 'MSET' and 'DEL' on keys of multiple shards are split and executed by {@link ScatterGatherExecutor}.
+ * <p>
+ * Pipeline, transaction and watched keys pin the connection to the shard of the first routed command, until
+ * pipeline closed or transaction executed. Commands targeting other shard meanwhile are rejected.
+ *
+ * @author zakyalvan
+ */
+class ShardedConnectionInvocationHandler implements InvocationHandler {
+    /**
+     * Keyless commands which may be answered by any shard.
+     */
+    private static final Set<String> ANY_SHARD_COMMANDS = new HashSet<>(Arrays.asList("ping", "echo"));
+
+    private final ShardedConnectionFactory connectionFactory;
+
+    private final RedisConnection[] connections;
+
+    private boolean closed = false;
+
+    private boolean pipelined = false;
+
+    private boolean queueing = false;
+
+    private boolean watching = false;
+
+    /**
+     * Index of shard pinned by pipeline, transaction or watch, negative if not pinned.
+     */
+    private int pinned = -1;
+
+    private ShardedConnectionInvocationHandler(ShardedConnectionFactory connectionFactory) {
+        this.connectionFactory = connectionFactory;
+        this.connections = new RedisConnection[connectionFactory.getShardConnectionFactories().size()];
+    }
+
+    static RedisConnection wrap(ShardedConnectionFactory connectionFactory) {
+        return (RedisConnection) Proxy.newProxyInstance(RedisConnection.class.getClassLoader(),
+                new Class<?>[]{RedisConnection.class}, new ShardedConnectionInvocationHandler(connectionFactory));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        switch (name) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "ShardedConnection" + connectionFactory.getLocator().getNodes();
+            case "close":
+                close();
+                return null;
+            case "isClosed":
+                return closed;
+            case "isPipelined":
+                return pipelined;
+            case "isQueueing":
+                return queueing;
+            case "isSubscribed":
+                return false;
+            case "getSubscription":
+                return null;
+            case "getNativeConnection":
+                if (pinned < 0) {
+                    throw new InvalidDataAccessApiUsageException("Sharded connection has no single native connection");
+                }
+                return connections[pinned].getNativeConnection();
+            case "openPipeline":
+                pipelined = true;
+                return pinned < 0 ? null : invokeShard(pinned, method, args);
+            case "multi":
+                queueing = true;
+                return pinned < 0 ? null : invokeShard(pinned, method, args);
+            case "closePipeline":
+                pipelined = false;
+                return endPinned(method, args);
+            case "exec":
+            case "discard":
+                queueing = false;
+                watching = false;
+                return endPinned(method, args);
+            case "unwatch":
+                watching = false;
+                return endPinned(method, args);
+            default:
+                MultiKeyCommand command = MultiKeyCommand.of(method);
+                if (command != null && !pipelined && !queueing && !watching) {
+                    return scatter(command, method, args);
+                }
+                return invokeShard(route(name, CommandKeys.of(method, args)), method, args);
+        }
+    }
+
+    /**
+     * Execute splittable multiple keys command on its only shard, or split it into fragments by shard
+     * (and by fragment size) when keys belong to multiple shards or exceed fragment size.
+     */
+    private Object scatter(MultiKeyCommand command, Method method, Object[] args) throws Throwable {
+        byte[][] keys = CommandKeys.of(method, args);
+        ShardLocator locator = connectionFactory.getLocator();
+        ScatterGatherExecutor executor = connectionFactory.getScatterGatherExecutor();
+
+        int[] shards = new int[keys.length];
+        int[] counts = new int[connections.length];
+        boolean multipleShards = false;
+        for (int i = 0; i < keys.length; i++) {
+            shards[i] = locator.locate(keys[i]);
+            counts[shards[i]]++;
+            multipleShards |= shards[i] != shards[0];
+        }
+        if (keys.length == 0 || (!multipleShards && keys.length <= executor.getFragmentSize())) {
+            return invokeShard(keys.length == 0 ? 0 : shards[0], method, args);
+        }
+
+        int[][] positions = new int[connections.length][];
+        int[] filled = new int[connections.length];
+        for (int i = 0; i < keys.length; i++) {
+            int shard = shards[i];
+            if (positions[shard] == null) {
+                positions[shard] = new int[counts[shard]];
+            }
+            positions[shard][filled[shard]++] = i;
+        }
+
+        List<int[]> fragments = new ArrayList<>();
+        List<RedisConnectionFactory> factories = new ArrayList<>();
+        List<Integer> fragmentShards = new ArrayList<>();
+        for (int shard = 0; shard < positions.length; shard++) {
+            if (positions[shard] != null) {
+                for (int[] fragment : executor.split(positions[shard])) {
+                    fragments.add(fragment);
+                    factories.add(connectionFactory.getShardConnectionFactories().get(shard));
+                    fragmentShards.add(shard);
+                }
+            }
+        }
+        return executor.execute(method, args, fragments, factories, fragment -> connection(fragmentShards.get(fragment)));
+    }
+
+    private int route(String command, byte[][] keys) {
+        int shard;
+        if (keys.length == 0) {
+            if (!ANY_SHARD_COMMANDS.contains(command)) {
+                throw new InvalidDataAccessApiUsageException("Command '" + command + "' is not supported by sharded connection");
+            }
+            shard = pinned < 0 ? 0 : pinned;
+        }
+        else {
+            ShardLocator locator = connectionFactory.getLocator();
+            shard = locator.locate(keys[0]);
+            for (int i = 1; i < keys.length; i++) {
+                if (locator.locate(keys[i]) != shard) {
+                    throw new InvalidDataAccessApiUsageException("Keys of command '" + command
+                            + "' belong to multiple shards, use hash tag to place them on one shard");
+                }
+            }
+        }
+
+        if ("watch".equals(command)) {
+            watching = true;
+        }
+        if (pipelined || queueing || watching) {
+            pin(shard);
+        }
+        return shard;
+    }
+
+    private void pin(int shard) {
+        if (pinned == shard) {
+            return;
+        }
+        if (pinned >= 0) {
+            throw new InvalidDataAccessApiUsageException("Pipelined, transactional or watched commands must target one shard, "
+                    + "use hash tag to place their keys on one shard");
+        }
+
+        pinned = shard;
+        RedisConnection connection = connection(shard);
+        if (pipelined) {
+            connection.openPipeline();
+        }
+        if (queueing) {
+            connection.multi();
+        }
+    }
+
+    /**
+     * Forward pipeline or transaction ending command to pinned shard, if any, then release the pin when
+     * neither pipeline, transaction nor watch remain.
+     */
+    private Object endPinned(Method method, Object[] args) throws Throwable {
+        Object result = method.getReturnType() == List.class ? Collections.emptyList() : null;
+        if (pinned >= 0) {
+            result = invokeShard(pinned, method, args);
+        }
+        if (!pipelined && !queueing && !watching) {
+            pinned = -1;
+        }
+        return result;
+    }
+
+    private Object invokeShard(int shard, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(connection(shard), args);
+        }
+        catch (InvocationTargetException ex) {
+            throw ex.getTargetException();
+        }
+    }
+
+    private RedisConnection connection(int shard) {
+        if (closed) {
+            throw new InvalidDataAccessApiUsageException("Sharded connection already closed");
+        }
+        if (connections[shard] == null) {
+            connections[shard] = connectionFactory.getShardConnectionFactories().get(shard).getConnection();
+        }
+        return connections[shard];
+    }
+
+    /**
+     * Close every retrieved shard connection, even when some of them fail to close.
+     */
+    private void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        RuntimeException failure = null;
+        for (int i = 0; i < connections.length; i++) {
+            if (connections[i] != null) {
+                try {
+                    connections[i].close();
+                }
+                catch (RuntimeException ex) {
+                    failure = failure == null ? ex : failure;
+                }
+                connections[i] = null;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
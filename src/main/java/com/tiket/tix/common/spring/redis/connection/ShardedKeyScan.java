@@ -0,0 +1,192 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Keys of all shards behind twemproxy, scanned by 'SCAN' cursor of every shard concurrently, one thread and one
+ * connection per shard, and handed to the consuming thread through a bounded buffer. Shard threads block once buffer
+ * is full, so that a slow consumer (e.g. deleting keys) never make the scan hold more than buffer size keys.
+ * <p>
+ * Like 'SCAN', keys existing through the whole scan are returned at least once (once, unless shard rehashed), keys
+ * written or deleted meanwhile may or may not be returned, and keys are not ordered. Failure of any shard fail the
+ * iteration, once keys of the shard already buffered are consumed. Close the scan (e.g. try with resources) when not
+ * iterated to the end, so that shard threads stop and their connections released.
+ *
+ * @author zakyalvan
+ * @see ShardedConnectionFactory#scan(ScanOptions, int)
+ */
+public class ShardedKeyScan implements Iterator<byte[]>, Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShardedKeyScan.class);
+
+    /**
+     * Marker of a shard scan ended, normally or not.
+     */
+    private static final byte[] END = new byte[0];
+
+    private final BlockingQueue<byte[]> buffer = new LinkedBlockingQueue<>();
+
+    /**
+     * Free space of buffer, end markers take none.
+     */
+    private final Semaphore space;
+
+    private final List<Thread> shardThreads;
+
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+    private volatile boolean closed;
+
+    private int remainingShards;
+
+    private byte[] next;
+
+    ShardedKeyScan(List<RedisConnectionFactory> shardConnectionFactories, ScanOptions options, int bufferSize) {
+        Assert.notEmpty(shardConnectionFactories, "No shard connection factories provided");
+        Assert.notNull(options, "Scan options must not be null");
+        Assert.isTrue(bufferSize > 0, "Buffer size must be positive");
+
+        this.space = new Semaphore(bufferSize);
+        this.remainingShards = shardConnectionFactories.size();
+        this.shardThreads = new ArrayList<>(shardConnectionFactories.size());
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("redis-scan-");
+        threadFactory.setDaemon(true);
+        for (RedisConnectionFactory shardConnectionFactory : shardConnectionFactories) {
+            shardThreads.add(threadFactory.newThread(() -> scanShard(shardConnectionFactory, options)));
+        }
+        shardThreads.forEach(Thread::start);
+    }
+
+    private void scanShard(RedisConnectionFactory shardConnectionFactory, ScanOptions options) {
+        try {
+            RedisConnection connection = shardConnectionFactory.getConnection();
+            try {
+                // Cursor not closed, since closing jedis cursor also close its connection.
+                Cursor<byte[]> cursor = connection.scan(options);
+                while (!closed && cursor.hasNext()) {
+                    byte[] key = cursor.next();
+                    space.acquire();
+                    buffer.add(key);
+                }
+            }
+            finally {
+                connection.close();
+            }
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        catch (RuntimeException ex) {
+            if (!closed) {
+                // Cursor iteration does not translate driver exceptions.
+                DataAccessException translated = shardConnectionFactory.translateExceptionIfPossible(ex);
+                failure.compareAndSet(null, translated != null ? translated : ex);
+            }
+        }
+        finally {
+            buffer.add(END);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null) {
+            if (remainingShards == 0) {
+                return false;
+            }
+            byte[] key;
+            try {
+                key = buffer.take();
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new RedisSystemException("Interrupted while waiting for scanned keys", ex);
+            }
+            if (key == END) {
+                remainingShards--;
+                RuntimeException ex = failure.get();
+                if (ex != null) {
+                    close();
+                    throw ex;
+                }
+            }
+            else {
+                space.release();
+                next = key;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public byte[] next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        byte[] key = next;
+        next = null;
+        return key;
+    }
+
+    /**
+     * Sequential stream of scanned keys, closing the stream close the scan.
+     */
+    public Stream<byte[]> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.NONNULL), false)
+                .onClose(this::close);
+    }
+
+    /**
+     * Stop shard threads, waiting for them to release their connections.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        remainingShards = 0;
+        next = null;
+        for (Thread shardThread : shardThreads) {
+            shardThread.interrupt();
+        }
+        for (Thread shardThread : shardThreads) {
+            try {
+                shardThread.join(TimeUnit.SECONDS.toMillis(5));
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (shardThread.isAlive()) {
+                LOGGER.warn("Shard scan thread '{}' did not stop on time", shardThread.getName());
+            }
+        }
+        buffer.clear();
+    }
+}
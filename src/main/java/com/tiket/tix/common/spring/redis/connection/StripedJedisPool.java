@@ -0,0 +1,479 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.apache.commons.pool2.PooledObject;
+import org.apache.commons.pool2.PooledObjectFactory;
+import org.apache.commons.pool2.impl.DefaultPooledObject;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.util.Pool;
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Lock free pool of {@link Jedis}, alternative to {@link ExtendedJedisPool} (commons-pool2) for many request threads.
+ * <p>
+ * Idle connections are kept in an array of slots, one connection each. Thread borrow from and return to slots
+ * starting at its own (thread id derived) stripe, so that threads mostly reuse their last connection and do not
+ * touch the same slot, with only one compare and set per borrow and return. When no idle connection and pool is
+ * exhausted, borrower park on a shared handoff queue, returned connection is transferred directly to a parked
+ * borrower, so waiting borrowers are not starved by returning threads borrowing again.
+ * <p>
+ * Honour 'maxTotal', 'maxIdle' (number of slots), 'maxWaitMillis', 'blockWhenExhausted', 'testOnCreate',
+ * 'testOnBorrow' and 'testOnReturn' of given pool config. 'minIdle' is reached by warming (connections beyond
+ * 'maxIdle' are closed on return, no others). Idle eviction and borrow wait statistics are not supported.
+ *
+ * @author zakyalvan
+ */
+public class StripedJedisPool extends Pool<Jedis> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StripedJedisPool.class);
+
+    /**
+     * Idle slots when neither 'maxIdle' nor 'maxTotal' bounded.
+     */
+    private static final int UNBOUNDED_SLOTS = 1024;
+
+    /**
+     * Longest wait on handoff queue before waiting borrower look at idle slots again. Only a safety net, returning and
+     * destroying threads wake waiting borrowers.
+     */
+    private static final long MAX_HANDOFF_WAIT = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * Handed to waiting borrower when a connection destroyed, telling it to create a new one.
+     */
+    private static final PooledObject<Jedis> CREATE_SIGNAL = new DefaultPooledObject<>(null);
+
+    private final PooledObjectFactory<Jedis> factory;
+
+    private final int maxTotal;
+
+    private final long maxWaitMillis;
+
+    private final boolean blockWhenExhausted;
+
+    private final boolean testOnCreate;
+
+    private final boolean testOnBorrow;
+
+    private final boolean testOnReturn;
+
+    private final AtomicReferenceArray<PooledObject<Jedis>> slots;
+
+    private final int mask;
+
+    private final int maxIdle;
+
+    /**
+     * All connections created by this pool and not yet destroyed, idle or borrowed.
+     */
+    private final ConcurrentMap<Jedis, PooledObject<Jedis>> connections = new ConcurrentHashMap<>();
+
+    private final AtomicInteger total = new AtomicInteger();
+
+    private final AtomicInteger waiters = new AtomicInteger();
+
+    private final LinkedTransferQueue<PooledObject<Jedis>> handoff = new LinkedTransferQueue<>();
+
+    private volatile boolean closed = false;
+
+    public StripedJedisPool(GenericObjectPoolConfig poolConfig, PooledObjectFactory<Jedis> factory) {
+        this.factory = factory;
+        this.maxTotal = poolConfig.getMaxTotal();
+        this.maxWaitMillis = poolConfig.getMaxWaitMillis();
+        this.blockWhenExhausted = poolConfig.getBlockWhenExhausted();
+        this.testOnCreate = poolConfig.getTestOnCreate();
+        this.testOnBorrow = poolConfig.getTestOnBorrow();
+        this.testOnReturn = poolConfig.getTestOnReturn();
+
+        int idleBound = poolConfig.getMaxIdle() >= 0 ? poolConfig.getMaxIdle() : maxTotal >= 0 ? maxTotal : UNBOUNDED_SLOTS;
+        if (maxTotal >= 0) {
+            idleBound = Math.min(idleBound, maxTotal);
+        }
+        this.maxIdle = idleBound;
+        // Power of two slots, those beyond maxIdle are never filled.
+        int capacity = Integer.highestOneBit(Math.max(idleBound, 1) * 2 - 1);
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    @Override
+    public Jedis getResource() {
+        if (closed) {
+            throw new JedisException("Could not get a resource since the pool is closed");
+        }
+
+        PooledObject<Jedis> pooledJedis;
+        try {
+            pooledJedis = borrowObject();
+        }
+        catch (NoSuchElementException ex) {
+            throw new JedisException("Could not get a resource from the pool", ex);
+        }
+        catch (Exception ex) {
+            throw new JedisConnectionException("Could not get a resource from the pool", ex);
+        }
+        Jedis jedis = pooledJedis.getObject();
+        jedis.setDataSource(this);
+        return jedis;
+    }
+
+    private PooledObject<Jedis> borrowObject() throws Exception {
+        long deadline = -1;
+        while (true) {
+            boolean created = false;
+            PooledObject<Jedis> pooledJedis = pollIdle();
+            if (pooledJedis == null) {
+                pooledJedis = create();
+                created = pooledJedis != null;
+            }
+            if (pooledJedis == null) {
+                if (deadline == -1 && maxWaitMillis >= 0) {
+                    deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+                }
+                pooledJedis = awaitIdle(deadline);
+                if (pooledJedis == null) {
+                    // Connection destroyed meanwhile, try to create one.
+                    continue;
+                }
+            }
+
+            pooledJedis.allocate();
+            try {
+                factory.activateObject(pooledJedis);
+                if ((testOnBorrow || created && testOnCreate) && !factory.validateObject(pooledJedis)) {
+                    throw new NoSuchElementException("Unable to validate object");
+                }
+                return pooledJedis;
+            }
+            catch (Exception ex) {
+                destroy(pooledJedis);
+                if (created) {
+                    throw ex;
+                }
+                // Stale idle connection, try the next one.
+            }
+        }
+    }
+
+    /**
+     * Take idle connection from slots, starting at stripe of calling thread.
+     */
+    private PooledObject<Jedis> pollIdle() {
+        int start = stripe();
+        for (int i = 0; i <= mask; i++) {
+            int index = (start + i) & mask;
+            PooledObject<Jedis> pooledJedis = slots.get(index);
+            if (pooledJedis != null && slots.compareAndSet(index, pooledJedis, null)) {
+                return pooledJedis;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Put idle connection into free slot, starting at stripe of calling thread.
+     *
+     * @return Index of slot, or -1 if all slots occupied.
+     */
+    private int offerIdle(PooledObject<Jedis> pooledJedis) {
+        int start = stripe();
+        for (int i = 0; i <= mask; i++) {
+            int index = (start + i) & mask;
+            if (index < maxIdle && slots.get(index) == null && slots.compareAndSet(index, null, pooledJedis)) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private int stripe() {
+        long id = Thread.currentThread().getId();
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+    }
+
+    /**
+     * Create new connection if pool not exhausted.
+     *
+     * @return Created connection or null if pool exhausted.
+     */
+    private PooledObject<Jedis> create() throws Exception {
+        int current;
+        do {
+            current = total.get();
+            if (maxTotal >= 0 && current >= maxTotal) {
+                return null;
+            }
+        }
+        while (!total.compareAndSet(current, current + 1));
+
+        try {
+            PooledObject<Jedis> pooledJedis = factory.makeObject();
+            connections.put(pooledJedis.getObject(), pooledJedis);
+            return pooledJedis;
+        }
+        catch (Exception ex) {
+            total.decrementAndGet();
+            throw ex;
+        }
+    }
+
+    /**
+     * Wait for connection returned by other thread.
+     *
+     * @param deadline Of waiting in {@link System#nanoTime()}, or -1 to wait without bound.
+     * @return Returned connection, or null if a connection destroyed meanwhile, so that new one can be created.
+     */
+    private PooledObject<Jedis> awaitIdle(long deadline) throws Exception {
+        if (!blockWhenExhausted) {
+            throw new NoSuchElementException("Pool exhausted");
+        }
+
+        // Registered before looking at slots again, so that returning and destroying threads, which look at waiters
+        // after slots and total, never miss us.
+        waiters.incrementAndGet();
+        try {
+            while (true) {
+                if (closed) {
+                    throw new IllegalStateException("Pool closed");
+                }
+                PooledObject<Jedis> pooledJedis = pollIdle();
+                if (pooledJedis != null) {
+                    return pooledJedis;
+                }
+                if (maxTotal < 0 || total.get() < maxTotal) {
+                    return null;
+                }
+
+                long remaining = deadline == -1 ? MAX_HANDOFF_WAIT : deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new NoSuchElementException("Timeout waiting for idle object");
+                }
+                pooledJedis = handoff.poll(Math.min(remaining, MAX_HANDOFF_WAIT), TimeUnit.NANOSECONDS);
+                if (pooledJedis == CREATE_SIGNAL) {
+                    return null;
+                }
+                if (pooledJedis != null) {
+                    return pooledJedis;
+                }
+            }
+        }
+        finally {
+            waiters.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void returnResource(Jedis resource) {
+        if (resource != null) {
+            try {
+                resource.resetState();
+                returnResourceObject(resource);
+            }
+            catch (Exception ex) {
+                returnBrokenResource(resource);
+                throw new JedisException("Could not return the resource to the pool", ex);
+            }
+        }
+    }
+
+    @Override
+    public void returnResourceObject(Jedis resource) {
+        PooledObject<Jedis> pooledJedis = connections.get(resource);
+        if (pooledJedis == null || !pooledJedis.deallocate()) {
+            throw new IllegalStateException("Object has already been returned to this pool or is invalid");
+        }
+
+        try {
+            if (testOnReturn && !factory.validateObject(pooledJedis)) {
+                destroy(pooledJedis);
+                return;
+            }
+            factory.passivateObject(pooledJedis);
+        }
+        catch (Exception ex) {
+            destroy(pooledJedis);
+            return;
+        }
+
+        if (closed) {
+            destroy(pooledJedis);
+            return;
+        }
+        if (waiters.get() > 0 && handoff.tryTransfer(pooledJedis)) {
+            return;
+        }
+
+        int index = offerIdle(pooledJedis);
+        if (index < 0) {
+            destroy(pooledJedis);
+            return;
+        }
+        // Borrower registered as waiter but not yet parked might have looked at slots before we put connection into
+        // it, so take it back and hand it over, until it is borrowed by anyone or no more waiter.
+        while (waiters.get() > 0 && !closed) {
+            if (!slots.compareAndSet(index, pooledJedis, null)) {
+                return;
+            }
+            if (handoff.tryTransfer(pooledJedis)) {
+                return;
+            }
+            index = offerIdle(pooledJedis);
+            if (index < 0) {
+                destroy(pooledJedis);
+                return;
+            }
+            Thread.yield();
+        }
+        if (closed) {
+            // Closed concurrently, destroy whatever left in slots.
+            clear();
+        }
+    }
+
+    @Override
+    public void returnBrokenResource(Jedis resource) {
+        if (resource != null) {
+            returnBrokenResourceObject(resource);
+        }
+    }
+
+    @Override
+    protected void returnBrokenResourceObject(Jedis resource) {
+        PooledObject<Jedis> pooledJedis = connections.get(resource);
+        if (pooledJedis != null) {
+            destroy(pooledJedis);
+        }
+    }
+
+    private void destroy(PooledObject<Jedis> pooledJedis) {
+        if (connections.remove(pooledJedis.getObject(), pooledJedis)) {
+            total.decrementAndGet();
+            pooledJedis.invalidate();
+            try {
+                factory.destroyObject(pooledJedis);
+            }
+            catch (Exception ex) {
+                LOGGER.trace("Error on destroying pooled jedis", ex);
+            }
+            signalWaiter();
+        }
+    }
+
+    /**
+     * Wake a parked waiter to create connection in place of destroyed one, while there is room to create.
+     */
+    private void signalWaiter() {
+        while (waiters.get() > 0 && total.get() < maxTotal && !closed) {
+            if (handoff.tryTransfer(CREATE_SIGNAL)) {
+                return;
+            }
+            Thread.yield();
+        }
+    }
+
+    private void clear() {
+        for (int i = 0; i <= mask; i++) {
+            PooledObject<Jedis> pooledJedis = slots.getAndSet(i, null);
+            if (pooledJedis != null) {
+                destroy(pooledJedis);
+            }
+        }
+    }
+
+    /**
+     * Create given number of idle connections, bounded by free slots and 'maxTotal'.
+     */
+    @Override
+    public void addObjects(int count) {
+        try {
+            for (int i = 0; i < count; i++) {
+                PooledObject<Jedis> pooledJedis = create();
+                if (pooledJedis == null) {
+                    return;
+                }
+                if (offerIdle(pooledJedis) < 0) {
+                    destroy(pooledJedis);
+                    return;
+                }
+            }
+        }
+        catch (Exception ex) {
+            throw new JedisException("Error trying to add idle objects", ex);
+        }
+    }
+
+    @Override
+    public int getNumActive() {
+        return closed ? -1 : total.get() - getNumIdle();
+    }
+
+    @Override
+    public int getNumIdle() {
+        if (closed) {
+            return -1;
+        }
+        int idle = 0;
+        for (int i = 0; i <= mask; i++) {
+            if (slots.get(i) != null) {
+                idle++;
+            }
+        }
+        return idle;
+    }
+
+    @Override
+    public int getNumWaiters() {
+        return closed ? -1 : waiters.get();
+    }
+
+    /**
+     * Not tracked, always -1.
+     */
+    @Override
+    public long getMeanBorrowWaitTimeMillis() {
+        return -1;
+    }
+
+    /**
+     * Not tracked, always -1.
+     */
+    @Override
+    public long getMaxBorrowWaitTimeMillis() {
+        return -1;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void close() {
+        destroy();
+    }
+
+    @Override
+    public void destroy() {
+        closeInternalPool();
+    }
+
+    @Override
+    protected void closeInternalPool() {
+        closed = true;
+        clear();
+        // Wake waiters, to fail.
+        while (handoff.tryTransfer(CREATE_SIGNAL)) {
+            // Next waiter.
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token budget capping extra commands (retries, hedges) to a share of eligible commands. Each eligible command
+ * refill given percent of a token, each extra command take one whole token, at most {@value #MAX_TOKENS} tokens
+ * are held, i.e. sent in a burst.
+ *
+ * @author zakyalvan
+ */
+final class TokenBudget {
+    static final long MAX_TOKENS = 100;
+
+    /**
+     * Budget is kept in thousandths of token.
+     */
+    private static final long TOKEN = 1000;
+
+    private static final long MAX_BUDGET = MAX_TOKENS * TOKEN;
+
+    private final long refill;
+
+    private final AtomicLong budget = new AtomicLong(MAX_BUDGET);
+
+    /**
+     * @param percent share of eligible commands, in percent, which may be followed by an extra command
+     */
+    TokenBudget(int percent) {
+        this.refill = percent * TOKEN / 100;
+    }
+
+    /**
+     * Refill budget for one eligible command.
+     */
+    void deposit() {
+        long current;
+        while ((current = budget.get()) < MAX_BUDGET && !budget.compareAndSet(current, Math.min(current + refill, MAX_BUDGET))) {
+            // Retry on contention.
+        }
+    }
+
+    /**
+     * Take one token.
+     *
+     * @return True if budget had a whole token.
+     */
+    boolean tryAcquire() {
+        long current;
+        while ((current = budget.get()) >= TOKEN) {
+            if (budget.compareAndSet(current, current - TOKEN)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Give back one token taken but not used.
+     */
+    void release() {
+        long current;
+        while ((current = budget.get()) < MAX_BUDGET && !budget.compareAndSet(current, Math.min(current + TOKEN, MAX_BUDGET))) {
+            // Retry on contention.
+        }
+    }
+}
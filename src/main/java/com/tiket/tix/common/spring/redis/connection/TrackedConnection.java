@@ -0,0 +1,2367 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.springframework.data.geo.Circle;
+import org.springframework.data.geo.Distance;
+import org.springframework.data.geo.GeoResults;
+import org.springframework.data.geo.Metric;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.connection.DataType;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisGeoCommands;
+import org.springframework.data.redis.connection.RedisListCommands;
+import org.springframework.data.redis.connection.RedisNode;
+import org.springframework.data.redis.connection.RedisSentinelConnection;
+import org.springframework.data.redis.connection.RedisServerCommands;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.SortParameters;
+import org.springframework.data.redis.connection.Subscription;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.core.types.RedisClientInfo;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link RedisConnection} retrieved from one {@link FailOverCandidate}, optionally releasing the candidate borrow and
+ * {@link AdaptiveConcurrencyLimiter} permit (sampling time since retrieval) when closed, recording command latency
+ * into candidate {@link ResponseTimeTracker} and into candidate {@link ConnectionMetricsRecorder}.
+ * <p>
+ * Plain delegation rather than a JDK proxy, so that tracking allocates nothing per command, only this object per
+ * retrieval. Commands of pipeline or transaction are only queued, their latency recorded once on 'closePipeline' or
+ * 'exec' instead. See {@code TrackedConnectionBenchmark} of 'jmh' profile.
+ *
+ * @author zakyalvan
+ */
+class TrackedConnection implements RedisConnection {
+    /**
+     * Start time of command not recorded.
+     */
+    private static final long NOT_RECORDED = Long.MIN_VALUE;
+
+    private final FailOverCandidate candidate;
+
+    private final RedisConnection delegate;
+
+    private final boolean trackOutstanding;
+
+    private final boolean trackLatency;
+
+    private final ConnectionMetricsRecorder recorder;
+
+    private final AdaptiveConcurrencyLimiter limiter;
+
+    /**
+     * Time the limiter permit acquired, from {@link System#nanoTime()}.
+     */
+    private final long acquired;
+
+    /**
+     * Commands of pipeline or transaction only queued, latency recorded on 'closePipeline' or 'exec' instead.
+     */
+    private boolean queueing = false;
+
+    private boolean released = false;
+
+    TrackedConnection(FailOverCandidate candidate, RedisConnection delegate, boolean trackOutstanding,
+            boolean trackLatency, ConnectionMetricsRecorder recorder, AdaptiveConcurrencyLimiter limiter, long acquired) {
+        this.candidate = candidate;
+        this.delegate = delegate;
+        this.trackOutstanding = trackOutstanding;
+        this.trackLatency = trackLatency;
+        this.recorder = recorder;
+        this.limiter = limiter;
+        this.acquired = acquired;
+    }
+
+    private long started() {
+        return (trackLatency || recorder != null) && !queueing ? System.nanoTime() : NOT_RECORDED;
+    }
+
+    private void record(String command, long started) {
+        if (started == NOT_RECORDED) {
+            return;
+        }
+        long elapsed = System.nanoTime() - started;
+        if (trackLatency) {
+            candidate.getResponseTimeTracker().record(elapsed);
+        }
+        if (recorder != null) {
+            recorder.recordCommand(command, elapsed);
+        }
+    }
+
+    /**
+     * Connection is not thread safe, so closed from one thread only, but guard against repeated close.
+     */
+    private void release() {
+        if (released) {
+            return;
+        }
+        released = true;
+        if (trackOutstanding) {
+            candidate.release();
+        }
+        if (limiter != null) {
+            limiter.release(System.nanoTime() - acquired);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            delegate.close();
+        }
+        finally {
+            release();
+        }
+    }
+
+    @Override
+    public void openPipeline() {
+        queueing = true;
+        delegate.openPipeline();
+    }
+
+    @Override
+    public List<Object> closePipeline() {
+        queueing = false;
+        long started = started();
+        try {
+            return delegate.closePipeline();
+        }
+        finally {
+            record("closePipeline", started);
+        }
+    }
+
+    @Override
+    public void multi() {
+        queueing = true;
+        delegate.multi();
+    }
+
+    @Override
+    public List<Object> exec() {
+        queueing = false;
+        long started = started();
+        try {
+            return delegate.exec();
+        }
+        finally {
+            record("exec", started);
+        }
+    }
+
+    @Override
+    public void discard() {
+        queueing = false;
+        long started = started();
+        try {
+            delegate.discard();
+        }
+        finally {
+            record("discard", started);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return delegate.toString();
+    }
+
+    // HyperLogLogCommands
+
+    @Override
+    public Long pfAdd(byte[] key, byte[]... values) {
+        long started = started();
+        try {
+            return delegate.pfAdd(key, values);
+        }
+        finally {
+            record("pfAdd", started);
+        }
+    }
+
+    @Override
+    public Long pfCount(byte[]... keys) {
+        long started = started();
+        try {
+            return delegate.pfCount(keys);
+        }
+        finally {
+            record("pfCount", started);
+        }
+    }
+
+    @Override
+    public void pfMerge(byte[] destinationKey, byte[]... sourceKeys) {
+        long started = started();
+        try {
+            delegate.pfMerge(destinationKey, sourceKeys);
+        }
+        finally {
+            record("pfMerge", started);
+        }
+    }
+
+    // RedisCommands
+
+    @Override
+    public Object execute(String command, byte[]... args) {
+        long started = started();
+        try {
+            return delegate.execute(command, args);
+        }
+        finally {
+            record("execute", started);
+        }
+    }
+
+    // RedisConnection
+
+    @Override
+    public Object getNativeConnection() {
+        return delegate.getNativeConnection();
+    }
+
+    @Override
+    public RedisSentinelConnection getSentinelConnection() {
+        return delegate.getSentinelConnection();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return delegate.isClosed();
+    }
+
+    @Override
+    public boolean isPipelined() {
+        return delegate.isPipelined();
+    }
+
+    @Override
+    public boolean isQueueing() {
+        return delegate.isQueueing();
+    }
+
+    // RedisConnectionCommands
+
+    @Override
+    public byte[] echo(byte[] message) {
+        long started = started();
+        try {
+            return delegate.echo(message);
+        }
+        finally {
+            record("echo", started);
+        }
+    }
+
+    @Override
+    public String ping() {
+        long started = started();
+        try {
+            return delegate.ping();
+        }
+        finally {
+            record("ping", started);
+        }
+    }
+
+    @Override
+    public void select(int dbIndex) {
+        long started = started();
+        try {
+            delegate.select(dbIndex);
+        }
+        finally {
+            record("select", started);
+        }
+    }
+
+    // RedisGeoCommands
+
+    @Override
+    public Long geoAdd(byte[] key, Point point, byte[] member) {
+        long started = started();
+        try {
+            return delegate.geoAdd(key, point, member);
+        }
+        finally {
+            record("geoAdd", started);
+        }
+    }
+
+    @Override
+    public Long geoAdd(byte[] key, RedisGeoCommands.GeoLocation<byte[]> location) {
+        long started = started();
+        try {
+            return delegate.geoAdd(key, location);
+        }
+        finally {
+            record("geoAdd", started);
+        }
+    }
+
+    @Override
+    public Long geoAdd(byte[] key, Iterable<RedisGeoCommands.GeoLocation<byte[]>> locations) {
+        long started = started();
+        try {
+            return delegate.geoAdd(key, locations);
+        }
+        finally {
+            record("geoAdd", started);
+        }
+    }
+
+    @Override
+    public Long geoAdd(byte[] key, Map<byte[], Point> memberCoordinateMap) {
+        long started = started();
+        try {
+            return delegate.geoAdd(key, memberCoordinateMap);
+        }
+        finally {
+            record("geoAdd", started);
+        }
+    }
+
+    @Override
+    public Distance geoDist(byte[] key, byte[] member1, byte[] member2, Metric metric) {
+        long started = started();
+        try {
+            return delegate.geoDist(key, member1, member2, metric);
+        }
+        finally {
+            record("geoDist", started);
+        }
+    }
+
+    @Override
+    public Distance geoDist(byte[] key, byte[] member1, byte[] member2) {
+        long started = started();
+        try {
+            return delegate.geoDist(key, member1, member2);
+        }
+        finally {
+            record("geoDist", started);
+        }
+    }
+
+    @Override
+    public List<String> geoHash(byte[] key, byte[]... members) {
+        long started = started();
+        try {
+            return delegate.geoHash(key, members);
+        }
+        finally {
+            record("geoHash", started);
+        }
+    }
+
+    @Override
+    public List<Point> geoPos(byte[] key, byte[]... members) {
+        long started = started();
+        try {
+            return delegate.geoPos(key, members);
+        }
+        finally {
+            record("geoPos", started);
+        }
+    }
+
+    @Override
+    public GeoResults<RedisGeoCommands.GeoLocation<byte[]>> geoRadius(byte[] key, Circle within, RedisGeoCommands.GeoRadiusCommandArgs args) {
+        long started = started();
+        try {
+            return delegate.geoRadius(key, within, args);
+        }
+        finally {
+            record("geoRadius", started);
+        }
+    }
+
+    @Override
+    public GeoResults<RedisGeoCommands.GeoLocation<byte[]>> geoRadius(byte[] key, Circle within) {
+        long started = started();
+        try {
+            return delegate.geoRadius(key, within);
+        }
+        finally {
+            record("geoRadius", started);
+        }
+    }
+
+    @Override
+    public GeoResults<RedisGeoCommands.GeoLocation<byte[]>> geoRadiusByMember(byte[] key, byte[] member, Distance radius, RedisGeoCommands.GeoRadiusCommandArgs args) {
+        long started = started();
+        try {
+            return delegate.geoRadiusByMember(key, member, radius, args);
+        }
+        finally {
+            record("geoRadiusByMember", started);
+        }
+    }
+
+    @Override
+    public GeoResults<RedisGeoCommands.GeoLocation<byte[]>> geoRadiusByMember(byte[] key, byte[] member, Distance radius) {
+        long started = started();
+        try {
+            return delegate.geoRadiusByMember(key, member, radius);
+        }
+        finally {
+            record("geoRadiusByMember", started);
+        }
+    }
+
+    @Override
+    public GeoResults<RedisGeoCommands.GeoLocation<byte[]>> geoRadiusByMember(byte[] key, byte[] member, double radius) {
+        long started = started();
+        try {
+            return delegate.geoRadiusByMember(key, member, radius);
+        }
+        finally {
+            record("geoRadiusByMember", started);
+        }
+    }
+
+    @Override
+    public Long geoRemove(byte[] key, byte[]... members) {
+        long started = started();
+        try {
+            return delegate.geoRemove(key, members);
+        }
+        finally {
+            record("geoRemove", started);
+        }
+    }
+
+    // RedisHashCommands
+
+    @Override
+    public Long hDel(byte[] key, byte[]... fields) {
+        long started = started();
+        try {
+            return delegate.hDel(key, fields);
+        }
+        finally {
+            record("hDel", started);
+        }
+    }
+
+    @Override
+    public Boolean hExists(byte[] key, byte[] field) {
+        long started = started();
+        try {
+            return delegate.hExists(key, field);
+        }
+        finally {
+            record("hExists", started);
+        }
+    }
+
+    @Override
+    public byte[] hGet(byte[] key, byte[] field) {
+        long started = started();
+        try {
+            return delegate.hGet(key, field);
+        }
+        finally {
+            record("hGet", started);
+        }
+    }
+
+    @Override
+    public Map<byte[], byte[]> hGetAll(byte[] key) {
+        long started = started();
+        try {
+            return delegate.hGetAll(key);
+        }
+        finally {
+            record("hGetAll", started);
+        }
+    }
+
+    @Override
+    public Double hIncrBy(byte[] key, byte[] field, double delta) {
+        long started = started();
+        try {
+            return delegate.hIncrBy(key, field, delta);
+        }
+        finally {
+            record("hIncrBy", started);
+        }
+    }
+
+    @Override
+    public Long hIncrBy(byte[] key, byte[] field, long delta) {
+        long started = started();
+        try {
+            return delegate.hIncrBy(key, field, delta);
+        }
+        finally {
+            record("hIncrBy", started);
+        }
+    }
+
+    @Override
+    public Set<byte[]> hKeys(byte[] key) {
+        long started = started();
+        try {
+            return delegate.hKeys(key);
+        }
+        finally {
+            record("hKeys", started);
+        }
+    }
+
+    @Override
+    public Long hLen(byte[] key) {
+        long started = started();
+        try {
+            return delegate.hLen(key);
+        }
+        finally {
+            record("hLen", started);
+        }
+    }
+
+    @Override
+    public List<byte[]> hMGet(byte[] key, byte[]... fields) {
+        long started = started();
+        try {
+            return delegate.hMGet(key, fields);
+        }
+        finally {
+            record("hMGet", started);
+        }
+    }
+
+    @Override
+    public void hMSet(byte[] key, Map<byte[], byte[]> tuple) {
+        long started = started();
+        try {
+            delegate.hMSet(key, tuple);
+        }
+        finally {
+            record("hMSet", started);
+        }
+    }
+
+    @Override
+    public Cursor<Map.Entry<byte[], byte[]>> hScan(byte[] key, ScanOptions options) {
+        long started = started();
+        try {
+            return delegate.hScan(key, options);
+        }
+        finally {
+            record("hScan", started);
+        }
+    }
+
+    @Override
+    public Boolean hSet(byte[] key, byte[] field, byte[] value) {
+        long started = started();
+        try {
+            return delegate.hSet(key, field, value);
+        }
+        finally {
+            record("hSet", started);
+        }
+    }
+
+    @Override
+    public Boolean hSetNX(byte[] key, byte[] field, byte[] value) {
+        long started = started();
+        try {
+            return delegate.hSetNX(key, field, value);
+        }
+        finally {
+            record("hSetNX", started);
+        }
+    }
+
+    @Override
+    public List<byte[]> hVals(byte[] key) {
+        long started = started();
+        try {
+            return delegate.hVals(key);
+        }
+        finally {
+            record("hVals", started);
+        }
+    }
+
+    // RedisKeyCommands
+
+    @Override
+    public Long del(byte[]... keys) {
+        long started = started();
+        try {
+            return delegate.del(keys);
+        }
+        finally {
+            record("del", started);
+        }
+    }
+
+    @Override
+    public byte[] dump(byte[] key) {
+        long started = started();
+        try {
+            return delegate.dump(key);
+        }
+        finally {
+            record("dump", started);
+        }
+    }
+
+    @Override
+    public Boolean exists(byte[] key) {
+        long started = started();
+        try {
+            return delegate.exists(key);
+        }
+        finally {
+            record("exists", started);
+        }
+    }
+
+    @Override
+    public Boolean expire(byte[] key, long seconds) {
+        long started = started();
+        try {
+            return delegate.expire(key, seconds);
+        }
+        finally {
+            record("expire", started);
+        }
+    }
+
+    @Override
+    public Boolean expireAt(byte[] key, long unixTime) {
+        long started = started();
+        try {
+            return delegate.expireAt(key, unixTime);
+        }
+        finally {
+            record("expireAt", started);
+        }
+    }
+
+    @Override
+    public Set<byte[]> keys(byte[] pattern) {
+        long started = started();
+        try {
+            return delegate.keys(pattern);
+        }
+        finally {
+            record("keys", started);
+        }
+    }
+
+    @Override
+    public Boolean move(byte[] key, int dbIndex) {
+        long started = started();
+        try {
+            return delegate.move(key, dbIndex);
+        }
+        finally {
+            record("move", started);
+        }
+    }
+
+    @Override
+    public Boolean pExpire(byte[] key, long millis) {
+        long started = started();
+        try {
+            return delegate.pExpire(key, millis);
+        }
+        finally {
+            record("pExpire", started);
+        }
+    }
+
+    @Override
+    public Boolean pExpireAt(byte[] key, long unixTimeInMillis) {
+        long started = started();
+        try {
+            return delegate.pExpireAt(key, unixTimeInMillis);
+        }
+        finally {
+            record("pExpireAt", started);
+        }
+    }
+
+    @Override
+    public Long pTtl(byte[] key, TimeUnit timeUnit) {
+        long started = started();
+        try {
+            return delegate.pTtl(key, timeUnit);
+        }
+        finally {
+            record("pTtl", started);
+        }
+    }
+
+    @Override
+    public Long pTtl(byte[] key) {
+        long started = started();
+        try {
+            return delegate.pTtl(key);
+        }
+        finally {
+            record("pTtl", started);
+        }
+    }
+
+    @Override
+    public Boolean persist(byte[] key) {
+        long started = started();
+        try {
+            return delegate.persist(key);
+        }
+        finally {
+            record("persist", started);
+        }
+    }
+
+    @Override
+    public byte[] randomKey() {
+        long started = started();
+        try {
+            return delegate.randomKey();
+        }
+        finally {
+            record("randomKey", started);
+        }
+    }
+
+    @Override
+    public void rename(byte[] oldName, byte[] newName) {
+        long started = started();
+        try {
+            delegate.rename(oldName, newName);
+        }
+        finally {
+            record("rename", started);
+        }
+    }
+
+    @Override
+    public Boolean renameNX(byte[] oldName, byte[] newName) {
+        long started = started();
+        try {
+            return delegate.renameNX(oldName, newName);
+        }
+        finally {
+            record("renameNX", started);
+        }
+    }
+
+    @Override
+    public void restore(byte[] key, long ttlInMillis, byte[] serializedValue) {
+        long started = started();
+        try {
+            delegate.restore(key, ttlInMillis, serializedValue);
+        }
+        finally {
+            record("restore", started);
+        }
+    }
+
+    @Override
+    public Cursor<byte[]> scan(ScanOptions options) {
+        long started = started();
+        try {
+            return delegate.scan(options);
+        }
+        finally {
+            record("scan", started);
+        }
+    }
+
+    @Override
+    public Long sort(byte[] key, SortParameters params, byte[] storeKey) {
+        long started = started();
+        try {
+            return delegate.sort(key, params, storeKey);
+        }
+        finally {
+            record("sort", started);
+        }
+    }
+
+    @Override
+    public List<byte[]> sort(byte[] key, SortParameters params) {
+        long started = started();
+        try {
+            return delegate.sort(key, params);
+        }
+        finally {
+            record("sort", started);
+        }
+    }
+
+    @Override
+    public Long ttl(byte[] key, TimeUnit timeUnit) {
+        long started = started();
+        try {
+            return delegate.ttl(key, timeUnit);
+        }
+        finally {
+            record("ttl", started);
+        }
+    }
+
+    @Override
+    public Long ttl(byte[] key) {
+        long started = started();
+        try {
+            return delegate.ttl(key);
+        }
+        finally {
+            record("ttl", started);
+        }
+    }
+
+    @Override
+    public DataType type(byte[] key) {
+        long started = started();
+        try {
+            return delegate.type(key);
+        }
+        finally {
+            record("type", started);
+        }
+    }
+
+    // RedisListCommands
+
+    @Override
+    public List<byte[]> bLPop(int timeout, byte[]... keys) {
+        long started = started();
+        try {
+            return delegate.bLPop(timeout, keys);
+        }
+        finally {
+            record("bLPop", started);
+        }
+    }
+
+    @Override
+    public List<byte[]> bRPop(int timeout, byte[]... keys) {
+        long started = started();
+        try {
+            return delegate.bRPop(timeout, keys);
+        }
+        finally {
+            record("bRPop", started);
+        }
+    }
+
+    @Override
+    public byte[] bRPopLPush(int timeout, byte[] srcKey, byte[] dstKey) {
+        long started = started();
+        try {
+            return delegate.bRPopLPush(timeout, srcKey, dstKey);
+        }
+        finally {
+            record("bRPopLPush", started);
+        }
+    }
+
+    @Override
+    public byte[] lIndex(byte[] key, long index) {
+        long started = started();
+        try {
+            return delegate.lIndex(key, index);
+        }
+        finally {
+            record("lIndex", started);
+        }
+    }
+
+    @Override
+    public Long lInsert(byte[] key, RedisListCommands.Position where, byte[] pivot, byte[] value) {
+        long started = started();
+        try {
+            return delegate.lInsert(key, where, pivot, value);
+        }
+        finally {
+            record("lInsert", started);
+        }
+    }
+
+    @Override
+    public Long lLen(byte[] key) {
+        long started = started();
+        try {
+            return delegate.lLen(key);
+        }
+        finally {
+            record("lLen", started);
+        }
+    }
+
+    @Override
+    public byte[] lPop(byte[] key) {
+        long started = started();
+        try {
+            return delegate.lPop(key);
+        }
+        finally {
+            record("lPop", started);
+        }
+    }
+
+    @Override
+    public Long lPush(byte[] key, byte[]... values) {
+        long started = started();
+        try {
+            return delegate.lPush(key, values);
+        }
+        finally {
+            record("lPush", started);
+        }
+    }
+
+    @Override
+    public Long lPushX(byte[] key, byte[] value) {
+        long started = started();
+        try {
+            return delegate.lPushX(key, value);
+        }
+        finally {
+            record("lPushX", started);
+        }
+    }
+
+    @Override
+    public List<byte[]> lRange(byte[] key, long start, long end) {
+        long started = started();
+        try {
+            return delegate.lRange(key, start, end);
+        }
+        finally {
+            record("lRange", started);
+        }
+    }
+
+    @Override
+    public Long lRem(byte[] key, long count, byte[] value) {
+        long started = started();
+        try {
+            return delegate.lRem(key, count, value);
+        }
+        finally {
+            record("lRem", started);
+        }
+    }
+
+    @Override
+    public void lSet(byte[] key, long index, byte[] value) {
+        long started = started();
+        try {
+            delegate.lSet(key, index, value);
+        }
+        finally {
+            record("lSet", started);
+        }
+    }
+
+    @Override
+    public void lTrim(byte[] key, long start, long end) {
+        long started = started();
+        try {
+            delegate.lTrim(key, start, end);
+        }
+        finally {
+            record("lTrim", started);
+        }
+    }
+
+    @Override
+    public byte[] rPop(byte[] key) {
+        long started = started();
+        try {
+            return delegate.rPop(key);
+        }
+        finally {
+            record("rPop", started);
+        }
+    }
+
+    @Override
+    public byte[] rPopLPush(byte[] srcKey, byte[] dstKey) {
+        long started = started();
+        try {
+            return delegate.rPopLPush(srcKey, dstKey);
+        }
+        finally {
+            record("rPopLPush", started);
+        }
+    }
+
+    @Override
+    public Long rPush(byte[] key, byte[]... values) {
+        long started = started();
+        try {
+            return delegate.rPush(key, values);
+        }
+        finally {
+            record("rPush", started);
+        }
+    }
+
+    @Override
+    public Long rPushX(byte[] key, byte[] value) {
+        long started = started();
+        try {
+            return delegate.rPushX(key, value);
+        }
+        finally {
+            record("rPushX", started);
+        }
+    }
+
+    // RedisPubSubCommands
+
+    @Override
+    public Subscription getSubscription() {
+        return delegate.getSubscription();
+    }
+
+    @Override
+    public boolean isSubscribed() {
+        return delegate.isSubscribed();
+    }
+
+    @Override
+    public void pSubscribe(MessageListener listener, byte[]... patterns) {
+        long started = started();
+        try {
+            delegate.pSubscribe(listener, patterns);
+        }
+        finally {
+            record("pSubscribe", started);
+        }
+    }
+
+    @Override
+    public Long publish(byte[] channel, byte[] message) {
+        long started = started();
+        try {
+            return delegate.publish(channel, message);
+        }
+        finally {
+            record("publish", started);
+        }
+    }
+
+    @Override
+    public void subscribe(MessageListener listener, byte[]... channels) {
+        long started = started();
+        try {
+            delegate.subscribe(listener, channels);
+        }
+        finally {
+            record("subscribe", started);
+        }
+    }
+
+    // RedisScriptingCommands
+
+    @Override
+    public <T> T eval(byte[] script, ReturnType returnType, int numKeys, byte[]... keysAndArgs) {
+        long started = started();
+        try {
+            return delegate.eval(script, returnType, numKeys, keysAndArgs);
+        }
+        finally {
+            record("eval", started);
+        }
+    }
+
+    @Override
+    public <T> T evalSha(byte[] scriptSha1, ReturnType returnType, int numKeys, byte[]... keysAndArgs) {
+        long started = started();
+        try {
+            return delegate.evalSha(scriptSha1, returnType, numKeys, keysAndArgs);
+        }
+        finally {
+            record("evalSha", started);
+        }
+    }
+
+    @Override
+    public <T> T evalSha(String scriptSha1, ReturnType returnType, int numKeys, byte[]... keysAndArgs) {
+        long started = started();
+        try {
+            return delegate.evalSha(scriptSha1, returnType, numKeys, keysAndArgs);
+        }
+        finally {
+            record("evalSha", started);
+        }
+    }
+
+    @Override
+    public List<Boolean> scriptExists(String... scriptSha1) {
+        long started = started();
+        try {
+            return delegate.scriptExists(scriptSha1);
+        }
+        finally {
+            record("scriptExists", started);
+        }
+    }
+
+    @Override
+    public void scriptFlush() {
+        long started = started();
+        try {
+            delegate.scriptFlush();
+        }
+        finally {
+            record("scriptFlush", started);
+        }
+    }
+
+    @Override
+    public void scriptKill() {
+        long started = started();
+        try {
+            delegate.scriptKill();
+        }
+        finally {
+            record("scriptKill", started);
+        }
+    }
+
+    @Override
+    public String scriptLoad(byte[] script) {
+        long started = started();
+        try {
+            return delegate.scriptLoad(script);
+        }
+        finally {
+            record("scriptLoad", started);
+        }
+    }
+
+    // RedisServerCommands
+
+    @Override
+    public void bgReWriteAof() {
+        long started = started();
+        try {
+            delegate.bgReWriteAof();
+        }
+        finally {
+            record("bgReWriteAof", started);
+        }
+    }
+
+    @Override
+    public void bgSave() {
+        long started = started();
+        try {
+            delegate.bgSave();
+        }
+        finally {
+            record("bgSave", started);
+        }
+    }
+
+    @Override
+    public void bgWriteAof() {
+        long started = started();
+        try {
+            delegate.bgWriteAof();
+        }
+        finally {
+            record("bgWriteAof", started);
+        }
+    }
+
+    @Override
+    public Long dbSize() {
+        long started = started();
+        try {
+            return delegate.dbSize();
+        }
+        finally {
+            record("dbSize", started);
+        }
+    }
+
+    @Override
+    public void flushAll() {
+        long started = started();
+        try {
+            delegate.flushAll();
+        }
+        finally {
+            record("flushAll", started);
+        }
+    }
+
+    @Override
+    public void flushDb() {
+        long started = started();
+        try {
+            delegate.flushDb();
+        }
+        finally {
+            record("flushDb", started);
+        }
+    }
+
+    @Override
+    public List<RedisClientInfo> getClientList() {
+        long started = started();
+        try {
+            return delegate.getClientList();
+        }
+        finally {
+            record("getClientList", started);
+        }
+    }
+
+    @Override
+    public String getClientName() {
+        long started = started();
+        try {
+            return delegate.getClientName();
+        }
+        finally {
+            record("getClientName", started);
+        }
+    }
+
+    @Override
+    public List<String> getConfig(String param) {
+        long started = started();
+        try {
+            return delegate.getConfig(param);
+        }
+        finally {
+            record("getConfig", started);
+        }
+    }
+
+    @Override
+    public Properties info() {
+        long started = started();
+        try {
+            return delegate.info();
+        }
+        finally {
+            record("info", started);
+        }
+    }
+
+    @Override
+    public Properties info(String section) {
+        long started = started();
+        try {
+            return delegate.info(section);
+        }
+        finally {
+            record("info", started);
+        }
+    }
+
+    @Override
+    public void killClient(String host, int port) {
+        long started = started();
+        try {
+            delegate.killClient(host, port);
+        }
+        finally {
+            record("killClient", started);
+        }
+    }
+
+    @Override
+    public Long lastSave() {
+        long started = started();
+        try {
+            return delegate.lastSave();
+        }
+        finally {
+            record("lastSave", started);
+        }
+    }
+
+    @Override
+    public void migrate(byte[] key, RedisNode target, int dbIndex, RedisServerCommands.MigrateOption option, long timeout) {
+        long started = started();
+        try {
+            delegate.migrate(key, target, dbIndex, option, timeout);
+        }
+        finally {
+            record("migrate", started);
+        }
+    }
+
+    @Override
+    public void migrate(byte[] key, RedisNode target, int dbIndex, RedisServerCommands.MigrateOption option) {
+        long started = started();
+        try {
+            delegate.migrate(key, target, dbIndex, option);
+        }
+        finally {
+            record("migrate", started);
+        }
+    }
+
+    @Override
+    public void resetConfigStats() {
+        long started = started();
+        try {
+            delegate.resetConfigStats();
+        }
+        finally {
+            record("resetConfigStats", started);
+        }
+    }
+
+    @Override
+    public void save() {
+        long started = started();
+        try {
+            delegate.save();
+        }
+        finally {
+            record("save", started);
+        }
+    }
+
+    @Override
+    public void setClientName(byte[] name) {
+        long started = started();
+        try {
+            delegate.setClientName(name);
+        }
+        finally {
+            record("setClientName", started);
+        }
+    }
+
+    @Override
+    public void setConfig(String param, String value) {
+        long started = started();
+        try {
+            delegate.setConfig(param, value);
+        }
+        finally {
+            record("setConfig", started);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        long started = started();
+        try {
+            delegate.shutdown();
+        }
+        finally {
+            record("shutdown", started);
+        }
+    }
+
+    @Override
+    public void shutdown(RedisServerCommands.ShutdownOption option) {
+        long started = started();
+        try {
+            delegate.shutdown(option);
+        }
+        finally {
+            record("shutdown", started);
+        }
+    }
+
+    @Override
+    public void slaveOf(String host, int port) {
+        long started = started();
+        try {
+            delegate.slaveOf(host, port);
+        }
+        finally {
+            record("slaveOf", started);
+        }
+    }
+
+    @Override
+    public void slaveOfNoOne() {
+        long started = started();
+        try {
+            delegate.slaveOfNoOne();
+        }
+        finally {
+            record("slaveOfNoOne", started);
+        }
+    }
+
+    @Override
+    public Long time() {
+        long started = started();
+        try {
+            return delegate.time();
+        }
+        finally {
+            record("time", started);
+        }
+    }
+
+    // RedisSetCommands
+
+    @Override
+    public Long sAdd(byte[] key, byte[]... values) {
+        long started = started();
+        try {
+            return delegate.sAdd(key, values);
+        }
+        finally {
+            record("sAdd", started);
+        }
+    }
+
+    @Override
+    public Long sCard(byte[] key) {
+        long started = started();
+        try {
+            return delegate.sCard(key);
+        }
+        finally {
+            record("sCard", started);
+        }
+    }
+
+    @Override
+    public Set<byte[]> sDiff(byte[]... keys) {
+        long started = started();
+        try {
+            return delegate.sDiff(keys);
+        }
+        finally {
+            record("sDiff", started);
+        }
+    }
+
+    @Override
+    public Long sDiffStore(byte[] destKey, byte[]... keys) {
+        long started = started();
+        try {
+            return delegate.sDiffStore(destKey, keys);
+        }
+        finally {
+            record("sDiffStore", started);
+        }
+    }
+
+    @Override
+    public Set<byte[]> sInter(byte[]... keys) {
+        long started = started();
+        try {
+            return delegate.sInter(keys);
+        }
+        finally {
+            record("sInter", started);
+        }
+    }
+
+    @Override
+    public Long sInterStore(byte[] destKey, byte[]... keys) {
+        long started = started();
+        try {
+            return delegate.sInterStore(destKey, keys);
+        }
+        finally {
+            record("sInterStore", started);
+        }
+    }
+
+    @Override
+    public Boolean sIsMember(byte[] key, byte[] value) {
+        long started = started();
+        try {
+            return delegate.sIsMember(key, value);
+        }
+        finally {
+            record("sIsMember", started);
+        }
+    }
+
+    @Override
+    public Set<byte[]> sMembers(byte[] key) {
+        long started = started();
+        try {
+            return delegate.sMembers(key);
+        }
+        finally {
+            record("sMembers", started);
+        }
+    }
+
+    @Override
+    public Boolean sMove(byte[] srcKey, byte[] destKey, byte[] value) {
+        long started = started();
+        try {
+            return delegate.sMove(srcKey, destKey, value);
+        }
+        finally {
+            record("sMove", started);
+        }
+    }
+
+    @Override
+    public byte[] sPop(byte[] key) {
+        long started = started();
+        try {
+            return delegate.sPop(key);
+        }
+        finally {
+            record("sPop", started);
+        }
+    }
+
+    @Override
+    public List<byte[]> sRandMember(byte[] key, long count) {
+        long started = started();
+        try {
+            return delegate.sRandMember(key, count);
+        }
+        finally {
+            record("sRandMember", started);
+        }
+    }
+
+    @Override
+    public byte[] sRandMember(byte[] key) {
+        long started = started();
+        try {
+            return delegate.sRandMember(key);
+        }
+        finally {
+            record("sRandMember", started);
+        }
+    }
+
+    @Override
+    public Long sRem(byte[] key, byte[]... values) {
+        long started = started();
+        try {
+            return delegate.sRem(key, values);
+        }
+        finally {
+            record("sRem", started);
+        }
+    }
+
+    @Override
+    public Cursor<byte[]> sScan(byte[] key, ScanOptions options) {
+        long started = started();
+        try {
+            return delegate.sScan(key, options);
+        }
+        finally {
+            record("sScan", started);
+        }
+    }
+
+    @Override
+    public Set<byte[]> sUnion(byte[]... keys) {
+        long started = started();
+        try {
+            return delegate.sUnion(keys);
+        }
+        finally {
+            record("sUnion", started);
+        }
+    }
+
+    @Override
+    public Long sUnionStore(byte[] destKey, byte[]... keys) {
+        long started = started();
+        try {
+            return delegate.sUnionStore(destKey, keys);
+        }
+        finally {
+            record("sUnionStore", started);
+        }
+    }
+
+    // RedisStringCommands
+
+    @Override
+    public Long append(byte[] key, byte[] value) {
+        long started = started();
+        try {
+            return delegate.append(key, value);
+        }
+        finally {
+            record("append", started);
+        }
+    }
+
+    @Override
+    public Long bitCount(byte[] key, long begin, long end) {
+        long started = started();
+        try {
+            return delegate.bitCount(key, begin, end);
+        }
+        finally {
+            record("bitCount", started);
+        }
+    }
+
+    @Override
+    public Long bitCount(byte[] key) {
+        long started = started();
+        try {
+            return delegate.bitCount(key);
+        }
+        finally {
+            record("bitCount", started);
+        }
+    }
+
+    @Override
+    public Long bitOp(RedisStringCommands.BitOperation op, byte[] destination, byte[]... keys) {
+        long started = started();
+        try {
+            return delegate.bitOp(op, destination, keys);
+        }
+        finally {
+            record("bitOp", started);
+        }
+    }
+
+    @Override
+    public Long decr(byte[] key) {
+        long started = started();
+        try {
+            return delegate.decr(key);
+        }
+        finally {
+            record("decr", started);
+        }
+    }
+
+    @Override
+    public Long decrBy(byte[] key, long value) {
+        long started = started();
+        try {
+            return delegate.decrBy(key, value);
+        }
+        finally {
+            record("decrBy", started);
+        }
+    }
+
+    @Override
+    public byte[] get(byte[] key) {
+        long started = started();
+        try {
+            return delegate.get(key);
+        }
+        finally {
+            record("get", started);
+        }
+    }
+
+    @Override
+    public Boolean getBit(byte[] key, long offset) {
+        long started = started();
+        try {
+            return delegate.getBit(key, offset);
+        }
+        finally {
+            record("getBit", started);
+        }
+    }
+
+    @Override
+    public byte[] getRange(byte[] key, long start, long end) {
+        long started = started();
+        try {
+            return delegate.getRange(key, start, end);
+        }
+        finally {
+            record("getRange", started);
+        }
+    }
+
+    @Override
+    public byte[] getSet(byte[] key, byte[] value) {
+        long started = started();
+        try {
+            return delegate.getSet(key, value);
+        }
+        finally {
+            record("getSet", started);
+        }
+    }
+
+    @Override
+    public Long incr(byte[] key) {
+        long started = started();
+        try {
+            return delegate.incr(key);
+        }
+        finally {
+            record("incr", started);
+        }
+    }
+
+    @Override
+    public Double incrBy(byte[] key, double value) {
+        long started = started();
+        try {
+            return delegate.incrBy(key, value);
+        }
+        finally {
+            record("incrBy", started);
+        }
+    }
+
+    @Override
+    public Long incrBy(byte[] key, long value) {
+        long started = started();
+        try {
+            return delegate.incrBy(key, value);
+        }
+        finally {
+            record("incrBy", started);
+        }
+    }
+
+    @Override
+    public List<byte[]> mGet(byte[]... keys) {
+        long started = started();
+        try {
+            return delegate.mGet(keys);
+        }
+        finally {
+            record("mGet", started);
+        }
+    }
+
+    @Override
+    public void mSet(Map<byte[], byte[]> tuples) {
+        long started = started();
+        try {
+            delegate.mSet(tuples);
+        }
+        finally {
+            record("mSet", started);
+        }
+    }
+
+    @Override
+    public Boolean mSetNX(Map<byte[], byte[]> tuples) {
+        long started = started();
+        try {
+            return delegate.mSetNX(tuples);
+        }
+        finally {
+            record("mSetNX", started);
+        }
+    }
+
+    @Override
+    public void pSetEx(byte[] key, long milliseconds, byte[] value) {
+        long started = started();
+        try {
+            delegate.pSetEx(key, milliseconds, value);
+        }
+        finally {
+            record("pSetEx", started);
+        }
+    }
+
+    @Override
+    public void set(byte[] key, byte[] value, Expiration expiration, RedisStringCommands.SetOption option) {
+        long started = started();
+        try {
+            delegate.set(key, value, expiration, option);
+        }
+        finally {
+            record("set", started);
+        }
+    }
+
+    @Override
+    public void set(byte[] key, byte[] value) {
+        long started = started();
+        try {
+            delegate.set(key, value);
+        }
+        finally {
+            record("set", started);
+        }
+    }
+
+    @Override
+    public Boolean setBit(byte[] key, long offset, boolean value) {
+        long started = started();
+        try {
+            return delegate.setBit(key, offset, value);
+        }
+        finally {
+            record("setBit", started);
+        }
+    }
+
+    @Override
+    public void setEx(byte[] key, long time, byte[] value) {
+        long started = started();
+        try {
+            delegate.setEx(key, time, value);
+        }
+        finally {
+            record("setEx", started);
+        }
+    }
+
+    @Override
+    public Boolean setNX(byte[] key, byte[] value) {
+        long started = started();
+        try {
+            return delegate.setNX(key, value);
+        }
+        finally {
+            record("setNX", started);
+        }
+    }
+
+    @Override
+    public void setRange(byte[] key, byte[] value, long start) {
+        long started = started();
+        try {
+            delegate.setRange(key, value, start);
+        }
+        finally {
+            record("setRange", started);
+        }
+    }
+
+    @Override
+    public Long strLen(byte[] key) {
+        long started = started();
+        try {
+            return delegate.strLen(key);
+        }
+        finally {
+            record("strLen", started);
+        }
+    }
+
+    // RedisTxCommands
+
+    @Override
+    public void unwatch() {
+        long started = started();
+        try {
+            delegate.unwatch();
+        }
+        finally {
+            record("unwatch", started);
+        }
+    }
+
+    @Override
+    public void watch(byte[]... keys) {
+        long started = started();
+        try {
+            delegate.watch(keys);
+        }
+        finally {
+            record("watch", started);
+        }
+    }
+
+    // RedisZSetCommands
+
+    @Override
+    public Boolean zAdd(byte[] key, double score, byte[] value) {
+        long started = started();
+        try {
+            return delegate.zAdd(key, score, value);
+        }
+        finally {
+            record("zAdd", started);
+        }
+    }
+
+    @Override
+    public Long zAdd(byte[] key, Set<RedisZSetCommands.Tuple> tuples) {
+        long started = started();
+        try {
+            return delegate.zAdd(key, tuples);
+        }
+        finally {
+            record("zAdd", started);
+        }
+    }
+
+    @Override
+    public Long zCard(byte[] key) {
+        long started = started();
+        try {
+            return delegate.zCard(key);
+        }
+        finally {
+            record("zCard", started);
+        }
+    }
+
+    @Override
+    public Long zCount(byte[] key, RedisZSetCommands.Range range) {
+        long started = started();
+        try {
+            return delegate.zCount(key, range);
+        }
+        finally {
+            record("zCount", started);
+        }
+    }
+
+    @Override
+    public Long zCount(byte[] key, double min, double max) {
+        long started = started();
+        try {
+            return delegate.zCount(key, min, max);
+        }
+        finally {
+            record("zCount", started);
+        }
+    }
+
+    @Override
+    public Double zIncrBy(byte[] key, double increment, byte[] value) {
+        long started = started();
+        try {
+            return delegate.zIncrBy(key, increment, value);
+        }
+        finally {
+            record("zIncrBy", started);
+        }
+    }
+
+    @Override
+    public Long zInterStore(byte[] destKey, byte[]... sets) {
+        long started = started();
+        try {
+            return delegate.zInterStore(destKey, sets);
+        }
+        finally {
+            record("zInterStore", started);
+        }
+    }
+
+    @Override
+    public Long zInterStore(byte[] destKey, RedisZSetCommands.Aggregate aggregate, int[] weights, byte[]... sets) {
+        long started = started();
+        try {
+            return delegate.zInterStore(destKey, aggregate, weights, sets);
+        }
+        finally {
+            record("zInterStore", started);
+        }
+    }
+
+    @Override
+    public Set<byte[]> zRange(byte[] key, long start, long end) {
+        long started = started();
+        try {
+            return delegate.zRange(key, start, end);
+        }
+        finally {
+            record("zRange", started);
+        }
+    }
+
+    @Override
+    public Set<byte[]> zRangeByLex(byte[] key, RedisZSetCommands.Range range, RedisZSetCommands.Limit limit) {
+        long started = started();
+        try {
+            return delegate.zRangeByLex(key, range, limit);
+        }
+        finally {
+            record("zRangeByLex", started);
+        }
+    }
+
+    @Override
+    public Set<byte[]> zRangeByLex(byte[] key, RedisZSetCommands.Range range) {
+        long started = started();
+        try {
+            return delegate.zRangeByLex(key, range);
+        }
+        finally {
+            record("zRangeByLex", started);
+        }
+    }
+
+    @Override
+    public Set<byte[]> zRangeByLex(byte[] key) {
+        long started = started();
+        try {
+            return delegate.zRangeByLex(key);
+        }
+        finally {
+            record("zRangeByLex", started);
+        }
+    }
+
+    @Override
+    public Set<byte[]> zRangeByScore(byte[] key, String min, String max, long offset, long count) {
+        long started = started();
+        try {
+            return delegate.zRangeByScore(key, min, max, offset, count);
+        }
+        finally {
+            record("zRangeByScore", started);
+        }
+    }
+
+    @Override
+    public Set<byte[]> zRangeByScore(byte[] key, String min, String max) {
+        long started = started();
+        try {
+            return delegate.zRangeByScore(key, min, max);
+        }
+        finally {
+            record("zRangeByScore", started);
+        }
+    }
+
+    @Override
+    public Set<byte[]> zRangeByScore(byte[] key, RedisZSetCommands.Range range, RedisZSetCommands.Limit limit) {
+        long started = started();
+        try {
+            return delegate.zRangeByScore(key, range, limit);
+        }
+        finally {
+            record("zRangeByScore", started);
+        }
+    }
+
+    @Override
+    public Set<byte[]> zRangeByScore(byte[] key, RedisZSetCommands.Range range) {
+        long started = started();
+        try {
+            return delegate.zRangeByScore(key, range);
+        }
+        finally {
+            record("zRangeByScore", started);
+        }
+    }
+
+    @Override
+    public Set<byte[]> zRangeByScore(byte[] key, double min, double max, long offset, long count) {
+        long started = started();
+        try {
+            return delegate.zRangeByScore(key, min, max, offset, count);
+        }
+        finally {
+            record("zRangeByScore", started);
+        }
+    }
+
+    @Override
+    public Set<byte[]> zRangeByScore(byte[] key, double min, double max) {
+        long started = started();
+        try {
+            return delegate.zRangeByScore(key, min, max);
+        }
+        finally {
+            record("zRangeByScore", started);
+        }
+    }
+
+    @Override
+    public Set<RedisZSetCommands.Tuple> zRangeByScoreWithScores(byte[] key, RedisZSetCommands.Range range, RedisZSetCommands.Limit limit) {
+        long started = started();
+        try {
+            return delegate.zRangeByScoreWithScores(key, range, limit);
+        }
+        finally {
+            record("zRangeByScoreWithScores", started);
+        }
+    }
+
+    @Override
+    public Set<RedisZSetCommands.Tuple> zRangeByScoreWithScores(byte[] key, RedisZSetCommands.Range range) {
+        long started = started();
+        try {
+            return delegate.zRangeByScoreWithScores(key, range);
+        }
+        finally {
+            record("zRangeByScoreWithScores", started);
+        }
+    }
+
+    @Override
+    public Set<RedisZSetCommands.Tuple> zRangeByScoreWithScores(byte[] key, double min, double max, long offset, long count) {
+        long started = started();
+        try {
+            return delegate.zRangeByScoreWithScores(key, min, max, offset, count);
+        }
+        finally {
+            record("zRangeByScoreWithScores", started);
+        }
+    }
+
+    @Override
+    public Set<RedisZSetCommands.Tuple> zRangeByScoreWithScores(byte[] key, double min, double max) {
+        long started = started();
+        try {
+            return delegate.zRangeByScoreWithScores(key, min, max);
+        }
+        finally {
+            record("zRangeByScoreWithScores", started);
+        }
+    }
+
+    @Override
+    public Set<RedisZSetCommands.Tuple> zRangeWithScores(byte[] key, long start, long end) {
+        long started = started();
+        try {
+            return delegate.zRangeWithScores(key, start, end);
+        }
+        finally {
+            record("zRangeWithScores", started);
+        }
+    }
+
+    @Override
+    public Long zRank(byte[] key, byte[] value) {
+        long started = started();
+        try {
+            return delegate.zRank(key, value);
+        }
+        finally {
+            record("zRank", started);
+        }
+    }
+
+    @Override
+    public Long zRem(byte[] key, byte[]... values) {
+        long started = started();
+        try {
+            return delegate.zRem(key, values);
+        }
+        finally {
+            record("zRem", started);
+        }
+    }
+
+    @Override
+    public Long zRemRange(byte[] key, long start, long end) {
+        long started = started();
+        try {
+            return delegate.zRemRange(key, start, end);
+        }
+        finally {
+            record("zRemRange", started);
+        }
+    }
+
+    @Override
+    public Long zRemRangeByScore(byte[] key, RedisZSetCommands.Range range) {
+        long started = started();
+        try {
+            return delegate.zRemRangeByScore(key, range);
+        }
+        finally {
+            record("zRemRangeByScore", started);
+        }
+    }
+
+    @Override
+    public Long zRemRangeByScore(byte[] key, double min, double max) {
+        long started = started();
+        try {
+            return delegate.zRemRangeByScore(key, min, max);
+        }
+        finally {
+            record("zRemRangeByScore", started);
+        }
+    }
+
+    @Override
+    public Set<byte[]> zRevRange(byte[] key, long start, long end) {
+        long started = started();
+        try {
+            return delegate.zRevRange(key, start, end);
+        }
+        finally {
+            record("zRevRange", started);
+        }
+    }
+
+    @Override
+    public Set<byte[]> zRevRangeByScore(byte[] key, RedisZSetCommands.Range range, RedisZSetCommands.Limit limit) {
+        long started = started();
+        try {
+            return delegate.zRevRangeByScore(key, range, limit);
+        }
+        finally {
+            record("zRevRangeByScore", started);
+        }
+    }
+
+    @Override
+    public Set<byte[]> zRevRangeByScore(byte[] key, RedisZSetCommands.Range range) {
+        long started = started();
+        try {
+            return delegate.zRevRangeByScore(key, range);
+        }
+        finally {
+            record("zRevRangeByScore", started);
+        }
+    }
+
+    @Override
+    public Set<byte[]> zRevRangeByScore(byte[] key, double min, double max, long offset, long count) {
+        long started = started();
+        try {
+            return delegate.zRevRangeByScore(key, min, max, offset, count);
+        }
+        finally {
+            record("zRevRangeByScore", started);
+        }
+    }
+
+    @Override
+    public Set<byte[]> zRevRangeByScore(byte[] key, double min, double max) {
+        long started = started();
+        try {
+            return delegate.zRevRangeByScore(key, min, max);
+        }
+        finally {
+            record("zRevRangeByScore", started);
+        }
+    }
+
+    @Override
+    public Set<RedisZSetCommands.Tuple> zRevRangeByScoreWithScores(byte[] key, RedisZSetCommands.Range range, RedisZSetCommands.Limit limit) {
+        long started = started();
+        try {
+            return delegate.zRevRangeByScoreWithScores(key, range, limit);
+        }
+        finally {
+            record("zRevRangeByScoreWithScores", started);
+        }
+    }
+
+    @Override
+    public Set<RedisZSetCommands.Tuple> zRevRangeByScoreWithScores(byte[] key, RedisZSetCommands.Range range) {
+        long started = started();
+        try {
+            return delegate.zRevRangeByScoreWithScores(key, range);
+        }
+        finally {
+            record("zRevRangeByScoreWithScores", started);
+        }
+    }
+
+    @Override
+    public Set<RedisZSetCommands.Tuple> zRevRangeByScoreWithScores(byte[] key, double min, double max, long offset, long count) {
+        long started = started();
+        try {
+            return delegate.zRevRangeByScoreWithScores(key, min, max, offset, count);
+        }
+        finally {
+            record("zRevRangeByScoreWithScores", started);
+        }
+    }
+
+    @Override
+    public Set<RedisZSetCommands.Tuple> zRevRangeByScoreWithScores(byte[] key, double min, double max) {
+        long started = started();
+        try {
+            return delegate.zRevRangeByScoreWithScores(key, min, max);
+        }
+        finally {
+            record("zRevRangeByScoreWithScores", started);
+        }
+    }
+
+    @Override
+    public Set<RedisZSetCommands.Tuple> zRevRangeWithScores(byte[] key, long start, long end) {
+        long started = started();
+        try {
+            return delegate.zRevRangeWithScores(key, start, end);
+        }
+        finally {
+            record("zRevRangeWithScores", started);
+        }
+    }
+
+    @Override
+    public Long zRevRank(byte[] key, byte[] value) {
+        long started = started();
+        try {
+            return delegate.zRevRank(key, value);
+        }
+        finally {
+            record("zRevRank", started);
+        }
+    }
+
+    @Override
+    public Cursor<RedisZSetCommands.Tuple> zScan(byte[] key, ScanOptions options) {
+        long started = started();
+        try {
+            return delegate.zScan(key, options);
+        }
+        finally {
+            record("zScan", started);
+        }
+    }
+
+    @Override
+    public Double zScore(byte[] key, byte[] value) {
+        long started = started();
+        try {
+            return delegate.zScore(key, value);
+        }
+        finally {
+            record("zScore", started);
+        }
+    }
+
+    @Override
+    public Long zUnionStore(byte[] destKey, byte[]... sets) {
+        long started = started();
+        try {
+            return delegate.zUnionStore(destKey, sets);
+        }
+        finally {
+            record("zUnionStore", started);
+        }
+    }
+
+    @Override
+    public Long zUnionStore(byte[] destKey, RedisZSetCommands.Aggregate aggregate, int[] weights, byte[]... sets) {
+        long started = started();
+        try {
+            return delegate.zUnionStore(destKey, aggregate, weights, sets);
+        }
+        finally {
+            record("zUnionStore", started);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+
+/**
+ * {@link RedisConnectionFactory} able to open its connections up front, warmed by {@link ConnectionPoolWarmer}.
+ *
+ * @author zakyalvan
+ */
+public interface WarmableConnectionFactory extends RedisConnectionFactory {
+    String getHostName();
+
+    int getPort();
+
+    /**
+     * Open, authenticate and validate ('PING') connections, so that first requests do not pay for it.
+     *
+     * @return Number of idle connections after warming.
+     */
+    int prewarm();
+}
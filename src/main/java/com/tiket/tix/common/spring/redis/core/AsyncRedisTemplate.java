@@ -0,0 +1,616 @@
+package com.tiket.tix.common.spring.redis.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.connection.RedisZSetCommands.Tuple;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Asynchronous facade of common string, hash, set and sorted set commands, returning {@link CompletableFuture}s, so
+ * that independent lookups of one request overlap instead of adding up their latencies.
+ * <p>
+ * Commands are queued and sent by one flusher thread, which take all queued commands (up to maximum batch size) and
+ * send them as one pipeline over one connection retrieved from connection factory, typically
+ * {@link com.tiket.tix.common.spring.redis.connection.FailOverCapableConnectionFactory}, so each batch is routed and
+ * failed over like any other connection retrieval. When connection broke in the middle of a pipeline, read commands
+ * are sent once more in the next batch over a newly retrieved connection, write commands fail.
+ * <p>
+ * At most 'max in flight' commands are queued or sent at once, beyond that futures fail immediately with
+ * {@link RejectedExecutionException}. Futures complete on the flusher thread, so blocking work following them should
+ * use async variants of {@link CompletableFuture} methods.
+ * <p>
+ * Keys and hash fields are serialized by key serializer, values and hash values by value serializer.
+ *
+ * @author zakyalvan
+ */
+public class AsyncRedisTemplate<K, V> implements DisposableBean {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncRedisTemplate.class);
+
+    public static final int DEFAULT_MAX_IN_FLIGHT = 1024;
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 64;
+
+    /**
+     * Time flusher thread stays alive without queued commands.
+     */
+    private static final long FLUSHER_KEEP_ALIVE = TimeUnit.SECONDS.toNanos(30);
+
+    private static final AtomicInteger FLUSHER_SEQUENCE = new AtomicInteger();
+
+    private final RedisConnectionFactory connectionFactory;
+
+    private final RedisSerializer<K> keySerializer;
+
+    private final RedisSerializer<V> valueSerializer;
+
+    private final int maxInFlight;
+
+    private final int maxBatchSize;
+
+    private final Semaphore inFlight;
+
+    private final LinkedBlockingQueue<AsyncCommand<?>> queue = new LinkedBlockingQueue<>();
+
+    private final AtomicBoolean flushing = new AtomicBoolean(false);
+
+    private volatile boolean destroyed = false;
+
+    private volatile Thread flusher;
+
+    public AsyncRedisTemplate(RedisConnectionFactory connectionFactory, RedisSerializer<K> keySerializer,
+            RedisSerializer<V> valueSerializer) {
+        this(connectionFactory, keySerializer, valueSerializer, DEFAULT_MAX_IN_FLIGHT, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    /**
+     * @param connectionFactory factory of connections batches sent over
+     * @param keySerializer     serializer of keys and hash fields
+     * @param valueSerializer   serializer of values, hash values and set members
+     * @param maxInFlight       maximum number of commands queued or sent at once
+     * @param maxBatchSize      maximum number of commands of one pipeline
+     */
+    public AsyncRedisTemplate(RedisConnectionFactory connectionFactory, RedisSerializer<K> keySerializer,
+            RedisSerializer<V> valueSerializer, int maxInFlight, int maxBatchSize) {
+        Assert.notNull(connectionFactory, "Connection factory must not be null");
+        Assert.isTrue(connectionFactory.getConvertPipelineAndTxResults(),
+                "Connection factory must convert pipeline results to complete commands");
+        Assert.notNull(keySerializer, "Key serializer must not be null");
+        Assert.notNull(valueSerializer, "Value serializer must not be null");
+        Assert.isTrue(maxInFlight > 0, "Maximum in flight commands must be positive");
+        Assert.isTrue(maxBatchSize > 0, "Maximum batch size must be positive");
+
+        this.connectionFactory = connectionFactory;
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.maxInFlight = maxInFlight;
+        this.maxBatchSize = maxBatchSize;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    public RedisConnectionFactory getConnectionFactory() {
+        return connectionFactory;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Number of commands currently queued or sent.
+     */
+    public int getInFlightCount() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    // Keys.
+
+    public CompletableFuture<Long> delete(K key) {
+        byte[] rawKey = rawKey(key);
+        return write(connection -> connection.del(rawKey), Long.class::cast, false);
+    }
+
+    public CompletableFuture<Boolean> hasKey(K key) {
+        byte[] rawKey = rawKey(key);
+        return read(connection -> connection.exists(rawKey), Boolean.class::cast);
+    }
+
+    public CompletableFuture<Boolean> expire(K key, long timeout, TimeUnit unit) {
+        byte[] rawKey = rawKey(key);
+        long millis = unit.toMillis(timeout);
+        return write(connection -> connection.pExpire(rawKey, millis), Boolean.class::cast, false);
+    }
+
+    // Strings.
+
+    public CompletableFuture<V> get(K key) {
+        byte[] rawKey = rawKey(key);
+        return read(connection -> connection.get(rawKey), this::value);
+    }
+
+    public CompletableFuture<List<V>> multiGet(Collection<K> keys) {
+        byte[][] rawKeys = rawKeys(keys);
+        return read(connection -> connection.mGet(rawKeys), this::valueList);
+    }
+
+    public CompletableFuture<Void> set(K key, V value) {
+        byte[] rawKey = rawKey(key);
+        byte[] rawValue = rawValue(value);
+        return write(connection -> {
+            connection.set(rawKey, rawValue);
+            return null;
+        }, result -> null, true);
+    }
+
+    public CompletableFuture<Void> set(K key, V value, long timeout, TimeUnit unit) {
+        byte[] rawKey = rawKey(key);
+        byte[] rawValue = rawValue(value);
+        long millis = unit.toMillis(timeout);
+        return write(connection -> {
+            connection.pSetEx(rawKey, millis, rawValue);
+            return null;
+        }, result -> null, true);
+    }
+
+    public CompletableFuture<Boolean> setIfAbsent(K key, V value) {
+        byte[] rawKey = rawKey(key);
+        byte[] rawValue = rawValue(value);
+        return write(connection -> connection.setNX(rawKey, rawValue), Boolean.class::cast, false);
+    }
+
+    public CompletableFuture<Long> increment(K key, long delta) {
+        byte[] rawKey = rawKey(key);
+        return write(connection -> connection.incrBy(rawKey, delta), Long.class::cast, false);
+    }
+
+    // Hashes.
+
+    public CompletableFuture<V> hashGet(K key, K field) {
+        byte[] rawKey = rawKey(key);
+        byte[] rawField = rawKey(field);
+        return read(connection -> connection.hGet(rawKey, rawField), this::value);
+    }
+
+    public CompletableFuture<List<V>> hashMultiGet(K key, Collection<K> fields) {
+        byte[] rawKey = rawKey(key);
+        byte[][] rawFields = rawKeys(fields);
+        return read(connection -> connection.hMGet(rawKey, rawFields), this::valueList);
+    }
+
+    public CompletableFuture<Map<K, V>> hashEntries(K key) {
+        byte[] rawKey = rawKey(key);
+        return read(connection -> connection.hGetAll(rawKey), this::entries);
+    }
+
+    public CompletableFuture<Boolean> hashPut(K key, K field, V value) {
+        byte[] rawKey = rawKey(key);
+        byte[] rawField = rawKey(field);
+        byte[] rawValue = rawValue(value);
+        return write(connection -> connection.hSet(rawKey, rawField, rawValue), Boolean.class::cast, false);
+    }
+
+    public CompletableFuture<Long> hashDelete(K key, K field) {
+        byte[] rawKey = rawKey(key);
+        byte[] rawField = rawKey(field);
+        return write(connection -> connection.hDel(rawKey, rawField), Long.class::cast, false);
+    }
+
+    public CompletableFuture<Long> hashIncrement(K key, K field, long delta) {
+        byte[] rawKey = rawKey(key);
+        byte[] rawField = rawKey(field);
+        return write(connection -> connection.hIncrBy(rawKey, rawField, delta), Long.class::cast, false);
+    }
+
+    // Sets.
+
+    public CompletableFuture<Long> setAdd(K key, V member) {
+        byte[] rawKey = rawKey(key);
+        byte[] rawMember = rawValue(member);
+        return write(connection -> connection.sAdd(rawKey, rawMember), Long.class::cast, false);
+    }
+
+    public CompletableFuture<Long> setRemove(K key, V member) {
+        byte[] rawKey = rawKey(key);
+        byte[] rawMember = rawValue(member);
+        return write(connection -> connection.sRem(rawKey, rawMember), Long.class::cast, false);
+    }
+
+    public CompletableFuture<Boolean> setIsMember(K key, V member) {
+        byte[] rawKey = rawKey(key);
+        byte[] rawMember = rawValue(member);
+        return read(connection -> connection.sIsMember(rawKey, rawMember), Boolean.class::cast);
+    }
+
+    public CompletableFuture<Set<V>> setMembers(K key) {
+        byte[] rawKey = rawKey(key);
+        return read(connection -> connection.sMembers(rawKey), this::valueSet);
+    }
+
+    // Sorted sets.
+
+    public CompletableFuture<Boolean> zSetAdd(K key, V member, double score) {
+        byte[] rawKey = rawKey(key);
+        byte[] rawMember = rawValue(member);
+        return write(connection -> connection.zAdd(rawKey, score, rawMember), Boolean.class::cast, false);
+    }
+
+    public CompletableFuture<Double> zSetIncrementScore(K key, V member, double delta) {
+        byte[] rawKey = rawKey(key);
+        byte[] rawMember = rawValue(member);
+        return write(connection -> connection.zIncrBy(rawKey, delta, rawMember), Double.class::cast, false);
+    }
+
+    public CompletableFuture<Long> zSetRemove(K key, V member) {
+        byte[] rawKey = rawKey(key);
+        byte[] rawMember = rawValue(member);
+        return write(connection -> connection.zRem(rawKey, rawMember), Long.class::cast, false);
+    }
+
+    public CompletableFuture<Double> zSetScore(K key, V member) {
+        byte[] rawKey = rawKey(key);
+        byte[] rawMember = rawValue(member);
+        return read(connection -> connection.zScore(rawKey, rawMember), Double.class::cast);
+    }
+
+    public CompletableFuture<Long> zSetRank(K key, V member) {
+        byte[] rawKey = rawKey(key);
+        byte[] rawMember = rawValue(member);
+        return read(connection -> connection.zRank(rawKey, rawMember), Long.class::cast);
+    }
+
+    public CompletableFuture<Long> zSetSize(K key) {
+        byte[] rawKey = rawKey(key);
+        return read(connection -> connection.zCard(rawKey), Long.class::cast);
+    }
+
+    /**
+     * Members between given ranks (inclusive, negative counted from the end), lowest score first.
+     */
+    public CompletableFuture<Set<V>> zSetRange(K key, long start, long end) {
+        byte[] rawKey = rawKey(key);
+        return read(connection -> connection.zRange(rawKey, start, end), this::valueSet);
+    }
+
+    public CompletableFuture<Set<V>> zSetReverseRange(K key, long start, long end) {
+        byte[] rawKey = rawKey(key);
+        return read(connection -> connection.zRevRange(rawKey, start, end), this::valueSet);
+    }
+
+    public CompletableFuture<Set<TypedTuple<V>>> zSetRangeWithScores(K key, long start, long end) {
+        byte[] rawKey = rawKey(key);
+        return read(connection -> connection.zRangeWithScores(rawKey, start, end), this::tuples);
+    }
+
+    public CompletableFuture<Set<V>> zSetRangeByScore(K key, double min, double max) {
+        byte[] rawKey = rawKey(key);
+        return read(connection -> connection.zRangeByScore(rawKey, min, max), this::valueSet);
+    }
+
+    private <T> CompletableFuture<T> read(Function<RedisConnection, Object> action, Function<Object, T> converter) {
+        return submit(new AsyncCommand<>(action, converter, false, true));
+    }
+
+    /**
+     * @param status whether command has status reply, which is omitted from pipeline results on success
+     */
+    private <T> CompletableFuture<T> write(Function<RedisConnection, Object> action, Function<Object, T> converter,
+            boolean status) {
+        return submit(new AsyncCommand<>(action, converter, status, false));
+    }
+
+    private <T> CompletableFuture<T> submit(AsyncCommand<T> command) {
+        if (destroyed) {
+            command.result.completeExceptionally(new RedisSystemException("Async redis template already destroyed", null));
+            return command.result;
+        }
+        if (!inFlight.tryAcquire()) {
+            command.result.completeExceptionally(new RejectedExecutionException(
+                    "Maximum of " + maxInFlight + " in flight redis commands reached"));
+            return command.result;
+        }
+
+        command.result.whenComplete((result, failure) -> inFlight.release());
+        queue.add(command);
+        if (flushing.compareAndSet(false, true)) {
+            startFlusher();
+        }
+        return command.result;
+    }
+
+    private void startFlusher() {
+        Thread thread = new Thread(this::flushLoop, "redis-async-" + FLUSHER_SEQUENCE.incrementAndGet());
+        thread.setDaemon(true);
+        flusher = thread;
+        thread.start();
+    }
+
+    /**
+     * Flush batches until destroyed or idle for keep alive time. Before leaving, queue is checked again so that
+     * command queued right after idle timeout, while this thread still owned flushing, is not left behind.
+     */
+    private void flushLoop() {
+        List<AsyncCommand<?>> batch = new ArrayList<>(maxBatchSize);
+        while (true) {
+            try {
+                while (!destroyed) {
+                    AsyncCommand<?> first = queue.poll(FLUSHER_KEEP_ALIVE, TimeUnit.NANOSECONDS);
+                    if (first == null) {
+                        break;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch, maxBatchSize - 1);
+                    flush(batch);
+                    batch.clear();
+                }
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+
+            flushing.set(false);
+            if (destroyed || Thread.currentThread().isInterrupted() || queue.isEmpty()
+                    || !flushing.compareAndSet(false, true)) {
+                break;
+            }
+        }
+        if (destroyed) {
+            failPending();
+        }
+    }
+
+    private void flush(List<AsyncCommand<?>> batch) {
+        RedisConnection connection;
+        try {
+            connection = connectionFactory.getConnection();
+        }
+        catch (RuntimeException ex) {
+            // Connection factory already failed over, nothing else to try.
+            batch.forEach(command -> command.fail(ex));
+            return;
+        }
+
+        try {
+            connection.openPipeline();
+            for (AsyncCommand<?> command : batch) {
+                try {
+                    command.action.apply(connection);
+                    command.queued = true;
+                }
+                catch (RuntimeException ex) {
+                    command.fail(ex);
+                }
+            }
+
+            List<Object> results;
+            RedisPipelineException failure = null;
+            try {
+                results = connection.closePipeline();
+            }
+            catch (RedisPipelineException ex) {
+                results = ex.getPipelineResult();
+                failure = ex;
+            }
+            distribute(batch, results, failure);
+        }
+        catch (RuntimeException ex) {
+            LOGGER.debug("Failed to flush batch of {} async commands", batch.size(), ex);
+            retryOrFail(batch, ex);
+        }
+        finally {
+            try {
+                connection.close();
+            }
+            catch (RuntimeException ex) {
+                LOGGER.trace("Error on closing connection of async commands", ex);
+            }
+        }
+    }
+
+    /**
+     * Complete each queued command with its pipeline result. Successful status replies are omitted from pipeline
+     * results, so when more results than non status commands returned, some status command failed and results can
+     * not be attributed, every command then fails with the pipeline exception.
+     */
+    private void distribute(List<AsyncCommand<?>> batch, List<Object> results, RedisPipelineException failure) {
+        int expected = 0;
+        for (AsyncCommand<?> command : batch) {
+            if (command.queued && !command.status) {
+                expected++;
+            }
+        }
+        if (results.size() != expected) {
+            RuntimeException ex = failure != null ? failure
+                    : new RedisSystemException("Unexpected number of pipeline results " + results.size(), null);
+            batch.forEach(command -> command.fail(ex));
+            return;
+        }
+
+        int position = 0;
+        for (AsyncCommand<?> command : batch) {
+            if (!command.queued) {
+                continue;
+            }
+            if (command.status) {
+                command.complete(null);
+                continue;
+            }
+            Object result = results.get(position++);
+            if (result instanceof Exception) {
+                command.fail((Exception) result);
+            }
+            else {
+                command.complete(result);
+            }
+        }
+    }
+
+    /**
+     * Queue read commands of broken pipeline once more, to be sent over newly retrieved connection. Writes might
+     * have been applied, so they fail.
+     */
+    private void retryOrFail(List<AsyncCommand<?>> batch, RuntimeException failure) {
+        for (AsyncCommand<?> command : batch) {
+            if (command.result.isDone()) {
+                continue;
+            }
+            if (command.idempotent && !command.retried && !destroyed) {
+                command.retried = true;
+                command.queued = false;
+                queue.add(command);
+            }
+            else {
+                command.fail(failure);
+            }
+        }
+    }
+
+    private void failPending() {
+        RedisSystemException ex = new RedisSystemException("Async redis template already destroyed", null);
+        AsyncCommand<?> command;
+        while ((command = queue.poll()) != null) {
+            command.fail(ex);
+        }
+    }
+
+    /**
+     * Stop the flusher after its current batch, failing commands still queued.
+     */
+    @Override
+    public void destroy() {
+        destroyed = true;
+        Thread thread = flusher;
+        if (flushing.get() && thread != null) {
+            thread.interrupt();
+        }
+        else {
+            failPending();
+        }
+    }
+
+    private byte[] rawKey(K key) {
+        Assert.notNull(key, "Key must not be null");
+        return keySerializer.serialize(key);
+    }
+
+    private byte[][] rawKeys(Collection<K> keys) {
+        Assert.notEmpty(keys, "Keys must not be empty");
+        byte[][] rawKeys = new byte[keys.size()][];
+        int index = 0;
+        for (K key : keys) {
+            rawKeys[index++] = rawKey(key);
+        }
+        return rawKeys;
+    }
+
+    private byte[] rawValue(V value) {
+        return valueSerializer.serialize(value);
+    }
+
+    private V value(Object raw) {
+        return valueSerializer.deserialize((byte[]) raw);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<V> valueList(Object raw) {
+        List<byte[]> rawValues = (List<byte[]>) raw;
+        List<V> values = new ArrayList<>(rawValues.size());
+        rawValues.forEach(rawValue -> values.add(valueSerializer.deserialize(rawValue)));
+        return values;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<V> valueSet(Object raw) {
+        Collection<byte[]> rawValues = (Collection<byte[]>) raw;
+        Set<V> values = new LinkedHashSet<>(rawValues.size());
+        rawValues.forEach(rawValue -> values.add(valueSerializer.deserialize(rawValue)));
+        return values;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<K, V> entries(Object raw) {
+        Map<byte[], byte[]> rawEntries = (Map<byte[], byte[]>) raw;
+        Map<K, V> entries = new LinkedHashMap<>(rawEntries.size());
+        rawEntries.forEach((rawField, rawValue) ->
+                entries.put(keySerializer.deserialize(rawField), valueSerializer.deserialize(rawValue)));
+        return entries;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<TypedTuple<V>> tuples(Object raw) {
+        Set<Tuple> rawTuples = (Set<Tuple>) raw;
+        Set<TypedTuple<V>> tuples = new LinkedHashSet<>(rawTuples.size());
+        rawTuples.forEach(tuple -> tuples.add(
+                new DefaultTypedTuple<>(valueSerializer.deserialize(tuple.getValue()), tuple.getScore())));
+        return tuples;
+    }
+
+    private static class AsyncCommand<T> {
+        private final Function<RedisConnection, Object> action;
+
+        private final Function<Object, T> converter;
+
+        private final boolean status;
+
+        /**
+         * Whether command is a read, safe to send again when connection broke.
+         */
+        private final boolean idempotent;
+
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        /**
+         * Whether command was queued into pipeline and already sent once again, only accessed by flusher thread.
+         */
+        private boolean queued = false;
+
+        private boolean retried = false;
+
+        private AsyncCommand(Function<RedisConnection, Object> action, Function<Object, T> converter,
+                boolean status, boolean idempotent) {
+            this.action = action;
+            this.converter = converter;
+            this.status = status;
+            this.idempotent = idempotent;
+        }
+
+        private void complete(Object raw) {
+            try {
+                result.complete(raw == null ? null : converter.apply(raw));
+            }
+            catch (RuntimeException ex) {
+                result.completeExceptionally(ex);
+            }
+        }
+
+        private void fail(Throwable failure) {
+            result.completeExceptionally(failure);
+        }
+    }
+}
@@ -0,0 +1,545 @@
+package com.tiket.tix.common.spring.redis.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataRetrievalFailureException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.util.Assert;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Storage of large values (e.g. search result snapshots) as fixed size chunks under derived keys, so that no single
+ * command block twemproxy connection and backend redis for long, and neither writer nor reader hold the whole value
+ * in memory: writes read source stream chunk by chunk, pipelining at most 'pipeline depth' chunks at once, reads fetch
+ * one chunk at a time as stream or chunk callbacks.
+ * <p>
+ * Value key hold a manifest (version, length, chunk size and checksum of each chunk), written only after all chunks
+ * of the version are, so that partially written value is never visible. Chunks are verified against manifest before
+ * handed to reader. Chunk keys are derived from value key and version, sharing hash tag of value key (or wrapping the
+ * whole value key in hash tag when it has none), so that chunks of one value live on the same shard as its manifest.
+ * <p>
+ * Chunks are written with 'orphan' time to live, so that chunks of a failed writer expire on their own, and made
+ * persistent (or given value time to live plus retired time to live) just before manifest written, so that a
+ * manifest never outlive its chunks. Manifest with time to live is written by single 'PSETEX' (i.e. 'SET ... PX'),
+ * never visible without its time to live. Chunks of replaced and deleted values expire after 'retired'
+ * time to live instead of deleted at once, so that readers still streaming them can finish.
+ *
+ * @author zakyalvan
+ */
+public class ChunkedRedisTemplate<K> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChunkedRedisTemplate.class);
+
+    public static final int DEFAULT_CHUNK_SIZE = 128 * 1024;
+
+    public static final int DEFAULT_PIPELINE_DEPTH = 4;
+
+    public static final long DEFAULT_RETIRED_TTL = 60000;
+
+    public static final long DEFAULT_ORPHAN_TTL = 3600000;
+
+    public static final String DEFAULT_HASH_TAG = "{}";
+
+    private final RedisConnectionFactory connectionFactory;
+
+    private final RedisSerializer<K> keySerializer;
+
+    private final int chunkSize;
+
+    private final int pipelineDepth;
+
+    private final byte[] hashTag;
+
+    private long retiredTtl = DEFAULT_RETIRED_TTL;
+
+    private long orphanTtl = DEFAULT_ORPHAN_TTL;
+
+    public ChunkedRedisTemplate(RedisConnectionFactory connectionFactory, RedisSerializer<K> keySerializer) {
+        this(connectionFactory, keySerializer, DEFAULT_CHUNK_SIZE, DEFAULT_PIPELINE_DEPTH, DEFAULT_HASH_TAG);
+    }
+
+    /**
+     * @param connectionFactory factory of connections to redis, typically fail over capable one
+     * @param keySerializer     serializer of value keys
+     * @param chunkSize         size of each chunk in bytes
+     * @param pipelineDepth     maximum number of chunks written in one pipeline, heap held by a write
+     *                          being at most this many chunks
+     * @param hashTag           two characters hash tag, must match twemproxy pool 'hash_tag'
+     */
+    public ChunkedRedisTemplate(RedisConnectionFactory connectionFactory, RedisSerializer<K> keySerializer,
+            int chunkSize, int pipelineDepth, String hashTag) {
+        Assert.notNull(connectionFactory, "Connection factory must not be null");
+        Assert.notNull(keySerializer, "Key serializer must not be null");
+        Assert.isTrue(chunkSize > 0, "Chunk size must be positive");
+        Assert.isTrue(pipelineDepth > 0, "Pipeline depth must be positive");
+        Assert.isTrue(hashTag != null && hashTag.length() == 2, "Hash tag must consist of two characters");
+
+        this.connectionFactory = connectionFactory;
+        this.keySerializer = keySerializer;
+        this.chunkSize = chunkSize;
+        this.pipelineDepth = pipelineDepth;
+        this.hashTag = hashTag.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getPipelineDepth() {
+        return pipelineDepth;
+    }
+
+    public long getRetiredTtl() {
+        return retiredTtl;
+    }
+    /**
+     * Set time in milliseconds chunks of replaced or deleted value stay readable.
+     */
+    public void setRetiredTtl(long retiredTtl) {
+        Assert.isTrue(retiredTtl > 0, "Retired chunks time to live must be positive");
+        this.retiredTtl = retiredTtl;
+    }
+
+    public long getOrphanTtl() {
+        return orphanTtl;
+    }
+    /**
+     * Set time in milliseconds chunks stay while their value being written, must be longer than any write.
+     */
+    public void setOrphanTtl(long orphanTtl) {
+        Assert.isTrue(orphanTtl > 0, "Orphan chunks time to live must be positive");
+        this.orphanTtl = orphanTtl;
+    }
+
+    /**
+     * Store given value, replacing current one once fully written.
+     */
+    public void write(K key, byte[] value) {
+        try {
+            write(key, new ByteArrayInputStream(value), 0, TimeUnit.MILLISECONDS);
+        }
+        catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Store content of given stream, replacing current value once fully written.
+     */
+    public void write(K key, InputStream source) throws IOException {
+        write(key, source, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Store content of given stream with time to live, replacing current value once fully written. Stream is read
+     * to the end but not closed.
+     *
+     * @throws IOException if source stream failed, nothing stored then
+     */
+    public void write(K key, InputStream source, long timeout, TimeUnit unit) throws IOException {
+        Assert.notNull(source, "Source stream must not be null");
+        Assert.isTrue(timeout >= 0, "Timeout must not be negative");
+        byte[] rawKey = rawKey(key);
+        long ttl = unit.toMillis(timeout);
+        long version = ThreadLocalRandom.current().nextLong();
+
+        List<Integer> checksums = new ArrayList<>();
+        long length = 0;
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            try {
+                List<byte[]> batch = new ArrayList<>(pipelineDepth);
+                byte[] chunk;
+                while ((chunk = readChunk(source)) != null) {
+                    checksums.add(checksum(chunk));
+                    length += chunk.length;
+                    batch.add(chunk);
+                    if (batch.size() == pipelineDepth) {
+                        writeChunks(connection, rawKey, version, checksums.size() - batch.size(), batch,
+                                orphanTtl);
+                        batch.clear();
+                    }
+                }
+                writeChunks(connection, rawKey, version, checksums.size() - batch.size(), batch, orphanTtl);
+            }
+            catch (IOException | RuntimeException ex) {
+                discard(connection, rawKey, version, checksums.size());
+                throw ex;
+            }
+
+            Manifest manifest = new Manifest(version, length, chunkSize, checksums);
+            try {
+                settleChunks(connection, rawKey, version, checksums.size(), ttl);
+            }
+            catch (RuntimeException ex) {
+                discard(connection, rawKey, version, checksums.size());
+                throw ex;
+            }
+
+            Manifest replaced;
+            if (ttl > 0) {
+                // GETSET can not carry time to live, manifest must never exist without one.
+                connection.openPipeline();
+                connection.get(rawKey);
+                connection.pSetEx(rawKey, ttl, manifest.toBytes());
+                replaced = Manifest.parse((byte[]) connection.closePipeline().get(0));
+            }
+            else {
+                replaced = Manifest.parse(connection.getSet(rawKey, manifest.toBytes()));
+            }
+            if (replaced != null && replaced.version != version) {
+                retire(connection, rawKey, replaced.version, replaced.checksums.length, retiredTtl);
+            }
+        }
+        finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Read up to chunk size bytes from source.
+     *
+     * @return Chunk, shorter than chunk size only for the last one, or null if source exhausted.
+     */
+    private byte[] readChunk(InputStream source) throws IOException {
+        byte[] chunk = new byte[chunkSize];
+        int read = 0;
+        int count;
+        while (read < chunkSize && (count = source.read(chunk, read, chunkSize - read)) != -1) {
+            read += count;
+        }
+        if (read == 0) {
+            return null;
+        }
+        return read == chunkSize ? chunk : Arrays.copyOf(chunk, read);
+    }
+
+    private void writeChunks(RedisConnection connection, byte[] rawKey, long version, int firstIndex,
+            List<byte[]> chunks, long ttl) {
+        if (chunks.isEmpty()) {
+            return;
+        }
+        connection.openPipeline();
+        for (int i = 0; i < chunks.size(); i++) {
+            connection.pSetEx(chunkKey(rawKey, version, firstIndex + i), ttl, chunks.get(i));
+        }
+        connection.closePipeline();
+    }
+
+    /**
+     * Make chunks outlive manifest about to be written: persistent when value has no time to live, otherwise value
+     * time to live plus retired time to live, counted from now rather than from when chunks were written.
+     */
+    private void settleChunks(RedisConnection connection, byte[] rawKey, long version, int chunkCount, long ttl) {
+        if (chunkCount == 0) {
+            return;
+        }
+        connection.openPipeline();
+        for (int index = 0; index < chunkCount; index++) {
+            if (ttl > 0) {
+                connection.pExpire(chunkKey(rawKey, version, index), ttl + retiredTtl);
+            }
+            else {
+                connection.persist(chunkKey(rawKey, version, index));
+            }
+        }
+        connection.closePipeline();
+    }
+
+    /**
+     * Delete chunks of a failed write, best effort.
+     */
+    private void discard(RedisConnection connection, byte[] rawKey, long version, int chunkCount) {
+        if (chunkCount == 0) {
+            return;
+        }
+        try {
+            connection.openPipeline();
+            for (int index = 0; index < chunkCount; index++) {
+                connection.del(chunkKey(rawKey, version, index));
+            }
+            connection.closePipeline();
+        }
+        catch (RuntimeException ex) {
+            LOGGER.warn("Failed to delete {} chunks of failed write, left to expire", chunkCount, ex);
+        }
+    }
+
+    /**
+     * Let chunks of given version expire after given time, best effort.
+     */
+    private void retire(RedisConnection connection, byte[] rawKey, long version, int chunkCount, long ttl) {
+        if (chunkCount == 0) {
+            return;
+        }
+        try {
+            connection.openPipeline();
+            for (int index = 0; index < chunkCount; index++) {
+                connection.pExpire(chunkKey(rawKey, version, index), ttl);
+            }
+            connection.closePipeline();
+        }
+        catch (RuntimeException ex) {
+            LOGGER.warn("Failed to retire {} chunks of version {}, left to expire", chunkCount, version, ex);
+        }
+    }
+
+    /**
+     * Open stream of stored value, fetching one chunk at a time on demand.
+     *
+     * @return Stream of value, or null if no value stored. Stream fails with {@link IOException} when a chunk is
+     * missing (value replaced longer than retired time to live ago) or corrupt.
+     */
+    public InputStream read(K key) {
+        byte[] rawKey = rawKey(key);
+        Manifest manifest = Manifest.parse(get(rawKey));
+        return manifest != null ? new ChunkInputStream(rawKey, manifest) : null;
+    }
+
+    /**
+     * Pass chunks of stored value, in order, to given consumer. Buffers are only valid during the call.
+     *
+     * @return False if no value stored.
+     * @throws DataRetrievalFailureException if a chunk is missing or corrupt
+     */
+    public boolean read(K key, Consumer<ByteBuffer> consumer) {
+        Assert.notNull(consumer, "Chunk consumer must not be null");
+        byte[] rawKey = rawKey(key);
+        Manifest manifest = Manifest.parse(get(rawKey));
+        if (manifest == null) {
+            return false;
+        }
+        for (int index = 0; index < manifest.checksums.length; index++) {
+            consumer.accept(ByteBuffer.wrap(fetchChunk(rawKey, manifest, index)).asReadOnlyBuffer());
+        }
+        return true;
+    }
+
+    /**
+     * Length in bytes of stored value.
+     *
+     * @return Length, or -1 if no value stored.
+     */
+    public long length(K key) {
+        Manifest manifest = Manifest.parse(get(rawKey(key)));
+        return manifest != null ? manifest.length : -1;
+    }
+
+    /**
+     * Delete stored value, its chunks expire after retired time to live.
+     *
+     * @return True if value existed.
+     */
+    public boolean delete(K key) {
+        byte[] rawKey = rawKey(key);
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            Manifest manifest = Manifest.parse(connection.get(rawKey));
+            if (manifest == null) {
+                return false;
+            }
+            connection.del(rawKey);
+            retire(connection, rawKey, manifest.version, manifest.checksums.length, retiredTtl);
+            return true;
+        }
+        finally {
+            connection.close();
+        }
+    }
+
+    private byte[] fetchChunk(byte[] rawKey, Manifest manifest, int index) {
+        byte[] chunk = get(chunkKey(rawKey, manifest.version, index));
+        if (chunk == null) {
+            throw new DataRetrievalFailureException("Chunk " + index + " of value '"
+                    + new String(rawKey, StandardCharsets.UTF_8) + "' is missing, value replaced or expired");
+        }
+        long expectedLength = Math.min(manifest.chunkSize, manifest.length - (long) index * manifest.chunkSize);
+        if (chunk.length != expectedLength || checksum(chunk) != manifest.checksums[index]) {
+            throw new DataRetrievalFailureException("Chunk " + index + " of value '"
+                    + new String(rawKey, StandardCharsets.UTF_8) + "' is corrupt");
+        }
+        return chunk;
+    }
+
+    private byte[] get(byte[] rawKey) {
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            return connection.get(rawKey);
+        }
+        finally {
+            connection.close();
+        }
+    }
+
+    private byte[] rawKey(K key) {
+        Assert.notNull(key, "Key must not be null");
+        byte[] rawKey = keySerializer.serialize(key);
+        Assert.notNull(rawKey, "Key must not serialize to null");
+        return rawKey;
+    }
+
+    /**
+     * Key of chunk, value key followed by version and index when value key has hash tag, otherwise value key wrapped
+     * in hash tag, so that chunk hash the same as value key.
+     */
+    byte[] chunkKey(byte[] rawKey, long version, int index) {
+        byte[] suffix = (":" + Long.toHexString(version) + ":" + index).getBytes(StandardCharsets.UTF_8);
+        boolean tagged = hasHashTag(rawKey);
+        ByteBuffer chunkKey = ByteBuffer.allocate(rawKey.length + suffix.length + (tagged ? 0 : 2));
+        if (tagged) {
+            chunkKey.put(rawKey);
+        }
+        else {
+            chunkKey.put(hashTag[0]).put(rawKey).put(hashTag[1]);
+        }
+        return chunkKey.put(suffix).array();
+    }
+
+    private boolean hasHashTag(byte[] rawKey) {
+        for (int start = 0; start < rawKey.length; start++) {
+            if (rawKey[start] == hashTag[0]) {
+                for (int end = start + 1; end < rawKey.length; end++) {
+                    if (rawKey[end] == hashTag[1]) {
+                        // Twemproxy ignore empty tag.
+                        return end > start + 1;
+                    }
+                }
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static int checksum(byte[] chunk) {
+        CRC32 crc = new CRC32();
+        crc.update(chunk, 0, chunk.length);
+        return (int) crc.getValue();
+    }
+
+    private final class ChunkInputStream extends InputStream {
+        private final byte[] rawKey;
+
+        private final Manifest manifest;
+
+        private int nextIndex;
+
+        private byte[] chunk = new byte[0];
+
+        private int position;
+
+        private ChunkInputStream(byte[] rawKey, Manifest manifest) {
+            this.rawKey = rawKey;
+            this.manifest = manifest;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!ensureAvailable()) {
+                return -1;
+            }
+            return chunk[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!ensureAvailable()) {
+                return -1;
+            }
+            int count = Math.min(length, chunk.length - position);
+            System.arraycopy(chunk, position, buffer, offset, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return chunk.length - position;
+        }
+
+        private boolean ensureAvailable() throws IOException {
+            while (position == chunk.length) {
+                if (nextIndex == manifest.checksums.length) {
+                    return false;
+                }
+                try {
+                    chunk = fetchChunk(rawKey, manifest, nextIndex++);
+                }
+                catch (RuntimeException ex) {
+                    throw new IOException(ex.getMessage(), ex);
+                }
+                position = 0;
+            }
+            return true;
+        }
+    }
+
+    private static final class Manifest {
+        private static final int MAGIC = 0x43484B31;
+
+        private final long version;
+
+        private final long length;
+
+        private final int chunkSize;
+
+        private final int[] checksums;
+
+        private Manifest(long version, long length, int chunkSize, List<Integer> checksums) {
+            this(version, length, chunkSize, checksums.stream().mapToInt(Integer::intValue).toArray());
+        }
+
+        private Manifest(long version, long length, int chunkSize, int[] checksums) {
+            this.version = version;
+            this.length = length;
+            this.chunkSize = chunkSize;
+            this.checksums = checksums;
+        }
+
+        private byte[] toBytes() {
+            ByteBuffer buffer = ByteBuffer.allocate(28 + 4 * checksums.length);
+            buffer.putInt(MAGIC).putLong(version).putLong(length).putInt(chunkSize).putInt(checksums.length);
+            for (int checksum : checksums) {
+                buffer.putInt(checksum);
+            }
+            return buffer.array();
+        }
+
+        private static Manifest parse(byte[] bytes) {
+            if (bytes == null) {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            if (bytes.length < 28 || buffer.getInt() != MAGIC) {
+                throw new DataRetrievalFailureException("Value is not a chunked value manifest");
+            }
+            long version = buffer.getLong();
+            long length = buffer.getLong();
+            int chunkSize = buffer.getInt();
+            int count = buffer.getInt();
+            if (buffer.remaining() != 4 * count) {
+                throw new DataRetrievalFailureException("Chunked value manifest is corrupt");
+            }
+            int[] checksums = new int[count];
+            for (int i = 0; i < count; i++) {
+                checksums[i] = buffer.getInt();
+            }
+            return new Manifest(version, length, chunkSize, checksums);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.tiket.tix.common.spring.redis.core;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.util.Assert;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer {@link MeterBinder} of {@link WriteBehindRedisTemplate}, publishing:
+ * <ul>
+ *     <li>'redis.writebehind.writes' and 'redis.writebehind.commands' counters, writes submitted and commands sent
+ *     for them, whose ratio is also published as 'redis.writebehind.coalescing' gauge.</li>
+ *     <li>'redis.writebehind.flushes', 'redis.writebehind.flushes.failed' and 'redis.writebehind.dropped'
+ *     counters.</li>
+ *     <li>'redis.writebehind.flush.mean' and 'redis.writebehind.flush.max' gauges, flush time.</li>
+ *     <li>'redis.writebehind.pending' gauge, keys with pending writes.</li>
+ * </ul>
+ * All meters read {@link WriteBehindStatistics} the template already keeps.
+ *
+ * @author zakyalvan
+ */
+public class WriteBehindMetrics implements MeterBinder {
+    private final WriteBehindRedisTemplate<?, ?> template;
+
+    private final Iterable<Tag> tags;
+
+    public WriteBehindMetrics(WriteBehindRedisTemplate<?, ?> template) {
+        this(template, Tags.empty());
+    }
+
+    public WriteBehindMetrics(WriteBehindRedisTemplate<?, ?> template, Iterable<Tag> tags) {
+        Assert.notNull(template, "Write behind template must not be null");
+        Assert.notNull(tags, "Tags must not be null");
+        this.template = template;
+        this.tags = tags;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        WriteBehindStatistics statistics = template.getStatistics();
+        FunctionCounter.builder("redis.writebehind.writes", statistics, WriteBehindStatistics::getWrites)
+                .tags(tags).description("Writes submitted to write behind buffer").register(registry);
+        FunctionCounter.builder("redis.writebehind.commands", statistics, WriteBehindStatistics::getCommands)
+                .tags(tags).description("Commands sent for buffered writes").register(registry);
+        Gauge.builder("redis.writebehind.coalescing", statistics, WriteBehindStatistics::getCoalescingRatio)
+                .tags(tags).description("Writes merged into one command on average").register(registry);
+        FunctionCounter.builder("redis.writebehind.flushes", statistics, WriteBehindStatistics::getFlushes)
+                .tags(tags).description("Flushes of write behind buffer").register(registry);
+        FunctionCounter.builder("redis.writebehind.flushes.failed", statistics, WriteBehindStatistics::getFailedFlushes)
+                .tags(tags).description("Flushes kept pending because redis unreachable").register(registry);
+        FunctionCounter.builder("redis.writebehind.dropped", statistics, WriteBehindStatistics::getDroppedWrites)
+                .tags(tags).description("Buffered writes not applied").register(registry);
+        TimeGauge.builder("redis.writebehind.flush.mean", statistics, TimeUnit.MILLISECONDS,
+                WriteBehindStatistics::getMeanFlushTime).tags(tags).description("Mean flush time").register(registry);
+        TimeGauge.builder("redis.writebehind.flush.max", statistics, TimeUnit.MILLISECONDS,
+                WriteBehindStatistics::getMaxFlushTime).tags(tags).description("Longest flush time").register(registry);
+        Gauge.builder("redis.writebehind.pending", template, WriteBehindRedisTemplate::getPendingCount)
+                .tags(tags).description("Keys with pending writes").register(registry);
+    }
+}
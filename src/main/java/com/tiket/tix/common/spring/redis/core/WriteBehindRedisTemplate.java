@@ -0,0 +1,471 @@
+package com.tiket.tix.common.spring.redis.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Write behind buffer of fire and forget writes, whose results callers never read: counter increments ('INCRBY',
+ * 'HINCRBY') and overwriting 'SET' (e.g. last seen time).
+ * <p>
+ * Writes are merged locally per key, increments of the same key (or hash field) summed, and of overwrites of the
+ * same key only the latest kept. Pending writes are flushed every flush interval, or as soon as pending keys reach
+ * flush threshold, by one background thread, as pipelines of at most 'max batch size' commands over connections
+ * retrieved from connection factory (typically fail over capable one). Once pending keys reach 'max pending', writer
+ * flushes on its own thread, and when even that could not make room (redis unreachable) the write is dropped, so
+ * memory stay bounded. Pending writes are flushed on {@link #destroy()}.
+ * <p>
+ * When connection could not be retrieved, drained writes are put back for the next flush. Writes of a pipeline which
+ * broke or answered error are dropped, since they may have been applied already. Increments and overwrites of the
+ * same key are not ordered relative to each other.
+ * <p>
+ * Keys and hash fields are serialized by key serializer, values by value serializer.
+ *
+ * @author zakyalvan
+ */
+public class WriteBehindRedisTemplate<K, V> implements DisposableBean {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WriteBehindRedisTemplate.class);
+
+    public static final long DEFAULT_FLUSH_INTERVAL = 100;
+
+    public static final int DEFAULT_FLUSH_THRESHOLD = 1024;
+
+    public static final int DEFAULT_MAX_PENDING = 65536;
+
+    public static final int DEFAULT_MAX_BATCH_SIZE = 256;
+
+    private final RedisConnectionFactory connectionFactory;
+
+    private final RedisSerializer<K> keySerializer;
+
+    private final RedisSerializer<V> valueSerializer;
+
+    private final long flushInterval;
+
+    private final int flushThreshold;
+
+    private final int maxPending;
+
+    private final int maxBatchSize;
+
+    private final ConcurrentMap<ByteBuffer, Long> increments = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<HashField, Long> hashIncrements = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<ByteBuffer, PendingValue> values = new ConcurrentHashMap<>();
+
+    private final WriteBehindStatistics statistics = new WriteBehindStatistics();
+
+    private final ScheduledExecutorService flusher;
+
+    private final AtomicBoolean flushRequested = new AtomicBoolean(false);
+
+    public WriteBehindRedisTemplate(RedisConnectionFactory connectionFactory, RedisSerializer<K> keySerializer,
+            RedisSerializer<V> valueSerializer) {
+        this(connectionFactory, keySerializer, valueSerializer, DEFAULT_FLUSH_INTERVAL, DEFAULT_FLUSH_THRESHOLD,
+                DEFAULT_MAX_PENDING, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    /**
+     * @param connectionFactory factory of connections pending writes flushed over
+     * @param keySerializer     serializer of keys and hash fields
+     * @param valueSerializer   serializer of values
+     * @param flushInterval     time in milliseconds between scheduled flushes
+     * @param flushThreshold    number of pending keys triggering flush before schedule
+     * @param maxPending        maximum number of pending keys, writers flush themselves beyond it
+     * @param maxBatchSize      maximum number of commands of one pipeline
+     */
+    public WriteBehindRedisTemplate(RedisConnectionFactory connectionFactory, RedisSerializer<K> keySerializer,
+            RedisSerializer<V> valueSerializer, long flushInterval, int flushThreshold, int maxPending, int maxBatchSize) {
+        Assert.notNull(connectionFactory, "Connection factory must not be null");
+        Assert.notNull(keySerializer, "Key serializer must not be null");
+        Assert.notNull(valueSerializer, "Value serializer must not be null");
+        Assert.isTrue(flushInterval > 0, "Flush interval must be positive");
+        Assert.isTrue(flushThreshold > 0, "Flush threshold must be positive");
+        Assert.isTrue(maxPending >= flushThreshold, "Maximum pending must not be less than flush threshold");
+        Assert.isTrue(maxBatchSize > 0, "Maximum batch size must be positive");
+
+        this.connectionFactory = connectionFactory;
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.flushInterval = flushInterval;
+        this.flushThreshold = flushThreshold;
+        this.maxPending = maxPending;
+        this.maxBatchSize = maxBatchSize;
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("redis-write-behind-");
+        threadFactory.setDaemon(true);
+        this.flusher = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        this.flusher.scheduleWithFixedDelay(this::scheduledFlush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+
+    public RedisConnectionFactory getConnectionFactory() {
+        return connectionFactory;
+    }
+
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    public int getFlushThreshold() {
+        return flushThreshold;
+    }
+
+    public int getMaxPending() {
+        return maxPending;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    public WriteBehindStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Number of keys (and hash fields) with pending writes.
+     */
+    public int getPendingCount() {
+        return increments.size() + hashIncrements.size() + values.size();
+    }
+
+    /**
+     * Increment number stored at given key by given delta, merged with other pending increments of the key.
+     */
+    public void increment(K key, long delta) {
+        if (reserve()) {
+            increments.merge(ByteBuffer.wrap(rawKey(key)), delta, Long::sum);
+            written();
+        }
+    }
+
+    /**
+     * Increment number stored at given hash field by given delta, merged with other pending increments of the field.
+     */
+    public void hashIncrement(K key, K field, long delta) {
+        if (reserve()) {
+            hashIncrements.merge(new HashField(rawKey(key), rawKey(field)), delta, Long::sum);
+            written();
+        }
+    }
+
+    /**
+     * Set value of given key, replacing pending value of the key.
+     */
+    public void set(K key, V value) {
+        set(key, value, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Set value of given key with time to live, replacing pending value of the key.
+     */
+    public void set(K key, V value, long timeout, TimeUnit unit) {
+        Assert.isTrue(timeout >= 0, "Timeout must not be negative");
+        if (reserve()) {
+            byte[] rawValue = valueSerializer.serialize(value);
+            Assert.notNull(rawValue, "Value must not serialize to null");
+            values.put(ByteBuffer.wrap(rawKey(key)), new PendingValue(rawValue, unit.toMillis(timeout)));
+            written();
+        }
+    }
+
+    /**
+     * Make room for a write, flushing on calling thread once pending keys reached maximum.
+     *
+     * @return True if write can be buffered, false if dropped because buffer stay full.
+     */
+    private boolean reserve() {
+        statistics.recordWrite();
+        if (getPendingCount() < maxPending) {
+            return true;
+        }
+        flush();
+        if (getPendingCount() < maxPending) {
+            return true;
+        }
+        statistics.recordDropped(1);
+        LOGGER.debug("Write behind buffer full, write dropped");
+        return false;
+    }
+
+    private void written() {
+        if (getPendingCount() >= flushThreshold && flushRequested.compareAndSet(false, true)) {
+            try {
+                flusher.execute(this::scheduledFlush);
+            }
+            catch (RejectedExecutionException ex) {
+                flushRequested.set(false);
+            }
+        }
+    }
+
+    private void scheduledFlush() {
+        flushRequested.set(false);
+        try {
+            flush();
+        }
+        catch (RuntimeException ex) {
+            LOGGER.error("Unexpected error on flushing write behind buffer", ex);
+        }
+    }
+
+    /**
+     * Send all pending writes, on calling thread. Flushes are serialized.
+     */
+    public synchronized void flush() {
+        long started = System.nanoTime();
+        List<PendingWrite> drained = drain();
+        if (drained.isEmpty()) {
+            return;
+        }
+
+        int sent = 0;
+        for (int from = 0; from < drained.size(); from += maxBatchSize) {
+            List<PendingWrite> batch = drained.subList(from, Math.min(from + maxBatchSize, drained.size()));
+            if (!send(batch)) {
+                // Connection unavailable, keep the rest for the next flush.
+                List<PendingWrite> remaining = drained.subList(from, drained.size());
+                remaining.forEach(PendingWrite::requeue);
+                statistics.recordFailedFlush();
+                break;
+            }
+            sent += batch.size();
+        }
+        if (sent > 0) {
+            statistics.recordFlush(sent, System.nanoTime() - started);
+        }
+    }
+
+    private List<PendingWrite> drain() {
+        List<PendingWrite> drained = new ArrayList<>(getPendingCount());
+        for (ByteBuffer key : increments.keySet()) {
+            Long delta = increments.remove(key);
+            if (delta != null && delta != 0) {
+                drained.add(new Increment(key, delta));
+            }
+        }
+        for (HashField field : hashIncrements.keySet()) {
+            Long delta = hashIncrements.remove(field);
+            if (delta != null && delta != 0) {
+                drained.add(new HashIncrement(field, delta));
+            }
+        }
+        for (ByteBuffer key : values.keySet()) {
+            PendingValue value = values.remove(key);
+            if (value != null) {
+                drained.add(new Overwrite(key, value));
+            }
+        }
+        return drained;
+    }
+
+    /**
+     * Send given writes as one pipeline.
+     *
+     * @return False if connection could not be retrieved, nothing sent.
+     */
+    private boolean send(List<PendingWrite> batch) {
+        RedisConnection connection;
+        try {
+            connection = connectionFactory.getConnection();
+        }
+        catch (RuntimeException ex) {
+            LOGGER.warn("Failed to retrieve connection for write behind flush, {} writes kept pending", batch.size(), ex);
+            return false;
+        }
+
+        try {
+            connection.openPipeline();
+            for (PendingWrite write : batch) {
+                write.apply(connection);
+            }
+            connection.closePipeline();
+        }
+        catch (RedisPipelineException ex) {
+            int failed = 0;
+            for (Object result : ex.getPipelineResult()) {
+                if (result instanceof Exception) {
+                    failed++;
+                }
+            }
+            statistics.recordDropped(failed);
+            LOGGER.warn("{} of {} write behind commands failed", failed, batch.size(), ex);
+        }
+        catch (RuntimeException ex) {
+            statistics.recordDropped(batch.size());
+            LOGGER.warn("Write behind pipeline of {} commands broke, writes dropped", batch.size(), ex);
+        }
+        finally {
+            try {
+                connection.close();
+            }
+            catch (RuntimeException ex) {
+                LOGGER.trace("Error on closing write behind connection", ex);
+            }
+        }
+        return true;
+    }
+
+    private byte[] rawKey(K key) {
+        Assert.notNull(key, "Key must not be null");
+        byte[] rawKey = keySerializer.serialize(key);
+        Assert.notNull(rawKey, "Key must not serialize to null");
+        return rawKey;
+    }
+
+    /**
+     * Stop scheduled flushes, then flush pending writes.
+     */
+    @Override
+    public void destroy() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(flushInterval, TimeUnit.MILLISECONDS);
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        return buffer.array();
+    }
+
+    private interface PendingWrite {
+        void apply(RedisConnection connection);
+
+        /**
+         * Put back into buffer for the next flush, merged with writes arrived meanwhile (newer value wins).
+         */
+        void requeue();
+    }
+
+    private final class Increment implements PendingWrite {
+        private final ByteBuffer key;
+
+        private final long delta;
+
+        private Increment(ByteBuffer key, long delta) {
+            this.key = key;
+            this.delta = delta;
+        }
+
+        @Override
+        public void apply(RedisConnection connection) {
+            connection.incrBy(bytes(key), delta);
+        }
+
+        @Override
+        public void requeue() {
+            increments.merge(key, delta, Long::sum);
+        }
+    }
+
+    private final class HashIncrement implements PendingWrite {
+        private final HashField field;
+
+        private final long delta;
+
+        private HashIncrement(HashField field, long delta) {
+            this.field = field;
+            this.delta = delta;
+        }
+
+        @Override
+        public void apply(RedisConnection connection) {
+            connection.hIncrBy(bytes(field.key), bytes(field.field), delta);
+        }
+
+        @Override
+        public void requeue() {
+            hashIncrements.merge(field, delta, Long::sum);
+        }
+    }
+
+    private final class Overwrite implements PendingWrite {
+        private final ByteBuffer key;
+
+        private final PendingValue value;
+
+        private Overwrite(ByteBuffer key, PendingValue value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public void apply(RedisConnection connection) {
+            if (value.ttl > 0) {
+                connection.pSetEx(bytes(key), value.ttl, value.value);
+            }
+            else {
+                connection.set(bytes(key), value.value);
+            }
+        }
+
+        @Override
+        public void requeue() {
+            values.putIfAbsent(key, value);
+        }
+    }
+
+    private static final class PendingValue {
+        private final byte[] value;
+
+        /**
+         * Time to live in milliseconds, zero for none.
+         */
+        private final long ttl;
+
+        private PendingValue(byte[] value, long ttl) {
+            this.value = value;
+            this.ttl = ttl;
+        }
+    }
+
+    private static final class HashField {
+        private final ByteBuffer key;
+
+        private final ByteBuffer field;
+
+        private HashField(byte[] key, byte[] field) {
+            this.key = ByteBuffer.wrap(key);
+            this.field = ByteBuffer.wrap(field);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof HashField)) {
+                return false;
+            }
+            HashField that = (HashField) other;
+            return key.equals(that.key) && field.equals(that.field);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * key.hashCode() + field.hashCode();
+        }
+    }
+}
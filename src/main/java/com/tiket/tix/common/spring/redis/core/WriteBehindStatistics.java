@@ -0,0 +1,107 @@
+package com.tiket.tix.common.spring.redis.core;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalescing and flush statistics of {@link WriteBehindRedisTemplate}. Recording is lock free and allocation free.
+ *
+ * @author zakyalvan
+ */
+public class WriteBehindStatistics {
+    private final AtomicLong writes = new AtomicLong();
+
+    private final AtomicLong commands = new AtomicLong();
+
+    private final AtomicLong flushes = new AtomicLong();
+
+    private final AtomicLong flushTime = new AtomicLong();
+
+    private final AtomicLong maxFlushTime = new AtomicLong();
+
+    private final AtomicLong failedFlushes = new AtomicLong();
+
+    private final AtomicLong droppedWrites = new AtomicLong();
+
+    void recordWrite() {
+        writes.incrementAndGet();
+    }
+
+    void recordFlush(int sentCommands, long nanos) {
+        flushes.incrementAndGet();
+        commands.addAndGet(sentCommands);
+        flushTime.addAndGet(nanos);
+
+        long max;
+        while ((max = maxFlushTime.get()) < nanos && !maxFlushTime.compareAndSet(max, nanos)) {
+            // Retry until recorded or longer flush recorded concurrently.
+        }
+    }
+
+    void recordFailedFlush() {
+        failedFlushes.incrementAndGet();
+    }
+
+    void recordDropped(int count) {
+        droppedWrites.addAndGet(count);
+    }
+
+    /**
+     * Number of writes submitted.
+     */
+    public long getWrites() {
+        return writes.get();
+    }
+
+    /**
+     * Number of commands sent to redis for submitted writes.
+     */
+    public long getCommands() {
+        return commands.get();
+    }
+
+    /**
+     * Number of writes merged into one command on average, 1 when nothing coalesced.
+     */
+    public double getCoalescingRatio() {
+        long sent = commands.get();
+        return sent == 0 ? 0 : (double) writes.get() / sent;
+    }
+
+    /**
+     * Number of flushes which sent at least one command.
+     */
+    public long getFlushes() {
+        return flushes.get();
+    }
+
+    /**
+     * Mean time of one flush, in milliseconds.
+     */
+    public double getMeanFlushTime() {
+        long count = flushes.get();
+        return count == 0 ? 0 : (double) flushTime.get() / count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Longest flush, in milliseconds.
+     */
+    public double getMaxFlushTime() {
+        return (double) maxFlushTime.get() / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Number of flushes which kept writes pending, because connection could not be retrieved.
+     */
+    public long getFailedFlushes() {
+        return failedFlushes.get();
+    }
+
+    /**
+     * Number of writes not applied, because their pipeline broke or failed them, or buffer was full while redis
+     * unreachable.
+     */
+    public long getDroppedWrites() {
+        return droppedWrites.get();
+    }
+}
@@ -0,0 +1,421 @@
+package com.tiket.tix.common.spring.redis.serializer;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A {@link RedisSerializer} of arbitrary values, writing common scalar values (strings, byte arrays, numbers and
+ * booleans) in compact binary form instead of java serialization stream, and compressing values of at least
+ * {@link #getCompressionThreshold() compression threshold} bytes, so that large values take less proxy memory,
+ * network and redis memory.
+ * <p>
+ * Each value start with a two bytes header, marker byte then type and compression flag, followed by original length
+ * of compressed value. Other values are written by java serialization. Values without header, i.e. written by
+ * {@link JdkSerializationRedisSerializer}, are still read, so that serializer can replace java serialization of
+ * existing data. Compression is skipped when it does not make the value smaller.
+ * <p>
+ * Values are compressed by LZ4 when lz4-java is on classpath, otherwise by deflate at fastest level, see
+ * {@link Compression}. Values compressed by either are read regardless of configured compression. Deflate
+ * (de)compressors hold native memory, at most one per processor is kept for reuse and the rest are released
+ * right after use.
+ *
+ * @author zakyalvan
+ */
+public class CompactRedisSerializer implements RedisSerializer<Object> {
+    public static final int DEFAULT_COMPRESSION_THRESHOLD = 1024;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private static final byte MARKER = (byte) 0xC5;
+
+    private static final int HEADER_SIZE = 2;
+
+    private static final int COMPRESSED = 0x80;
+
+    private static final int LZ4_COMPRESSED = 0x40;
+
+    private static final int TYPE_MASK = 0x0F;
+
+    private static final int BYTES = 1;
+
+    private static final int STRING = 2;
+
+    private static final int LONG = 3;
+
+    private static final int INTEGER = 4;
+
+    private static final int DOUBLE = 5;
+
+    private static final int BOOLEAN = 6;
+
+    private static final int SERIALIZED = 7;
+
+    private static final boolean LZ4_PRESENT = ClassUtils.isPresent("net.jpountz.lz4.LZ4Factory",
+            CompactRedisSerializer.class.getClassLoader());
+
+    private static final int POOLED_CODECS = Runtime.getRuntime().availableProcessors();
+
+    private static final BlockingQueue<Deflater> DEFLATERS = new ArrayBlockingQueue<>(POOLED_CODECS);
+
+    private static final BlockingQueue<Inflater> INFLATERS = new ArrayBlockingQueue<>(POOLED_CODECS);
+
+    private final int compressionThreshold;
+
+    private final Compression compression;
+
+    private final JdkSerializationRedisSerializer jdkSerializer;
+
+    public CompactRedisSerializer() {
+        this(DEFAULT_COMPRESSION_THRESHOLD);
+    }
+
+    public CompactRedisSerializer(int compressionThreshold) {
+        this(compressionThreshold, null);
+    }
+
+    /**
+     * @param compressionThreshold minimum size in bytes of compressed values, {@link Integer#MAX_VALUE} to never
+     *                             compress
+     * @param classLoader          class loader of java serialized values, null for default
+     */
+    public CompactRedisSerializer(int compressionThreshold, ClassLoader classLoader) {
+        this(compressionThreshold, defaultCompression(), classLoader);
+    }
+
+    /**
+     * @param compressionThreshold minimum size in bytes of compressed values, {@link Integer#MAX_VALUE} to never
+     *                             compress
+     * @param compression          compression of written values
+     * @param classLoader          class loader of java serialized values, null for default
+     */
+    public CompactRedisSerializer(int compressionThreshold, Compression compression, ClassLoader classLoader) {
+        Assert.isTrue(compressionThreshold >= 0, "Compression threshold must not be negative");
+        Assert.notNull(compression, "Compression must not be null");
+        Assert.isTrue(compression != Compression.LZ4 || LZ4_PRESENT, "LZ4 compression requires lz4-java on classpath");
+        this.compressionThreshold = compressionThreshold;
+        this.compression = compression;
+        this.jdkSerializer = new JdkSerializationRedisSerializer(classLoader);
+    }
+
+    /**
+     * @return {@link Compression#LZ4} if lz4-java is on classpath, otherwise {@link Compression#DEFLATE}.
+     */
+    public static Compression defaultCompression() {
+        return LZ4_PRESENT ? Compression.LZ4 : Compression.DEFLATE;
+    }
+
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    public Compression getCompression() {
+        return compression;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return EMPTY;
+        }
+
+        int type;
+        byte[] payload;
+        if (value instanceof byte[]) {
+            type = BYTES;
+            payload = (byte[]) value;
+        }
+        else if (value instanceof String) {
+            type = STRING;
+            payload = ((String) value).getBytes(StandardCharsets.UTF_8);
+        }
+        else if (value instanceof Long) {
+            type = LONG;
+            payload = varLong((Long) value);
+        }
+        else if (value instanceof Integer) {
+            type = INTEGER;
+            payload = varLong((Integer) value);
+        }
+        else if (value instanceof Double) {
+            type = DOUBLE;
+            payload = fixedLong(Double.doubleToRawLongBits((Double) value));
+        }
+        else if (value instanceof Boolean) {
+            type = BOOLEAN;
+            payload = new byte[] {(byte) ((Boolean) value ? 1 : 0)};
+        }
+        else {
+            type = SERIALIZED;
+            payload = jdkSerializer.serialize(value);
+        }
+
+        if (payload.length >= compressionThreshold && payload.length > 0) {
+            byte[] compressed = compress(type, payload);
+            if (compressed != null) {
+                return compressed;
+            }
+        }
+        byte[] bytes = new byte[HEADER_SIZE + payload.length];
+        bytes[0] = MARKER;
+        bytes[1] = (byte) type;
+        System.arraycopy(payload, 0, bytes, HEADER_SIZE, payload.length);
+        return bytes;
+    }
+
+    /**
+     * @return Compressed value with header, or null if not smaller than uncompressed one.
+     */
+    private byte[] compress(int type, byte[] payload) {
+        int limit = HEADER_SIZE + payload.length;
+        byte[] bytes = new byte[limit];
+        bytes[0] = MARKER;
+        int position = writeVarInt(bytes, HEADER_SIZE, payload.length);
+
+        if (compression == Compression.LZ4) {
+            bytes[1] = (byte) (type | COMPRESSED | LZ4_COMPRESSED);
+            int length = Lz4.compress(payload, bytes, position, limit - position);
+            return length >= 0 && position + length < limit ? Arrays.copyOf(bytes, position + length) : null;
+        }
+
+        bytes[1] = (byte) (type | COMPRESSED);
+        Deflater deflater = DEFLATERS.poll();
+        if (deflater == null) {
+            deflater = new Deflater(Deflater.BEST_SPEED);
+        }
+        try {
+            deflater.setInput(payload);
+            deflater.finish();
+            while (!deflater.finished() && position < limit) {
+                position += deflater.deflate(bytes, position, limit - position);
+            }
+            return deflater.finished() && position < limit ? Arrays.copyOf(bytes, position) : null;
+        }
+        finally {
+            deflater.reset();
+            // Drop reference to value while pooled.
+            deflater.setInput(EMPTY);
+            if (!DEFLATERS.offer(deflater)) {
+                deflater.end();
+            }
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] != MARKER) {
+            // Written before this serializer, by java serialization.
+            return jdkSerializer.deserialize(bytes);
+        }
+        if (bytes.length < HEADER_SIZE) {
+            throw new SerializationException("Truncated value header");
+        }
+
+        int flags = bytes[1] & 0xFF;
+        byte[] payload;
+        if ((flags & COMPRESSED) != 0) {
+            payload = decompress(bytes);
+        }
+        else {
+            payload = Arrays.copyOfRange(bytes, HEADER_SIZE, bytes.length);
+        }
+
+        switch (flags & TYPE_MASK) {
+            case BYTES:
+                return payload;
+            case STRING:
+                return new String(payload, StandardCharsets.UTF_8);
+            case LONG:
+                return readVarLong(payload);
+            case INTEGER:
+                return (int) readVarLong(payload);
+            case DOUBLE:
+                return Double.longBitsToDouble(readFixedLong(payload));
+            case BOOLEAN:
+                return payload.length == 1 && payload[0] != 0;
+            case SERIALIZED:
+                return jdkSerializer.deserialize(payload);
+            default:
+                throw new SerializationException("Unknown value type " + (flags & TYPE_MASK));
+        }
+    }
+
+    private static byte[] decompress(byte[] bytes) {
+        int length = 0;
+        int position = HEADER_SIZE;
+        for (int shift = 0; ; shift += 7) {
+            if (position >= bytes.length || shift > 28) {
+                throw new SerializationException("Malformed compressed value length");
+            }
+            byte current = bytes[position++];
+            length |= (current & 0x7F) << shift;
+            if (current >= 0) {
+                break;
+            }
+        }
+
+        byte[] payload = new byte[length];
+        if ((bytes[1] & LZ4_COMPRESSED) != 0) {
+            if (!LZ4_PRESENT) {
+                throw new SerializationException("Value compressed by LZ4, but lz4-java not on classpath");
+            }
+            Lz4.decompress(bytes, position, payload);
+            return payload;
+        }
+
+        Inflater inflater = INFLATERS.poll();
+        if (inflater == null) {
+            inflater = new Inflater();
+        }
+        try {
+            inflater.setInput(bytes, position, bytes.length - position);
+            int read = 0;
+            while (read < length) {
+                int inflated = inflater.inflate(payload, read, length - read);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new SerializationException("Truncated compressed value");
+                }
+                read += inflated;
+            }
+        }
+        catch (DataFormatException ex) {
+            throw new SerializationException("Malformed compressed value", ex);
+        }
+        finally {
+            inflater.reset();
+            inflater.setInput(EMPTY);
+            if (!INFLATERS.offer(inflater)) {
+                inflater.end();
+            }
+        }
+        return payload;
+    }
+
+    /**
+     * Number of deflate (de)compressors kept for reuse.
+     */
+    static int pooledCodecs() {
+        return DEFLATERS.size() + INFLATERS.size();
+    }
+
+    private static int writeVarInt(byte[] bytes, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[position++] = (byte) value;
+        return position;
+    }
+
+    /**
+     * Zig zag variable length encoding, one byte for small absolute values.
+     */
+    private static byte[] varLong(long value) {
+        long zigZag = (value << 1) ^ (value >> 63);
+        byte[] buffer = new byte[10];
+        int length = 0;
+        while ((zigZag & ~0x7FL) != 0) {
+            buffer[length++] = (byte) ((zigZag & 0x7F) | 0x80);
+            zigZag >>>= 7;
+        }
+        buffer[length++] = (byte) zigZag;
+        return Arrays.copyOf(buffer, length);
+    }
+
+    private static long readVarLong(byte[] payload) {
+        long zigZag = 0;
+        for (int i = 0; i < payload.length && i < 10; i++) {
+            zigZag |= (long) (payload[i] & 0x7F) << (7 * i);
+            if (payload[i] >= 0) {
+                return (zigZag >>> 1) ^ -(zigZag & 1);
+            }
+        }
+        throw new SerializationException("Malformed number value");
+    }
+
+    private static byte[] fixedLong(long value) {
+        byte[] bytes = new byte[8];
+        for (int i = 7; i >= 0; i--) {
+            bytes[i] = (byte) value;
+            value >>>= 8;
+        }
+        return bytes;
+    }
+
+    private static long readFixedLong(byte[] payload) {
+        if (payload.length != 8) {
+            throw new SerializationException("Malformed number value");
+        }
+        long value = 0;
+        for (byte current : payload) {
+            value = (value << 8) | (current & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * Compression of values of at least compression threshold bytes.
+     */
+    public enum Compression {
+        /**
+         * Deflate at fastest level, from JDK.
+         */
+        DEFLATE,
+
+        /**
+         * LZ4, several times faster than deflate for slightly larger output, requires lz4-java.
+         */
+        LZ4
+    }
+
+    /**
+     * LZ4 codec, separate class so that lz4-java is only loaded when used.
+     */
+    private static final class Lz4 {
+        private static final LZ4Compressor COMPRESSOR = LZ4Factory.fastestInstance().fastCompressor();
+
+        private static final LZ4SafeDecompressor DECOMPRESSOR = LZ4Factory.fastestInstance().safeDecompressor();
+
+        /**
+         * @return Compressed length, or -1 if longer than given maximum.
+         */
+        static int compress(byte[] source, byte[] target, int offset, int maxLength) {
+            try {
+                return COMPRESSOR.compress(source, 0, source.length, target, offset, maxLength);
+            }
+            catch (LZ4Exception ex) {
+                return -1;
+            }
+        }
+
+        static void decompress(byte[] source, int offset, byte[] target) {
+            int length;
+            try {
+                length = DECOMPRESSOR.decompress(source, offset, source.length - offset, target, 0, target.length);
+            }
+            catch (LZ4Exception ex) {
+                throw new SerializationException("Malformed compressed value", ex);
+            }
+            if (length != target.length) {
+                throw new SerializationException("Truncated compressed value");
+            }
+        }
+    }
+}
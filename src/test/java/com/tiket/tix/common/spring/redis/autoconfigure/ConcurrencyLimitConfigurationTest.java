@@ -0,0 +1,105 @@
+package com.tiket.tix.common.spring.redis.autoconfigure;
+
+import com.tiket.tix.common.spring.redis.connection.AdaptiveConcurrencyLimiter;
+import com.tiket.tix.common.spring.redis.connection.ConnectionLimitExceededException;
+import com.tiket.tix.common.spring.redis.connection.FailOverCandidate;
+import com.tiket.tix.common.spring.redis.connection.FailOverCapableConnectionFactory;
+import com.tiket.tix.common.spring.redis.connection.RedisServerStub;
+import com.tiket.tix.common.spring.redis.connection.WarmableConnectionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.data.redis.connection.RedisConnection;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.fail;
+
+/**
+ * Concurrency limiter of candidates created by {@link ExtendedRedisAutoConfiguration}, against redis protocol
+ * stand-in.
+ *
+ * @author zakyalvan
+ */
+public class ConcurrencyLimitConfigurationTest {
+    private final Map<String, Object> settings = new LinkedHashMap<>();
+
+    private final List<WarmableConnectionFactory> delegateFactories = new ArrayList<>();
+
+    private RedisServerStub server;
+
+    @Before
+    public void setUp() {
+        server = new RedisServerStub().start();
+        settings.put("tiket.redis.connections.first-node.host", "127.0.0.1");
+        settings.put("tiket.redis.connections.first-node.port", server.getPort());
+        settings.put("tiket.redis.connections.first-node.limit.enabled", true);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (WarmableConnectionFactory factory : delegateFactories) {
+            ((DisposableBean) factory).destroy();
+        }
+        server.stop();
+    }
+
+    private FailOverCandidate createCandidate() {
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("test", settings));
+        ExtendedRedisProperties properties = ExtendedRedisAutoConfiguration.bindProperties(environment);
+        return ExtendedRedisAutoConfiguration.createCandidate(properties, "first-node",
+                properties.getConnections().get("first-node"), delegateFactories);
+    }
+
+    @Test
+    public void givenJedisPoolSmallerThanLimit_whenCandidateCreated_thenLimitClampedToMaxActive() {
+        settings.put("tiket.redis.connections.first-node.pool.max-active", 2);
+        AdaptiveConcurrencyLimiter limiter = createCandidate().getConcurrencyLimiter();
+        assertThat(limiter.getLimit(), is(2));
+        assertThat(limiter.getMaxLimit(), is(2));
+
+        // Default pool of eight connections.
+        settings.remove("tiket.redis.connections.first-node.pool.max-active");
+        assertThat(createCandidate().getConcurrencyLimiter().getMaxLimit(), is(8));
+
+        // Batching connections do not hold pooled connection per retrieval.
+        settings.put("tiket.redis.connections.first-node.batching.enabled", true);
+        assertThat(createCandidate().getConcurrencyLimiter().getMaxLimit(), is(AdaptiveConcurrencyLimiter.DEFAULT_MAX_LIMIT));
+    }
+
+    @Test(timeout = 5000)
+    public void givenPoolExhausted_whenConnectionRetrieved_thenRejectedInsteadOfWaitingForPool() {
+        settings.put("tiket.redis.connections.first-node.pool.max-active", 2);
+        FailOverCapableConnectionFactory connectionFactory =
+                new FailOverCapableConnectionFactory(Collections.singletonList(createCandidate()));
+        RedisConnection first = connectionFactory.getConnection();
+        RedisConnection second = connectionFactory.getConnection();
+        try {
+            long started = System.nanoTime();
+            try {
+                connectionFactory.getConnection();
+                fail("Retrieval beyond pool max-active must be rejected");
+            }
+            catch (ConnectionLimitExceededException ex) {
+                assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), lessThan(100L));
+            }
+        }
+        finally {
+            first.close();
+            second.close();
+            connectionFactory.destroy();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.tiket.tix.common.spring.redis.autoconfigure;
+
+import com.tiket.tix.common.spring.redis.connection.FailOverCandidate;
+import com.tiket.tix.common.spring.redis.connection.FailOverCapableConnectionFactory;
+import com.tiket.tix.common.spring.redis.connection.RedisServerStub;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+/**
+ * Reload of {@link FailOverCapableConnectionFactory} connections by {@link ConnectionTopologyRefresher}, against redis
+ * protocol stand-in.
+ *
+ * @author zakyalvan
+ */
+public class ConnectionTopologyRefresherTest {
+    private final List<RedisServerStub> servers = new ArrayList<>();
+
+    private final Map<String, Object> settings = new LinkedHashMap<>();
+
+    private FailOverCapableConnectionFactory connectionFactory;
+
+    private ConnectionTopologyRefresher refresher;
+
+    @Before
+    public void setUp() {
+        for (int i = 0; i < 3; i++) {
+            servers.add(new RedisServerStub().start());
+        }
+        connect("first-node", 0);
+
+        StandardEnvironment environment = new StandardEnvironment();
+        environment.getPropertySources().addFirst(new MapPropertySource("test", settings));
+        ExtendedRedisProperties properties = ExtendedRedisAutoConfiguration.bindProperties(environment);
+        connectionFactory = ExtendedRedisAutoConfiguration.createFailOverConnectionFactory(properties,
+                properties.getConnections(), properties.getBalancingMode(), properties.getLatencyDecayTime());
+        refresher = new ConnectionTopologyRefresher(connectionFactory, properties, environment);
+        refresher.setDrainTimeout(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    @After
+    public void tearDown() {
+        refresher.destroy();
+        connectionFactory.destroy();
+        servers.forEach(RedisServerStub::stop);
+    }
+
+    private void connect(String name, int server) {
+        settings.put("tiket.redis.connections." + name + ".host", "127.0.0.1");
+        settings.put("tiket.redis.connections." + name + ".port", servers.get(server).getPort());
+        settings.put("tiket.redis.connections." + name + ".pool.min-idle", 2);
+    }
+
+    @Test
+    public void givenProxyReplaced_whenRefreshed_thenTrafficMovedAndOldPoolDrained() throws Exception {
+        StringRedisTemplate template = new StringRedisTemplate(connectionFactory);
+        template.opsForValue().set("hotel:1", "Hotel One");
+        RedisConnection borrowed = connectionFactory.getConnection();
+
+        connect("first-node", 1);
+        assertThat(refresher.refresh(), is(true));
+        // Warmed up to minimum idle before traffic moved.
+        assertThat(servers.get(1).getClientCount(), is(2));
+
+        template.opsForValue().set("hotel:2", "Hotel Two");
+        assertThat(servers.get(1).getStore().containsKey("hotel:2"), is(true));
+        assertThat(servers.get(0).getStore().containsKey("hotel:2"), is(false));
+
+        // Old pool (one idle, one borrowed connection) is kept while connection borrowed before refresh in use.
+        TimeUnit.MILLISECONDS.sleep(300);
+        assertThat(servers.get(0).getClientCount(), is(2));
+        assertThat(borrowed.get(bytes("hotel:1")), is(bytes("Hotel One")));
+        borrowed.close();
+        await().atMost(2, TimeUnit.SECONDS).until(() -> servers.get(0).getClientCount() == 0);
+    }
+
+    @Test
+    public void givenProxyAdded_whenRefreshed_thenUnchangedConnectionsKept() {
+        connect("second-node", 1);
+        refresher.refresh();
+        FailOverCandidate first = connectionFactory.getCandidates().get(0);
+        FailOverCandidate second = connectionFactory.getCandidates().get(1);
+
+        connect("third-node", 2);
+        assertThat(refresher.refresh(), is(true));
+        assertThat(connectionFactory.getCandidates().size(), is(3));
+        assertThat(connectionFactory.getCandidates().get(0), is(sameInstance(first)));
+        assertThat(connectionFactory.getCandidates().get(1), is(sameInstance(second)));
+
+        assertThat(refresher.refresh(), is(false));
+        settings.put("tiket.redis.connections.second-node.pool.max-active", 16);
+        assertThat(refresher.refresh(), is(true));
+        assertThat(connectionFactory.getCandidates().get(0), is(sameInstance(first)));
+        assertThat(connectionFactory.getCandidates().get(1) == second, is(false));
+    }
+
+    @Test
+    public void givenTrafficInFlight_whenRefreshedRepeatedly_thenNoCommandFailed() throws Exception {
+        StringRedisTemplate template = new StringRedisTemplate(connectionFactory);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicLong commands = new AtomicLong();
+
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(callers.submit(() -> {
+                    while (running.get()) {
+                        template.opsForValue().set("counter", "1");
+                        commands.incrementAndGet();
+                    }
+                }));
+            }
+
+            for (int i = 0; i < 6; i++) {
+                TimeUnit.MILLISECONDS.sleep(50);
+                connect("first-node", (i + 1) % servers.size());
+                assertThat(refresher.refresh(), is(true));
+            }
+            running.set(false);
+            for (Future<?> result : results) {
+                result.get(5, TimeUnit.SECONDS);
+            }
+        }
+        finally {
+            running.set(false);
+            callers.shutdownNow();
+        }
+        assertThat(commands.get(), greaterThan(0L));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
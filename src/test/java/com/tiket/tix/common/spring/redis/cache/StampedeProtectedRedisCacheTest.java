@@ -0,0 +1,192 @@
+package com.tiket.tix.common.spring.redis.cache;
+
+import com.tiket.tix.common.spring.redis.connection.ExtendedJedisConnectionFactory;
+import com.tiket.tix.common.spring.redis.connection.RedisServerStub;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.Cache;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Miss collapsing, early refresh and stale serving of {@link StampedeProtectedRedisCache}, against redis protocol
+ * stand-in.
+ *
+ * @author zakyalvan
+ */
+public class StampedeProtectedRedisCacheTest {
+    private RedisServerStub server;
+
+    private ExtendedJedisConnectionFactory connectionFactory;
+
+    private StampedeProtectedCacheManager cacheManager;
+
+    @Before
+    public void setUp() {
+        server = new RedisServerStub().start();
+        connectionFactory = new ExtendedJedisConnectionFactory();
+        connectionFactory.setHostName("127.0.0.1");
+        connectionFactory.setPort(server.getPort());
+        connectionFactory.afterPropertiesSet();
+
+        cacheManager = new StampedeProtectedCacheManager(connectionFactory);
+        cacheManager.setTimeToLives(Collections.singletonMap("rates", 100L));
+        cacheManager.setGracePeriod(TimeUnit.SECONDS.toMillis(10));
+        cacheManager.setBeta(0);
+        cacheManager.afterPropertiesSet();
+    }
+
+    @After
+    public void tearDown() {
+        cacheManager.destroy();
+        connectionFactory.destroy();
+        server.stop();
+    }
+
+    @Test
+    public void givenConcurrentMisses_whenLoaded_thenOneLoadShared() throws Exception {
+        Cache cache = cacheManager.getCache("hotels");
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService callers = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                results.add(callers.submit(() -> {
+                    start.await();
+                    return cache.get("hotel:1", () -> {
+                        loads.incrementAndGet();
+                        TimeUnit.MILLISECONDS.sleep(200);
+                        return "Hotel One";
+                    });
+                }));
+            }
+            start.countDown();
+            for (Future<String> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS), is("Hotel One"));
+            }
+        }
+        finally {
+            callers.shutdownNow();
+        }
+
+        assertThat(loads.get(), is(1));
+        assertThat(server.getCommandCount("PSETEX"), is(1L));
+        assertThat(cache.get("hotel:1").get(), is("Hotel One"));
+    }
+
+    @Test
+    public void givenExpiredWithinGrace_whenLoaded_thenStaleServedAndRefreshedOnce() {
+        StampedeProtectedRedisCache cache = (StampedeProtectedRedisCache) cacheManager.getCache("rates");
+        assertThat(cache.get("IDR", () -> "15000"), is("15000"));
+        await().atMost(1, TimeUnit.SECONDS).until(() -> cache.get("IDR") == null);
+
+        AtomicInteger loads = new AtomicInteger();
+        for (int i = 0; i < 20; i++) {
+            String value = cache.get("IDR", () -> {
+                loads.incrementAndGet();
+                TimeUnit.MILLISECONDS.sleep(100);
+                return "15500";
+            });
+            assertThat(value, is("15000"));
+        }
+        await().atMost(2, TimeUnit.SECONDS).until(() -> "15500".equals(cache.get("IDR", () -> "16000")));
+
+        assertThat(loads.get(), is(1));
+        assertThat(cache.getStaleHitCount(), greaterThanOrEqualTo(20L));
+        assertThat(cache.getRefreshCount(), is(1L));
+    }
+
+    @Test
+    public void givenSlowLoadNearExpiry_whenLoaded_thenRefreshedEarly() throws Exception {
+        cacheManager.destroy();
+        cacheManager = new StampedeProtectedCacheManager(connectionFactory);
+        cacheManager.setDefaultTimeToLive(TimeUnit.SECONDS.toMillis(5));
+        cacheManager.setBeta(1000);
+        cacheManager.afterPropertiesSet();
+
+        StampedeProtectedRedisCache cache = (StampedeProtectedRedisCache) cacheManager.getCache("rates");
+        // Load time (at least 20 ms) times beta times -ln(0.001) exceed time to live many times over.
+        cache.setEarlyRefreshDraw(() -> 0.001);
+        cache.get("IDR", () -> {
+            TimeUnit.MILLISECONDS.sleep(20);
+            return "15000";
+        });
+
+        long started = System.nanoTime();
+        assertThat(cache.get("IDR", () -> "15500"), is("15000"));
+        await().atMost(2, TimeUnit.SECONDS).until(() -> "15500".equals(cache.get("IDR").get()));
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), lessThan(5000L));
+        assertThat(cache.getRefreshCount(), greaterThanOrEqualTo(1L));
+    }
+
+    @Test
+    public void givenLoaderFailed_whenLoadedAgain_thenLoaderCalledAgain() {
+        Cache cache = cacheManager.getCache("hotels");
+        try {
+            cache.get("hotel:2", () -> {
+                throw new IllegalStateException("Database unavailable");
+            });
+            throw new AssertionError("Loader failure must be propagated");
+        }
+        catch (Cache.ValueRetrievalException ex) {
+            assertThat(ex.getCause().getMessage(), is("Database unavailable"));
+        }
+
+        assertThat(cache.get("hotel:2", () -> "Hotel Two"), is("Hotel Two"));
+    }
+
+    @Test
+    public void givenNullValue_whenPut_thenCachedAsNull() {
+        Cache cache = cacheManager.getCache("hotels");
+        cache.put("hotel:3", null);
+
+        assertThat(cache.get("hotel:3").get(), is(nullValue()));
+        assertThat(cache.putIfAbsent("hotel:3", "Hotel Three").get(), is(nullValue()));
+        cache.evict("hotel:3");
+        assertThat(cache.get("hotel:3"), is(nullValue()));
+        assertThat(cache.putIfAbsent("hotel:3", "Hotel Three"), is(nullValue()));
+        assertThat(cache.get("hotel:3").get(), is("Hotel Three"));
+        // Stored with time to live in one 'SET NX PX'.
+        assertThat(server.getCommandCount("SETNX") + server.getCommandCount("PEXPIRE"), is(0L));
+    }
+
+    @Test
+    public void givenNoShardedConnectionFactory_whenCleared_thenEntriesOfKnownKeysDeleted() {
+        Cache hotels = cacheManager.getCache("hotels");
+        Cache rates = cacheManager.getCache("rates");
+        hotels.put("hotel:1", "Hotel One");
+        hotels.putIfAbsent("hotel:2", "Hotel Two");
+        assertThat(hotels.get("hotel:3", () -> "Hotel Three"), is("Hotel Three"));
+        hotels.put("hotel:4", "Hotel Four");
+        hotels.evict("hotel:4");
+        rates.put("hotel:1", 350000L);
+
+        hotels.clear();
+
+        assertThat(hotels.get("hotel:1"), is(nullValue()));
+        assertThat(hotels.get("hotel:2"), is(nullValue()));
+        assertThat(hotels.get("hotel:3"), is(nullValue()));
+        assertThat(rates.get("hotel:1").get(), is(350000L));
+        assertThat(server.getStore().keySet(), contains("rates:hotel:1"));
+        assertThat(server.getCommandCount("SCAN"), is(0L));
+    }
+}
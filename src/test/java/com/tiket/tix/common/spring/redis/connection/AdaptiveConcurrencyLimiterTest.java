@@ -0,0 +1,152 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+/**
+ * Limit of {@link AdaptiveConcurrencyLimiter}, alone and on candidates of {@link FailOverCapableConnectionFactory}
+ * against redis protocol stand-ins.
+ *
+ * @author zakyalvan
+ */
+public class AdaptiveConcurrencyLimiterTest {
+    private static final byte[] KEY = "rate".getBytes(StandardCharsets.UTF_8);
+
+    private final List<RedisServerStub> servers = new ArrayList<>();
+
+    private final List<ExtendedJedisConnectionFactory> delegates = new ArrayList<>();
+
+    private final List<FailOverCandidate> candidates = new ArrayList<>();
+
+    private FailOverCapableConnectionFactory connectionFactory;
+
+    @Before
+    public void setUp() {
+        for (int i = 0; i < 2; i++) {
+            RedisServerStub server = new RedisServerStub().start();
+            server.getStore().put("rate", ("value-" + i).getBytes(StandardCharsets.UTF_8));
+            servers.add(server);
+
+            ExtendedJedisConnectionFactory delegate = new ExtendedJedisConnectionFactory();
+            delegate.setHostName("127.0.0.1");
+            delegate.setPort(server.getPort());
+            delegate.afterPropertiesSet();
+            delegates.add(delegate);
+            candidates.add(new FailOverCandidate("proxy-" + i, delegate));
+        }
+        connectionFactory = new FailOverCapableConnectionFactory(candidates);
+    }
+
+    @After
+    public void tearDown() {
+        connectionFactory.destroy();
+        delegates.forEach(ExtendedJedisConnectionFactory::destroy);
+        servers.forEach(RedisServerStub::stop);
+    }
+
+    @Test
+    public void givenLatencyRising_whenSampled_thenLimitShrinkAndShed() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 1, 200, 2.0, 0.2);
+        for (int i = 0; i < 15; i++) {
+            assertThat(limiter.tryAcquire(), is(true));
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(limiter.tryAcquire(), is(true));
+            limiter.release(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        assertThat(limiter.getLimit(), greaterThan(20));
+
+        // Proxy saturated, queueing multiply latency.
+        for (int i = 0; i < 100 && limiter.tryAcquire(); i++) {
+            limiter.release(TimeUnit.MILLISECONDS.toNanos(20));
+        }
+        assertThat(limiter.getLimit(), lessThan(20));
+        assertThat(limiter.isSaturated(), is(true));
+        assertThat(limiter.getRejectedCount(), is(1L));
+    }
+
+    @Test
+    public void givenFewInFlight_whenSampled_thenLimitNotInflated() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 1, 200, 2.0, 0.2);
+        for (int i = 0; i < 100; i++) {
+            assertThat(limiter.tryAcquire(), is(true));
+            limiter.release(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        assertThat(limiter.getLimit(), is(20));
+        assertThat(limiter.getInFlight(), is(0));
+    }
+
+    @Test
+    public void givenLimitReached_whenRetrieve_thenDivertedToOtherCandidate() {
+        candidates.get(0).setConcurrencyLimiter(new AdaptiveConcurrencyLimiter(2, 2, 2, 2.0, 0.2));
+
+        RedisConnection first = connectionFactory.getConnection();
+        RedisConnection second = connectionFactory.getConnection();
+        RedisConnection third = connectionFactory.getConnection();
+        try {
+            assertThat(get(first), is("value-0"));
+            assertThat(get(second), is("value-0"));
+            assertThat(get(third), is("value-1"));
+        }
+        finally {
+            first.close();
+            second.close();
+            third.close();
+        }
+        assertThat(candidates.get(0).getConcurrencyLimiter().getInFlight(), is(0));
+        assertThat(candidates.get(0).getConcurrencyLimiter().getRejectedCount(), is(1L));
+        // Shed, not failed.
+        assertThat(connectionFactory.getAvailableCandidates().size(), is(2));
+    }
+
+    @Test
+    public void givenAllLimitsReached_whenRetrieve_thenRejectedWithoutWaiting() {
+        candidates.get(0).setConcurrencyLimiter(new AdaptiveConcurrencyLimiter(1, 1, 1, 2.0, 0.2));
+        candidates.get(1).setConcurrencyLimiter(new AdaptiveConcurrencyLimiter(1, 1, 1, 2.0, 0.2));
+
+        RedisConnection first = connectionFactory.getConnection();
+        RedisConnection second = connectionFactory.getConnection();
+        try {
+            long started = System.nanoTime();
+            try {
+                connectionFactory.getConnection();
+                throw new AssertionError("Retrieval beyond all limits must be rejected");
+            }
+            catch (ConnectionLimitExceededException ex) {
+                assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), lessThan(100L));
+            }
+        }
+        finally {
+            first.close();
+            second.close();
+        }
+
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            assertThat(get(connection), is("value-0"));
+        }
+        finally {
+            connection.close();
+        }
+        assertThat(candidates.get(0).getConcurrencyLimiter().getInFlight(), is(0));
+        assertThat(candidates.get(1).getConcurrencyLimiter().getRejectedCount(), greaterThanOrEqualTo(1L));
+    }
+
+    private static String get(RedisConnection connection) {
+        return new String(connection.get(KEY), StandardCharsets.UTF_8);
+    }
+}
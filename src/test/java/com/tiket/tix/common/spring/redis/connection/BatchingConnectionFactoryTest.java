@@ -0,0 +1,208 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.core.types.Expiration;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.fail;
+
+/**
+ * Batching of concurrent callers commands by {@link BatchingConnectionFactory} into pipelines, against a redis
+ * protocol stand-in.
+ *
+ * @author zakyalvan
+ */
+public class BatchingConnectionFactoryTest {
+    private RedisServerStub server;
+
+    private ExtendedJedisConnectionFactory delegate;
+
+    private BatchingConnectionFactory connectionFactory;
+
+    private final ExecutorService callers = Executors.newFixedThreadPool(16);
+
+    @Before
+    public void setUp() {
+        server = new RedisServerStub().serviceTime(100, TimeUnit.MICROSECONDS).start();
+        delegate = new ExtendedJedisConnectionFactory();
+        delegate.setHostName("127.0.0.1");
+        delegate.setPort(server.getPort());
+        delegate.afterPropertiesSet();
+    }
+
+    @After
+    public void tearDown() {
+        callers.shutdownNow();
+        if (connectionFactory != null) {
+            connectionFactory.destroy();
+        }
+        delegate.destroy();
+        server.stop();
+    }
+
+    @Test
+    public void givenConcurrentCallers_whenCommandsExecuted_thenBatchedOverOneConnectionWithOwnResults() throws Exception {
+        connectionFactory = new BatchingConnectionFactory(delegate, 0, 32);
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int caller = 0; caller < 16; caller++) {
+            final int id = caller;
+            futures.add(callers.submit((Callable<Void>) () -> {
+                for (int i = 0; i < 50; i++) {
+                    RedisConnection connection = connectionFactory.getConnection();
+                    try {
+                        byte[] key = bytes("caller:" + id + ":" + i);
+                        connection.set(key, bytes("value:" + id + ":" + i));
+                        assertThat(connection.get(key), is(bytes("value:" + id + ":" + i)));
+                        assertThat(connection.incr(bytes("counter:" + id)), is(i + 1L));
+                        assertThat(connection.get(bytes("missing:" + id)), nullValue());
+                    }
+                    finally {
+                        connection.close();
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+
+        BatchStatistics statistics = connectionFactory.getStatistics();
+        assertThat(statistics.getCommands(), is(16L * 50 * 4));
+        assertThat(statistics.getBatches(), lessThan(statistics.getCommands()));
+        assertThat(statistics.getMaxBatchSize(), greaterThan(1L));
+        assertThat(server.getClientCount(), is(1));
+    }
+
+    @Test
+    public void givenFailingCommandInBatch_whenFlushed_thenOnlyItsCallerFails() throws Exception {
+        connectionFactory = new BatchingConnectionFactory(delegate, TimeUnit.SECONDS.toMicros(5), 3);
+        server.getStore().put("present", bytes("value"));
+
+        List<Future<Object>> futures = new ArrayList<>();
+        futures.add(submit(connection -> connection.get(bytes("present"))));
+        futures.add(submit(connection -> connection.hGet(bytes("present"), bytes("field"))));
+        futures.add(submit(connection -> connection.exists(bytes("present"))));
+
+        assertThat(futures.get(0).get(10, TimeUnit.SECONDS), is((Object) bytes("value")));
+        try {
+            futures.get(1).get(10, TimeUnit.SECONDS);
+            fail("Unsupported command must fail its caller");
+        }
+        catch (ExecutionException ex) {
+            assertThat(ex.getCause(), instanceOf(RuntimeException.class));
+        }
+        assertThat(futures.get(2).get(10, TimeUnit.SECONDS), is((Object) true));
+
+        assertThat(connectionFactory.getStatistics().getBatches(), is(1L));
+        assertThat(connectionFactory.getStatistics().getMaxBatchSize(), is(3L));
+    }
+
+    @Test
+    public void givenStatusCommandsInBatch_whenFlushed_thenReadsOfSameBatchCompleted() throws Exception {
+        connectionFactory = new BatchingConnectionFactory(delegate, TimeUnit.SECONDS.toMicros(5), 5);
+        server.getStore().put("present", bytes("value"));
+        server.getStore().put("old", bytes("renamed"));
+
+        List<Future<Object>> futures = new ArrayList<>();
+        futures.add(submit(connection -> {
+            connection.pSetEx(bytes("expiring"), 10000, bytes("soon"));
+            return null;
+        }));
+        futures.add(submit(connection -> connection.get(bytes("present"))));
+        futures.add(submit(connection -> {
+            connection.set(bytes("absent"), bytes("once"), Expiration.milliseconds(10000), SetOption.ifAbsent());
+            return null;
+        }));
+        futures.add(submit(connection -> {
+            connection.rename(bytes("old"), bytes("new"));
+            return null;
+        }));
+        futures.add(submit(connection -> connection.exists(bytes("present"))));
+
+        assertThat(futures.get(0).get(10, TimeUnit.SECONDS), nullValue());
+        assertThat(futures.get(1).get(10, TimeUnit.SECONDS), is((Object) bytes("value")));
+        assertThat(futures.get(2).get(10, TimeUnit.SECONDS), nullValue());
+        assertThat(futures.get(3).get(10, TimeUnit.SECONDS), nullValue());
+        assertThat(futures.get(4).get(10, TimeUnit.SECONDS), is((Object) true));
+
+        assertThat(server.getStore().get("expiring"), is(bytes("soon")));
+        assertThat(server.getStore().get("absent"), is(bytes("once")));
+        assertThat(server.getStore().get("new"), is(bytes("renamed")));
+        assertThat(connectionFactory.getStatistics().getBatches(), is(1L));
+        assertThat(connectionFactory.getStatistics().getMaxBatchSize(), is(5L));
+    }
+
+    @Test
+    public void givenPipeline_whenOpened_thenExecutedOnDedicatedConnection() {
+        connectionFactory = new BatchingConnectionFactory(delegate);
+
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            connection.set(bytes("key"), bytes("value"));
+
+            connection.openPipeline();
+            assertThat(connection.isPipelined(), is(true));
+            connection.get(bytes("key"));
+            connection.incr(bytes("counter"));
+            assertThat(connection.closePipeline(), contains((Object) bytes("value"), 1L));
+
+            assertThat(connection.get(bytes("key")), is(bytes("value")));
+        }
+        finally {
+            connection.close();
+        }
+        assertThat(connectionFactory.getStatistics().getCommands(), is(1L));
+    }
+
+    @Test(expected = InvalidDataAccessApiUsageException.class)
+    public void givenClosedConnection_whenCommandExecuted_thenRejected() {
+        connectionFactory = new BatchingConnectionFactory(delegate);
+
+        RedisConnection connection = connectionFactory.getConnection();
+        connection.close();
+        connection.get(bytes("key"));
+    }
+
+    private Future<Object> submit(CommandCallback callback) {
+        return callers.submit(() -> {
+            RedisConnection connection = connectionFactory.getConnection();
+            try {
+                return callback.execute(connection);
+            }
+            finally {
+                connection.close();
+            }
+        });
+    }
+
+    private interface CommandCallback {
+        Object execute(RedisConnection connection);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
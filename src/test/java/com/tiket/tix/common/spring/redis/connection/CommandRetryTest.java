@@ -0,0 +1,142 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.RedisConnection;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
+
+/**
+ * Retry of idempotent commands by {@link FailOverCapableConnectionFactory}, when proxy stand-in stopped after
+ * connection retrieved.
+ *
+ * @author zakyalvan
+ */
+public class CommandRetryTest {
+    private static final byte[] KEY = "rate".getBytes(StandardCharsets.UTF_8);
+
+    private final List<RedisServerStub> servers = new ArrayList<>();
+
+    private final List<ExtendedJedisConnectionFactory> delegates = new ArrayList<>();
+
+    private FailOverCapableConnectionFactory connectionFactory;
+
+    @Before
+    public void setUp() {
+        List<FailOverCandidate> candidates = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            RedisServerStub server = new RedisServerStub().start();
+            server.getStore().put("rate", ("value-" + i).getBytes(StandardCharsets.UTF_8));
+            servers.add(server);
+
+            ExtendedJedisConnectionFactory delegate = new ExtendedJedisConnectionFactory();
+            delegate.setHostName("127.0.0.1");
+            delegate.setPort(server.getPort());
+            delegate.afterPropertiesSet();
+            delegates.add(delegate);
+            candidates.add(new FailOverCandidate("proxy-" + i, delegate,
+                    new ConnectionFactoryCircuitBreaker(50, 4, 1, 60000), true));
+        }
+        connectionFactory = new FailOverCapableConnectionFactory(candidates);
+    }
+
+    @After
+    public void tearDown() {
+        connectionFactory.destroy();
+        delegates.forEach(ExtendedJedisConnectionFactory::destroy);
+        servers.forEach(RedisServerStub::stop);
+    }
+
+    @Test
+    public void givenProxyDownAfterRetrieval_whenRead_thenRetriedOnOther() {
+        CommandRetryPolicy retryPolicy = new CommandRetryPolicy();
+        connectionFactory.setCommandRetryPolicy(retryPolicy);
+
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            assertThat(new String(connection.get(KEY), StandardCharsets.UTF_8), is("value-0"));
+
+            servers.get(0).stop();
+            assertThat(new String(connection.get(KEY), StandardCharsets.UTF_8), is("value-1"));
+            // Later commands stay on the new connection.
+            connection.set(KEY, "changed".getBytes(StandardCharsets.UTF_8));
+        }
+        finally {
+            connection.close();
+        }
+
+        assertThat(retryPolicy.getRetryCount(), is(1L));
+        assertThat(new String(servers.get(1).getStore().get("rate"), StandardCharsets.UTF_8), is("changed"));
+        // Failure counted by breaker of the failed proxy, which opened.
+        assertThat(connectionFactory.getAvailableCandidates().size(), is(1));
+        assertThat(delegates.get(0).getPool().getNumActive(), is(0));
+    }
+
+    @Test
+    public void givenProxyDownAfterRetrieval_whenNonIdempotentCommand_thenFail() {
+        CommandRetryPolicy retryPolicy = new CommandRetryPolicy();
+        connectionFactory.setCommandRetryPolicy(retryPolicy);
+
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            connection.ping();
+            servers.get(0).stop();
+
+            connection.incr(KEY);
+            fail("Non idempotent command must not be retried");
+        }
+        catch (RedisConnectionFailureException ex) {
+            assertThat(retryPolicy.getRetryCount(), is(0L));
+            assertThat(servers.get(1).getCommandCount("INCR"), is(0L));
+        }
+        finally {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void givenBudgetExhausted_whenReadFailed_thenFailToCaller() {
+        CommandRetryPolicy retryPolicy = new CommandRetryPolicy(2, 1000, 0);
+        connectionFactory.setCommandRetryPolicy(retryPolicy);
+        // Initial burst budget.
+        for (int i = 0; i < 100; i++) {
+            assertThat(retryPolicy.tryAcquireRetry(1, System.nanoTime()), is(true));
+        }
+
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            connection.ping();
+            servers.get(0).stop();
+
+            connection.get(KEY);
+            fail("Read must fail once retry budget exhausted");
+        }
+        catch (RedisConnectionFailureException ex) {
+            assertThat(retryPolicy.getRetryRejectedCount(), is(1L));
+            assertThat(servers.get(1).getCommandCount("GET"), is(0L));
+        }
+        finally {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void givenPolicy_whenAttemptsOrDeadlineExhausted_thenRetryRejected() {
+        CommandRetryPolicy retryPolicy = new CommandRetryPolicy(3, 50, 10);
+
+        assertThat(retryPolicy.tryAcquireRetry(1, System.nanoTime()), is(true));
+        assertThat(retryPolicy.tryAcquireRetry(2, System.nanoTime()), is(true));
+        assertThat(retryPolicy.tryAcquireRetry(3, System.nanoTime()), is(false));
+        assertThat(retryPolicy.tryAcquireRetry(1, System.nanoTime() - 100_000_000L), is(false));
+        assertThat(retryPolicy.getRetryCount(), is(2L));
+        assertThat(retryPolicy.getRetryRejectedCount(), is(2L));
+    }
+}
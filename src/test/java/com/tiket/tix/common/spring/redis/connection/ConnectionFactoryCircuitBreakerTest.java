@@ -0,0 +1,91 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+/**
+ * @author zakyalvan
+ */
+public class ConnectionFactoryCircuitBreakerTest {
+    private FailOverCapableConnectionFactory connectionFactory;
+
+    @After
+    public void tearDown() {
+        if (connectionFactory != null) {
+            connectionFactory.destroy();
+        }
+    }
+
+    @Test
+    public void givenFailureRateBelowThreshold_whenRecordFailure_thenBreakerStayClosed() {
+        ConnectionFactoryCircuitBreaker circuitBreaker = new ConnectionFactoryCircuitBreaker(50, 10, 4, 1000);
+        circuitBreaker.recordSuccess();
+        circuitBreaker.recordSuccess();
+        circuitBreaker.recordSuccess();
+
+        assertThat(circuitBreaker.recordFailure(), is(false));
+        assertThat(circuitBreaker.getFailureRate(), equalTo(25));
+        assertThat(circuitBreaker.getState(), equalTo(ConnectionFactoryCircuitBreaker.State.CLOSED));
+    }
+
+    @Test
+    public void givenFailureRateReachThreshold_whenRecordFailure_thenOnlyOneCallerTripBreaker() {
+        ConnectionFactoryCircuitBreaker circuitBreaker = new ConnectionFactoryCircuitBreaker(50, 10, 4, 1000);
+        circuitBreaker.recordSuccess();
+        circuitBreaker.recordSuccess();
+        circuitBreaker.recordFailure();
+
+        assertThat(circuitBreaker.recordFailure(), is(true));
+        assertThat(circuitBreaker.recordFailure(), is(false));
+        assertThat(circuitBreaker.getState(), equalTo(ConnectionFactoryCircuitBreaker.State.OPEN));
+    }
+
+    @Test
+    public void givenExcludedCandidateRecovered_whenProbed_thenReAdmittedInConfiguredOrder() {
+        StubConnectionFactory first = new StubConnectionFactory();
+        StubConnectionFactory second = new StubConnectionFactory();
+        FailOverCandidate firstCandidate = new FailOverCandidate("first", first,
+                new ConnectionFactoryCircuitBreaker(50, 10, 1, 50), true);
+        FailOverCandidate secondCandidate = new FailOverCandidate("second", second);
+        connectionFactory = new FailOverCapableConnectionFactory(Arrays.asList(firstCandidate, secondCandidate));
+
+        first.failing = true;
+        RedisConnection connection = connectionFactory.getConnection();
+        assertThat(connection, sameInstance(second.connection));
+        assertThat(connectionFactory.getAvailableCandidates(), contains(secondCandidate));
+
+        first.failing = false;
+        await().atMost(5, TimeUnit.SECONDS)
+                .until(() -> connectionFactory.getAvailableCandidates(), contains(firstCandidate, secondCandidate));
+        assertThat(connectionFactory.getConnection(), sameInstance(first.connection));
+        assertThat(firstCandidate.getCircuitBreaker().getState(), equalTo(ConnectionFactoryCircuitBreaker.State.CLOSED));
+    }
+
+    @Test
+    public void givenRevalidateDisabled_whenCandidateExcluded_thenNeverReAdmitted() throws Exception {
+        StubConnectionFactory first = new StubConnectionFactory();
+        StubConnectionFactory second = new StubConnectionFactory();
+        FailOverCandidate firstCandidate = new FailOverCandidate("first", first,
+                new ConnectionFactoryCircuitBreaker(50, 10, 1, 10), false);
+        FailOverCandidate secondCandidate = new FailOverCandidate("second", second);
+        connectionFactory = new FailOverCapableConnectionFactory(Arrays.asList(firstCandidate, secondCandidate));
+
+        first.failing = true;
+        connectionFactory.getConnection();
+        first.failing = false;
+        Thread.sleep(100);
+
+        assertThat(connectionFactory.getAvailableCandidates(), contains(secondCandidate));
+    }
+}
@@ -0,0 +1,104 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.junit.After;
+import org.junit.Test;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+/**
+ * Warming pools of {@link ExtendedJedisConnectionFactory} using {@link ConnectionPoolWarmer}, against redis protocol
+ * stand-ins.
+ *
+ * @author zakyalvan
+ */
+public class ConnectionPoolWarmerTest {
+    private static final String PASSWORD = "secret";
+
+    private final List<RedisServerStub> servers = new ArrayList<>();
+
+    private final List<ExtendedJedisConnectionFactory> connectionFactories = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        connectionFactories.forEach(ExtendedJedisConnectionFactory::destroy);
+        servers.forEach(RedisServerStub::stop);
+    }
+
+    @Test
+    public void givenMinIdle_whenWarm_thenPoolsFilledWithAuthenticatedAndValidatedConnections() {
+        RedisServerStub first = startServer();
+        RedisServerStub second = startServer();
+        ExtendedJedisConnectionFactory firstFactory = connectionFactory(first.getPort(), 3);
+        ExtendedJedisConnectionFactory secondFactory = connectionFactory(second.getPort(), 2);
+
+        int warmed = new ConnectionPoolWarmer(5000).warm(Arrays.asList(firstFactory, secondFactory));
+
+        assertThat(warmed, is(2));
+        assertThat(firstFactory.getPool().getNumIdle(), is(3));
+        assertThat(first.getClientCount(), is(3));
+        assertThat(first.getCommandCount("AUTH"), is(3L));
+        assertThat(first.getCommandCount("PING"), is(3L));
+        assertThat(secondFactory.getPool().getNumIdle(), is(2));
+        assertThat(second.getClientCount(), is(2));
+    }
+
+    @Test
+    public void givenUnreachableServer_whenWarm_thenOtherPoolsStillWarmedWithoutFailing() throws Exception {
+        int unusedPort;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            unusedPort = socket.getLocalPort();
+        }
+        RedisServerStub server = startServer();
+        ExtendedJedisConnectionFactory unreachable = connectionFactory(unusedPort, 2);
+        ExtendedJedisConnectionFactory reachable = connectionFactory(server.getPort(), 2);
+
+        long started = System.currentTimeMillis();
+        int warmed = new ConnectionPoolWarmer(5000).warm(Arrays.asList(unreachable, reachable));
+
+        assertThat(warmed, is(1));
+        assertThat(System.currentTimeMillis() - started, lessThan(5000L));
+        assertThat(unreachable.getPool().getNumIdle(), is(0));
+        assertThat(reachable.getPool().getNumIdle(), is(2));
+    }
+
+    @Test
+    public void givenStandby_whenWarmLazily_thenPoolFilledInBackground() {
+        RedisServerStub server = startServer();
+        ExtendedJedisConnectionFactory standby = connectionFactory(server.getPort(), 2);
+
+        new ConnectionPoolWarmer().warmLazily(Collections.singletonList(standby));
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> standby.getPool().getNumIdle() == 2);
+        assertThat(server.getCommandCount("AUTH"), is(2L));
+    }
+
+    private RedisServerStub startServer() {
+        RedisServerStub server = new RedisServerStub().password(PASSWORD).start();
+        servers.add(server);
+        return server;
+    }
+
+    private ExtendedJedisConnectionFactory connectionFactory(int port, int minIdle) {
+        JedisPoolConfig poolConfig = new JedisPoolConfig();
+        poolConfig.setMinIdle(minIdle);
+        ExtendedJedisConnectionFactory connectionFactory = new ExtendedJedisConnectionFactory(poolConfig);
+        connectionFactory.setHostName("127.0.0.1");
+        connectionFactory.setPort(port);
+        connectionFactory.setPassword(PASSWORD);
+        connectionFactory.setTimeout(1000);
+        connectionFactory.afterPropertiesSet();
+        connectionFactories.add(connectionFactory);
+        return connectionFactory;
+    }
+}
@@ -0,0 +1,150 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.RedisConnection;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Shared connection of {@link ExtendedLettuceConnectionFactory}, alone and as delegates of
+ * {@link FailOverCapableConnectionFactory}, against redis protocol stand-ins.
+ *
+ * @author zakyalvan
+ */
+public class ExtendedLettuceConnectionFactoryTest {
+    private static final byte[] KEY = "rate".getBytes(StandardCharsets.UTF_8);
+
+    private final List<RedisServerStub> servers = new ArrayList<>();
+
+    private final List<ExtendedLettuceConnectionFactory> delegates = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        for (int i = 0; i < 2; i++) {
+            RedisServerStub server = new RedisServerStub().start();
+            server.getStore().put("rate", ("value-" + i).getBytes(StandardCharsets.UTF_8));
+            servers.add(server);
+
+            ExtendedLettuceConnectionFactory delegate = new ExtendedLettuceConnectionFactory("127.0.0.1", server.getPort());
+            delegate.setTimeout(2000);
+            delegate.afterPropertiesSet();
+            delegates.add(delegate);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        delegates.forEach(ExtendedLettuceConnectionFactory::destroy);
+        servers.forEach(RedisServerStub::stop);
+    }
+
+    @Test
+    public void givenConcurrentCallers_whenExecuteCommands_thenShareOneSocket() throws Exception {
+        ExtendedLettuceConnectionFactory connectionFactory = delegates.get(0);
+        assertThat(connectionFactory.prewarm(), is(1));
+
+        int threads = 16;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < 100; j++) {
+                        RedisConnection connection = connectionFactory.getConnection();
+                        try {
+                            assertThat(new String(connection.get(KEY), StandardCharsets.UTF_8), is("value-0"));
+                        }
+                        finally {
+                            connection.close();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(servers.get(0).getClientCount(), is(1));
+        assertThat(servers.get(0).getCommandCount("GET"), is(threads * 100L));
+    }
+
+    @Test(expected = RedisConnectionFailureException.class)
+    public void givenSharedConnectionDropped_whenRetrieve_thenFailFast() {
+        ExtendedLettuceConnectionFactory connectionFactory = delegates.get(0);
+        connectionFactory.prewarm();
+
+        servers.get(0).stop();
+        await().atMost(5, TimeUnit.SECONDS).until(() -> !isUp(connectionFactory));
+
+        connectionFactory.getConnection();
+    }
+
+    @Test
+    public void givenFailOverOfLettuceDelegates_whenActiveProxyDown_thenServedByOtherAndReadmitted() {
+        List<FailOverCandidate> candidates = new ArrayList<>();
+        for (int i = 0; i < delegates.size(); i++) {
+            candidates.add(new FailOverCandidate("proxy-" + i, delegates.get(i),
+                    new ConnectionFactoryCircuitBreaker(50, 4, 1, 100), true));
+        }
+        FailOverCapableConnectionFactory connectionFactory = new FailOverCapableConnectionFactory(candidates);
+        try {
+            assertThat(get(connectionFactory), is("value-0"));
+
+            servers.get(0).stop();
+            await().atMost(5, TimeUnit.SECONDS).until(() -> !isUp(delegates.get(0)));
+            assertThat(get(connectionFactory), is("value-1"));
+            assertThat(connectionFactory.getFailOverCount(), greaterThan(0L));
+
+            // Lettuce reconnect in background, then probe re-admit the connection.
+            servers.get(0).start();
+            await().atMost(10, TimeUnit.SECONDS).until(() -> connectionFactory.getAvailableCandidates().size() == 2);
+            assertThat(servers.get(0).getClientCount(), is(1));
+        }
+        finally {
+            connectionFactory.destroy();
+        }
+    }
+
+    private static boolean isUp(ExtendedLettuceConnectionFactory connectionFactory) {
+        try {
+            connectionFactory.getConnection().close();
+            return true;
+        }
+        catch (RedisConnectionFailureException ex) {
+            return false;
+        }
+    }
+
+    private static String get(FailOverCapableConnectionFactory connectionFactory) {
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            return new String(connection.get(KEY), StandardCharsets.UTF_8);
+        }
+        finally {
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+/**
+ * Hammer {@link FailOverCapableConnectionFactory} from many threads while the active delegate start failing.
+ *
+ * @author zakyalvan
+ */
+public class FailOverCapableConnectionFactoryStressTest {
+    private static final int THREADS = 64;
+    private static final int CALLS_PER_THREAD = 20_000;
+
+    /**
+     * Number of calls between samples of caller thread CPU time.
+     */
+    private static final int CPU_WINDOW = 1_000;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void givenActiveFactoryFailing_whenConcurrentCallersRetrieveConnection_thenNoSpinningAndBoundedLatency() throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threads.isCurrentThreadCpuTimeSupported());
+        threads.setThreadCpuTimeEnabled(true);
+
+        StubConnectionFactory first = new StubConnectionFactory();
+        StubConnectionFactory second = new StubConnectionFactory();
+        FailOverCapableConnectionFactory connectionFactory =
+                new FailOverCapableConnectionFactory(new LinkedHashSet<>(Arrays.asList(first, second)));
+
+        final AtomicLong progress = new AtomicLong();
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        List<Future<CallerRecord>> results = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            results.add(executor.submit(() -> {
+                CallerRecord record = new CallerRecord();
+                long[] latencies = record.latencies;
+                long[] cpuTimes = record.cpuTimes;
+                startLatch.await();
+                for (int i = 0; i < CALLS_PER_THREAD; i++) {
+                    if (i % CPU_WINDOW == 0) {
+                        cpuTimes[i / CPU_WINDOW] = threads.getCurrentThreadCpuTime();
+                    }
+                    if (record.failOverCall < 0 && first.failing) {
+                        record.failOverCall = i;
+                    }
+                    long started = System.nanoTime();
+                    RedisConnection connection = connectionFactory.getConnection();
+                    latencies[i] = System.nanoTime() - started;
+                    assertThat(connection != null, is(true));
+                    progress.incrementAndGet();
+                }
+                cpuTimes[cpuTimes.length - 1] = threads.getCurrentThreadCpuTime();
+                return record;
+            }));
+        }
+
+        startLatch.countDown();
+        while (progress.get() < (long) THREADS * CALLS_PER_THREAD / 2) {
+            Thread.sleep(1);
+        }
+        first.failing = true;
+
+        long[] allLatencies = new long[THREADS * CALLS_PER_THREAD];
+        int offset = 0;
+        long baselineCpu = 0;
+        long failOverCpu = 0;
+        for (Future<CallerRecord> result : results) {
+            CallerRecord record = result.get(1, TimeUnit.MINUTES);
+            System.arraycopy(record.latencies, 0, allLatencies, offset, record.latencies.length);
+            offset += record.latencies.length;
+
+            // Two windows of calls before the one seeing failure, against that one and the next.
+            int window = record.failOverCall / CPU_WINDOW;
+            if (window >= 2 && window + 2 < record.cpuTimes.length) {
+                baselineCpu += record.cpuTimes[window] - record.cpuTimes[window - 2];
+                failOverCpu += record.cpuTimes[window + 2] - record.cpuTimes[window];
+            }
+        }
+        Arrays.sort(allLatencies);
+        long p99 = allLatencies[(int) (allLatencies.length * 0.99)];
+
+        // Failures needed to trip the breaker, plus at most one attempt per thread still holding old routing state.
+        assertThat(first.failedAttempts.get(),
+                lessThanOrEqualTo(ConnectionFactoryCircuitBreaker.DEFAULT_SLIDING_WINDOW_SIZE + 2 * THREADS));
+        assertThat(progress.get(), equalTo((long) THREADS * CALLS_PER_THREAD));
+        assertThat(p99, lessThan(TimeUnit.MILLISECONDS.toNanos(50)));
+        // Failed attempts and breaker transitions cost 1.5-4x of healthy calls, callers spinning while routing
+        // state is rebuilt would cost orders of magnitude more.
+        assertThat(baselineCpu, greaterThan(0L));
+        assertThat(failOverCpu, lessThan(baselineCpu * 10));
+    }
+
+    private static final class CallerRecord {
+        private final long[] latencies = new long[CALLS_PER_THREAD];
+
+        /**
+         * Thread CPU time at the start of each window of calls, and at the end.
+         */
+        private final long[] cpuTimes = new long[CALLS_PER_THREAD / CPU_WINDOW + 1];
+
+        /**
+         * Index of the first call made after active factory started failing, negative if none.
+         */
+        private int failOverCall = -1;
+    }
+
+    @Test(timeout = 5_000)
+    public void givenNoFailOverHappen_whenRetrieveSettings_thenNotBlocked() {
+        StubConnectionFactory first = new StubConnectionFactory();
+        FailOverCapableConnectionFactory connectionFactory =
+                new FailOverCapableConnectionFactory(new LinkedHashSet<>(Arrays.asList(first)));
+
+        assertThat(connectionFactory.getConvertPipelineAndTxResults(), is(true));
+    }
+
+    @Test(expected = ConnectionsFailOverException.class)
+    public void givenAllFactoriesFailing_whenRetrieveConnection_thenThrowFailOverException() {
+        StubConnectionFactory first = new StubConnectionFactory();
+        StubConnectionFactory second = new StubConnectionFactory();
+        first.failing = true;
+        second.failing = true;
+        FailOverCapableConnectionFactory connectionFactory =
+                new FailOverCapableConnectionFactory(new LinkedHashSet<>(Arrays.asList(first, second)));
+
+        connectionFactory.getConnection();
+    }
+}
@@ -0,0 +1,185 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Meters of {@link FailOverCapableConnectionFactory} published by {@link FailOverConnectionFactoryMetrics}, against
+ * redis protocol stand-ins.
+ *
+ * @author zakyalvan
+ */
+public class FailOverConnectionFactoryMetricsTest {
+    private final List<RedisServerStub> servers = new ArrayList<>();
+
+    private final List<ExtendedJedisConnectionFactory> delegates = new ArrayList<>();
+
+    private FailOverCapableConnectionFactory connectionFactory;
+
+    private MeterRegistry registry;
+
+    private StringRedisTemplate redisTemplate;
+
+    @Before
+    public void setUp() {
+        List<FailOverCandidate> candidates = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            RedisServerStub server = new RedisServerStub().start();
+            servers.add(server);
+
+            ExtendedJedisConnectionFactory delegate = new ExtendedJedisConnectionFactory();
+            delegate.setHostName("127.0.0.1");
+            delegate.setPort(server.getPort());
+            delegate.afterPropertiesSet();
+            delegates.add(delegate);
+            candidates.add(new FailOverCandidate("proxy-" + i, delegate,
+                    new ConnectionFactoryCircuitBreaker(50, 4, 2, 100), true, 1));
+        }
+        connectionFactory = new FailOverCapableConnectionFactory(candidates);
+
+        registry = new SimpleMeterRegistry();
+        new FailOverConnectionFactoryMetrics(connectionFactory).bindTo(registry);
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+    }
+
+    @After
+    public void tearDown() {
+        connectionFactory.destroy();
+        delegates.forEach(ExtendedJedisConnectionFactory::destroy);
+        servers.forEach(RedisServerStub::stop);
+    }
+
+    @Test
+    public void givenHealthyConnections_whenExecuteCommands_thenPoolAndCommandMetersPublished() {
+        redisTemplate.opsForValue().set("rate", "15000");
+        for (int i = 0; i < 5; i++) {
+            redisTemplate.opsForValue().get("rate");
+        }
+
+        assertThat(registry.get("redis.commands").tag("connection", "proxy-0").tag("command", "get").timer().count(), is(5L));
+        assertThat(registry.get("redis.commands").tag("connection", "proxy-0").tag("command", "set").timer().count(), is(1L));
+        assertThat(registry.get("redis.pool.borrow").tag("connection", "proxy-0").timer().count(), is(6L));
+        assertThat(registry.get("redis.pool.idle").tag("connection", "proxy-0").gauge().value(), is(1.0));
+        assertThat(registry.get("redis.pool.active").tag("connection", "proxy-0").gauge().value(), is(0.0));
+        assertThat(registry.get("redis.pool.waiters").tag("connection", "proxy-0").gauge().value(), is(0.0));
+        assertThat(registry.get("redis.connection.active").tag("connection", "proxy-0").gauge().value(), is(1.0));
+        assertThat(registry.get("redis.connection.active").tag("connection", "proxy-1").gauge().value(), is(0.0));
+        assertThat(registry.get("redis.failovers").functionCounter().count(), is(0.0));
+    }
+
+    @Test
+    public void givenPrimaryDown_whenExecuteCommands_thenFailOverAndReadmissionCounted() {
+        servers.get(0).stop();
+        for (int i = 0; i < 5; i++) {
+            redisTemplate.opsForValue().get("rate");
+        }
+
+        assertThat(registry.get("redis.failovers").functionCounter().count(), greaterThanOrEqualTo(1.0));
+        assertThat(registry.get("redis.connection.exclusions").tag("connection", "proxy-0").functionCounter().count(), is(1.0));
+        assertThat(registry.get("redis.connection.available").tag("connection", "proxy-0").gauge().value(), is(0.0));
+        assertThat(registry.get("redis.connection.active").tag("connection", "proxy-1").gauge().value(), is(1.0));
+        assertThat(registry.get("redis.commands").tag("connection", "proxy-1").tag("command", "get").timer().count(), is(5L));
+
+        servers.get(0).start();
+        await().atMost(5, TimeUnit.SECONDS).until(() ->
+                registry.get("redis.connection.readmissions").tag("connection", "proxy-0").functionCounter().count() == 1.0);
+        assertThat(registry.get("redis.connection.active").tag("connection", "proxy-0").gauge().value(), is(1.0));
+    }
+
+    @Test
+    public void givenCandidatesReplaced_whenExecuteCommands_thenReplacingCandidatesPublished() {
+        RedisServerStub server = new RedisServerStub().start();
+        servers.add(server);
+        List<ExtendedJedisConnectionFactory> replacing = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            ExtendedJedisConnectionFactory delegate = new ExtendedJedisConnectionFactory();
+            delegate.setHostName("127.0.0.1");
+            delegate.setPort(server.getPort());
+            delegate.afterPropertiesSet();
+            replacing.add(delegate);
+        }
+        delegates.addAll(replacing);
+        redisTemplate.opsForValue().get("rate");
+
+        // Changed 'proxy-0' and added 'proxy-2', 'proxy-1' removed.
+        connectionFactory.replaceCandidates(Arrays.asList(new FailOverCandidate("proxy-0", replacing.get(0)),
+                new FailOverCandidate("proxy-2", replacing.get(1))));
+        for (int i = 0; i < 3; i++) {
+            redisTemplate.opsForValue().get("rate");
+        }
+
+        assertThat(registry.get("redis.commands").tag("connection", "proxy-0").tag("command", "get").timer().count(), is(4L));
+        assertThat(registry.get("redis.pool.idle").tag("connection", "proxy-0").gauge().value(), is(1.0));
+        assertThat(registry.get("redis.connection.active").tag("connection", "proxy-0").gauge().value(), is(1.0));
+        assertThat(registry.get("redis.connection.available").tag("connection", "proxy-2").gauge().value(), is(1.0));
+        assertThat(registry.get("redis.pool.idle").tag("connection", "proxy-2").gauge().value(), is(0.0));
+        assertThat(registry.get("redis.pool.borrow").tag("connection", "proxy-2").timer().count(), is(0L));
+        assertThat(registry.get("redis.pool.idle").tag("connection", "proxy-1").gauge().value(), is(Double.NaN));
+
+        connectionFactory.setLoadBalancingMode(LoadBalancingMode.ROUND_ROBIN);
+        for (int i = 0; i < 4; i++) {
+            redisTemplate.opsForValue().get("rate");
+        }
+        assertThat(registry.get("redis.commands").tag("connection", "proxy-2").tag("command", "get").timer().count(), is(2L));
+    }
+
+    @Test
+    public void givenNearCache_whenValuesRead_thenRegionRatiosPublished() {
+        connectionFactory.setNearCache(new NearCache(Collections.singletonList(
+                new NearCacheRegion("rates", "rate*", 100, 0, TimeUnit.MINUTES.toMillis(1)))));
+        registry = new SimpleMeterRegistry();
+        new FailOverConnectionFactoryMetrics(connectionFactory).bindTo(registry);
+
+        redisTemplate.opsForValue().set("rate", "15000");
+        for (int i = 0; i < 4; i++) {
+            redisTemplate.opsForValue().get("rate");
+        }
+
+        assertThat(registry.get("redis.nearcache.gets").tag("region", "rates").tag("result", "hit").functionCounter().count(), is(3.0));
+        assertThat(registry.get("redis.nearcache.gets").tag("region", "rates").tag("result", "miss").functionCounter().count(), is(1.0));
+        assertThat(registry.get("redis.nearcache.hit.ratio").tag("region", "rates").gauge().value(), is(0.75));
+        assertThat(registry.get("redis.nearcache.miss.ratio").tag("region", "rates").gauge().value(), is(0.25));
+        assertThat(registry.get("redis.nearcache.size").tag("region", "rates").gauge().value(), is(1.0));
+    }
+
+    @Test
+    public void givenBatchingCandidate_whenExecuteCommands_thenBatchSizesPublished() {
+        BatchingConnectionFactory batching = new BatchingConnectionFactory(delegates.get(0));
+        FailOverCapableConnectionFactory batchingFactory = new FailOverCapableConnectionFactory(
+                Collections.singletonList(new FailOverCandidate("proxy-0", batching)));
+        registry = new SimpleMeterRegistry();
+        new FailOverConnectionFactoryMetrics(batchingFactory).bindTo(registry);
+        try {
+            StringRedisTemplate batchingTemplate = new StringRedisTemplate(batchingFactory);
+            batchingTemplate.opsForValue().set("rate", "15000");
+            for (int i = 0; i < 3; i++) {
+                batchingTemplate.opsForValue().get("rate");
+            }
+
+            assertThat(registry.get("redis.batches").tag("connection", "proxy-0").tag("size", "1").functionCounter().count(), is(4.0));
+            assertThat(registry.get("redis.batches").tag("connection", "proxy-0").tag("size", "2-3").functionCounter().count(), is(0.0));
+            assertThat(registry.get("redis.batch.commands").tag("connection", "proxy-0").functionCounter().count(), is(4.0));
+            assertThat(registry.get("redis.batch.size.mean").tag("connection", "proxy-0").gauge().value(), is(1.0));
+            assertThat(registry.get("redis.batch.size.max").tag("connection", "proxy-0").gauge().value(), is(1.0));
+        }
+        finally {
+            batchingFactory.destroy();
+            batching.destroy();
+        }
+    }
+}
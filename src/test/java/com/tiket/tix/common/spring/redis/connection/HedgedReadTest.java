@@ -0,0 +1,180 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+/**
+ * Hedged reads of {@link FailOverCapableConnectionFactory}, against a slow and a fast redis protocol stand-in.
+ *
+ * @author zakyalvan
+ */
+public class HedgedReadTest {
+    private static final byte[] KEY = "rate".getBytes(StandardCharsets.UTF_8);
+
+    private final List<RedisServerStub> servers = new ArrayList<>();
+
+    private final List<ExtendedJedisConnectionFactory> delegates = new ArrayList<>();
+
+    private FailOverCapableConnectionFactory connectionFactory;
+
+    private HedgedReadExecutor executor;
+
+    @Before
+    public void setUp() {
+        List<FailOverCandidate> candidates = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            RedisServerStub server = new RedisServerStub().start();
+            server.getStore().put("rate", ("value-" + i).getBytes(StandardCharsets.UTF_8));
+            servers.add(server);
+
+            ExtendedJedisConnectionFactory delegate = new ExtendedJedisConnectionFactory();
+            delegate.setHostName("127.0.0.1");
+            delegate.setPort(server.getPort());
+            delegate.afterPropertiesSet();
+            delegates.add(delegate);
+            candidates.add(new FailOverCandidate("proxy-" + i, delegate));
+        }
+        connectionFactory = new FailOverCapableConnectionFactory(candidates);
+    }
+
+    @After
+    public void tearDown() {
+        connectionFactory.destroy();
+        if (executor != null) {
+            executor.destroy();
+        }
+        delegates.forEach(ExtendedJedisConnectionFactory::destroy);
+        servers.forEach(RedisServerStub::stop);
+    }
+
+    @Test
+    public void givenSlowPrimary_whenRead_thenHedgeAnswer() {
+        useExecutor(new HedgedReadExecutor(10000, 0, 100, 8));
+        servers.get(0).serviceTime(500, TimeUnit.MILLISECONDS);
+
+        RedisConnection connection = connectionFactory.getConnection();
+        long started = System.currentTimeMillis();
+        byte[] value = connection.get(KEY);
+        long elapsed = System.currentTimeMillis() - started;
+        connection.close();
+
+        assertThat(new String(value, StandardCharsets.UTF_8), is("value-1"));
+        assertThat(elapsed, lessThan(400L));
+        assertThat(executor.getHedgeCount(), is(1L));
+        assertThat(executor.getHedgeWinCount(), is(1L));
+
+        // Slow connection returned to its pool once the first read completed.
+        await().atMost(5, TimeUnit.SECONDS).until(() -> delegates.get(0).getPool().getNumActive() == 0);
+        assertThat(delegates.get(1).getPool().getNumActive(), is(0));
+    }
+
+    @Test
+    public void givenFastPrimary_whenRead_thenNotHedged() {
+        useExecutor(new HedgedReadExecutor(200000, 0, 100, 8));
+
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            assertThat(new String(connection.get(KEY), StandardCharsets.UTF_8), is("value-0"));
+        }
+        finally {
+            connection.close();
+        }
+
+        assertThat(executor.getReadCount(), is(1L));
+        assertThat(executor.getHedgeCount(), is(0L));
+        assertThat(servers.get(1).getCommandCount("GET"), is(0L));
+    }
+
+    @Test
+    public void givenBudgetExhausted_whenSlowRead_thenWaitForPrimary() {
+        useExecutor(new HedgedReadExecutor(1000, 0, 0, 8));
+        servers.get(0).serviceTime(50, TimeUnit.MILLISECONDS);
+
+        // Initial burst budget.
+        for (int i = 0; i < 100; i++) {
+            executor.tryAcquireHedge();
+        }
+
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            assertThat(new String(connection.get(KEY), StandardCharsets.UTF_8), is("value-0"));
+        }
+        finally {
+            connection.close();
+        }
+        assertThat(executor.getHedgeCount(), is(0L));
+        assertThat(executor.getHedgeRejectedCount(), is(1L));
+    }
+
+    @Test
+    public void givenNoOtherCandidate_whenSlowRead_thenRejectedWithoutTakingToken() {
+        useExecutor(new HedgedReadExecutor(1000, 0, 0, 8));
+        servers.get(0).serviceTime(50, TimeUnit.MILLISECONDS);
+        servers.get(1).stop();
+
+        // Leave one token of initial burst budget.
+        for (int i = 0; i < 99; i++) {
+            executor.tryAcquireHedge();
+        }
+
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            assertThat(new String(connection.get(KEY), StandardCharsets.UTF_8), is("value-0"));
+        }
+        finally {
+            connection.close();
+        }
+        assertThat(executor.getHedgeCount(), is(0L));
+        assertThat(executor.getHedgeRejectedCount(), is(1L));
+        assertThat(executor.tryAcquireHedge(), is(true));
+    }
+
+    @Test
+    public void givenSlowPrimary_whenWrite_thenNotHedged() {
+        useExecutor(new HedgedReadExecutor(1000, 0, 100, 8));
+        servers.get(0).serviceTime(50, TimeUnit.MILLISECONDS);
+
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            connection.set(KEY, "changed".getBytes(StandardCharsets.UTF_8));
+        }
+        finally {
+            connection.close();
+        }
+
+        assertThat(servers.get(0).getCommandCount("SET"), is(1L));
+        assertThat(servers.get(1).getCommandCount("SET"), is(0L));
+        assertThat(executor.getReadCount(), is(0L));
+    }
+
+    @Test
+    public void givenPercentile_whenLatenciesRecorded_thenDelayFollowPercentile() {
+        useExecutor(new HedgedReadExecutor(0, 80, 5, 1));
+        for (int i = 0; i < HedgedReadExecutor.RECOMPUTE_INTERVAL; i++) {
+            executor.recordLatency(TimeUnit.MICROSECONDS.toNanos(i % 10 == 0 ? 5000 : 100));
+        }
+
+        assertThat(executor.getCurrentDelay(), allOf(greaterThanOrEqualTo(TimeUnit.MICROSECONDS.toNanos(100)),
+                lessThanOrEqualTo(TimeUnit.MICROSECONDS.toNanos(125))));
+    }
+
+    private void useExecutor(HedgedReadExecutor hedgedReadExecutor) {
+        executor = hedgedReadExecutor;
+        connectionFactory.setHedgedReadExecutor(hedgedReadExecutor);
+    }
+}
@@ -0,0 +1,201 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.Subscription;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import redis.clients.jedis.JedisShardInfo;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Routing of {@link KeyPrefixRoutingConnectionFactory} connection commands to connection groups by key prefix.
+ *
+ * @author zakyalvan
+ */
+public class KeyPrefixRoutingConnectionFactoryTest {
+    private final List<RedisServerStub> servers = new ArrayList<>();
+
+    private final List<JedisConnectionFactory> groupConnectionFactories = new ArrayList<>();
+
+    private KeyPrefixRoutingConnectionFactory connectionFactory;
+
+    @Before
+    public void setUp() {
+        for (int i = 0; i < 3; i++) {
+            RedisServerStub server = new RedisServerStub().start();
+            servers.add(server);
+
+            JedisConnectionFactory groupConnectionFactory = new JedisConnectionFactory();
+            groupConnectionFactory.setShardInfo(new JedisShardInfo("127.0.0.1", server.getPort()));
+            groupConnectionFactory.afterPropertiesSet();
+            groupConnectionFactories.add(groupConnectionFactory);
+        }
+
+        Map<String, RedisConnectionFactory> routes = new LinkedHashMap<>();
+        routes.put("session:", groupConnectionFactories.get(1));
+        routes.put("token:", groupConnectionFactories.get(1));
+        routes.put("analytics:", groupConnectionFactories.get(2));
+        routes.put("session:bulk:", groupConnectionFactories.get(2));
+        connectionFactory = new KeyPrefixRoutingConnectionFactory(groupConnectionFactories.get(0), routes);
+    }
+
+    @After
+    public void tearDown() {
+        groupConnectionFactories.forEach(JedisConnectionFactory::destroy);
+        servers.forEach(RedisServerStub::stop);
+    }
+
+    @Test
+    public void shouldStoreKeysOnLongestMatchingPrefixGroup() {
+        StringRedisTemplate template = new StringRedisTemplate(connectionFactory);
+        template.opsForValue().set("session:1", "alice");
+        template.opsForValue().set("token:1", "secret");
+        template.opsForValue().set("analytics:1", "click");
+        template.opsForValue().set("session:bulk:1", "export");
+        template.opsForValue().set("hotel:1", "Hotel One");
+
+        assertThat(servers.get(0).getStore().keySet(), contains("hotel:1"));
+        assertThat(servers.get(1).getStore().size(), is(2));
+        assertThat(servers.get(2).getStore().size(), is(2));
+        assertThat(template.opsForValue().get("session:1"), is("alice"));
+        assertThat(template.opsForValue().get("session:bulk:1"), is("export"));
+    }
+
+    @Test
+    public void shouldSplitMultipleKeysCommandsByGroup() {
+        StringRedisTemplate template = new StringRedisTemplate(connectionFactory);
+        Map<String, String> values = new LinkedHashMap<>();
+        values.put("session:1", "alice");
+        values.put("hotel:1", "Hotel One");
+        values.put("analytics:1", "click");
+        template.opsForValue().multiSet(values);
+
+        assertThat(template.opsForValue().multiGet(Arrays.asList("analytics:1", "missing", "session:1", "hotel:1")),
+                contains("click", null, "alice", "Hotel One"));
+        template.delete(Arrays.asList("session:1", "analytics:1"));
+        assertThat(template.opsForValue().get("session:1"), is(nullValue()));
+        assertThat(servers.get(2).getStore().isEmpty(), is(true));
+        assertThat(servers.get(0).getStore().keySet(), contains("hotel:1"));
+    }
+
+    @Test
+    public void givenPipelineOnOneGroup_whenClosed_thenResultsReturned() {
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            connection.openPipeline();
+            connection.incr(bytes("session:counter"));
+            connection.incr(bytes("token:counter"));
+            assertThat(connection.closePipeline(), contains(1L, 1L));
+        }
+        finally {
+            connection.close();
+        }
+        assertThat(servers.get(1).getStore().size(), is(2));
+    }
+
+    @Test(expected = InvalidDataAccessApiUsageException.class)
+    public void givenPipelineOnMultipleGroups_whenCommanded_thenRejected() {
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            connection.openPipeline();
+            connection.incr(bytes("session:counter"));
+            connection.incr(bytes("analytics:counter"));
+        }
+        finally {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void givenSaturatedBulkGroup_whenSessionsRead_thenNotDelayed() throws Exception {
+        servers.get(2).serviceTime(200, TimeUnit.MILLISECONDS);
+        StringRedisTemplate template = new StringRedisTemplate(connectionFactory);
+        template.opsForValue().set("session:1", "alice");
+
+        ExecutorService bulkWriters = Executors.newFixedThreadPool(4);
+        try {
+            for (int i = 0; i < 4; i++) {
+                int writer = i;
+                bulkWriters.submit(() -> {
+                    for (int j = 0; j < 3; j++) {
+                        template.opsForValue().set("analytics:" + writer + ":" + j, "click");
+                    }
+                });
+            }
+            TimeUnit.MILLISECONDS.sleep(50);
+
+            long started = System.nanoTime();
+            for (int i = 0; i < 20; i++) {
+                assertThat(template.opsForValue().get("session:1"), is("alice"));
+            }
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), lessThan(200L));
+        }
+        finally {
+            bulkWriters.shutdownNow();
+            bulkWriters.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void givenSubscribedChannelsOfOneGroup_whenSubscribed_thenSubscriptionOfThatGroupExposed() {
+        StubConnectionFactory sessions = new StubConnectionFactory();
+        Subscription subscription = mock(Subscription.class);
+        when(sessions.connection.isSubscribed()).thenReturn(true);
+        when(sessions.connection.getSubscription()).thenReturn(subscription);
+        KeyPrefixRoutingConnectionFactory routing = new KeyPrefixRoutingConnectionFactory(new StubConnectionFactory(),
+                Collections.singletonMap("session:", sessions));
+
+        MessageListener listener = mock(MessageListener.class);
+        RedisConnection connection = routing.getConnection();
+        assertThat(connection.isSubscribed(), is(false));
+        assertThat(connection.getSubscription(), is(nullValue()));
+
+        connection.subscribe(listener, bytes("session:created"), bytes("session:expired"));
+        verify(sessions.connection).subscribe(listener, bytes("session:created"), bytes("session:expired"));
+        assertThat(connection.isSubscribed(), is(true));
+        assertThat(connection.getSubscription(), is(subscription));
+
+        connection.close();
+        assertThat(connection.isSubscribed(), is(false));
+    }
+
+    @Test(expected = InvalidDataAccessApiUsageException.class)
+    public void givenSubscribedChannelsOfMultipleGroups_whenSubscribed_thenRejected() {
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            connection.subscribe(mock(MessageListener.class), bytes("session:created"), bytes("analytics:clicked"));
+        }
+        finally {
+            connection.close();
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,135 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @author zakyalvan
+ */
+public class LoadBalancingModeTest {
+    private FailOverCapableConnectionFactory connectionFactory;
+
+    @After
+    public void tearDown() {
+        if (connectionFactory != null) {
+            connectionFactory.destroy();
+        }
+    }
+
+    @Test
+    public void givenWeightedCandidates_whenRoundRobin_thenTrafficProportionalToWeight() {
+        StubConnectionFactory first = new StubConnectionFactory();
+        StubConnectionFactory second = new StubConnectionFactory();
+        connectionFactory = new FailOverCapableConnectionFactory(Arrays.asList(
+                new FailOverCandidate("first", first, new ConnectionFactoryCircuitBreaker(), true, 2),
+                new FailOverCandidate("second", second, new ConnectionFactoryCircuitBreaker(), true, 1)));
+        connectionFactory.setLoadBalancingMode(LoadBalancingMode.ROUND_ROBIN);
+
+        int firstCount = 0;
+        for (int i = 0; i < 300; i++) {
+            if (connectionFactory.getConnection() == first.connection) {
+                firstCount++;
+            }
+        }
+
+        assertThat(firstCount, equalTo(200));
+    }
+
+    @Test
+    public void givenBorrowedConnections_whenLeastOutstanding_thenSelectLeastBorrowedCandidate() {
+        StubConnectionFactory first = new StubConnectionFactory();
+        StubConnectionFactory second = new StubConnectionFactory();
+        FailOverCandidate firstCandidate = new FailOverCandidate("first", first);
+        FailOverCandidate secondCandidate = new FailOverCandidate("second", second);
+        connectionFactory = new FailOverCapableConnectionFactory(Arrays.asList(firstCandidate, secondCandidate));
+        connectionFactory.setLoadBalancingMode(LoadBalancingMode.LEAST_OUTSTANDING);
+
+        List<RedisConnection> borrowed = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            borrowed.add(connectionFactory.getConnection());
+        }
+        assertThat(firstCandidate.getOutstanding(), equalTo(5));
+        assertThat(secondCandidate.getOutstanding(), equalTo(5));
+
+        borrowed.get(0).ping();
+        verify(first.connection).ping();
+
+        for (RedisConnection connection : borrowed) {
+            connection.close();
+            connection.close();
+        }
+        assertThat(firstCandidate.getOutstanding(), equalTo(0));
+        assertThat(secondCandidate.getOutstanding(), equalTo(0));
+    }
+
+    @Test
+    public void givenFailingCandidate_whenPowerOfTwoChoices_thenFailOverToHealthyCandidate() {
+        StubConnectionFactory first = new StubConnectionFactory();
+        StubConnectionFactory second = new StubConnectionFactory();
+        FailOverCandidate firstCandidate = new FailOverCandidate("first", first);
+        FailOverCandidate secondCandidate = new FailOverCandidate("second", second);
+        connectionFactory = new FailOverCapableConnectionFactory(Arrays.asList(firstCandidate, secondCandidate));
+        connectionFactory.setLoadBalancingMode(LoadBalancingMode.POWER_OF_TWO_CHOICES);
+
+        first.failing = true;
+        for (int i = 0; i < 100; i++) {
+            connectionFactory.getConnection().close();
+        }
+
+        assertThat(firstCandidate.getOutstanding(), equalTo(0));
+        assertThat(secondCandidate.getOutstanding(), equalTo(0));
+        assertThat(connectionFactory.getAvailableCandidates(), equalTo(Arrays.asList(secondCandidate)));
+    }
+
+    @Test
+    public void givenSlowCandidate_whenLatencyAware_thenTrafficShiftToFasterCandidate() {
+        StubConnectionFactory slow = new StubConnectionFactory();
+        StubConnectionFactory fast = new StubConnectionFactory();
+        when(slow.connection.ping()).thenAnswer(invocation -> {
+            Thread.sleep(20);
+            return "PONG";
+        });
+        when(fast.connection.ping()).thenReturn("PONG");
+        // Warm up stubbing and connection proxies, so that first measured call of fast candidate is not slowed by
+        // class loading, which would raise its peak average above the slow one.
+        FailOverCapableConnectionFactory warmUp = new FailOverCapableConnectionFactory(
+                Collections.singletonList(new FailOverCandidate("warm-up", fast)));
+        warmUp.setLoadBalancingMode(LoadBalancingMode.LATENCY_AWARE);
+        for (int i = 0; i < 10; i++) {
+            RedisConnection connection = warmUp.getConnection();
+            connection.ping();
+            connection.close();
+        }
+        warmUp.destroy();
+        FailOverCandidate slowCandidate = new FailOverCandidate("slow", slow);
+        FailOverCandidate fastCandidate = new FailOverCandidate("fast", fast);
+        connectionFactory = new FailOverCapableConnectionFactory(Arrays.asList(slowCandidate, fastCandidate));
+        connectionFactory.setLoadBalancingMode(LoadBalancingMode.LATENCY_AWARE);
+
+        int slowCount = 0;
+        for (int i = 0; i < 200; i++) {
+            RedisConnection connection = connectionFactory.getConnection();
+            if (connection.ping() != null && slowCandidate.getOutstanding() == 1) {
+                slowCount++;
+            }
+            connection.close();
+        }
+
+        assertThat(slowCount, lessThan(20));
+        assertThat(connectionFactory.getLatencyScores().get("slow"),
+                greaterThan(connectionFactory.getLatencyScores().get("fast")));
+    }
+}
@@ -0,0 +1,119 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Near cache of {@link FailOverCapableConnectionFactory}, used through {@link StringRedisTemplate} against a redis
+ * protocol stand-in.
+ *
+ * @author zakyalvan
+ */
+public class NearCacheTest {
+    private RedisServerStub server;
+
+    private ExtendedJedisConnectionFactory delegate;
+
+    private FailOverCapableConnectionFactory connectionFactory;
+
+    private NearCache nearCache;
+
+    private StringRedisTemplate redisTemplate;
+
+    @Before
+    public void setUp() {
+        server = new RedisServerStub().start();
+        delegate = new ExtendedJedisConnectionFactory();
+        delegate.setHostName("127.0.0.1");
+        delegate.setPort(server.getPort());
+        delegate.afterPropertiesSet();
+
+        nearCache = new NearCache(Collections.singletonList(new NearCacheRegion("config", "config:*", 100, 0, 60000)));
+        connectionFactory = new FailOverCapableConnectionFactory(
+                Collections.singletonList(new FailOverCandidate("proxy", delegate)));
+        connectionFactory.setNearCache(nearCache);
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+    }
+
+    @After
+    public void tearDown() {
+        connectionFactory.destroy();
+        delegate.destroy();
+        server.stop();
+    }
+
+    @Test
+    public void givenCachedKey_whenReadRepeatedly_thenServedLocally() {
+        server.getStore().put("config:rate", bytes("15000"));
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(redisTemplate.opsForValue().get("config:rate"), is("15000"));
+        }
+
+        assertThat(server.getCommandCount("GET"), is(1L));
+        NearCacheRegion region = nearCache.getRegions().get(0);
+        assertThat(region.getHitCount(), is(9L));
+        assertThat(region.getMissCount(), is(1L));
+        assertThat(region.getHitRatio(), closeTo(0.9, 0.001));
+    }
+
+    @Test
+    public void givenCachedKey_whenWrittenThroughTemplate_thenInvalidated() {
+        redisTemplate.opsForValue().set("config:rate", "15000");
+        assertThat(redisTemplate.opsForValue().get("config:rate"), is("15000"));
+
+        redisTemplate.opsForValue().set("config:rate", "16000");
+        assertThat(redisTemplate.opsForValue().get("config:rate"), is("16000"));
+
+        redisTemplate.delete("config:rate");
+        assertThat(redisTemplate.opsForValue().get("config:rate"), is((String) null));
+    }
+
+    @Test
+    public void givenExternalWrite_whenExplicitlyInvalidated_thenFreshValueRead() {
+        server.getStore().put("config:rate", bytes("15000"));
+        assertThat(redisTemplate.opsForValue().get("config:rate"), is("15000"));
+
+        server.getStore().put("config:rate", bytes("16000"));
+        assertThat(redisTemplate.opsForValue().get("config:rate"), is("15000"));
+
+        nearCache.invalidate("config:rate");
+        assertThat(redisTemplate.opsForValue().get("config:rate"), is("16000"));
+    }
+
+    @Test
+    public void givenUnmatchedKey_whenReadRepeatedly_thenAlwaysReadFromRedis() {
+        server.getStore().put("session:1", bytes("john"));
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(redisTemplate.opsForValue().get("session:1"), is("john"));
+        }
+        assertThat(server.getCommandCount("GET"), is(5L));
+    }
+
+    @Test
+    public void givenPipeline_whenCachedKeyRead_thenReadFromRedis() {
+        server.getStore().put("config:rate", bytes("15000"));
+        assertThat(redisTemplate.opsForValue().get("config:rate"), is("15000"));
+
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            connection.get(bytes("config:rate"));
+            return null;
+        });
+        assertThat(server.getCommandCount("GET"), is(2L));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,611 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * Minimal in-JVM redis protocol (RESP) server, standing in for twemproxy or redis on loopback.
+ * <p>
+ * Commands executed one at a time, like redis or twemproxy event loop. Optional service time emulate
+ * capacity of single proxy. Multiple stubs sharing one store emulate multiple twemproxy in front of
+ * the same backend.
+ *
+ * @author zakyalvan
+ */
+public class RedisServerStub implements AutoCloseable {
+    private static final byte[] CRLF = "\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final ConcurrentMap<String, byte[]> store;
+
+    /**
+     * Hashes and sets, only accessed while executing commands one at a time.
+     */
+    private final Map<String, Map<String, byte[]>> hashes = new HashMap<>();
+
+    private final Map<String, Set<String>> sets = new HashMap<>();
+
+    private final ReentrantLock eventLoop = new ReentrantLock(true);
+
+    private final AtomicLong commands = new AtomicLong();
+
+    private final Map<String, AtomicLong> commandCounts = new ConcurrentHashMap<>();
+
+    private final Set<Socket> clients = new CopyOnWriteArraySet<>();
+
+    private volatile long serviceTimeNanos;
+
+    private volatile long argumentServiceTimeNanos;
+
+    private volatile long roundTripTimeNanos;
+
+    private volatile String password;
+
+    private ServerSocket serverSocket;
+
+    private ExecutorService executor;
+
+    private Future<?> acceptor;
+
+    private int port;
+
+    public RedisServerStub() {
+        this(new ConcurrentHashMap<>());
+    }
+
+    public RedisServerStub(ConcurrentMap<String, byte[]> store) {
+        this.store = store;
+    }
+
+    public RedisServerStub serviceTime(long time, TimeUnit unit) {
+        this.serviceTimeNanos = unit.toNanos(time);
+        return this;
+    }
+
+    /**
+     * Additional service time of each command argument, e.g. to simulate cost of each key of 'MGET'.
+     */
+    public RedisServerStub argumentServiceTime(long time, TimeUnit unit) {
+        this.argumentServiceTimeNanos = unit.toNanos(time);
+        return this;
+    }
+
+    /**
+     * Network round trip time, spent outside of event loop before replying each burst of commands read together.
+     */
+    public RedisServerStub roundTripTime(long time, TimeUnit unit) {
+        this.roundTripTimeNanos = unit.toNanos(time);
+        return this;
+    }
+
+    public RedisServerStub password(String password) {
+        this.password = password;
+        return this;
+    }
+
+    /**
+     * Start listening, on random port for the first start and on the same port on restart.
+     */
+    public synchronized RedisServerStub start() {
+        try {
+            serverSocket = new ServerSocket();
+            serverSocket.setReuseAddress(true);
+            serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            port = serverSocket.getLocalPort();
+        }
+        catch (IOException ex) {
+            throw new IllegalStateException("Can not start redis server stub", ex);
+        }
+
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "redis-stub-" + port);
+            thread.setDaemon(true);
+            return thread;
+        });
+        ServerSocket listening = serverSocket;
+        acceptor = executor.submit(() -> accept(listening));
+        return this;
+    }
+
+    /**
+     * Stop listening and drop all client connections.
+     */
+    public synchronized void stop() {
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        }
+        catch (IOException ignored) {
+        }
+        if (acceptor != null) {
+            // Closed listening socket may keep accepting until the blocked accept returns.
+            try {
+                acceptor.get(1, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            catch (ExecutionException | TimeoutException ignored) {
+            }
+        }
+        for (Socket client : clients) {
+            try {
+                client.close();
+            }
+            catch (IOException ignored) {
+            }
+        }
+        clients.clear();
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public ConcurrentMap<String, byte[]> getStore() {
+        return store;
+    }
+
+    /**
+     * Copy of hash stored at given key, empty if none.
+     */
+    public Map<String, byte[]> getHash(String key) {
+        eventLoop.lock();
+        try {
+            return new LinkedHashMap<>(hashes.getOrDefault(key, Collections.emptyMap()));
+        }
+        finally {
+            eventLoop.unlock();
+        }
+    }
+
+    public long getCommandCount() {
+        return commands.get();
+    }
+
+    public long getCommandCount(String command) {
+        AtomicLong count = commandCounts.get(command.toUpperCase());
+        return count != null ? count.get() : 0;
+    }
+
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    public void resetCounts() {
+        commands.set(0);
+        commandCounts.clear();
+    }
+
+    private void accept(ServerSocket listening) {
+        while (!listening.isClosed()) {
+            try {
+                Socket client = listening.accept();
+                if (listening.isClosed()) {
+                    client.close();
+                    return;
+                }
+                client.setTcpNoDelay(true);
+                clients.add(client);
+                executor.execute(() -> serve(client));
+            }
+            catch (IOException | RejectedExecutionException ex) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket client) {
+        try (Socket socket = client) {
+            InputStream input = new BufferedInputStream(socket.getInputStream());
+            OutputStream output = new BufferedOutputStream(socket.getOutputStream());
+            boolean authenticated = password == null;
+
+            while (true) {
+                List<byte[]> request = readRequest(input);
+                if (request == null) {
+                    return;
+                }
+                String command = new String(request.get(0), StandardCharsets.UTF_8).toUpperCase();
+                commands.incrementAndGet();
+                commandCounts.computeIfAbsent(command, key -> new AtomicLong()).incrementAndGet();
+
+                if ("QUIT".equals(command)) {
+                    writeSimple(output, "OK");
+                    output.flush();
+                    return;
+                }
+                if ("AUTH".equals(command)) {
+                    authenticated = password != null && password.equals(string(request, 1));
+                    if (authenticated) {
+                        writeSimple(output, "OK");
+                    }
+                    else {
+                        writeError(output, "ERR invalid password");
+                    }
+                }
+                else if (!authenticated) {
+                    writeError(output, "NOAUTH Authentication required.");
+                }
+                else {
+                    eventLoop.lock();
+                    try {
+                        long serviceTime = serviceTimeNanos + argumentServiceTimeNanos * (request.size() - 1);
+                        if (serviceTime > 0) {
+                            pause(serviceTime);
+                        }
+                        execute(command, request, output);
+                    }
+                    finally {
+                        eventLoop.unlock();
+                    }
+                }
+
+                if (input.available() == 0) {
+                    if (roundTripTimeNanos > 0) {
+                        pause(roundTripTimeNanos);
+                    }
+                    output.flush();
+                }
+            }
+        }
+        catch (IOException ignored) {
+        }
+        finally {
+            clients.remove(client);
+        }
+    }
+
+    /**
+     * Execute one command. Override to support additional commands.
+     */
+    protected void execute(String command, List<byte[]> request, OutputStream output) throws IOException {
+        switch (command) {
+            case "PING":
+                writeSimple(output, "PONG");
+                break;
+            case "ECHO":
+                writeBulk(output, request.get(1));
+                break;
+            case "SELECT":
+                writeSimple(output, "OK");
+                break;
+            case "GET":
+                writeBulk(output, store.get(string(request, 1)));
+                break;
+            case "SET": {
+                boolean ifAbsent = request.size() > 3 && "NX".equalsIgnoreCase(string(request, 3));
+                if (ifAbsent && store.putIfAbsent(string(request, 1), request.get(2)) != null) {
+                    writeBulk(output, null);
+                    break;
+                }
+                store.put(string(request, 1), request.get(2));
+                writeSimple(output, "OK");
+                break;
+            }
+            case "RENAME": {
+                byte[] value = store.remove(string(request, 1));
+                if (value == null) {
+                    writeError(output, "ERR no such key");
+                    break;
+                }
+                store.put(string(request, 2), value);
+                writeSimple(output, "OK");
+                break;
+            }
+            case "GETSET":
+                writeBulk(output, store.put(string(request, 1), request.get(2)));
+                break;
+            case "PERSIST":
+                writeInteger(output, 0);
+                break;
+            case "SETNX":
+                writeInteger(output, store.putIfAbsent(string(request, 1), request.get(2)) == null ? 1 : 0);
+                break;
+            case "SETEX":
+            case "PSETEX":
+                store.put(string(request, 1), request.get(3));
+                writeSimple(output, "OK");
+                break;
+            case "DEL": {
+                long deleted = 0;
+                for (int i = 1; i < request.size(); i++) {
+                    String key = string(request, i);
+                    deleted += store.remove(key) != null | hashes.remove(key) != null | sets.remove(key) != null ? 1 : 0;
+                }
+                writeInteger(output, deleted);
+                break;
+            }
+            case "EXISTS": {
+                long exists = 0;
+                for (int i = 1; i < request.size(); i++) {
+                    exists += store.containsKey(string(request, i)) ? 1 : 0;
+                }
+                writeInteger(output, exists);
+                break;
+            }
+            case "MGET": {
+                writeArrayHeader(output, request.size() - 1);
+                for (int i = 1; i < request.size(); i++) {
+                    writeBulk(output, store.get(string(request, i)));
+                }
+                break;
+            }
+            case "MSET":
+                for (int i = 1; i + 1 < request.size(); i += 2) {
+                    store.put(string(request, i), request.get(i + 1));
+                }
+                writeSimple(output, "OK");
+                break;
+            case "INCR":
+            case "INCRBY": {
+                long delta = request.size() > 2 ? Long.parseLong(string(request, 2)) : 1;
+                byte[] current = store.get(string(request, 1));
+                long value;
+                try {
+                    value = (current != null ? Long.parseLong(new String(current, StandardCharsets.UTF_8)) : 0) + delta;
+                }
+                catch (NumberFormatException ex) {
+                    writeError(output, "ERR value is not an integer or out of range");
+                    break;
+                }
+                store.put(string(request, 1), String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+                writeInteger(output, value);
+                break;
+            }
+            case "EXPIRE":
+            case "PEXPIRE":
+                writeInteger(output, store.containsKey(string(request, 1)) ? 1 : 0);
+                break;
+            case "TTL":
+            case "PTTL":
+                writeInteger(output, store.containsKey(string(request, 1)) ? -1 : -2);
+                break;
+            case "HSET":
+                writeInteger(output, hashes.computeIfAbsent(string(request, 1), key -> new LinkedHashMap<>())
+                        .put(string(request, 2), request.get(3)) == null ? 1 : 0);
+                break;
+            case "HINCRBY": {
+                Map<String, byte[]> hash = hashes.computeIfAbsent(string(request, 1), key -> new LinkedHashMap<>());
+                byte[] current = hash.get(string(request, 2));
+                long value = (current != null ? Long.parseLong(new String(current, StandardCharsets.UTF_8)) : 0)
+                        + Long.parseLong(string(request, 3));
+                hash.put(string(request, 2), String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+                writeInteger(output, value);
+                break;
+            }
+            case "HGETALL": {
+                Map<String, byte[]> hash = hashes.getOrDefault(string(request, 1), Collections.emptyMap());
+                writeArrayHeader(output, hash.size() * 2);
+                for (Map.Entry<String, byte[]> entry : hash.entrySet()) {
+                    writeBulk(output, entry.getKey().getBytes(StandardCharsets.UTF_8));
+                    writeBulk(output, entry.getValue());
+                }
+                break;
+            }
+            case "SADD": {
+                Set<String> set = sets.computeIfAbsent(string(request, 1), key -> new LinkedHashSet<>());
+                long added = 0;
+                for (int i = 2; i < request.size(); i++) {
+                    added += set.add(string(request, i)) ? 1 : 0;
+                }
+                writeInteger(output, added);
+                break;
+            }
+            case "SREM": {
+                Set<String> set = sets.getOrDefault(string(request, 1), Collections.emptySet());
+                long removed = 0;
+                for (int i = 2; i < request.size(); i++) {
+                    removed += set.remove(string(request, i)) ? 1 : 0;
+                }
+                writeInteger(output, removed);
+                break;
+            }
+            case "SMEMBERS": {
+                Set<String> set = sets.getOrDefault(string(request, 1), Collections.emptySet());
+                writeArrayHeader(output, set.size());
+                for (String member : set) {
+                    writeBulk(output, member.getBytes(StandardCharsets.UTF_8));
+                }
+                break;
+            }
+            case "SCAN":
+                scan(request, output);
+                break;
+            default:
+                writeError(output, "ERR unknown command '" + command + "'");
+        }
+    }
+
+    /**
+     * Scan string keys in order of their hash, cursor being the next hash to return, so that like redis, keys present
+     * through the whole scan are returned even when other keys deleted meanwhile.
+     */
+    private void scan(List<byte[]> request, OutputStream output) throws IOException {
+        long cursor = Long.parseLong(string(request, 1));
+        Pattern match = null;
+        int count = 10;
+        for (int i = 2; i + 1 < request.size(); i += 2) {
+            String option = string(request, i).toUpperCase();
+            if (option.equals("MATCH")) {
+                match = Pattern.compile("\\Q" + string(request, i + 1).replace("*", "\\E.*\\Q")
+                        .replace("?", "\\E.\\Q") + "\\E");
+            }
+            else if (option.equals("COUNT")) {
+                count = Integer.parseInt(string(request, i + 1));
+            }
+        }
+
+        TreeMap<Long, List<String>> ordered = new TreeMap<>();
+        for (String key : store.keySet()) {
+            long hash = key.hashCode() & 0xffffffffL;
+            if (hash >= cursor) {
+                ordered.computeIfAbsent(hash, ignored -> new ArrayList<>()).add(key);
+            }
+        }
+        List<String> keys = new ArrayList<>();
+        long next = 0;
+        int visited = 0;
+        for (Map.Entry<Long, List<String>> bucket : ordered.entrySet()) {
+            if (visited >= count) {
+                next = bucket.getKey();
+                break;
+            }
+            for (String key : bucket.getValue()) {
+                visited++;
+                if (match == null || match.matcher(key).matches()) {
+                    keys.add(key);
+                }
+            }
+        }
+
+        writeArrayHeader(output, 2);
+        writeBulk(output, String.valueOf(next).getBytes(StandardCharsets.UTF_8));
+        writeArrayHeader(output, keys.size());
+        for (String key : keys) {
+            writeBulk(output, key.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Park for given nanos, parking again on spurious (early) wake up, so that emulated delays are never shorter.
+     */
+    private static void pause(long nanos) {
+        long deadline = System.nanoTime() + nanos;
+        for (long remaining = nanos; remaining > 0; remaining = deadline - System.nanoTime()) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    protected static String string(List<byte[]> request, int index) {
+        return new String(request.get(index), StandardCharsets.UTF_8);
+    }
+
+    private static List<byte[]> readRequest(InputStream input) throws IOException {
+        int marker = input.read();
+        if (marker == -1) {
+            return null;
+        }
+        if (marker != '*') {
+            throw new SocketException("Inline commands not supported");
+        }
+        int count = (int) readLong(input);
+        List<byte[]> request = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (input.read() != '$') {
+                throw new SocketException("Bulk string expected");
+            }
+            int length = (int) readLong(input);
+            byte[] argument = new byte[length];
+            int read = 0;
+            while (read < length) {
+                int chunk = input.read(argument, read, length - read);
+                if (chunk == -1) {
+                    throw new EOFException();
+                }
+                read += chunk;
+            }
+            input.read();
+            input.read();
+            request.add(argument);
+        }
+        return request;
+    }
+
+    private static long readLong(InputStream input) throws IOException {
+        long value = 0;
+        boolean negative = false;
+        int read;
+        while ((read = input.read()) != '\r') {
+            if (read == -1) {
+                throw new EOFException();
+            }
+            if (read == '-') {
+                negative = true;
+            }
+            else {
+                value = value * 10 + (read - '0');
+            }
+        }
+        input.read();
+        return negative ? -value : value;
+    }
+
+    protected static void writeSimple(OutputStream output, String value) throws IOException {
+        output.write('+');
+        output.write(value.getBytes(StandardCharsets.UTF_8));
+        output.write(CRLF);
+    }
+
+    protected static void writeError(OutputStream output, String message) throws IOException {
+        output.write('-');
+        output.write(message.getBytes(StandardCharsets.UTF_8));
+        output.write(CRLF);
+    }
+
+    protected static void writeInteger(OutputStream output, long value) throws IOException {
+        output.write(':');
+        output.write(String.valueOf(value).getBytes(StandardCharsets.US_ASCII));
+        output.write(CRLF);
+    }
+
+    protected static void writeBulk(OutputStream output, byte[] value) throws IOException {
+        if (value == null) {
+            output.write("$-1".getBytes(StandardCharsets.US_ASCII));
+            output.write(CRLF);
+            return;
+        }
+        output.write('$');
+        output.write(String.valueOf(value.length).getBytes(StandardCharsets.US_ASCII));
+        output.write(CRLF);
+        output.write(value);
+        output.write(CRLF);
+    }
+
+    protected static void writeArrayHeader(OutputStream output, int size) throws IOException {
+        output.write('*');
+        output.write(String.valueOf(size).getBytes(StandardCharsets.US_ASCII));
+        output.write(CRLF);
+    }
+}
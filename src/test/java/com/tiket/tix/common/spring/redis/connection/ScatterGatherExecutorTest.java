@@ -0,0 +1,252 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Splitting of large multiple keys commands retrieved from {@link FailOverCapableConnectionFactory}, over
+ * two redis protocol stand-ins sharing one store, like two twemproxy in front of the same backend.
+ *
+ * @author zakyalvan
+ */
+public class ScatterGatherExecutorTest {
+    private final ConcurrentMap<String, byte[]> backend = new ConcurrentHashMap<>();
+
+    private final List<RedisServerStub> proxies = new ArrayList<>();
+
+    private final List<ExtendedJedisConnectionFactory> delegates = new ArrayList<>();
+
+    private ScatterGatherExecutor executor;
+
+    private FailOverCapableConnectionFactory connectionFactory;
+
+    @Before
+    public void setUp() {
+        List<FailOverCandidate> candidates = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            RedisServerStub proxy = new RedisServerStub(backend).start();
+            proxies.add(proxy);
+
+            ExtendedJedisConnectionFactory delegate = new ExtendedJedisConnectionFactory();
+            delegate.setHostName("127.0.0.1");
+            delegate.setPort(proxy.getPort());
+            delegate.afterPropertiesSet();
+            delegates.add(delegate);
+            candidates.add(new FailOverCandidate("proxy-" + i, delegate));
+        }
+
+        executor = new ScatterGatherExecutor(10, 3);
+        connectionFactory = new FailOverCapableConnectionFactory(candidates);
+        connectionFactory.setLoadBalancingMode(LoadBalancingMode.ROUND_ROBIN);
+        connectionFactory.setScatterGatherExecutor(executor);
+    }
+
+    @After
+    public void tearDown() {
+        connectionFactory.destroy();
+        executor.destroy();
+        delegates.forEach(ExtendedJedisConnectionFactory::destroy);
+        proxies.forEach(RedisServerStub::stop);
+    }
+
+    @Test
+    public void givenLargeMultiGet_whenExecuted_thenSplitAndMergedInKeyOrder() {
+        byte[][] keys = new byte[95][];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = bytes("key:" + i);
+            if (i % 3 != 0) {
+                backend.put("key:" + i, bytes("value:" + i));
+            }
+        }
+
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            List<byte[]> values = connection.mGet(keys);
+
+            assertThat(values.size(), is(keys.length));
+            for (int i = 0; i < keys.length; i++) {
+                if (i % 3 == 0) {
+                    assertThat(values.get(i), nullValue());
+                }
+                else {
+                    assertThat(values.get(i), is(bytes("value:" + i)));
+                }
+            }
+        }
+        finally {
+            connection.close();
+        }
+
+        assertThat(proxies.get(0).getCommandCount("MGET") + proxies.get(1).getCommandCount("MGET"), is(10L));
+        assertThat(proxies.get(0).getCommandCount("MGET"), greaterThan(0L));
+        assertThat(proxies.get(1).getCommandCount("MGET"), greaterThan(0L));
+    }
+
+    @Test
+    public void givenLargeMultiSetAndDelete_whenExecuted_thenAllKeysApplied() {
+        Map<byte[], byte[]> tuples = new LinkedHashMap<>();
+        byte[][] keys = new byte[35][];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = bytes("key:" + i);
+            tuples.put(keys[i], bytes("value:" + i));
+        }
+
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            connection.mSet(tuples);
+            assertThat(backend.size(), is(35));
+
+            assertThat(connection.del(keys), is(35L));
+            assertThat(backend.isEmpty(), is(true));
+        }
+        finally {
+            connection.close();
+        }
+        assertThat(proxies.get(0).getCommandCount("MSET") + proxies.get(1).getCommandCount("MSET"), is(4L));
+    }
+
+    @Test
+    public void givenSmallMultiGet_whenExecuted_thenSentAsIs() {
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            connection.mGet(bytes("first"), bytes("second"));
+        }
+        finally {
+            connection.close();
+        }
+        assertThat(proxies.get(0).getCommandCount("MGET") + proxies.get(1).getCommandCount("MGET"), is(1L));
+    }
+
+    @Test
+    public void givenPoolSmallerThanConcurrentFragments_whenLargeMultiGetsExecuted_thenNoneWaitsForever() throws Exception {
+        byte[][] keys = new byte[50][];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = bytes("key:" + i);
+            backend.put("key:" + i, bytes("value:" + i));
+        }
+        JedisPoolConfig poolConfig = new JedisPoolConfig();
+        poolConfig.setMaxTotal(2);
+        ExtendedJedisConnectionFactory delegate = new ExtendedJedisConnectionFactory(poolConfig);
+        delegate.setHostName("127.0.0.1");
+        delegate.setPort(proxies.get(0).getPort());
+        delegate.afterPropertiesSet();
+        delegates.add(delegate);
+        FailOverCapableConnectionFactory smallPoolFactory = new FailOverCapableConnectionFactory(
+                Collections.singletonList(new FailOverCandidate("proxy-0", delegate)));
+        smallPoolFactory.setScatterGatherExecutor(executor);
+
+        // Four callers of five fragments each, over two pooled connections waiting without timeout.
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(callers.submit(() -> {
+                    for (int j = 0; j < 20; j++) {
+                        RedisConnection connection = smallPoolFactory.getConnection();
+                        try {
+                            assertThat(connection.mGet(keys).get(49), is(bytes("value:49")));
+                        }
+                        finally {
+                            connection.close();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get(10, TimeUnit.SECONDS);
+            }
+        }
+        finally {
+            callers.shutdownNow();
+            smallPoolFactory.destroy();
+        }
+    }
+
+    @Test
+    public void givenHelpersBusyWithOtherCommand_whenFragmentsDrainedByCaller_thenCompletedWithoutWaitingHelpers()
+            throws Throwable {
+        byte[][] keys = new byte[20][];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = bytes("key:" + i);
+        }
+        RedisServerStub slowProxy = new RedisServerStub(backend).serviceTime(500, TimeUnit.MILLISECONDS).start();
+        proxies.add(slowProxy);
+        ExtendedJedisConnectionFactory slow = new ExtendedJedisConnectionFactory();
+        slow.setHostName("127.0.0.1");
+        slow.setPort(slowProxy.getPort());
+        slow.afterPropertiesSet();
+        delegates.add(slow);
+        ExtendedJedisConnectionFactory fast = delegates.get(0);
+
+        Method mGet = RedisConnection.class.getMethod("mGet", byte[][].class);
+        Object[] args = {keys};
+        ScatterGatherExecutor singleHelper = new ScatterGatherExecutor(10, 1);
+        ExecutorService callers = Executors.newSingleThreadExecutor();
+        RedisConnection slowConnection = slow.getConnection();
+        RedisConnection fastConnection = fast.getConnection();
+        try {
+            // Only helper busy with fragment of slow command, helper of the next command queued behind it.
+            Future<?> slowCommand = callers.submit(() -> {
+                try {
+                    return singleHelper.execute(mGet, args, singleHelper.split(range(20)),
+                            Collections.nCopies(2, slow), fragment -> slowConnection);
+                }
+                catch (Throwable ex) {
+                    throw new IllegalStateException(ex);
+                }
+            });
+            TimeUnit.MILLISECONDS.sleep(100);
+
+            long started = System.nanoTime();
+            @SuppressWarnings("unchecked")
+            List<byte[]> values = (List<byte[]>) singleHelper.execute(mGet, args, singleHelper.split(range(20)),
+                    Collections.nCopies(2, fast), fragment -> fastConnection);
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+            assertThat(values.size(), is(20));
+            assertThat(elapsed, lessThan(250L));
+            slowCommand.get(5, TimeUnit.SECONDS);
+        }
+        finally {
+            callers.shutdownNow();
+            singleHelper.destroy();
+            slowConnection.close();
+            fastConnection.close();
+        }
+    }
+
+    private static int[] range(int size) {
+        int[] positions = new int[size];
+        for (int i = 0; i < size; i++) {
+            positions[i] = i;
+        }
+        return positions;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,121 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Compare shard selected by {@link ShardLocator} with shard selected by twemproxy hashkit.
+ * <p>
+ * Expected shards in 'sharding/twemproxy-distribution.txt' are generated by C transcription of twemproxy
+ * hashkit ('nc_fnv.c', 'nc_murmur.c', 'nc_md5.c', 'nc_ketama.c' and 'nc_modula.c'). Each line contains pool
+ * servers, distribution, hash, hash tag and expected shard index of each key of {@link #corpusKey(int)} corpus.
+ *
+ * @author zakyalvan
+ */
+public class ShardLocatorCompatibilityTest {
+    private static final String FIXTURE = "/sharding/twemproxy-distribution.txt";
+
+    @Test
+    public void shouldSelectTheSameShardAsTwemproxy() throws IOException {
+        int configurations = 0;
+        for (String line : readFixture()) {
+            String[] fields = line.split("\\|", -1);
+            List<ShardNode> nodes = new ArrayList<>();
+            for (String server : fields[0].split(",")) {
+                nodes.add(ShardNode.parse(server));
+            }
+            ShardLocator locator = new ShardLocator(nodes, HashAlgorithm.valueOf(fields[2].toUpperCase()),
+                    ShardDistribution.valueOf(fields[1].toUpperCase()), fields[3]);
+
+            String expected = fields[4];
+            int mismatches = 0;
+            for (int i = 0; i < expected.length(); i++) {
+                if (locator.locate(corpusKey(i)) != expected.charAt(i) - '0') {
+                    mismatches++;
+                }
+            }
+            assertThat("Mismatched keys of " + fields[1] + "/" + fields[2] + "/'" + fields[3] + "' on " + fields[0],
+                    mismatches, is(0));
+            configurations++;
+        }
+        assertThat(configurations, greaterThan(0));
+    }
+
+    @Test
+    public void shouldNameShardAsTwemproxy() {
+        assertThat(ShardNode.parse("127.0.0.1:6379:1").getName(), is("127.0.0.1:6379"));
+        assertThat(ShardNode.parse("127.0.0.1:11211:1").getName(), is("127.0.0.1"));
+        assertThat(ShardNode.parse("127.0.0.1:6379:2 server1").getName(), is("server1"));
+        assertThat(ShardNode.parse("127.0.0.1:6379:2 server1").getWeight(), is(2));
+    }
+
+    @Test
+    public void shouldLocateHashTaggedKeysTogether() {
+        List<ShardNode> nodes = new ArrayList<>();
+        for (int port = 6379; port < 6389; port++) {
+            nodes.add(new ShardNode("127.0.0.1", port, 1));
+        }
+        ShardLocator locator = new ShardLocator(nodes, HashAlgorithm.FNV1A_64, ShardDistribution.KETAMA, "{}");
+
+        int shard = locator.locate(bytes("{user:1}:profile"));
+        for (int i = 0; i < 100; i++) {
+            assertThat(locator.locate(bytes("{user:1}:attribute:" + i)), is(shard));
+        }
+        assertThat(locator.locate(bytes("user:1")), is(shard));
+    }
+
+    /**
+     * Key corpus, must match 'corpus_key' of fixture generator. Covers hash tagged keys and non ASCII bytes.
+     */
+    private static byte[] corpusKey(int i) {
+        String key;
+        if (i % 5 == 0) {
+            key = "{user" + (i % 97) + "}:profile:" + i;
+        }
+        else if (i % 3 == 0) {
+            key = "session:" + Integer.toHexString(i * 7919) + ":" + i;
+        }
+        else {
+            key = "key:" + i;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] ascii = key.getBytes(StandardCharsets.US_ASCII);
+        bytes.write(ascii, 0, ascii.length);
+        if (i % 7 == 0) {
+            bytes.write(0xC3);
+            bytes.write(0xA9);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> readFixture() throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (InputStream input = ShardLocatorCompatibilityTest.class.getResourceAsStream(FIXTURE);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.US_ASCII))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    lines.add(line);
+                }
+            }
+        }
+        return lines;
+    }
+}
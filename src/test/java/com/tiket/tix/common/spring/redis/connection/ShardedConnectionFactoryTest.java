@@ -0,0 +1,306 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import org.springframework.data.redis.core.ScanOptions;
+import redis.clients.jedis.JedisShardInfo;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+
+/**
+ * Routing of {@link ShardedConnectionFactory} connection commands to in memory redis servers.
+ *
+ * @author zakyalvan
+ */
+public class ShardedConnectionFactoryTest {
+    private final List<RedisServerStub> servers = new ArrayList<>();
+
+    private final List<JedisConnectionFactory> shardConnectionFactories = new ArrayList<>();
+
+    private ShardedConnectionFactory connectionFactory;
+
+    @Before
+    public void setUp() {
+        List<ShardNode> nodes = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            RedisServerStub server = new RedisServerStub().start();
+            servers.add(server);
+            // Named, so that keys are located the same way whatever the ephemeral port of stand-ins.
+            nodes.add(new ShardNode("127.0.0.1", server.getPort(), 1, "shard-" + i));
+
+            JedisConnectionFactory shardConnectionFactory = new JedisConnectionFactory();
+            shardConnectionFactory.setShardInfo(new JedisShardInfo("127.0.0.1", server.getPort()));
+            shardConnectionFactory.afterPropertiesSet();
+            shardConnectionFactories.add(shardConnectionFactory);
+        }
+
+        ShardLocator locator = new ShardLocator(nodes, HashAlgorithm.FNV1A_64, ShardDistribution.KETAMA, "{}");
+        connectionFactory = new ShardedConnectionFactory(locator, new ArrayList<RedisConnectionFactory>(shardConnectionFactories));
+    }
+
+    @After
+    public void tearDown() {
+        shardConnectionFactories.forEach(JedisConnectionFactory::destroy);
+        servers.forEach(RedisServerStub::stop);
+    }
+
+    @Test
+    public void shouldStoreKeysOnLocatedShard() {
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            for (int i = 0; i < 300; i++) {
+                connection.set(bytes("key:" + i), bytes("value:" + i));
+            }
+            for (int i = 0; i < 300; i++) {
+                assertThat(connection.get(bytes("key:" + i)), is(bytes("value:" + i)));
+            }
+        }
+        finally {
+            connection.close();
+        }
+
+        int total = 0;
+        for (int i = 0; i < 300; i++) {
+            int shard = connectionFactory.getLocator().locate(bytes("key:" + i));
+            assertThat(servers.get(shard).getStore().containsKey("key:" + i), is(true));
+        }
+        for (RedisServerStub server : servers) {
+            total += server.getStore().size();
+        }
+        assertThat(total, is(300));
+    }
+
+    @Test
+    public void shouldRouteMultipleKeysCommandOfOneShard() {
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            connection.set(bytes("{user:1}:name"), bytes("john"));
+            connection.set(bytes("{user:1}:city"), bytes("jakarta"));
+
+            assertThat(connection.mGet(bytes("{user:1}:name"), bytes("{user:1}:city")),
+                    contains(bytes("john"), bytes("jakarta")));
+        }
+        finally {
+            connection.close();
+        }
+    }
+
+    @Test(expected = InvalidDataAccessApiUsageException.class)
+    public void shouldRejectUnsplittableCommandSpanningShards() {
+        byte[][] keys = keysOfDifferentShards();
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            connection.sUnion(keys);
+        }
+        finally {
+            connection.close();
+        }
+    }
+
+    @Test
+    public void shouldSplitMultipleKeysCommandsSpanningShards() {
+        connectionFactory.setScatterGatherExecutor(new ScatterGatherExecutor(7, 2));
+
+        byte[][] keys = keysOfEveryShard(20);
+        Map<byte[], byte[]> tuples = new LinkedHashMap<>();
+        for (int i = 0; i < keys.length; i++) {
+            tuples.put(keys[i], bytes("value:" + i));
+        }
+
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            connection.mSet(tuples);
+            for (RedisServerStub server : servers) {
+                assertThat(server.getStore().isEmpty(), is(false));
+            }
+
+            List<byte[]> values = connection.mGet(keys);
+            assertThat(values.size(), is(keys.length));
+            for (int i = 0; i < keys.length; i++) {
+                assertThat(values.get(i), is(bytes("value:" + i)));
+            }
+
+            assertThat(connection.del(keys), is((long) keys.length));
+        }
+        finally {
+            connection.close();
+            connectionFactory.getScatterGatherExecutor().destroy();
+        }
+    }
+
+    @Test
+    public void shouldPipelineCommandsOfOneShard() {
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            connection.set(bytes("{order:7}:status"), bytes("paid"));
+
+            connection.openPipeline();
+            connection.get(bytes("{order:7}:status"));
+            connection.incr(bytes("{order:7}:version"));
+            List<Object> results = connection.closePipeline();
+
+            assertThat(results, contains((Object) bytes("paid"), 1L));
+        }
+        finally {
+            connection.close();
+        }
+    }
+
+    @Test(expected = InvalidDataAccessApiUsageException.class)
+    public void shouldRejectServerWideCommand() {
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            connection.flushDb();
+        }
+        finally {
+            connection.close();
+        }
+    }
+
+    private byte[][] keysOfDifferentShards() {
+        ShardLocator locator = connectionFactory.getLocator();
+        byte[] first = bytes("key:0");
+        for (int i = 1; ; i++) {
+            byte[] other = bytes("key:" + i);
+            if (locator.locate(other) != locator.locate(first)) {
+                return new byte[][]{first, other};
+            }
+        }
+    }
+
+    @Test
+    public void shouldScanMatchingKeysOfAllShards() {
+        storeKeys(300);
+
+        Set<String> scanned = new HashSet<>();
+        try (ShardedKeyScan scan = connectionFactory.scan(ScanOptions.scanOptions().match("key:*").count(20).build(), 10)) {
+            scan.forEachRemaining(key -> assertThat(scanned.add(new String(key, StandardCharsets.UTF_8)), is(true)));
+        }
+
+        assertThat(scanned.size(), is(300));
+        for (int i = 0; i < 300; i++) {
+            assertThat(scanned.contains("key:" + i), is(true));
+        }
+        for (RedisServerStub server : servers) {
+            int shardKeys = 0;
+            for (String key : server.getStore().keySet()) {
+                if (key.startsWith("key:")) {
+                    assertThat(scanned.contains(key), is(true));
+                    shardKeys++;
+                }
+            }
+            assertThat(shardKeys, greaterThan(0));
+            assertThat(server.getCommandCount("SCAN"), greaterThanOrEqualTo((long) Math.max(1, server.getStore().size() / 20)));
+        }
+    }
+
+    @Test
+    public void shouldDeleteKeysWhileScanning() {
+        storeKeys(300);
+
+        RedisConnection connection = connectionFactory.getConnection();
+        try (ShardedKeyScan scan = connectionFactory.scan(ScanOptions.scanOptions().match("key:*").count(20).build(), 10)) {
+            List<byte[]> batch = new ArrayList<>();
+            while (scan.hasNext()) {
+                batch.add(scan.next());
+                if (batch.size() == 50 || !scan.hasNext()) {
+                    connection.del(batch.toArray(new byte[0][]));
+                    batch.clear();
+                }
+            }
+        }
+        finally {
+            connection.close();
+        }
+
+        int remaining = 0;
+        for (RedisServerStub server : servers) {
+            for (String key : server.getStore().keySet()) {
+                assertThat(key.startsWith("other:"), is(true));
+                remaining++;
+            }
+        }
+        assertThat(remaining, is(30));
+    }
+
+    @Test
+    public void shouldStopShardScansOnClose() {
+        storeKeys(3000);
+
+        try (ShardedKeyScan scan = connectionFactory.scan(ScanOptions.scanOptions().count(10).build(), 5)) {
+            assertThat(scan.stream().limit(3).count(), is(3L));
+        }
+
+        // Shards scanned only as far as buffer allowed.
+        long scans = servers.stream().mapToLong(server -> server.getCommandCount("SCAN")).sum();
+        assertThat(scans, lessThan(20L));
+    }
+
+    @Test(expected = RedisConnectionFailureException.class)
+    public void shouldFailScanWhenShardUnreachable() {
+        storeKeys(30);
+        servers.get(1).stop();
+
+        try (ShardedKeyScan scan = connectionFactory.scan(ScanOptions.scanOptions().count(10).build())) {
+            scan.forEachRemaining(key -> {
+            });
+        }
+    }
+
+    /**
+     * Store given number of 'key:' keys, plus 30 'other:' keys.
+     */
+    private void storeKeys(int count) {
+        RedisConnection connection = connectionFactory.getConnection();
+        try {
+            for (int i = 0; i < count; i++) {
+                connection.set(bytes("key:" + i), bytes("value:" + i));
+            }
+            for (int i = 0; i < 30; i++) {
+                connection.set(bytes("other:" + i), bytes("value:" + i));
+            }
+        }
+        finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Keys with at least given number of keys on every shard, in mixed shard order.
+     */
+    private byte[][] keysOfEveryShard(int perShard) {
+        ShardLocator locator = connectionFactory.getLocator();
+        int[] counts = new int[servers.size()];
+        List<byte[]> keys = new ArrayList<>();
+        for (int i = 0; Arrays.stream(counts).min().getAsInt() < perShard; i++) {
+            byte[] key = bytes("item:" + Integer.toHexString(i * 0x9E3779B1));
+            counts[locator.locate(key)]++;
+            keys.add(key);
+        }
+        return keys.toArray(new byte[0][]);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
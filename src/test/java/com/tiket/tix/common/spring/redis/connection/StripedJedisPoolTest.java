@@ -0,0 +1,193 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.exceptions.JedisException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+/**
+ * Borrowing and returning connections of {@link StripedJedisPool}, against a redis protocol stand-in.
+ *
+ * @author zakyalvan
+ */
+public class StripedJedisPoolTest {
+    private RedisServerStub server;
+
+    private StripedJedisPool pool;
+
+    @Before
+    public void setUp() {
+        server = new RedisServerStub().start();
+    }
+
+    @After
+    public void tearDown() {
+        if (pool != null) {
+            pool.destroy();
+        }
+        server.stop();
+    }
+
+    @Test
+    public void givenReturnedConnection_whenBorrowAgain_thenReused() {
+        pool = pool(4, 4, -1);
+
+        Jedis first = pool.getResource();
+        first.set("rate", "15000");
+        first.close();
+        Jedis second = pool.getResource();
+        assertThat(second.get("rate"), is("15000"));
+        second.close();
+
+        assertThat(second, sameInstance(first));
+        assertThat(server.getClientCount(), is(1));
+        assertThat(pool.getNumIdle(), is(1));
+        assertThat(pool.getNumActive(), is(0));
+    }
+
+    @Test(expected = JedisException.class)
+    public void givenExhaustedPool_whenMaxWaitElapsed_thenFail() {
+        pool = pool(1, 1, 100);
+
+        pool.getResource();
+        pool.getResource();
+    }
+
+    @Test
+    public void givenExhaustedPool_whenConnectionReturned_thenHandedToWaiter() throws Exception {
+        pool = pool(1, 1, -1);
+        Jedis borrowed = pool.getResource();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Jedis> waiting = executor.submit(pool::getResource);
+            Thread.sleep(50);
+            assertThat(pool.getNumWaiters(), is(1));
+
+            borrowed.close();
+            Jedis handed = waiting.get(1, TimeUnit.SECONDS);
+            assertThat(handed, sameInstance(borrowed));
+            handed.close();
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void givenMaxIdle_whenMoreConnectionsReturned_thenExcessClosed() {
+        pool = pool(4, 2, -1);
+
+        List<Jedis> borrowed = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            borrowed.add(pool.getResource());
+        }
+        borrowed.forEach(Jedis::close);
+
+        assertThat(pool.getNumIdle(), is(2));
+        assertThat(pool.getNumActive(), is(0));
+    }
+
+    @Test
+    public void givenBrokenConnection_whenReturned_thenDestroyed() {
+        pool = pool(2, 2, -1);
+
+        Jedis broken = pool.getResource();
+        pool.returnBrokenResource(broken);
+        Jedis next = pool.getResource();
+        next.close();
+
+        assertThat(next, not(sameInstance(broken)));
+        assertThat(pool.getNumIdle(), is(1));
+        assertThat(pool.getNumActive(), is(0));
+    }
+
+    @Test
+    public void givenExhaustedPool_whenBrokenConnectionReturned_thenWaiterCreateNew() throws Exception {
+        pool = pool(1, 1, -1);
+        Jedis broken = pool.getResource();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Jedis> waiting = executor.submit(pool::getResource);
+            Thread.sleep(50);
+
+            pool.returnBrokenResource(broken);
+            Jedis created = waiting.get(50, TimeUnit.MILLISECONDS);
+            assertThat(created, not(sameInstance(broken)));
+            created.close();
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void givenManyThreads_whenBorrowAndReturnConcurrently_thenNeverExceedMaxTotal() throws Exception {
+        pool = pool(4, 4, -1);
+        int threads = 32;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger concurrent = new AtomicInteger();
+        AtomicInteger maxConcurrent = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < 200; j++) {
+                        Jedis jedis = pool.getResource();
+                        try {
+                            maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+                            jedis.get("rate");
+                        }
+                        finally {
+                            concurrent.decrementAndGet();
+                            jedis.close();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(maxConcurrent.get(), lessThanOrEqualTo(4));
+        assertThat(server.getClientCount(), lessThanOrEqualTo(4));
+        assertThat(pool.getNumActive(), is(0));
+        assertThat(server.getCommandCount("GET"), is(threads * 200L));
+    }
+
+    private StripedJedisPool pool(int maxTotal, int maxIdle, long maxWait) {
+        JedisPoolConfig poolConfig = new JedisPoolConfig();
+        poolConfig.setMaxTotal(maxTotal);
+        poolConfig.setMaxIdle(maxIdle);
+        poolConfig.setMaxWaitMillis(maxWait);
+        return new StripedJedisPool(poolConfig,
+                new ExtendedJedisPooledObjectFactory("127.0.0.1", server.getPort(), 2000, 2000, null, 0, null, false));
+    }
+}
@@ -0,0 +1,52 @@
+package com.tiket.tix.common.spring.redis.connection;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisSentinelConnection;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * {@link RedisConnectionFactory} stub which can be switched into failing mode.
+ *
+ * @author zakyalvan
+ */
+class StubConnectionFactory implements RedisConnectionFactory {
+    final RedisConnection connection = mock(RedisConnection.class);
+    final AtomicInteger failedAttempts = new AtomicInteger();
+    volatile boolean failing = false;
+
+    @Override
+    public RedisConnection getConnection() {
+        if (failing) {
+            failedAttempts.incrementAndGet();
+            throw new RedisConnectionFailureException("Stub connection factory failing");
+        }
+        return connection;
+    }
+
+    @Override
+    public RedisClusterConnection getClusterConnection() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean getConvertPipelineAndTxResults() {
+        return true;
+    }
+
+    @Override
+    public RedisSentinelConnection getSentinelConnection() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public DataAccessException translateExceptionIfPossible(RuntimeException ex) {
+        return null;
+    }
+}
@@ -0,0 +1,183 @@
+package com.tiket.tix.common.spring.redis.core;
+
+import com.tiket.tix.common.spring.redis.connection.ExtendedJedisConnectionFactory;
+import com.tiket.tix.common.spring.redis.connection.FailOverCandidate;
+import com.tiket.tix.common.spring.redis.connection.FailOverCapableConnectionFactory;
+import com.tiket.tix.common.spring.redis.connection.RedisServerStub;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.fail;
+
+/**
+ * Asynchronous commands of {@link AsyncRedisTemplate} over {@link FailOverCapableConnectionFactory}, against redis
+ * protocol stand-ins.
+ *
+ * @author zakyalvan
+ */
+public class AsyncRedisTemplateTest {
+    private final List<RedisServerStub> servers = new ArrayList<>();
+
+    private final List<ExtendedJedisConnectionFactory> delegates = new ArrayList<>();
+
+    private FailOverCapableConnectionFactory connectionFactory;
+
+    private AsyncRedisTemplate<String, String> template;
+
+    @Before
+    public void setUp() {
+        List<FailOverCandidate> candidates = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            RedisServerStub server = new RedisServerStub().start();
+            server.getStore().put("rate", ("value-" + i).getBytes(StandardCharsets.UTF_8));
+            servers.add(server);
+
+            ExtendedJedisConnectionFactory delegate = new ExtendedJedisConnectionFactory();
+            delegate.setHostName("127.0.0.1");
+            delegate.setPort(server.getPort());
+            delegate.afterPropertiesSet();
+            delegates.add(delegate);
+            candidates.add(new FailOverCandidate("proxy-" + i, delegate));
+        }
+        connectionFactory = new FailOverCapableConnectionFactory(candidates);
+        template = template(AsyncRedisTemplate.DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    @After
+    public void tearDown() {
+        template.destroy();
+        connectionFactory.destroy();
+        delegates.forEach(ExtendedJedisConnectionFactory::destroy);
+        servers.forEach(RedisServerStub::stop);
+    }
+
+    @Test
+    public void givenIndependentLookups_whenIssuedTogether_thenLatenciesOverlap() throws Exception {
+        servers.get(0).roundTripTime(20, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 10; i++) {
+            servers.get(0).getStore().put("key-" + i, ("value-" + i).getBytes(StandardCharsets.UTF_8));
+        }
+
+        long started = System.nanoTime();
+        List<CompletableFuture<String>> lookups = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            lookups.add(template.get("key-" + i));
+        }
+        CompletableFuture.allOf(lookups.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(lookups.get(i).get(), is("value-" + i));
+        }
+        // Sequential lookups would take at least 10 round trips.
+        assertThat(elapsed, lessThan(120L));
+    }
+
+    @Test
+    public void givenMixedCommands_whenPipelined_thenEachCompletedWithOwnResult() throws Exception {
+        CompletableFuture<Void> set = template.set("city", "jakarta");
+        CompletableFuture<String> get = template.get("city");
+        CompletableFuture<Long> increment = template.increment("counter", 5);
+        CompletableFuture<Boolean> hashPut = template.hashPut("hotel", "name", "grand");
+        CompletableFuture<Long> setAdd = template.setAdd("tags", "beach");
+        CompletableFuture<List<String>> multiGet = template.multiGet(Arrays.asList("city", "missing", "rate"));
+
+        assertThat(set.get(5, TimeUnit.SECONDS), nullValue());
+        assertThat(get.get(), is("jakarta"));
+        assertThat(increment.get(), is(5L));
+        assertThat(hashPut.get(), is(true));
+        assertThat(setAdd.get(), is(1L));
+        assertThat(multiGet.get(), contains("jakarta", null, "value-0"));
+
+        assertThat(template.hashEntries("hotel").get(5, TimeUnit.SECONDS), hasEntry("name", "grand"));
+        assertThat(template.setMembers("tags").get(5, TimeUnit.SECONDS), contains("beach"));
+        assertThat(template.delete("city").get(5, TimeUnit.SECONDS), is(1L));
+    }
+
+    @Test
+    public void givenExpiringSetAndReads_whenPipelinedTogether_thenEachCompleted() throws Exception {
+        servers.get(0).serviceTime(50, TimeUnit.MILLISECONDS);
+        // Keep flusher busy, so that following commands are queued into one batch.
+        CompletableFuture<String> busy = template.get("rate");
+
+        CompletableFuture<Void> set = template.set("city", "jakarta", 10, TimeUnit.SECONDS);
+        CompletableFuture<String> get = template.get("city");
+        CompletableFuture<String> rate = template.get("rate");
+
+        assertThat(busy.get(5, TimeUnit.SECONDS), is("value-0"));
+        assertThat(set.get(5, TimeUnit.SECONDS), nullValue());
+        assertThat(get.get(5, TimeUnit.SECONDS), is("jakarta"));
+        assertThat(rate.get(5, TimeUnit.SECONDS), is("value-0"));
+    }
+
+    @Test
+    public void givenCommandError_whenPipelined_thenOnlyThatCommandFail() throws Exception {
+        servers.get(0).getStore().put("name", "not-a-number".getBytes(StandardCharsets.UTF_8));
+
+        CompletableFuture<Long> increment = template.increment("name", 1);
+        CompletableFuture<String> get = template.get("rate");
+
+        try {
+            increment.get(5, TimeUnit.SECONDS);
+            fail("Increment of non number must fail");
+        }
+        catch (ExecutionException ex) {
+            assertThat(ex.getCause(), instanceOf(RuntimeException.class));
+        }
+        assertThat(get.get(5, TimeUnit.SECONDS), is("value-0"));
+    }
+
+    @Test
+    public void givenMaxInFlightReached_whenSubmit_thenRejected() throws Exception {
+        template.destroy();
+        template = template(2);
+        servers.get(0).serviceTime(200, TimeUnit.MILLISECONDS);
+
+        CompletableFuture<String> first = template.get("rate");
+        CompletableFuture<String> second = template.get("rate");
+        CompletableFuture<String> third = template.get("rate");
+
+        try {
+            third.get(5, TimeUnit.SECONDS);
+            fail("Command beyond maximum in flight must be rejected");
+        }
+        catch (ExecutionException ex) {
+            assertThat(ex.getCause(), instanceOf(RejectedExecutionException.class));
+        }
+        assertThat(first.get(5, TimeUnit.SECONDS), is("value-0"));
+        assertThat(second.get(5, TimeUnit.SECONDS), is("value-0"));
+        assertThat(template.getInFlightCount(), is(0));
+    }
+
+    @Test
+    public void givenActiveProxyDown_whenRead_thenFailedOver() throws Exception {
+        assertThat(template.get("rate").get(5, TimeUnit.SECONDS), is("value-0"));
+
+        servers.get(0).stop();
+        assertThat(template.get("rate").get(5, TimeUnit.SECONDS), is("value-1"));
+    }
+
+    private AsyncRedisTemplate<String, String> template(int maxInFlight) {
+        StringRedisSerializer serializer = new StringRedisSerializer();
+        return new AsyncRedisTemplate<>(connectionFactory, serializer, serializer, maxInFlight,
+                AsyncRedisTemplate.DEFAULT_MAX_BATCH_SIZE);
+    }
+}
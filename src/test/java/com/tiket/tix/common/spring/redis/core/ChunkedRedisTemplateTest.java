@@ -0,0 +1,202 @@
+package com.tiket.tix.common.spring.redis.core;
+
+import com.tiket.tix.common.spring.redis.connection.ExtendedJedisConnectionFactory;
+import com.tiket.tix.common.spring.redis.connection.RedisServerStub;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.DataRetrievalFailureException;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Chunked writes and streaming reads of {@link ChunkedRedisTemplate}, against redis protocol stand-in.
+ *
+ * @author zakyalvan
+ */
+public class ChunkedRedisTemplateTest {
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final List<String> commands = new CopyOnWriteArrayList<>();
+
+    private RedisServerStub server;
+
+    private ExtendedJedisConnectionFactory connectionFactory;
+
+    private ChunkedRedisTemplate<String> template;
+
+    @Before
+    public void setUp() {
+        server = new RedisServerStub() {
+            @Override
+            protected void execute(String command, List<byte[]> request, OutputStream output) throws IOException {
+                commands.add(command + (request.size() > 1 ? " " + string(request, 1) : ""));
+                super.execute(command, request, output);
+            }
+        }.start();
+        connectionFactory = new ExtendedJedisConnectionFactory();
+        connectionFactory.setHostName("127.0.0.1");
+        connectionFactory.setPort(server.getPort());
+        connectionFactory.afterPropertiesSet();
+        template = new ChunkedRedisTemplate<>(connectionFactory, new StringRedisSerializer(), CHUNK_SIZE, 4, "{}");
+    }
+
+    @After
+    public void tearDown() {
+        connectionFactory.destroy();
+        server.stop();
+    }
+
+    @Test
+    public void givenLargeValue_whenWritten_thenStreamedBackInChunks() throws IOException {
+        byte[] value = random(1024 * 1024 + 100, 1);
+        template.write("search:snapshot", new ByteArrayInputStream(value));
+
+        assertThat(template.length("search:snapshot"), is((long) value.length));
+        assertThat(server.getCommandCount("PSETEX"), is(17L));
+        assertThat(readFully(template.read("search:snapshot")), is(value));
+
+        long chunks = server.getStore().keySet().stream().filter(key -> key.startsWith("{search:snapshot}:")).count();
+        assertThat(chunks, is(17L));
+
+        AtomicInteger count = new AtomicInteger();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertThat(template.read("search:snapshot", chunk -> {
+            assertThat(chunk.remaining(), lessThanOrEqualTo(CHUNK_SIZE));
+            count.incrementAndGet();
+            byte[] bytes = new byte[chunk.remaining()];
+            chunk.get(bytes);
+            output.write(bytes, 0, bytes.length);
+        }), is(true));
+        assertThat(count.get(), is(17));
+        assertThat(output.toByteArray(), is(value));
+    }
+
+    @Test
+    public void givenHashTaggedKey_whenWritten_thenChunksShareHashTag() {
+        template.write("{user:1}:report", random(CHUNK_SIZE * 2, 2));
+
+        long chunks = server.getStore().keySet().stream().filter(key -> key.startsWith("{user:1}:report:")).count();
+        assertThat(chunks, is(2L));
+        assertThat(server.getStore().size(), is(3));
+    }
+
+    @Test
+    public void givenSourceFailedMidway_whenWritten_thenNothingVisible() {
+        byte[] previous = random(100, 3);
+        template.write("search:snapshot", previous);
+
+        InputStream broken = new SequenceInputStream(new ByteArrayInputStream(random(CHUNK_SIZE * 6, 4)), new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("Source broke");
+            }
+        });
+        try {
+            template.write("search:snapshot", broken);
+            throw new AssertionError("Source failure must be propagated");
+        }
+        catch (IOException ex) {
+            assertThat(ex.getMessage(), is("Source broke"));
+        }
+
+        assertThat(template.length("search:snapshot"), is(100L));
+        assertThat(readFully(template.read("search:snapshot")), is(previous));
+        // Manifest and the one chunk of previous value.
+        assertThat(server.getStore().size(), is(2));
+    }
+
+    @Test
+    public void givenValueReplaced_whenStillStreaming_thenOldValueReadToTheEnd() throws IOException {
+        byte[] first = random(CHUNK_SIZE * 3, 5);
+        byte[] second = random(CHUNK_SIZE * 2, 6);
+        template.write("search:snapshot", first);
+
+        InputStream reading = template.read("search:snapshot");
+        byte[] head = new byte[10];
+        assertThat(reading.read(head), is(10));
+
+        template.write("search:snapshot", second);
+        ByteArrayOutputStream rest = new ByteArrayOutputStream();
+        rest.write(head, 0, head.length);
+        rest.write(readFully(reading), 0, first.length - head.length);
+        assertThat(rest.toByteArray(), is(first));
+        assertThat(readFully(template.read("search:snapshot")), is(second));
+
+        assertThat(template.delete("search:snapshot"), is(true));
+        assertThat(template.read("search:snapshot"), is(nullValue()));
+        assertThat(template.delete("search:snapshot"), is(false));
+    }
+
+    @Test(expected = DataRetrievalFailureException.class)
+    public void givenCorruptChunk_whenRead_thenRejected() {
+        template.write("search:snapshot", random(CHUNK_SIZE * 2, 7));
+        server.getStore().keySet().stream().filter(key -> key.endsWith(":1")).findFirst()
+                .ifPresent(key -> server.getStore().put(key, random(CHUNK_SIZE, 8)));
+
+        template.read("search:snapshot", chunk -> {
+        });
+    }
+
+    @Test
+    public void givenTimeToLive_whenWritten_thenChunksExtendedBeforeManifestWrittenWithTimeToLive() throws IOException {
+        template.write("search:snapshot", new ByteArrayInputStream(random(CHUNK_SIZE * 2, 9)), 10, TimeUnit.MINUTES);
+
+        int manifest = commands.indexOf("PSETEX search:snapshot");
+        assertThat(manifest, greaterThan(0));
+        assertThat(commands.subList(0, manifest).stream().filter(command -> command.startsWith("PEXPIRE {search:snapshot}:"))
+                .count(), is(2L));
+        assertThat(commands.contains("PEXPIRE search:snapshot"), is(false));
+        assertThat(commands.contains("GETSET search:snapshot"), is(false));
+        assertThat(template.length("search:snapshot"), is((long) CHUNK_SIZE * 2));
+    }
+
+    @Test
+    public void givenNoTimeToLive_whenWritten_thenChunksPersistedBeforeManifestWritten() {
+        template.write("search:snapshot", random(CHUNK_SIZE * 2, 10));
+
+        int manifest = commands.indexOf("GETSET search:snapshot");
+        assertThat(manifest, greaterThan(0));
+        assertThat(commands.subList(0, manifest).stream().filter(command -> command.startsWith("PERSIST {search:snapshot}:"))
+                .count(), is(2L));
+    }
+
+    private static byte[] readFully(InputStream input) {
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[5000];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+            return output.toByteArray();
+        }
+        catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static byte[] random(int length, long seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return Arrays.copyOf(bytes, length);
+    }
+}
@@ -0,0 +1,133 @@
+package com.tiket.tix.common.spring.redis.core;
+
+import com.tiket.tix.common.spring.redis.connection.ExtendedJedisConnectionFactory;
+import com.tiket.tix.common.spring.redis.connection.RedisServerStub;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+
+/**
+ * Coalescing and flushing of {@link WriteBehindRedisTemplate}, against redis protocol stand-in.
+ *
+ * @author zakyalvan
+ */
+public class WriteBehindRedisTemplateTest {
+    private RedisServerStub server;
+
+    private ExtendedJedisConnectionFactory connectionFactory;
+
+    private WriteBehindRedisTemplate<String, String> template;
+
+    @Before
+    public void setUp() {
+        server = new RedisServerStub().start();
+        connectionFactory = new ExtendedJedisConnectionFactory();
+        connectionFactory.setHostName("127.0.0.1");
+        connectionFactory.setPort(server.getPort());
+        connectionFactory.afterPropertiesSet();
+    }
+
+    @After
+    public void tearDown() {
+        if (template != null) {
+            template.destroy();
+        }
+        connectionFactory.destroy();
+        server.stop();
+    }
+
+    @Test
+    public void givenHotKeys_whenFlushed_thenWritesCoalesced() {
+        template = template(1024, 65536);
+        for (int i = 0; i < 500; i++) {
+            template.increment("views:" + (i % 2), 2);
+            template.hashIncrement("clicks", "hotel-" + (i % 5), 1);
+            template.set("last-seen", String.valueOf(i));
+        }
+        template.set("session", "active", 30, TimeUnit.SECONDS);
+        template.flush();
+
+        assertThat(value("views:0"), is("500"));
+        assertThat(value("views:1"), is("500"));
+        assertThat(new String(server.getHash("clicks").get("hotel-3"), StandardCharsets.UTF_8), is("100"));
+        assertThat(value("last-seen"), is("499"));
+        assertThat(value("session"), is("active"));
+        assertThat(server.getCommandCount("INCRBY"), is(2L));
+        assertThat(server.getCommandCount("HINCRBY"), is(5L));
+        assertThat(server.getCommandCount("SET"), is(1L));
+        assertThat(server.getCommandCount("PSETEX"), is(1L));
+
+        WriteBehindStatistics statistics = template.getStatistics();
+        assertThat(statistics.getWrites(), is(1501L));
+        assertThat(statistics.getCommands(), is(9L));
+        assertThat(statistics.getCoalescingRatio(), greaterThan(100.0));
+        assertThat(statistics.getFlushes(), is(1L));
+        assertThat(template.getPendingCount(), is(0));
+    }
+
+    @Test
+    public void givenThresholdReached_whenWrite_thenFlushedBeforeSchedule() {
+        template = template(10, 100);
+        for (int i = 0; i < 10; i++) {
+            template.increment("counter:" + i, 1);
+        }
+        await().atMost(2, TimeUnit.SECONDS).until(() -> server.getCommandCount("INCRBY") == 10);
+    }
+
+    @Test
+    public void givenPendingWrites_whenDestroyed_thenFlushed() {
+        template = template(1024, 65536);
+        template.increment("counter", 3);
+        template.destroy();
+        template = null;
+
+        assertThat(value("counter"), is("3"));
+    }
+
+    @Test
+    public void givenRedisUnreachable_whenFlushed_thenWritesKeptAndBounded() {
+        template = template(2, 2);
+        server.stop();
+
+        template.increment("counter", 1);
+        template.flush();
+        template.increment("counter", 1);
+        template.set("other", "value");
+        // Threshold reached, wait for the background flush.
+        await().atMost(2, TimeUnit.SECONDS).until(() -> template.getStatistics().getFailedFlushes() == 2);
+
+        // Buffer full and still unreachable.
+        template.set("dropped", "value");
+
+        assertThat(template.getPendingCount(), is(2));
+        assertThat(template.getStatistics().getFailedFlushes(), is(3L));
+        assertThat(template.getStatistics().getDroppedWrites(), is(1L));
+
+        server.start();
+        template.flush();
+        assertThat(value("counter"), is("2"));
+        assertThat(value("other"), is("value"));
+        assertThat(server.getStore().containsKey("dropped"), is(false));
+    }
+
+    private WriteBehindRedisTemplate<String, String> template(int flushThreshold, int maxPending) {
+        StringRedisSerializer serializer = new StringRedisSerializer();
+        // Scheduled flush far away, flushed explicitly or by threshold.
+        return new WriteBehindRedisTemplate<>(connectionFactory, serializer, serializer, 60000, flushThreshold,
+                maxPending, WriteBehindRedisTemplate.DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    private String value(String key) {
+        byte[] value = server.getStore().get(key);
+        return value != null ? new String(value, StandardCharsets.UTF_8) : null;
+    }
+}
@@ -0,0 +1,151 @@
+package com.tiket.tix.common.spring.redis.serializer;
+
+import org.junit.Test;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+
+/**
+ * Encoding, compression and backward compatibility of {@link CompactRedisSerializer}.
+ *
+ * @author zakyalvan
+ */
+public class CompactRedisSerializerTest {
+    private final CompactRedisSerializer serializer = new CompactRedisSerializer(1024);
+
+    private final JdkSerializationRedisSerializer jdkSerializer = new JdkSerializationRedisSerializer();
+
+    @Test
+    public void shouldRoundTripScalarValuesCompactly() {
+        for (Object value : Arrays.asList("hotel:1", "", Long.MIN_VALUE, -1L, 0L, Long.MAX_VALUE, 42, Integer.MIN_VALUE,
+                15000.5, Double.NaN, true, false)) {
+            byte[] bytes = serializer.serialize(value);
+            assertThat(serializer.deserialize(bytes), is(value));
+            assertThat(bytes.length, lessThan(jdkSerializer.serialize(value).length));
+        }
+        assertThat(serializer.deserialize(serializer.serialize(bytes("raw"))), is(bytes("raw")));
+        assertThat(serializer.serialize(12L).length, is(3));
+
+        assertThat(serializer.serialize(null).length, is(0));
+        assertThat(serializer.deserialize(new byte[0]), is(nullValue()));
+        assertThat(serializer.deserialize(null), is(nullValue()));
+    }
+
+    @Test
+    public void shouldCompressLargeValuesOnly() {
+        List<String> rooms = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            rooms.add("Deluxe Double Room " + (i % 17) + ", breakfast included, free cancellation");
+        }
+        byte[] bytes = serializer.serialize(rooms);
+        assertThat(serializer.deserialize(bytes), is(rooms));
+        assertThat(bytes.length, lessThan(jdkSerializer.serialize(rooms).length / 10));
+
+        String small = "Deluxe Double Room, breakfast included";
+        assertThat(serializer.serialize(small).length, is(small.length() + 2));
+    }
+
+    @Test
+    public void shouldStoreIncompressibleValuesUncompressed() {
+        byte[] random = new byte[4096];
+        new Random(7).nextBytes(random);
+
+        byte[] bytes = serializer.serialize(random);
+        assertThat(bytes.length, is(random.length + 2));
+        assertThat(serializer.deserialize(bytes), is(random));
+    }
+
+    @Test
+    public void shouldReadValuesWrittenByJavaSerialization() {
+        List<String> legacy = new ArrayList<>(Arrays.asList("written", "before", "rollout"));
+        assertThat(serializer.deserialize(jdkSerializer.serialize(legacy)), is(legacy));
+        assertThat(serializer.deserialize(jdkSerializer.serialize(15000L)), is(15000L));
+    }
+
+    @Test(expected = SerializationException.class)
+    public void shouldRejectTruncatedCompressedValue() {
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            value.append("rate:").append(i % 10).append(';');
+        }
+        byte[] bytes = serializer.serialize(value.toString());
+        serializer.deserialize(Arrays.copyOf(bytes, bytes.length / 2));
+    }
+
+    @Test
+    public void shouldReadValuesCompressedByEitherCompression() {
+        CompactRedisSerializer deflate = new CompactRedisSerializer(1024, CompactRedisSerializer.Compression.DEFLATE, null);
+        CompactRedisSerializer lz4 = new CompactRedisSerializer(1024, CompactRedisSerializer.Compression.LZ4, null);
+        String value = rates(500);
+
+        byte[] deflated = deflate.serialize(value);
+        byte[] lz4Compressed = lz4.serialize(value);
+        assertThat(deflated.length, lessThan(value.length() / 4));
+        assertThat(lz4Compressed.length, lessThan(value.length() / 4));
+        assertThat(lz4.deserialize(deflated), is(value));
+        assertThat(deflate.deserialize(lz4Compressed), is(value));
+
+        for (byte[] bytes : Arrays.asList(deflated, lz4Compressed)) {
+            try {
+                deflate.deserialize(Arrays.copyOf(bytes, bytes.length / 2));
+                throw new AssertionError("Truncated value must be rejected");
+            }
+            catch (SerializationException ex) {
+                assertThat(ex.getMessage(), containsString("compressed value"));
+            }
+        }
+    }
+
+    @Test
+    public void shouldKeepBoundedNumberOfDeflateCodecs() throws InterruptedException {
+        CompactRedisSerializer deflate = new CompactRedisSerializer(1024, CompactRedisSerializer.Compression.DEFLATE, null);
+        String value = rates(500);
+        int processors = Runtime.getRuntime().availableProcessors();
+
+        AtomicInteger roundTrips = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(processors * 4);
+        try {
+            for (int i = 0; i < processors * 400; i++) {
+                executor.execute(() -> {
+                    if (value.equals(deflate.deserialize(deflate.serialize(value)))) {
+                        roundTrips.incrementAndGet();
+                    }
+                });
+            }
+        }
+        finally {
+            executor.shutdown();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        assertThat(roundTrips.get(), is(processors * 400));
+        assertThat(CompactRedisSerializer.pooledCodecs(), lessThanOrEqualTo(processors * 2));
+    }
+
+    private static String rates(int count) {
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            value.append("rate:").append(i % 10).append(';');
+        }
+        return value.toString();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}